@@ -0,0 +1,59 @@
+package de.dev_kiste.galaxy.codec;
+
+/**
+ * Reads values bit by bit from a byte array, most significant bit first
+ *
+ * @author Benny Lach
+ */
+final class BitReader {
+    private final byte[] source;
+    private final int offset;
+    private final long limit;
+    private long position = 0;
+
+    BitReader(byte[] source, int offset, int length) {
+        this.source = source;
+        this.offset = offset;
+        this.limit = (long) length * 8;
+    }
+
+    /**
+     * Reads an unsigned value of the given number of bits
+     *
+     * @param count The number of bits - between 1 and 64
+     * @return the value
+     * @throws IllegalArgumentException if the data is truncated
+     */
+    long readBits(int count) throws IllegalArgumentException {
+        if(position + count > limit) {
+            throw new IllegalArgumentException("Encoded message is truncated");
+        }
+        long value = 0;
+
+        for(int i = 0; i < count; i++) {
+            int index = offset + (int) (position >>> 3);
+            int shift = 7 - (int) (position & 7);
+
+            value = (value << 1) | ((source[index] >>> shift) & 1);
+            position++;
+        }
+        return value;
+    }
+
+    /**
+     * Reads an unsigned varint written by {@link BitWriter#writeVarint(long)}
+     */
+    long readVarint() throws IllegalArgumentException {
+        long value = 0;
+
+        for(int shift = 0; shift < 64; shift += 7) {
+            long group = readBits(8);
+
+            value |= (group & 0x7F) << shift;
+            if((group & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint is too long");
+    }
+}
@@ -0,0 +1,66 @@
+package de.dev_kiste.galaxy.codec;
+
+/**
+ * Writes values bit by bit into a byte array, most significant bit first
+ *
+ * @author Benny Lach
+ */
+final class BitWriter {
+    private byte[] target;
+    private int offset;
+    private long limit;
+    private long position;
+
+    /**
+     * Resets the writer to write into the given range of the array. The range is cleared while writing
+     */
+    void reset(byte[] target, int offset, int length) {
+        this.target = target;
+        this.offset = offset;
+        this.limit = (long) length * 8;
+        this.position = 0;
+    }
+
+    /**
+     * Writes the lowest bits of the given value
+     *
+     * @param value The value
+     * @param count The number of bits to write - between 1 and 64
+     * @throws IllegalArgumentException if the value does not fit into the remaining space
+     */
+    void writeBits(long value, int count) throws IllegalArgumentException {
+        if(position + count > limit) {
+            throw new IllegalArgumentException("Encoded message exceeds " + limit / 8 + " bytes");
+        }
+        for(int bit = count - 1; bit >= 0; bit--) {
+            int index = offset + (int) (position >>> 3);
+            int shift = 7 - (int) (position & 7);
+
+            if(shift == 7) {
+                target[index] = 0;
+            }
+            if(((value >>> bit) & 1) != 0) {
+                target[index] |= 1 << shift;
+            }
+            position++;
+        }
+    }
+
+    /**
+     * Writes the given value as unsigned varint using groups of 7 bits with a continuation bit
+     */
+    void writeVarint(long value) throws IllegalArgumentException {
+        while((value & ~0x7FL) != 0) {
+            writeBits((value & 0x7F) | 0x80, 8);
+            value >>>= 7;
+        }
+        writeBits(value, 8);
+    }
+
+    /**
+     * Method to get the number of bytes used so far, including a partially written last byte
+     */
+    int byteLength() {
+        return (int) ((position + 7) >>> 3);
+    }
+}
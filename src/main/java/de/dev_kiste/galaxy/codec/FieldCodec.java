@@ -0,0 +1,23 @@
+package de.dev_kiste.galaxy.codec;
+
+/**
+ * Encoding of a single field of a {@link MessageSchema}
+ *
+ * @author Benny Lach
+ */
+interface FieldCodec<T> {
+    /**
+     * Writes the field of the given object
+     */
+    void write(T value, BitWriter writer) throws IllegalArgumentException;
+
+    /**
+     * Reads the field into the given object
+     */
+    void read(T value, BitReader reader) throws IllegalArgumentException;
+
+    /**
+     * Method to get the maximum number of bits the field needs
+     */
+    int maximumBits();
+}
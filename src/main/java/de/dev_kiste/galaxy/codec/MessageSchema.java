@@ -0,0 +1,358 @@
+package de.dev_kiste.galaxy.codec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Compact binary encoding of a message type.
+ *
+ * A schema is a list of fields, each described by a getter and a setter, so encoding and decoding need no
+ * reflection and write directly between the object and the payload. Fields are packed without padding:
+ * <pre>
+ * 0     magic
+ * 1     type tag
+ * 2-    fields in declaration order, bit packed
+ * </pre>
+ *
+ * Example:
+ * <pre>
+ * MessageSchema&lt;Reading&gt; schema = MessageSchema.builder(1, Reading::new)
+ *         .varint(Reading::getSensor, Reading::setSensor)
+ *         .fixedPoint(Reading::getTemperature, Reading::setTemperature, -40, 85, 0.1)
+ *         .flag(Reading::isCharging, Reading::setCharging)
+ *         .build();
+ * </pre>
+ *
+ * @author Benny Lach
+ */
+public final class MessageSchema<T> {
+    final static byte MAGIC = (byte) 0xAB;
+    final static int HEADER_LENGTH = 2;
+
+    private final int typeTag;
+    private final Supplier<T> factory;
+    private final List<FieldCodec<T>> fields;
+    private final int maximumLength;
+    private final ThreadLocal<byte[]> scratch;
+    private final ThreadLocal<BitWriter> writers = ThreadLocal.withInitial(BitWriter::new);
+
+    private MessageSchema(Builder<T> builder) {
+        this.typeTag = builder.typeTag;
+        this.factory = builder.factory;
+        this.fields = new ArrayList<>(builder.fields);
+
+        long bits = 0;
+        for(FieldCodec<T> field : fields) {
+            bits += field.maximumBits();
+        }
+        this.maximumLength = (int) Math.min(Integer.MAX_VALUE, HEADER_LENGTH + (bits + 7) / 8);
+        this.scratch = ThreadLocal.withInitial(() -> new byte[maximumLength]);
+    }
+
+    /**
+     * Method to create a builder for a schema
+     *
+     * @param typeTag The tag identifying the message type - between 0 and 255
+     * @param factory Supplier creating empty objects used while decoding
+     * @return the builder
+     * @throws IllegalArgumentException if the tag is out of range or the factory is null
+     */
+    public static <T> Builder<T> builder(int typeTag, Supplier<T> factory) throws IllegalArgumentException {
+        if(typeTag < 0 || typeTag > 0xFF || factory == null) {
+            throw new IllegalArgumentException("Type tag must be between 0 and 255 and factory must not be null");
+        }
+        return new Builder<>(typeTag, factory);
+    }
+
+    /**
+     * Method to get the type tag of an encoded payload
+     *
+     * @param payload The payload
+     * @return the tag or -1 if the payload was not encoded by a schema
+     */
+    public static int typeTag(byte[] payload) {
+        if(payload == null || payload.length < HEADER_LENGTH || payload[0] != MAGIC) {
+            return -1;
+        }
+        return payload[1] & 0xFF;
+    }
+
+    /**
+     * Method to get the tag identifying the message type
+     *
+     * @return the type tag
+     */
+    public int getTypeTag() {
+        return typeTag;
+    }
+
+    /**
+     * Method to get the maximum size of an encoded message
+     *
+     * @return max. length in bytes
+     */
+    public int getMaximumLength() {
+        return maximumLength;
+    }
+
+    /**
+     * Method to encode the given object into the given array
+     *
+     * @param value The object to encode
+     * @param target The target array
+     * @param offset The position of the first byte in the array
+     * @return number of written bytes
+     * @throws IllegalArgumentException if a field value is invalid or the target is too small
+     */
+    public int encode(T value, byte[] target, int offset) throws IllegalArgumentException {
+        if(value == null || target.length - offset < HEADER_LENGTH) {
+            throw new IllegalArgumentException("Value must not be null and target must have space for the header");
+        }
+        target[offset] = MAGIC;
+        target[offset + 1] = (byte) typeTag;
+
+        BitWriter writer = writers.get();
+        writer.reset(target, offset + HEADER_LENGTH, target.length - offset - HEADER_LENGTH);
+
+        for(FieldCodec<T> field : fields) {
+            field.write(value, writer);
+        }
+        return HEADER_LENGTH + writer.byteLength();
+    }
+
+    /**
+     * Method to encode the given object
+     *
+     * @param value The object to encode
+     * @return the encoded payload
+     * @throws IllegalArgumentException if a field value is invalid
+     */
+    public byte[] encode(T value) throws IllegalArgumentException {
+        byte[] buffer = scratch.get();
+
+        return Arrays.copyOf(buffer, encode(value, buffer, 0));
+    }
+
+    /**
+     * Method to decode the given payload
+     *
+     * @param payload The payload
+     * @return the decoded object
+     * @throws IllegalArgumentException if the payload does not belong to this schema or is truncated
+     */
+    public T decode(byte[] payload) throws IllegalArgumentException {
+        return decode(payload, 0, payload.length);
+    }
+
+    /**
+     * Method to decode the given range of a payload
+     *
+     * @param payload The payload
+     * @param offset The position of the first byte of the message
+     * @param length The length of the message
+     * @return the decoded object
+     * @throws IllegalArgumentException if the payload does not belong to this schema or is truncated
+     */
+    public T decode(byte[] payload, int offset, int length) throws IllegalArgumentException {
+        if(length < HEADER_LENGTH || payload[offset] != MAGIC || (payload[offset + 1] & 0xFF) != typeTag) {
+            throw new IllegalArgumentException("Payload was not encoded with schema " + typeTag);
+        }
+        BitReader reader = new BitReader(payload, offset + HEADER_LENGTH, length - HEADER_LENGTH);
+        T value = factory.get();
+
+        for(FieldCodec<T> field : fields) {
+            field.read(value, reader);
+        }
+        return value;
+    }
+
+    /**
+     * Helper to build a {@link MessageSchema}
+     */
+    public static class Builder<T> {
+        private final int typeTag;
+        private final Supplier<T> factory;
+        private final List<FieldCodec<T>> fields = new ArrayList<>();
+
+        private Builder(int typeTag, Supplier<T> factory) {
+            this.typeTag = typeTag;
+            this.factory = factory;
+        }
+
+        /**
+         * Adds a signed integer field encoded as zigzag varint, so small absolute values need a single byte
+         *
+         * @param getter Function reading the field
+         * @param setter Function writing the field
+         * @return Updated builder
+         */
+        public Builder<T> varint(ToLongFunction<T> getter, ObjLongConsumer<T> setter) {
+            fields.add(new FieldCodec<T>() {
+                @Override
+                public void write(T value, BitWriter writer) {
+                    long number = getter.applyAsLong(value);
+                    writer.writeVarint((number << 1) ^ (number >> 63));
+                }
+
+                @Override
+                public void read(T value, BitReader reader) {
+                    long encoded = reader.readVarint();
+                    setter.accept(value, (encoded >>> 1) ^ -(encoded & 1));
+                }
+
+                @Override
+                public int maximumBits() {
+                    return 80;
+                }
+            });
+            return this;
+        }
+
+        /**
+         * Adds a decimal field with a fixed range and resolution, stored as the index of the nearest step.
+         * Values outside of the range are clamped
+         *
+         * @param getter Function reading the field
+         * @param setter Function writing the field
+         * @param minimum The smallest value
+         * @param maximum The largest value
+         * @param resolution The distance between two encodable values
+         * @return Updated builder
+         * @throws IllegalArgumentException if the range or the resolution is invalid
+         */
+        public Builder<T> fixedPoint(ToDoubleFunction<T> getter, ObjDoubleConsumer<T> setter,
+                                     double minimum, double maximum, double resolution) throws IllegalArgumentException {
+            if(!(maximum > minimum) || !(resolution > 0) || (maximum - minimum) / resolution > (1L << 62)) {
+                throw new IllegalArgumentException("Range must not be empty and resolution must be positive");
+            }
+            final long steps = Math.round((maximum - minimum) / resolution);
+            final int bits = Math.max(1, 64 - Long.numberOfLeadingZeros(steps));
+
+            fields.add(new FieldCodec<T>() {
+                @Override
+                public void write(T value, BitWriter writer) {
+                    double number = Math.max(minimum, Math.min(maximum, getter.applyAsDouble(value)));
+                    writer.writeBits(Math.min(steps, Math.round((number - minimum) / resolution)), bits);
+                }
+
+                @Override
+                public void read(T value, BitReader reader) {
+                    long step = reader.readBits(bits);
+
+                    if(step > steps) {
+                        throw new IllegalArgumentException("Fixed point value out of range");
+                    }
+                    setter.accept(value, minimum + step * resolution);
+                }
+
+                @Override
+                public int maximumBits() {
+                    return bits;
+                }
+            });
+            return this;
+        }
+
+        /**
+         * Adds an enum field stored as ordinal using as few bits as the number of constants requires
+         *
+         * @param type The enum class
+         * @param getter Function reading the field. Must not return null
+         * @param setter Function writing the field
+         * @return Updated builder
+         */
+        public <E extends Enum<E>> Builder<T> enumeration(Class<E> type, Function<T, E> getter, BiConsumer<T, E> setter) {
+            final E[] constants = type.getEnumConstants();
+            final int bits = Math.max(1, 32 - Integer.numberOfLeadingZeros(constants.length - 1));
+
+            fields.add(new FieldCodec<T>() {
+                @Override
+                public void write(T value, BitWriter writer) {
+                    E constant = getter.apply(value);
+
+                    if(constant == null) {
+                        throw new IllegalArgumentException("Enum field of " + type.getSimpleName() + " must not be null");
+                    }
+                    writer.writeBits(constant.ordinal(), bits);
+                }
+
+                @Override
+                public void read(T value, BitReader reader) {
+                    long ordinal = reader.readBits(bits);
+
+                    if(ordinal >= constants.length) {
+                        throw new IllegalArgumentException("Unknown constant of " + type.getSimpleName());
+                    }
+                    setter.accept(value, constants[(int) ordinal]);
+                }
+
+                @Override
+                public int maximumBits() {
+                    return bits;
+                }
+            });
+            return this;
+        }
+
+        /**
+         * Adds an unsigned bitfield of the given width
+         *
+         * @param width The number of bits - between 1 and 64
+         * @param getter Function reading the field
+         * @param setter Function writing the field
+         * @return Updated builder
+         * @throws IllegalArgumentException if the width is out of range
+         */
+        public Builder<T> bits(int width, ToLongFunction<T> getter, ObjLongConsumer<T> setter) throws IllegalArgumentException {
+            if(width < 1 || width > 64) {
+                throw new IllegalArgumentException("Width must be between 1 and 64");
+            }
+            fields.add(new FieldCodec<T>() {
+                @Override
+                public void write(T value, BitWriter writer) {
+                    long number = getter.applyAsLong(value);
+
+                    if(width < 64 && (number >>> width) != 0) {
+                        throw new IllegalArgumentException("Value " + number + " does not fit into " + width + " bits");
+                    }
+                    writer.writeBits(number, width);
+                }
+
+                @Override
+                public void read(T value, BitReader reader) {
+                    setter.accept(value, reader.readBits(width));
+                }
+
+                @Override
+                public int maximumBits() {
+                    return width;
+                }
+            });
+            return this;
+        }
+
+        /**
+         * Adds a boolean field stored as a single bit
+         *
+         * @param getter Function reading the field
+         * @param setter Function writing the field
+         * @return Updated builder
+         */
+        public Builder<T> flag(Predicate<T> getter, BiConsumer<T, Boolean> setter) {
+            return bits(1, value -> getter.test(value) ? 1 : 0, (value, bit) -> setter.accept(value, bit == 1));
+        }
+
+        public MessageSchema<T> build() {
+            return new MessageSchema<>(this);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package de.dev_kiste.galaxy.codec;
+
+/**
+ * Handler for decoded messages of a single {@link MessageSchema}
+ *
+ * @author Benny Lach
+ */
+@FunctionalInterface
+public interface TypedMessageHandler<T> {
+    /**
+     * Method to notify about an incoming message
+     *
+     * @param value The decoded message
+     * @param source The source of the message
+     */
+    void received(T value, String source);
+}
@@ -0,0 +1,84 @@
+package de.dev_kiste.galaxy.codec;
+
+import de.dev_kiste.galaxy.messaging.GalaxyMessage;
+import de.dev_kiste.galaxy.node.middleware.GalaxyMiddleware;
+import de.dev_kiste.galaxy.node.middleware.MiddlewareCaller;
+import de.dev_kiste.galaxy.node.middleware.MiddlewareStopper;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * {@link GalaxyMiddleware} decoding payloads of registered {@link MessageSchema} objects and routing them to
+ * their typed handlers.
+ *
+ * Messages with a registered type tag are consumed by this middleware. All other messages, including payloads
+ * which can not be decoded, pass on to the next stage.
+ * <pre>
+ * TypedMessageRouter router = new TypedMessageRouter().register(readingSchema, (reading, source) -&gt; ...);
+ * GalaxyNode node = new GalaxyNodeBuilder().setDriver(driver).use(router).build();
+ * node.sendObject(reading, readingSchema, "0010");
+ * </pre>
+ *
+ * @author Benny Lach
+ */
+public class TypedMessageRouter implements GalaxyMiddleware {
+
+    private static class Route<T> {
+        private final MessageSchema<T> schema;
+        private final TypedMessageHandler<? super T> handler;
+
+        private Route(MessageSchema<T> schema, TypedMessageHandler<? super T> handler) {
+            this.schema = schema;
+            this.handler = handler;
+        }
+    }
+
+    private final AtomicReferenceArray<Route<?>> routes = new AtomicReferenceArray<>(256);
+
+    /**
+     * Method to register the handler for messages of the given schema
+     *
+     * @param schema The schema of the messages
+     * @param handler The handler receiving decoded messages
+     * @return Updated router
+     * @throws IllegalArgumentException if a value is null or another schema with the same tag was registered
+     */
+    public <T> TypedMessageRouter register(MessageSchema<T> schema, TypedMessageHandler<? super T> handler) throws IllegalArgumentException {
+        if(schema == null || handler == null) {
+            throw new IllegalArgumentException("Schema and handler must not be null");
+        }
+        if(!routes.compareAndSet(schema.getTypeTag(), null, new Route<>(schema, handler))) {
+            throw new IllegalArgumentException("Type tag " + schema.getTypeTag() + " is already registered");
+        }
+        return this;
+    }
+
+    @Override
+    public void execute(GalaxyMessage message, MiddlewareCaller caller, MiddlewareStopper stopper) {
+        int tag = MessageSchema.typeTag(message.getPayload());
+        Route<?> route = tag < 0 ? null : routes.get(tag);
+
+        if(route == null) {
+            caller.call(message);
+            return;
+        }
+        dispatch(route, message, caller, stopper);
+    }
+
+    /**
+     * Decodes the message and hands it to the handler of the route. Only decoding failures pass the message on,
+     * exceptions thrown by the handler are not mistaken for undecodable payloads
+     */
+    private <T> void dispatch(Route<T> route, GalaxyMessage message, MiddlewareCaller caller, MiddlewareStopper stopper) {
+        T decoded;
+
+        try {
+            decoded = route.schema.decode(message.getPayload());
+        } catch (IllegalArgumentException e) {
+            caller.call(message);
+            return;
+        }
+        route.handler.received(decoded, message.getSource());
+        stopper.stop();
+    }
+}
@@ -0,0 +1,136 @@
+package de.dev_kiste.galaxy.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Authenticated encryption of payloads using AES-GCM.
+ *
+ * Frame layout:
+ * <pre>
+ * 0     magic
+ * 1-8   nonce
+ * 9-    ciphertext
+ * ...   12 byte authentication tag
+ * </pre>
+ *
+ * The 96 bit GCM nonce is built from 4 zero bytes and the transmitted 64 bit nonce, which is a counter starting at
+ * a random value, so senders sharing a key do not reuse nonces. The magic byte is authenticated as well.
+ * Every thread keeps its own {@link Cipher} instance, so the provider lookup is done once per thread and
+ * encrypting or decrypting a frame only needs the per-message initialization required by GCM.
+ *
+ * @author Benny Lach
+ */
+public final class PayloadCipher {
+    final static byte MAGIC = (byte) 0xAD;
+    private final static String TRANSFORMATION = "AES/GCM/NoPadding";
+    private final static int NONCE_LENGTH = 8;
+    private final static int IV_LENGTH = 12;
+    private final static int TAG_LENGTH = 12;
+
+    /**
+     * Position of the ciphertext and - after decryption - of the plaintext within a frame
+     */
+    public final static int PAYLOAD_OFFSET = 1 + NONCE_LENGTH;
+    /**
+     * Number of bytes an encrypted frame is longer than its plaintext
+     */
+    public final static int OVERHEAD = PAYLOAD_OFFSET + TAG_LENGTH;
+
+    private final SecretKeySpec key;
+    private final AtomicLong nonce = new AtomicLong(new SecureRandom().nextLong());
+    private final ThreadLocal<Cipher> ciphers = ThreadLocal.withInitial(PayloadCipher::createCipher);
+    private final ThreadLocal<byte[]> ivs = ThreadLocal.withInitial(() -> new byte[IV_LENGTH]);
+
+    /**
+     * Default initializer
+     *
+     * @param key The AES key - 16, 24 or 32 bytes
+     * @throws IllegalArgumentException if the key has an invalid length
+     */
+    public PayloadCipher(byte[] key) throws IllegalArgumentException {
+        if(key == null || (key.length != 16 && key.length != 24 && key.length != 32)) {
+            throw new IllegalArgumentException("Key must have 16, 24 or 32 bytes");
+        }
+        this.key = new SecretKeySpec(key, "AES");
+    }
+
+    /**
+     * Method to check if the given payload is an encrypted frame
+     *
+     * @param frame The received payload
+     * @return true if the payload may be decrypted
+     */
+    public static boolean isEncrypted(byte[] frame) {
+        return frame != null && frame.length >= OVERHEAD && frame[0] == MAGIC;
+    }
+
+    /**
+     * Method to encrypt the given payload
+     *
+     * @param payload The plaintext
+     * @return the encrypted frame - {@link PayloadCipher#OVERHEAD} bytes longer than the plaintext
+     * @throws IllegalStateException if the platform does not support AES-GCM
+     */
+    public byte[] encrypt(byte[] payload) throws IllegalStateException {
+        byte[] frame = new byte[payload.length + OVERHEAD];
+        long value = nonce.getAndIncrement();
+
+        frame[0] = MAGIC;
+        for(int i = 0; i < NONCE_LENGTH; i++) {
+            frame[1 + i] = (byte) (value >>> (56 - 8 * i));
+        }
+        try {
+            Cipher cipher = init(Cipher.ENCRYPT_MODE, frame);
+            cipher.doFinal(payload, 0, payload.length, frame, PAYLOAD_OFFSET);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Encryption failed", e);
+        }
+        return frame;
+    }
+
+    /**
+     * Method to decrypt the given frame in place. The plaintext is written to the frame starting at
+     * {@link PayloadCipher#PAYLOAD_OFFSET}
+     *
+     * @param frame The encrypted frame
+     * @return the length of the plaintext or -1 if the frame is not authentic
+     */
+    public int decrypt(byte[] frame) {
+        if(!isEncrypted(frame)) {
+            return -1;
+        }
+        try {
+            Cipher cipher = init(Cipher.DECRYPT_MODE, frame);
+
+            return cipher.doFinal(frame, PAYLOAD_OFFSET, frame.length - PAYLOAD_OFFSET, frame, PAYLOAD_OFFSET);
+        } catch (GeneralSecurityException e) {
+            return -1;
+        }
+    }
+
+    private Cipher init(int mode, byte[] frame) throws GeneralSecurityException {
+        Cipher cipher = ciphers.get();
+        byte[] iv = ivs.get();
+
+        System.arraycopy(frame, 1, iv, IV_LENGTH - NONCE_LENGTH, NONCE_LENGTH);
+        cipher.init(mode, key, new GCMParameterSpec(TAG_LENGTH * 8, iv));
+        cipher.updateAAD(frame, 0, 1);
+
+        return cipher;
+    }
+
+    private static Cipher createCipher() {
+        try {
+            return Cipher.getInstance(TRANSFORMATION);
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+            throw new IllegalStateException(TRANSFORMATION + " is not supported", e);
+        }
+    }
+}
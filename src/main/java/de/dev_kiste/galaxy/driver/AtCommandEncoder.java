@@ -0,0 +1,151 @@
+package de.dev_kiste.galaxy.driver;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes AT commands and payloads into one reusable buffer, terminated by <code>\r\n</code>.
+ *
+ * The fixed part of every command is encoded once, numbers and addresses are written digit by digit, so encoding a
+ * command does not allocate. The encoder is not thread safe, the buffer content is valid until the next call.
+ *
+ * @author Benny Lach
+ */
+class AtCommandEncoder {
+    final static byte[] PROBE = ascii("AT");
+    final static byte[] ADDRESS_QUERY = ascii("AT+ADDR?");
+    final static byte[] ADDRESS = ascii("AT+ADDR=");
+    final static byte[] DESTINATION = ascii("AT+DEST=");
+    final static byte[] SEND = ascii("AT+SEND=");
+    final static byte[] CONFIG = ascii("AT+CFG=");
+    final static byte[] CONFIG_QUERY = ascii("AT+CFG?");
+    final static byte[] RECEIVE = ascii("AT+RX");
+    final static byte[] RESET = ascii("AT+RST");
+
+    private final static byte[] END = ascii("\r\n");
+    private final static int INITIAL_CAPACITY = 512;
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int length = 0;
+
+    /**
+     * Method to encode a command without argument
+     *
+     * @param template The pre-encoded command
+     * @return the number of encoded bytes
+     */
+    int encode(byte[] template) {
+        length = 0;
+        append(template, template.length);
+
+        return terminate();
+    }
+
+    /**
+     * Method to encode a command with a decimal argument
+     *
+     * @param template The pre-encoded command
+     * @param value The non-negative argument
+     * @return the number of encoded bytes
+     */
+    int encode(byte[] template, int value) {
+        length = 0;
+        append(template, template.length);
+        appendDigits(value);
+
+        return terminate();
+    }
+
+    /**
+     * Method to encode a command with a textual argument like an address or a configuration
+     *
+     * @param template The pre-encoded command
+     * @param value The argument
+     * @return the number of encoded bytes
+     */
+    int encode(byte[] template, String value) {
+        length = 0;
+        append(template, template.length);
+        appendText(value);
+
+        return terminate();
+    }
+
+    /**
+     * Method to encode a raw payload
+     *
+     * @param payload The payload
+     * @return the number of encoded bytes
+     */
+    int encodePayload(byte[] payload) {
+        length = 0;
+        append(payload, payload.length);
+
+        return terminate();
+    }
+
+    /**
+     * Method to get the buffer holding the last encoded bytes, starting at index 0
+     */
+    byte[] getBuffer() {
+        return buffer;
+    }
+
+    private int terminate() {
+        append(END, END.length);
+
+        return length;
+    }
+
+    private void append(byte[] bytes, int count) {
+        ensureCapacity(count);
+        System.arraycopy(bytes, 0, buffer, length, count);
+        length += count;
+    }
+
+    private void appendDigits(int value) {
+        int digits = 1;
+
+        for(int rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        ensureCapacity(digits);
+
+        for(int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+    }
+
+    private void appendText(String value) {
+        int count = value.length();
+        ensureCapacity(count);
+
+        for(int i = 0; i < count; i++) {
+            char c = value.charAt(i);
+
+            if(c >= 0x80) {
+                // not a plain ASCII argument - fall back to the regular encoding
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                append(bytes, bytes.length);
+
+                return;
+            }
+            buffer[length + i] = (byte) c;
+        }
+        length += count;
+    }
+
+    private void ensureCapacity(int additional) {
+        if(length + additional > buffer.length) {
+            byte[] grown = new byte[Math.max(buffer.length * 2, length + additional)];
+
+            System.arraycopy(buffer, 0, grown, 0, length);
+            buffer = grown;
+        }
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,78 @@
+package de.dev_kiste.galaxy.driver;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks synchronously if a module answers <code>AT</code> on an opened link. Used before the reader thread is
+ * started, e.g. to find the baud rate of a module
+ *
+ * @author Benny Lach
+ */
+class AtProbe {
+    private final static int MAX_RESPONSE_LENGTH = 64;
+    private final static long POLL_INTERVAL_MILLIS = 1;
+
+    /**
+     * Method to check if the module answers every probe
+     *
+     * @param link The opened link
+     * @param attempts Number of probes which must be answered
+     * @param timeoutMillis Time to wait for each answer
+     * @return true if every probe was answered with OK
+     */
+    static boolean answers(SerialLink link, int attempts, long timeoutMillis) {
+        AtCommandEncoder encoder = new AtCommandEncoder();
+        int length = encoder.encode(AtCommandEncoder.PROBE);
+        byte[] response = new byte[MAX_RESPONSE_LENGTH];
+        byte[] chunk = new byte[MAX_RESPONSE_LENGTH];
+
+        for(int i = 0; i < attempts; i++) {
+            // drops what is left of earlier answers
+            while(link.bytesAvailable() > 0) {
+                if(link.readBytes(chunk, chunk.length) < 0) {
+                    return false;
+                }
+            }
+            if(link.writeBytes(encoder.getBuffer(), length) != length || !readsOk(link, response, chunk, timeoutMillis)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean readsOk(SerialLink link, byte[] response, byte[] chunk, long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        int length = 0;
+
+        while(length < response.length && System.nanoTime() < deadline) {
+            int available = link.bytesAvailable();
+
+            if(available < 0) {
+                return false;
+            }
+            if(available == 0) {
+                try {
+                    Thread.sleep(POLL_INTERVAL_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+                continue;
+            }
+            int read = link.readBytes(chunk, Math.min(available, chunk.length));
+
+            if(read < 0) {
+                return false;
+            }
+            read = Math.min(read, response.length - length);
+            System.arraycopy(chunk, 0, response, length, read);
+            length += read;
+
+            if(length >= 2 && response[length - 2] == '\r' && response[length - 1] == '\n') {
+                return new String(response, 0, length - 2, StandardCharsets.US_ASCII).endsWith("OK");
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,77 @@
+package de.dev_kiste.galaxy.driver;
+
+/**
+ * Aggregate result of a bulk send holding the status of every item in the order the items were passed
+ *
+ * @author Benny Lach
+ */
+public class BulkSendResult {
+    private final boolean[] sent;
+    private final int sentCount;
+
+    /**
+     * Default initializer
+     *
+     * @param sent Status of every item - true if the item was sent
+     */
+    public BulkSendResult(boolean[] sent) {
+        this.sent = sent.clone();
+
+        int count = 0;
+        for(boolean didSend : sent) {
+            if(didSend) {
+                count++;
+            }
+        }
+        this.sentCount = count;
+    }
+
+    /**
+     * Method to create a result for the given number of items none of which was sent
+     *
+     * @param size The number of items
+     * @return the failed result
+     */
+    public static BulkSendResult failed(int size) {
+        return new BulkSendResult(new boolean[size]);
+    }
+
+    /**
+     * Method to get the number of items
+     * @return number of items
+     */
+    public int size() {
+        return sent.length;
+    }
+
+    /**
+     * Method to check if the item at the given position was sent
+     *
+     * @param index The position of the item in the list passed to the bulk send
+     * @return true if the item was sent
+     */
+    public boolean isSent(int index) {
+        return sent[index];
+    }
+
+    /**
+     * Method to get the number of sent items
+     * @return number of sent items
+     */
+    public int getSentCount() {
+        return sentCount;
+    }
+
+    /**
+     * Method to check if every item was sent
+     * @return true if no item failed
+     */
+    public boolean isComplete() {
+        return sentCount == sent.length;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkSendResult{sent=" + sentCount + "/" + sent.length + "}";
+    }
+}
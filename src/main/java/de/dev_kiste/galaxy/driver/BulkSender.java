@@ -0,0 +1,77 @@
+package de.dev_kiste.galaxy.driver;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Helper sending the items of a bulk send one after another, grouped by receiver
+ *
+ * @author Benny Lach
+ */
+final class BulkSender {
+    private final List<OutboundPayload> payloads;
+    private final Function<OutboundPayload, CompletableFuture<Boolean>> sender;
+    private final int[] order;
+    private final boolean[] sent;
+    private final CompletableFuture<BulkSendResult> result = new CompletableFuture<>();
+
+    private BulkSender(List<OutboundPayload> payloads, Function<OutboundPayload, CompletableFuture<Boolean>> sender) {
+        this.payloads = payloads;
+        this.sender = sender;
+        this.sent = new boolean[payloads.size()];
+        // stable sort, so items for the same receiver keep their order
+        this.order = IntStream.range(0, payloads.size())
+                .boxed()
+                .sorted(Comparator.comparing(index -> payloads.get(index).getReceiver()))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    /**
+     * Sends all items sorted by receiver. The next item is sent as soon as the previous one finished
+     *
+     * @param payloads The items to send
+     * @param sender Function sending a single item
+     * @return Future containing the status of every item
+     */
+    static CompletableFuture<BulkSendResult> send(List<OutboundPayload> payloads,
+                                                  Function<OutboundPayload, CompletableFuture<Boolean>> sender) {
+        BulkSender bulk = new BulkSender(payloads, sender);
+        bulk.sendFrom(0);
+
+        return bulk.result;
+    }
+
+    /**
+     * Sends the items starting at the given position of the sorted order.
+     * Items finishing synchronously are handled in a loop to keep the stack flat
+     */
+    private void sendFrom(int position) {
+        while(position < order.length) {
+            final int current = position;
+            CompletableFuture<Boolean> future = sendItem(payloads.get(order[current]));
+
+            if(!future.isDone()) {
+                future.whenComplete((didSend, error) -> {
+                    sent[order[current]] = error == null && didSend;
+                    sendFrom(current + 1);
+                });
+                return;
+            }
+            sent[order[current]] = !future.isCompletedExceptionally() && future.join();
+            position++;
+        }
+        result.complete(new BulkSendResult(sent));
+    }
+
+    private CompletableFuture<Boolean> sendItem(OutboundPayload item) {
+        try {
+            return sender.apply(item);
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(false);
+        }
+    }
+}
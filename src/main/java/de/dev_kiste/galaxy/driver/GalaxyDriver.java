@@ -1,8 +1,10 @@
 package de.dev_kiste.galaxy.driver;
 
 import de.dev_kiste.galaxy.messaging.MessageHandler;
+import de.dev_kiste.galaxy.tracing.GalaxyTracer;
 import de.dev_kiste.galaxy.util.GalaxyLogger;
 
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -54,6 +56,53 @@ public interface GalaxyDriver {
      */
     CompletableFuture<Boolean> sendBroadcastPayload(byte[] payload) throws IllegalArgumentException;
 
+    /**
+     * Method to send the given payload to a specific host and report why it was not sent
+     *
+     * Implementations should override this if the module reports failure reasons, the default implementation
+     * classifies the result of {@link #sendPayload}
+     *
+     * @param payload The payload to send
+     * @param receiver The receiver - typically the MAC address
+     * @return CompletableFuture containing the outcome of the send
+     */
+    default CompletableFuture<SendOutcome> sendPayloadWithOutcome(byte[] payload, String receiver) {
+        return SendOutcome.classify(() -> sendPayload(payload, receiver));
+    }
+
+    /**
+     * Method to broadcast the given payload and report why it was not sent, see {@link #sendPayloadWithOutcome}
+     *
+     * @param payload The payload to send
+     * @return CompletableFuture containing the outcome of the send
+     */
+    default CompletableFuture<SendOutcome> sendBroadcastPayloadWithOutcome(byte[] payload) {
+        return SendOutcome.classify(() -> sendBroadcastPayload(payload));
+    }
+
+    /**
+     * Method to send several payloads at once
+     *
+     * Items are sent one after another sorted by receiver, so items for the same receiver are sent back to back.
+     * Implementations may override this to reduce the per item overhead of the module protocol
+     *
+     * @param payloads The items to send
+     * @throws IllegalArgumentException if the list is null or an item exceeds the max supported payload size
+     *
+     * @return CompletableFuture containing the status of every item
+     */
+    default CompletableFuture<BulkSendResult> sendPayloads(List<OutboundPayload> payloads) throws IllegalArgumentException {
+        if(payloads == null) {
+            throw new IllegalArgumentException("Payloads must not be null!");
+        }
+        for(OutboundPayload item : payloads) {
+            if(item.getPayload().length > getMaximumPayloadSize()) {
+                throw new IllegalArgumentException("Payload must not exceed the maximum supported payload size!");
+            }
+        }
+        return BulkSender.send(payloads, item -> sendPayload(item.getPayload(), item.getReceiver()));
+    }
+
     /**
      * Method to set the handler for incoming messages
      *
@@ -70,6 +119,17 @@ public interface GalaxyDriver {
      * @return payload size in bytes
      */
     int getMaximumPayloadSize();
+
+    /**
+     * Method to get the time a payload of the given length occupies the radio channel
+     *
+     * @param payloadLength The payload length in bytes
+     * @return time on air in microseconds - 0 if unknown
+     */
+    default long getTimeOnAirMicros(int payloadLength) {
+        return 0;
+    }
+
     /**
      * Method to get the address used by the underlying hardware module
      *
@@ -132,4 +192,14 @@ public interface GalaxyDriver {
     CompletableFuture<Boolean> reboot();
 
     void setLogger(GalaxyLogger logger);
+
+    /**
+     * Method to set the tracer used to sample incoming messages
+     *
+     * Implementations should stamp {@link de.dev_kiste.galaxy.tracing.TraceStage#FRAME_COMPLETE} and
+     * {@link de.dev_kiste.galaxy.tracing.TraceStage#REMOTE_MESSAGE} on sampled messages. Defaults to no tracing
+     *
+     * @param tracer The tracer to use
+     */
+    default void setTracer(GalaxyTracer tracer) {}
 }
@@ -5,43 +5,140 @@ import com.fazecast.jSerialComm.SerialPort;
 import de.dev_kiste.galaxy.messaging.GalaxyMessage;
 import de.dev_kiste.galaxy.messaging.MessageHandler;
 import de.dev_kiste.galaxy.messaging.MessageLogger;
+import de.dev_kiste.galaxy.tracing.GalaxyTracer;
+import de.dev_kiste.galaxy.tracing.MessageTrace;
+import de.dev_kiste.galaxy.tracing.TraceStage;
 import de.dev_kiste.galaxy.util.GalaxyLogger;
 
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
 import java.util.logging.Level;
 
 /**
  * @author Benny Lach
  *
  * GalaxyDriver implementation for a LoRa Device
+ *
+ * Once connected the driver supervises the module. If the reader thread stopped, the module did not answer a
+ * pending command in time or did not answer an <code>AT</code> heartbeat probe, the port is reopened and the
+ * configuration, address and destination are restored. Pending commands fail during recovery, sends requested
+ * during recovery are executed once the module is available again.
  */
 public class HTWLoRaDriver implements GalaxyDriver {
     private final static String MESSAGE_END = "\r\n";
     private final static int HEADER_LENGTH = 11;
-    private Optional<GalaxyLogger> logger;
+    private final static String LOG_PREFIX = "HTWLoRaDriver >> ";
+    // Channels are mapped to frequencies in the 433 MHz ISM band: frequency = BASE_FREQUENCY + channel * CHANNEL_SPACING
+    private final static int BASE_FREQUENCY = 433000000;
+    private final static int CHANNEL_SPACING = 200000;
+    private final static int CHANNEL_COUNT = 9;
+    // Bandwidths selected by the bandwidth index of the configuration
+    private final static int[] BANDWIDTHS_HZ = { 7800, 10400, 15600, 20800, 31250, 41700, 62500, 125000, 250000, 500000 };
+    // Supervision timing. Responses to AT+SEND may take several seconds at high spreading factors
+    private final static long RECOVERY_STEP_TIMEOUT_MILLIS = 3000;
+    private final static long MAX_BACKOFF_MILLIS = 5000;
+    // A baud rate is only used by auto negotiation if the module answers every probe
+    private final static int AUTO_BAUD_ATTEMPTS = 3;
+    private final static long AUTO_BAUD_TIMEOUT_MILLIS = 500;
+    private Optional<GalaxyLogger> logger = Optional.empty();
+    private Optional<GalaxyTracer> tracer = Optional.empty();
 
     private class CallbackContainer<T> {
         private CompletableFuture<T> future;
         private Class<T> type;
+        private final long createdAt = System.nanoTime();
 
         public CallbackContainer(CompletableFuture<T> callback, Class<T> type) {
             this.future = callback;
             this.type = type;
         }
+
+        /**
+         * Completes the future with the given response converted to the type of the container
+         */
+        private void complete(String message) {
+            switch (type.getSimpleName()) {
+                case "String":
+                    future.complete(type.cast(message));
+                    break;
+                case "Integer":
+                    future.complete(type.cast(Integer.parseInt(message.replace("\nOK\n", ""))));
+                    break;
+                case "Boolean":
+                    future.complete(type.cast(message.endsWith("OK")));
+                    break;
+                default:
+                    logIfAvailable(Level.SEVERE, "Unimplemented support type {}", type);
+            }
+        }
+
+        /**
+         * Completes the future with a value representing a failed command
+         */
+        private void fail() {
+            switch (type.getSimpleName()) {
+                case "String":
+                    future.complete(type.cast(""));
+                    break;
+                case "Integer":
+                    future.complete(type.cast(-1));
+                    break;
+                case "Boolean":
+                    future.complete(type.cast(false));
+                    break;
+                default:
+                    future.cancel(false);
+            }
+        }
     }
 
     private String portDescriptor;
     private String configString = "433000000,20,6,12,1,1,0,0,0,0,3000,8,4";
-
-    volatile private ArrayList<CallbackContainer> callbackStack = new ArrayList<>();
-    private SerialPort port;
+    volatile private int channel = 0;
+    volatile private int baudRate = 115200;
+    private SerialParity parity = SerialParity.NONE;
+    private SerialFlowControl flowControl = SerialFlowControl.NONE;
+    private int[] autoBaudRates = new int[0];
+    private boolean isWarmStart = false;
+    volatile private String desiredAddress;
+
+    volatile private List<CallbackContainer<?>> callbackStack = Collections.synchronizedList(new ArrayList<>());
+    volatile private SerialLink port;
+    private final IntFunction<SerialLink> links;
 
     volatile private MessageHandler messageHandler = new MessageLogger();
     volatile private boolean isConnecting = false;
     volatile private boolean shouldRead = true;
+
+    volatile private Thread readerThread;
+    volatile private long lastActivity = System.nanoTime();
+    volatile private boolean isSupervised = false;
+    volatile private CompletableFuture<Boolean> recovery;
+    volatile private String address;
+    volatile private String destination;
+    private CallbackContainer<?> probe;
+    private ScheduledExecutorService watchdog;
+    private final AtCommandEncoder encoder = new AtCommandEncoder();
+
+    // Supervision timing. Responses to AT+SEND may take several seconds at high spreading factors
+    private long watchdogPeriodMillis = 1000;
+    private long heartbeatIntervalMillis = 5000;
+    private long probeTimeoutMillis = 2000;
+    private long responseTimeoutMillis = 15000;
+    private long initialBackoffMillis = 250;
+
     /**
      * Default initializer
      *
@@ -49,10 +146,40 @@ public class HTWLoRaDriver implements GalaxyDriver {
      * @throws IllegalArgumentException if descriptor is null
      */
     public HTWLoRaDriver(String descriptor) throws IllegalArgumentException {
+        this(descriptor, null);
+    }
+
+    /**
+     * Initializer using the given links instead of jSerialComm ports, e.g. to simulate a module
+     *
+     * @param descriptor descriptor of the used port
+     * @param links creates an unopened link for the given baud rate - null to use jSerialComm ports
+     * @throws IllegalArgumentException if descriptor is null
+     */
+    HTWLoRaDriver(String descriptor, IntFunction<SerialLink> links) throws IllegalArgumentException {
         if (descriptor == null || descriptor.isEmpty()) {
             throw new IllegalArgumentException("Descriptor must not be null nor empty");
         }
         portDescriptor = descriptor;
+        this.links = links != null ? links : rate -> new JSerialCommLink(openablePort(rate));
+    }
+
+    /**
+     * Method to change the supervision timing, e.g. to speed up tests
+     *
+     * @param watchdogPeriodMillis Interval of the checks
+     * @param heartbeatIntervalMillis Time without traffic before the module is probed
+     * @param probeTimeoutMillis Time the module has to answer a probe
+     * @param responseTimeoutMillis Time the module has to answer any other command
+     * @param initialBackoffMillis Delay before the second reconnection attempt, doubled for every further one
+     */
+    void setSupervisionTiming(long watchdogPeriodMillis, long heartbeatIntervalMillis, long probeTimeoutMillis,
+                              long responseTimeoutMillis, long initialBackoffMillis) {
+        this.watchdogPeriodMillis = watchdogPeriodMillis;
+        this.heartbeatIntervalMillis = heartbeatIntervalMillis;
+        this.probeTimeoutMillis = probeTimeoutMillis;
+        this.responseTimeoutMillis = responseTimeoutMillis;
+        this.initialBackoffMillis = initialBackoffMillis;
     }
 
     @Override
@@ -71,21 +198,108 @@ public class HTWLoRaDriver implements GalaxyDriver {
 
     @Override
     public CompletableFuture<Boolean> sendPayload(byte[] payload, String receiver) throws IllegalArgumentException {
+        validatePayload(payload, receiver);
+
+        return sendValidatedPayload(payload, receiver).thenApply(SendOutcome::isSent);
+    }
+
+    /**
+     * Sends the given payload and classifies the response of the module:
+     * - <code>AT,SENDED</code> is reported as {@link SendOutcome#SENT}
+     * - <code>AT,NOSENDING</code> or a command issued while the module is configured as {@link SendOutcome#MODULE_BUSY}
+     * - any other response to <code>AT+SEND</code>, e.g. <code>AT,NOTSENDED</code>, as {@link SendOutcome#CHANNEL_BUSY}
+     * - a refused destination address as {@link SendOutcome#REJECTED}
+     * - a closed port or a failed recovery as {@link SendOutcome#DISCONNECTED}
+     *
+     * @param payload The payload to send
+     * @param receiver The receiver - typically the MAC address
+     * @return Future containing the outcome of the send
+     */
+    @Override
+    public CompletableFuture<SendOutcome> sendPayloadWithOutcome(byte[] payload, String receiver) {
+        try {
+            validatePayload(payload, receiver);
+
+            return sendValidatedPayload(payload, receiver).exceptionally(error -> SendOutcome.DISCONNECTED);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(SendOutcome.INVALID);
+        } catch (IllegalStateException e) {
+            return CompletableFuture.completedFuture(SendOutcome.DISCONNECTED);
+        }
+    }
+
+    @Override
+    public CompletableFuture<SendOutcome> sendBroadcastPayloadWithOutcome(byte[] payload) {
+        return sendPayloadWithOutcome(payload, "FFFF");
+    }
+
+    private void validatePayload(byte[] payload, String receiver) throws IllegalArgumentException {
         if(payload == null || receiver == null) {
             throw new IllegalArgumentException("Payload and receiver must not be null!");
         }
         if(payload.length > getMaximumPayloadSize()) {
             throw new IllegalArgumentException("Payload must not exceed the maximum supported payload size!");
         }
+    }
+
+    private CompletableFuture<SendOutcome> sendValidatedPayload(byte[] payload, String receiver) {
+        CompletableFuture<Boolean> pendingRecovery = recovery;
+
+        if(pendingRecovery != null) {
+            return pendingRecovery.thenCompose(didRecover -> didRecover ?
+                    sendValidatedPayload(payload, receiver) : CompletableFuture.completedFuture(SendOutcome.DISCONNECTED));
+        }
         return setDestinationAddress(receiver)
                 .thenCompose((didSet) -> {
                     if(!didSet) {
-                        return CompletableFuture.completedFuture(false);
+                        return CompletableFuture.completedFuture(destinationFailure());
                     }
                     return _sendPayload(payload);
                 });
     }
 
+    private SendOutcome destinationFailure() {
+        if(recovery != null) {
+            return SendOutcome.DISCONNECTED;
+        }
+        return isConnecting ? SendOutcome.MODULE_BUSY : SendOutcome.REJECTED;
+    }
+
+    /**
+     * Sends all payloads sorted by receiver. <code>AT+DEST</code> is only issued if the receiver differs from the
+     * current destination, and the next <code>AT+SEND</code> is issued as soon as the module reported the previous
+     * payload as sent. The module only accepts one payload at a time, so commands can not overlap further
+     *
+     * @param payloads The items to send
+     * @return Future containing the status of every item
+     * @throws IllegalArgumentException if the list is null or an item exceeds the max supported payload size
+     */
+    @Override
+    public CompletableFuture<BulkSendResult> sendPayloads(List<OutboundPayload> payloads) throws IllegalArgumentException {
+        if(payloads == null) {
+            throw new IllegalArgumentException("Payloads must not be null!");
+        }
+        for(OutboundPayload item : payloads) {
+            if(item.getPayload().length > getMaximumPayloadSize()) {
+                throw new IllegalArgumentException("Payload must not exceed the maximum supported payload size!");
+            }
+        }
+        CompletableFuture<Boolean> pendingRecovery = recovery;
+
+        if(pendingRecovery != null) {
+            return pendingRecovery.thenCompose(didRecover -> didRecover ?
+                    sendPayloads(payloads) : CompletableFuture.completedFuture(BulkSendResult.failed(payloads.size())));
+        }
+        return BulkSender.send(payloads, item -> {
+            if(item.getReceiver().equals(destination)) {
+                return _sendPayload(item.getPayload()).thenApply(SendOutcome::isSent);
+            }
+            return setDestinationAddress(item.getReceiver())
+                    .thenCompose(didSet -> didSet ? _sendPayload(item.getPayload()).thenApply(SendOutcome::isSent)
+                            : CompletableFuture.completedFuture(false));
+        });
+    }
+
     @Override
     public CompletableFuture<Boolean> sendBroadcastPayload(byte[] payload) throws IllegalArgumentException {
         return sendPayload(payload, "FFFF");
@@ -103,29 +317,48 @@ public class HTWLoRaDriver implements GalaxyDriver {
         return 250;
     }
 
+    /**
+     * Calculates the time on air from spreading factor, bandwidth, coding rate, CRC, header mode and preamble
+     * length of the current configuration
+     *
+     * @param payloadLength The payload length in bytes
+     * @return time on air in microseconds - 0 if the configuration can not be parsed
+     */
     @Override
-    public CompletableFuture<String> getAddress() {
-        if(!sendSerialPayload("AT+ADDR?".getBytes(StandardCharsets.UTF_8), false)) {
-            return CompletableFuture.completedFuture("");
+    public long getTimeOnAirMicros(int payloadLength) {
+        // Configuration: frequency,power,bandwidth,spreading factor,coding rate,crc,implicit header,rx single,
+        // frequency hop,hop period,rx timeout,payload length,preamble length
+        String[] config = configString.split(",");
+
+        try {
+            int bandwidth = Integer.parseInt(config[2]);
+
+            return LoRaAirtime.timeOnAirMicros(payloadLength, Integer.parseInt(config[3]), BANDWIDTHS_HZ[bandwidth],
+                    Integer.parseInt(config[4]), Integer.parseInt(config[12]), config[5].equals("1"), config[6].equals("1"));
+        } catch (RuntimeException e) {
+            return 0;
         }
+    }
 
-        CompletableFuture<String> future = new CompletableFuture();
-        CompletableFuture<String> response = new CompletableFuture();
+    @Override
+    public CompletableFuture<String> getAddress() {
+        CompletableFuture<String> response = new CompletableFuture<>();
 
-        response.thenCompose((result) -> {
+        if(!sendCommand(AtCommandEncoder.ADDRESS_QUERY, false, new CallbackContainer<>(response, String.class))) {
+            return CompletableFuture.completedFuture("");
+        }
+        return response.thenApply((result) -> {
             String[] split = result.split(",");
             if(split.length != 3 || !split[2].equals("OK")) {
-                future.complete("");
-            } else {
-                String address = split[1];
+                return "";
+            }
+            String address = split[1];
 
-                future.complete(address.length() == 4 ? address : "");
+            if(address.length() == 4) {
+                this.address = address;
             }
-            return null;
+            return address.length() == 4 ? address : "";
         });
-        callbackStack.add(new CallbackContainer(response, String.class));
-
-        return future;
     }
 
     @Override
@@ -133,29 +366,164 @@ public class HTWLoRaDriver implements GalaxyDriver {
         if(address == null) {
             return CompletableFuture.completedFuture(false);
         }
-        if(!sendSerialPayload(("AT+ADDR=" + address).getBytes(StandardCharsets.UTF_8), false)) {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        if(!sendCommand(AtCommandEncoder.ADDRESS, address, false, new CallbackContainer<>(future, Boolean.class))) {
             return CompletableFuture.completedFuture(false);
         }
-        CompletableFuture<Boolean> future = new CompletableFuture();
-
-        callbackStack.add(new CallbackContainer(future, Boolean.class));
-
-        return future;
+        return future.thenApply(didSet -> {
+            if(didSet) {
+                this.address = address;
+            }
+            return didSet;
+        });
     }
 
     @Override
     public int[] getSupportedChannels() {
-        return new int[0];
+        int[] channels = new int[CHANNEL_COUNT];
+
+        for(int i = 0; i < CHANNEL_COUNT; i++) {
+            channels[i] = i;
+        }
+        return channels;
     }
 
     @Override
     public CompletableFuture<Integer> getChannel() {
-        return CompletableFuture.completedFuture(-1);
+        return CompletableFuture.completedFuture(channel);
     }
 
+    /**
+     * Switches the module to the frequency mapped to the given channel by reapplying the configuration.
+     * The request is ignored if the module already uses the channel
+     *
+     * @param channel The channel to use
+     * @return Future indicating if the channel was set. Completes with false if the channel is not supported
+     * or the port is not connected
+     */
     @Override
     public CompletableFuture<Boolean> setChannel(int channel) throws IllegalArgumentException {
-        return CompletableFuture.completedFuture(false);
+        if(channel < 0 || channel >= CHANNEL_COUNT || port == null || !port.isOpen()) {
+            return CompletableFuture.completedFuture(false);
+        }
+        if(channel == this.channel) {
+            return CompletableFuture.completedFuture(true);
+        }
+        String previousConfig = configString;
+        configString = configForChannel(channel);
+
+        return applyConfig().thenApply(didApply -> {
+            if(didApply) {
+                this.channel = channel;
+            } else {
+                configString = previousConfig;
+            }
+            return didApply;
+        });
+    }
+
+    /**
+     * Method to get the frequency used for the given channel
+     *
+     * @param channel The channel
+     * @return frequency in Hz
+     */
+    public int getFrequency(int channel) {
+        return BASE_FREQUENCY + channel * CHANNEL_SPACING;
+    }
+
+    private String configForChannel(int channel) {
+        int separator = configString.indexOf(',');
+
+        return getFrequency(channel) + configString.substring(separator);
+    }
+
+    /**
+     * Method to set the baud rate of the serial link. Applied on the next connect
+     *
+     * @param baudRate The baud rate the module is configured for
+     * @throws IllegalArgumentException if the baud rate is not positive
+     */
+    public void setBaudRate(int baudRate) throws IllegalArgumentException {
+        if(baudRate <= 0) {
+            throw new IllegalArgumentException("Baud rate must be positive");
+        }
+        this.baudRate = baudRate;
+    }
+
+    /**
+     * Method to get the baud rate of the serial link
+     *
+     * @return the configured or, after auto negotiation, the negotiated baud rate
+     */
+    public int getBaudRate() {
+        return baudRate;
+    }
+
+    /**
+     * Method to set the parity of the serial link. Applied on the next connect
+     *
+     * @param parity The parity to use
+     * @throws IllegalArgumentException if parity is null
+     */
+    public void setParity(SerialParity parity) throws IllegalArgumentException {
+        if(parity == null) {
+            throw new IllegalArgumentException("Parity must not be null");
+        }
+        this.parity = parity;
+    }
+
+    /**
+     * Method to set the flow control of the serial link. Applied on the next connect
+     *
+     * @param flowControl The flow control to use
+     * @throws IllegalArgumentException if flowControl is null
+     */
+    public void setFlowControl(SerialFlowControl flowControl) throws IllegalArgumentException {
+        if(flowControl == null) {
+            throw new IllegalArgumentException("Flow control must not be null");
+        }
+        this.flowControl = flowControl;
+    }
+
+    /**
+     * Method to enable baud rate negotiation on connect. The candidates are probed with <code>AT</code> from the
+     * fastest to the slowest one, the first rate the module reliably answers at is used
+     *
+     * @param baudRates The candidates - none to disable negotiation
+     * @throws IllegalArgumentException if a candidate is not positive
+     */
+    public void setAutoBaudRates(int... baudRates) throws IllegalArgumentException {
+        int[] candidates = baudRates == null ? new int[0] : baudRates.clone();
+
+        for(int rate : candidates) {
+            if(rate <= 0) {
+                throw new IllegalArgumentException("Baud rates must be positive");
+            }
+        }
+        Arrays.sort(candidates);
+        autoBaudRates = candidates;
+    }
+
+    /**
+     * Method to enable the warm start mode. On connect the driver queries configuration and address of the module
+     * and only applies the settings which differ from the desired ones, which saves the reconfiguration of a module
+     * which is still powered and configured after a restart of the host process
+     *
+     * @param isWarmStart true to enable warm starts
+     */
+    public void setWarmStart(boolean isWarmStart) {
+        this.isWarmStart = isWarmStart;
+    }
+
+    /**
+     * Method to set the address the module should use. Applied on every connect, see {@link #setWarmStart}
+     *
+     * @param address The desired address - null to keep the address of the module
+     */
+    public void setDesiredAddress(String address) {
+        desiredAddress = address;
     }
 
     @Override
@@ -163,64 +531,185 @@ public class HTWLoRaDriver implements GalaxyDriver {
         if(port != null && port.isOpen()) {
             return CompletableFuture.completedFuture(true);
         }
+        if(autoBaudRates.length > 0) {
+            return CompletableFuture.supplyAsync(this::negotiateBaudRate)
+                    .thenCompose(didNegotiate -> didNegotiate ? openAndConfigure() : CompletableFuture.completedFuture(false));
+        }
+        return openAndConfigure();
+    }
+
+    private CompletableFuture<Boolean> openAndConfigure() {
         if(!setupSerialConnection()) {
             return CompletableFuture.completedFuture(false);
         }
-        return setSerialConfig();
+        destination = null;
+        CompletableFuture<Boolean> configured;
+
+        if(isWarmStart) {
+            // applies the desired address itself if the module uses a different one
+            configured = setSerialConfigIfNeeded();
+        } else {
+            configured = setSerialConfig().thenCompose(didConfigure -> didConfigure && desiredAddress != null ?
+                    setAddress(desiredAddress) : CompletableFuture.completedFuture(didConfigure));
+        }
+
+        return configured.thenApply(didConnect -> {
+            if(didConnect) {
+                startSupervision();
+            }
+            return didConnect;
+        });
     }
 
     private Boolean setupSerialConnection() {
-        port = SerialPort.getCommPort(portDescriptor);
-        port.setComPortParameters(115200, 8,1, 0);
+        port = links.apply(baudRate);
 
         return port.openPort();
     }
 
+    private SerialPort openablePort(int rate) {
+        SerialPort serialPort = SerialPort.getCommPort(portDescriptor);
+
+        serialPort.setComPortParameters(rate, 8, 1, parity.getValue());
+        serialPort.setFlowControl(flowControl.getValue());
+
+        return serialPort;
+    }
+
+    /**
+     * Probes the auto baud candidates from the fastest to the slowest rate and keeps the first one the module
+     * answers every probe at. Every candidate is probed on a link of its own created by the link factory
+     *
+     * @return true if a rate was found
+     */
+    private boolean negotiateBaudRate() {
+        for(int i = autoBaudRates.length - 1; i >= 0; i--) {
+            int rate = autoBaudRates[i];
+            SerialLink probeLink = links.apply(rate);
+
+            if(!probeLink.openPort()) {
+                return false;
+            }
+            try {
+                if(AtProbe.answers(probeLink, AUTO_BAUD_ATTEMPTS, AUTO_BAUD_TIMEOUT_MILLIS)) {
+                    logIfAvailable(Level.INFO, "Negotiated baud rate {}", rate);
+                    baudRate = rate;
+
+                    return true;
+                }
+            } finally {
+                probeLink.closePort();
+            }
+        }
+        logIfAvailable(Level.WARNING, "Module did not answer at any baud rate");
+
+        return false;
+    }
+
     private CompletableFuture<Boolean> setSerialConfig() {
         startReading();
 
-        CompletableFuture<Boolean> future = new CompletableFuture<>();
-        CompletableFuture<Boolean> configFuture = new CompletableFuture<>();
-        CompletableFuture<Boolean> switchedModeFuture = new CompletableFuture<>();
-
-        callbackStack.add(new CallbackContainer(configFuture, Boolean.class));
-        callbackStack.add(new CallbackContainer(switchedModeFuture, Boolean.class));
+        return applyConfig();
+    }
 
-        configFuture.thenCompose((didSetConfig) -> {
-            if(!didSetConfig) {
-                callbackStack.clear();
-                isConnecting = false;
+    /**
+     * Queries configuration and address of the module and only applies those which differ. The module is always
+     * switched to receive mode as its current mode can not be queried
+     *
+     * @return Future indicating if the module is configured
+     */
+    private CompletableFuture<Boolean> setSerialConfigIfNeeded() {
+        startReading();
 
-                return CompletableFuture.completedFuture(false);
+        return getConfig().thenCompose(currentConfig -> {
+            if(!configString.equals(currentConfig)) {
+                return applyConfig();
             }
-            sendSerialPayload("AT+RX".getBytes(StandardCharsets.UTF_8), true);
+            logIfAvailable(Level.INFO, "Module already configured - skipping AT+CFG");
 
-            return switchedModeFuture;
-        }).thenCompose((didSwitchMode) -> {
-            isConnecting = false;
-            future.complete(didSwitchMode);
+            return switchToReceiveMode();
+        }).thenCompose(didConfigure -> {
+            String wantedAddress = desiredAddress;
 
-            return null;
+            if(!didConfigure || wantedAddress == null) {
+                return CompletableFuture.completedFuture(didConfigure);
+            }
+            return getAddress().thenCompose(currentAddress -> wantedAddress.equals(currentAddress) ?
+                    CompletableFuture.completedFuture(true) : setAddress(wantedAddress));
         });
-        isConnecting = true;
-        sendSerialPayload(("AT+CFG=" + configString).getBytes(StandardCharsets.UTF_8), true);
+    }
+
+    /**
+     * Queries the configuration of the module
+     *
+     * @return Future containing the configuration or an empty string if the query failed
+     */
+    private CompletableFuture<String> getConfig() {
+        CompletableFuture<String> response = new CompletableFuture<>();
+
+        if(!sendCommand(AtCommandEncoder.CONFIG_QUERY, false, new CallbackContainer<>(response, String.class))) {
+            return CompletableFuture.completedFuture("");
+        }
+
+        // Example response: AT,433000000,20,6,12,1,1,0,0,0,0,3000,8,4,OK
+        return response.thenApply(result -> result.startsWith("AT,") && result.endsWith(",OK") && result.length() > 6 ?
+                result.substring(3, result.length() - 3) : "");
+    }
+
+    private CompletableFuture<Boolean> switchToReceiveMode() {
+        return switchToReceiveMode(false);
+    }
 
+    private CompletableFuture<Boolean> switchToReceiveMode(boolean isSetupMessage) {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        if(!sendCommand(AtCommandEncoder.RECEIVE, isSetupMessage, new CallbackContainer<>(future, Boolean.class))) {
+            return CompletableFuture.completedFuture(false);
+        }
         return future;
     }
 
+    /**
+     * Sends the current configuration to the module and switches it back to receive mode afterwards
+     *
+     * @return Future indicating if the configuration was applied
+     */
+    private CompletableFuture<Boolean> applyConfig() {
+        CompletableFuture<Boolean> configFuture = new CompletableFuture<>();
+
+        isConnecting = true;
+        if(!sendCommand(AtCommandEncoder.CONFIG, configString, true, new CallbackContainer<>(configFuture, Boolean.class))) {
+            isConnecting = false;
+
+            return CompletableFuture.completedFuture(false);
+        }
+        return configFuture
+                .thenCompose((didSetConfig) -> didSetConfig ? switchToReceiveMode(true) : CompletableFuture.completedFuture(false))
+                .whenComplete((didSwitchMode, error) -> isConnecting = false);
+    }
+
     private void startReading() {
         shouldRead = true;
+        lastActivity = System.nanoTime();
+
+        final SerialLink readPort = port;
         Thread t = new Thread(() -> {
             byte[] data = new byte[0];
 
             try {
-                while (HTWLoRaDriver.this.shouldRead) {
-                    while (port.bytesAvailable() <= 0) {
+                while (HTWLoRaDriver.this.shouldRead && readerThread == Thread.currentThread()) {
+                    int available = readPort.bytesAvailable();
+
+                    if(available < 0) {
+                        throw new IllegalStateException("Port is not readable anymore");
+                    }
+                    if(available == 0) {
                         Thread.sleep(20);
+                        continue;
                     }
-
-                    byte[] readBuffer = new byte[port.bytesAvailable()];
-                    port.readBytes(readBuffer, readBuffer.length);
+                    byte[] readBuffer = new byte[available];
+                    readPort.readBytes(readBuffer, readBuffer.length);
+                    lastActivity = System.nanoTime();
 
                     if(data.length == 0) {
                         data = readBuffer;
@@ -244,23 +733,52 @@ public class HTWLoRaDriver implements GalaxyDriver {
                             System.arraycopy(data, 0, cleaned, 0, cleaned.length);
                             data = new byte[0];
 
-                            handleIncomingMessage(cleaned);
+                            dispatchIncomingMessage(cleaned, System.nanoTime());
                         }
                     }
                 }
+            } catch (InterruptedException e) {
+                // reading was stopped
             } catch (Exception e) {
-                logIfAvailable(Level.WARNING, "Reading failed: " + e.getMessage());
-                data = new byte[0];
+                logIfAvailable(Level.WARNING, "Reading failed: {}", e.getMessage());
+
+                // let the watchdog recover right away instead of waiting for the next check
+                superviseNow();
             }
-        });
+        }, "HTWLoRaDriver-Reader");
+        readerThread = t;
         t.start();
     }
 
-    private void handleIncomingMessage(byte[] data) {
+    /**
+     * Handles a received frame. A failing message handler must not stop the reader thread
+     *
+     * @param data The received frame
+     * @param receivedAt Time the frame was completed in nanoseconds
+     */
+    private void dispatchIncomingMessage(byte[] data, long receivedAt) {
+        try {
+            handleIncomingMessage(data, receivedAt);
+        } catch (RuntimeException e) {
+            logIfAvailable(Level.WARNING, "Handling incoming message failed: {}", e);
+        }
+    }
+
+    private void stopReading() {
+        shouldRead = false;
+        Thread reader = readerThread;
+        readerThread = null;
+
+        if(reader != null) {
+            reader.interrupt();
+        }
+    }
+
+    private void handleIncomingMessage(byte[] data, long receivedAt) {
         String identifier = new String(new byte[]{data[0], data[1]});
         switch (identifier) {
             case "LR":
-                handleRemoteMessage(data);
+                handleRemoteMessage(data, receivedAt);
                 break;
             case "AT":
                 handleModuleMessage(data);
@@ -272,7 +790,8 @@ public class HTWLoRaDriver implements GalaxyDriver {
 
     @Override
     public CompletableFuture<Boolean> disconnect() {
-        shouldRead = false;
+        stopSupervision();
+        stopReading();
 
         if(port == null || !port.isOpen()) {
             return CompletableFuture.completedFuture(true);
@@ -282,12 +801,13 @@ public class HTWLoRaDriver implements GalaxyDriver {
 
     @Override
     public CompletableFuture<Boolean> reboot() {
-        if(port == null || !port.isOpen() || !sendSerialPayload("AT+RST".getBytes(StandardCharsets.UTF_8), false)) {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        if(port == null || !port.isOpen()
+                || !sendCommand(AtCommandEncoder.RESET, false, new CallbackContainer<>(future, Boolean.class))) {
             return CompletableFuture.completedFuture(false);
         }
-        CompletableFuture<Boolean> future = new CompletableFuture();
-
-        callbackStack.add(new CallbackContainer(future, Boolean.class));
+        destination = null;
 
         return future;
     }
@@ -297,56 +817,87 @@ public class HTWLoRaDriver implements GalaxyDriver {
         this.logger = Optional.ofNullable(logger);
     }
 
+    @Override
+    public void setTracer(GalaxyTracer tracer) {
+        this.tracer = Optional.ofNullable(tracer);
+    }
+
     private CompletableFuture<Boolean> setDestinationAddress(String address) {
         if (address == null) {
             return CompletableFuture.completedFuture(false);
         }
-        if(!sendSerialPayload(("AT+DEST=" + address).getBytes(StandardCharsets.UTF_8), false)) {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        if(!sendCommand(AtCommandEncoder.DESTINATION, address, false, new CallbackContainer<>(future, Boolean.class))) {
             return CompletableFuture.completedFuture(false);
         }
-        CompletableFuture<Boolean> future = new CompletableFuture();
-
-        callbackStack.add(new CallbackContainer(future, Boolean.class));
-
-        return future;
+        return future.thenApply(didSet -> {
+            if(didSet) {
+                destination = address;
+            }
+            return didSet;
+        });
     }
 
-    private CompletableFuture<Boolean> _sendPayload(byte[] payload) {
-        //int length = payload.length;
+    private CompletableFuture<SendOutcome> _sendPayload(byte[] payload) {
+        CompletableFuture<Boolean> sizeFuture = new CompletableFuture<>();
 
-        if(!sendSerialPayload(("AT+SEND=" + payload.length).getBytes(StandardCharsets.UTF_8), false)) {
-            return CompletableFuture.completedFuture(false);
+        if(!sendCommand(AtCommandEncoder.SEND, payload.length, false, new CallbackContainer<>(sizeFuture, Boolean.class))) {
+            return CompletableFuture.completedFuture(SendOutcome.MODULE_BUSY);
         }
-        CompletableFuture<Boolean> future = new CompletableFuture();
-        CompletableFuture<Boolean> sizeFuture = new CompletableFuture();
+        CompletableFuture<SendOutcome> future = new CompletableFuture<>();
 
-        sizeFuture.thenCompose((didSetSize) -> {
-            if (!didSetSize || !sendSerialPayload(payload, false)) {
-                return CompletableFuture.completedFuture("AT,NOSENDING");
-            }
-            CompletableFuture<String> sendFuture = new CompletableFuture();
-            HTWLoRaDriver.this.callbackStack.add(new CallbackContainer(sendFuture, String.class));
+        sizeFuture.thenCompose((didSetSize) -> didSetSize ? _sendSerialPayload(payload)
+                : CompletableFuture.completedFuture("AT,NOSENDING"))
+                .whenComplete((sendedMessage, error) ->
+                        future.complete(error != null ? SendOutcome.DISCONNECTED : classifySendResponse(sendedMessage)));
+
+        return future;
+    }
+
+    /**
+     * Writes the payload announced by <code>AT+SEND</code>. The module answers twice, with <code>AT,SENDING</code>
+     * once it accepted the payload and with <code>AT,SENDED</code> once it was transmitted, so both responses are
+     * registered with the payload
+     *
+     * @return Future containing the last response of the module
+     */
+    private CompletableFuture<String> _sendSerialPayload(byte[] payload) {
+        CompletableFuture<String> startFuture = new CompletableFuture<>();
+        CompletableFuture<String> didSendFuture = new CompletableFuture<>();
+        CallbackContainer<String> didSendContainer = new CallbackContainer<>(didSendFuture, String.class);
 
-            return sendFuture;
-        }).thenCompose((startSendMessage) -> {
+        // attached before writing, so it runs on the reader thread before the next response is handled
+        CompletableFuture<String> result = startFuture.thenCompose((startSendMessage) -> {
             if (!startSendMessage.equals("AT,SENDING")) {
-                return CompletableFuture.completedFuture("AT,NOTSENDED");
-            }
-            CompletableFuture<String> didSendFuture = new CompletableFuture();
-            callbackStack.add(new CallbackContainer(didSendFuture, String.class));
+                // no second response follows - keep the response as reason the payload was not sent
+                callbackStack.remove(didSendContainer);
 
+                return CompletableFuture.completedFuture(startSendMessage);
+            }
             return didSendFuture;
-        }).thenApply((sendedMessage) -> {
-            future.complete(sendedMessage.equals("AT,SENDED"));
-
-            return null;
         });
-        callbackStack.add(new CallbackContainer(sizeFuture, Boolean.class));
+        if(!sendSerialPayload(payload, false, new CallbackContainer<>(startFuture, String.class), didSendContainer)) {
+            return CompletableFuture.completedFuture("AT,NOSENDING");
+        }
+        return result;
+    }
 
-        return future;
+    private static SendOutcome classifySendResponse(String response) {
+        switch (response) {
+            case "AT,SENDED":
+                return SendOutcome.SENT;
+            case "AT,NOSENDING":
+                return SendOutcome.MODULE_BUSY;
+            case "":
+                // pending commands are failed with an empty response if the connection is reset
+                return SendOutcome.DISCONNECTED;
+            default:
+                return SendOutcome.CHANNEL_BUSY;
+        }
     }
 
-    private void handleRemoteMessage(byte[] data) {
+    private void handleRemoteMessage(byte[] data, long receivedAt) {
         // Example Payload:  LR,0000,0A,Hello Test
         // LR -> Identifier for remote message
         // 0000 -> Mac Address of the source
@@ -364,56 +915,270 @@ public class HTWLoRaDriver implements GalaxyDriver {
             byte[] payload = new byte[data.length - HEADER_LENGTH];
             System.arraycopy(data, HEADER_LENGTH, payload, 0, data.length - HEADER_LENGTH);
 
-            messageHandler.received(new GalaxyMessage(payload, source));
+            MessageTrace trace = tracer.isPresent() ? tracer.get().sample(source) : null;
+
+            if(trace != null) {
+                trace.mark(TraceStage.FRAME_COMPLETE, receivedAt);
+                trace.mark(TraceStage.REMOTE_MESSAGE);
+            }
+            messageHandler.received(new GalaxyMessage(payload, source, trace));
         }
     }
 
     private void handleModuleMessage(byte[] data) {
-        if(callbackStack.size() > 0) {
-            CallbackContainer container = callbackStack.remove(0);
-            String message = new String(data, StandardCharsets.UTF_8);
+        CallbackContainer<?> container;
 
-            switch (container.type.getSimpleName()) {
-                case "String":
-                    container.future.complete(message);
-                    break;
-                case "Integer":
-                    String integerString = message.replace("\nOK\n", "");
-
-                    container.future.complete(Integer.parseInt(integerString));
-                    break;
-                case "Boolean":
-                    container.future.complete(message.endsWith("OK"));
-                    break;
-                default:
-                    logIfAvailable(Level.SEVERE, "Unimplemented support type " + container.type);
-            }
+        synchronized (callbackStack) {
+            container = callbackStack.isEmpty() ? null : callbackStack.remove(0);
+        }
+        if(container != null) {
+            container.complete(new String(data, StandardCharsets.UTF_8));
         } else {
             logIfAvailable(Level.SEVERE, "No handler available: Not able to forward received message");
         }
     }
 
-    private boolean sendSerialPayload(byte[] payload, boolean isSetupMessage) throws IllegalStateException {
-        if (port == null || !port.isOpen()) {
-            throw new IllegalStateException("Port is not connected");
+    private synchronized void startSupervision() {
+        isSupervised = true;
+
+        if(watchdog == null) {
+            watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "HTWLoRaDriver-Watchdog");
+                thread.setDaemon(true);
+
+                return thread;
+            });
+            watchdog.scheduleWithFixedDelay(this::supervise, watchdogPeriodMillis, watchdogPeriodMillis, TimeUnit.MILLISECONDS);
         }
+    }
 
-        if(!isSetupMessage && isConnecting) {
+    /**
+     * Stops the watchdog thread. A running recovery is interrupted
+     */
+    private synchronized void stopSupervision() {
+        isSupervised = false;
+
+        if(watchdog != null) {
+            watchdog.shutdownNow();
+            watchdog = null;
+        }
+    }
+
+    /**
+     * Triggers a check on the watchdog thread without waiting for the next period
+     */
+    private synchronized void superviseNow() {
+        if(isSupervised && watchdog != null) {
+            watchdog.execute(this::supervise);
+        }
+    }
+
+    /**
+     * Checks the reader thread and the module. Only called on the watchdog thread
+     */
+    private void supervise() {
+        if(!isSupervised || recovery != null) {
+            return;
+        }
+        Thread reader = readerThread;
+        SerialLink currentPort = port;
+
+        if(reader == null || !reader.isAlive() || currentPort == null || !currentPort.isOpen()) {
+            recover("reader thread stopped");
+            return;
+        }
+        CallbackContainer<?> oldest;
+
+        synchronized (callbackStack) {
+            oldest = callbackStack.isEmpty() ? null : callbackStack.get(0);
+        }
+        long now = System.nanoTime();
+
+        if(oldest != null) {
+            long timeout = oldest == probe ? probeTimeoutMillis : responseTimeoutMillis;
+
+            if(now - oldest.createdAt > TimeUnit.MILLISECONDS.toNanos(timeout)) {
+                recover("module did not respond");
+            }
+        } else if(!isConnecting && now - lastActivity > TimeUnit.MILLISECONDS.toNanos(heartbeatIntervalMillis)) {
+            CallbackContainer<Boolean> heartbeat = new CallbackContainer<>(new CompletableFuture<>(), Boolean.class);
+            probe = heartbeat;
+
+            try {
+                sendCommand(AtCommandEncoder.PROBE, false, heartbeat);
+            } catch (IllegalStateException e) {
+                // the port was closed in the meantime - the next check recovers the connection
+            }
+        }
+    }
+
+    /**
+     * Reopens the port until the module is available again or the driver was disconnected.
+     * Sends requested in the meantime wait for the result of the recovery
+     *
+     * @param reason The reason for the recovery
+     */
+    private void recover(String reason) {
+        CompletableFuture<Boolean> pendingRecovery = new CompletableFuture<>();
+        recovery = pendingRecovery;
+        logIfAvailable(Level.WARNING, "Connection lost - recovering: {}", reason);
+
+        long backoff = initialBackoffMillis;
+        boolean didRecover = false;
+
+        resetConnection();
+        while(isSupervised) {
+            if(reopen()) {
+                didRecover = true;
+                break;
+            }
+            resetConnection();
+
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                break;
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+        }
+        logIfAvailable(Level.INFO, "Recovery finished - did recover: {}", didRecover);
+        recovery = null;
+        pendingRecovery.complete(didRecover);
+    }
+
+    /**
+     * Stops reading, closes the port and fails every pending command
+     */
+    private void resetConnection() {
+        stopReading();
+
+        SerialLink currentPort = port;
+        if(currentPort != null && currentPort.isOpen()) {
+            currentPort.closePort();
+        }
+        List<CallbackContainer<?>> pending;
+
+        synchronized (callbackStack) {
+            pending = new ArrayList<>(callbackStack);
+            callbackStack.clear();
+        }
+        pending.forEach(CallbackContainer::fail);
+        isConnecting = false;
+    }
+
+    /**
+     * Opens the port and restores configuration, address and destination of the module
+     *
+     * @return true if the module is available again
+     */
+    private boolean reopen() {
+        if(!setupSerialConnection() || !await(setSerialConfig(), false)) {
+            return false;
+        }
+        String knownAddress = address;
+        String knownDestination = destination;
+
+        if(knownAddress != null && !await(setAddress(knownAddress), false)) {
+            return false;
+        }
+        return knownDestination == null || await(setDestinationAddress(knownDestination), false);
+    }
+
+    private <T> T await(CompletableFuture<T> future, T fallback) {
+        try {
+            return future.get(RECOVERY_STEP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            return fallback;
+        } catch (ExecutionException | TimeoutException e) {
+            return fallback;
+        }
+    }
+
+    private boolean sendCommand(byte[] template, boolean isSetupMessage, CallbackContainer<?>... responses) throws IllegalStateException {
+        return writeAndExpect(() -> encoder.encode(template), isSetupMessage, responses);
+    }
+
+    private boolean sendCommand(byte[] template, int value, boolean isSetupMessage, CallbackContainer<?>... responses) throws IllegalStateException {
+        return writeAndExpect(() -> encoder.encode(template, value), isSetupMessage, responses);
+    }
+
+    private boolean sendCommand(byte[] template, String value, boolean isSetupMessage, CallbackContainer<?>... responses) throws IllegalStateException {
+        return writeAndExpect(() -> encoder.encode(template, value), isSetupMessage, responses);
+    }
+
+    private boolean sendSerialPayload(byte[] payload, boolean isSetupMessage, CallbackContainer<?>... responses) throws IllegalStateException {
+        return writeAndExpect(() -> encoder.encodePayload(payload), isSetupMessage, responses);
+    }
+
+    /**
+     * Registers the containers for the responses and writes the command in one step while holding the encoder
+     * lock, so the order of the callback stack always matches the order of the commands on the wire
+     *
+     * @param encoding Encodes the command into the encoder buffer and returns its length
+     * @param isSetupMessage true if the command may be sent while the module is being configured
+     * @param responses The containers completed by the responses to the command in order
+     * @return true if the command was written
+     * @throws IllegalStateException if the port is not connected
+     */
+    private boolean writeAndExpect(IntSupplier encoding, boolean isSetupMessage, CallbackContainer<?>[] responses) throws IllegalStateException {
+        if(!isWritable(isSetupMessage)) {
             return false;
         }
-        byte[] end = "\r\n".getBytes(StandardCharsets.UTF_8);
-        final byte[] bytes = new byte[payload.length + end.length];
+        List<CallbackContainer<?>> expected = Arrays.asList(responses);
 
-        System.arraycopy(payload, 0, bytes, 0, payload.length);
-        System.arraycopy(end, 0, bytes, payload.length, end.length);
+        synchronized (encoder) {
+            // registered before writing, the response may arrive before the write returns
+            callbackStack.addAll(expected);
 
-        port.writeBytes(bytes, bytes.length);
+            if(write(encoding.getAsInt())) {
+                return true;
+            }
+            callbackStack.removeAll(expected);
 
+            return false;
+        }
+    }
+
+    private boolean isWritable(boolean isSetupMessage) throws IllegalStateException {
+        if (port == null || !port.isOpen()) {
+            throw new IllegalStateException("Port is not connected");
+        }
+        return isSetupMessage || !isConnecting;
+    }
+
+    /**
+     * Writes the encoded bytes with a single call. Must be called while holding the encoder lock
+     *
+     * @return true if every byte was written
+     */
+    private boolean write(int length) {
+        int written = port.writeBytes(encoder.getBuffer(), length);
+
+        if(written != length) {
+            logIfAvailable(Level.WARNING, "Writing to port failed - wrote {} bytes of {}", written, length);
+
+            return false;
+        }
         return true;
     }
 
     private void logIfAvailable(Level lvl, String message) {
-        logger.ifPresent(l ->
-                l.log(lvl, "HTWLoRaDriver >> " + message));
+        if(logger.isPresent() && logger.get().isLoggable(lvl)) {
+            logger.get().log(lvl, LOG_PREFIX + message);
+        }
+    }
+
+    private void logIfAvailable(Level lvl, String pattern, Object argument) {
+        if(logger.isPresent() && logger.get().isLoggable(lvl)) {
+            logger.get().log(lvl, LOG_PREFIX + GalaxyLogger.format(pattern, argument));
+        }
+    }
+
+    private void logIfAvailable(Level lvl, String pattern, Object first, Object second) {
+        if(logger.isPresent() && logger.get().isLoggable(lvl)) {
+            logger.get().log(lvl, LOG_PREFIX + GalaxyLogger.format(pattern, first, second));
+        }
     }
 }
@@ -0,0 +1,46 @@
+package de.dev_kiste.galaxy.driver;
+
+import com.fazecast.jSerialComm.SerialPort;
+
+/**
+ * {@link SerialLink} backed by a jSerialComm port
+ *
+ * @author Benny Lach
+ */
+class JSerialCommLink implements SerialLink {
+    private final SerialPort port;
+
+    JSerialCommLink(SerialPort port) {
+        this.port = port;
+    }
+
+    @Override
+    public boolean openPort() {
+        return port.openPort();
+    }
+
+    @Override
+    public boolean closePort() {
+        return port.closePort();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return port.isOpen();
+    }
+
+    @Override
+    public int bytesAvailable() {
+        return port.bytesAvailable();
+    }
+
+    @Override
+    public int readBytes(byte[] buffer, int length) {
+        return port.readBytes(buffer, length);
+    }
+
+    @Override
+    public int writeBytes(byte[] buffer, int length) {
+        return port.writeBytes(buffer, length);
+    }
+}
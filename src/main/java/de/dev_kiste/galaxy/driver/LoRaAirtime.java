@@ -0,0 +1,40 @@
+package de.dev_kiste.galaxy.driver;
+
+/**
+ * Time on air of LoRa frames according to the Semtech SX127x modem calculation
+ *
+ * @author Benny Lach
+ */
+public final class LoRaAirtime {
+    private LoRaAirtime() {}
+
+    /**
+     * Method to calculate the time on air of a single frame
+     *
+     * @param payloadLength The payload length in bytes
+     * @param spreadingFactor The spreading factor between 6 and 12
+     * @param bandwidthHz The bandwidth in Hz
+     * @param codingRate The coding rate between 1 (4/5) and 4 (4/8)
+     * @param preambleLength The number of programmed preamble symbols
+     * @param hasCrc true if the payload CRC is enabled
+     * @param isImplicitHeader true if the implicit header mode is used
+     * @return time on air in microseconds
+     * @throws IllegalArgumentException if a parameter is out of range
+     */
+    public static long timeOnAirMicros(int payloadLength, int spreadingFactor, int bandwidthHz, int codingRate,
+                                       int preambleLength, boolean hasCrc, boolean isImplicitHeader) throws IllegalArgumentException {
+        if(payloadLength < 0 || spreadingFactor < 6 || spreadingFactor > 12 || bandwidthHz <= 0
+                || codingRate < 1 || codingRate > 4 || preambleLength < 0) {
+            throw new IllegalArgumentException("LoRa parameter out of range");
+        }
+        double symbolMicros = (1 << spreadingFactor) * 1e6 / bandwidthHz;
+        // low data rate optimization is mandatory for symbols longer than 16ms
+        int lowDataRate = symbolMicros > 16000 ? 1 : 0;
+
+        double preambleMicros = (preambleLength + 4.25) * symbolMicros;
+        double payloadBits = 8.0 * payloadLength - 4 * spreadingFactor + 28 + (hasCrc ? 16 : 0) - (isImplicitHeader ? 20 : 0);
+        double payloadSymbols = 8 + Math.max(Math.ceil(payloadBits / (4 * (spreadingFactor - 2 * lowDataRate))) * (codingRate + 4), 0);
+
+        return (long) Math.ceil(preambleMicros + payloadSymbols * symbolMicros);
+    }
+}
@@ -0,0 +1,380 @@
+package de.dev_kiste.galaxy.driver;
+
+import de.dev_kiste.galaxy.driver.balancing.DriverLoad;
+import de.dev_kiste.galaxy.driver.balancing.DriverSelectionPolicy;
+import de.dev_kiste.galaxy.messaging.MessageHandler;
+import de.dev_kiste.galaxy.tracing.GalaxyTracer;
+import de.dev_kiste.galaxy.util.GalaxyLogger;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Function;
+
+/**
+ * @author Benny Lach
+ *
+ * GalaxyDriver implementation combining several drivers - typically several radio modules - into a single one.
+ *
+ * - Outbound payloads are sent by the driver chosen by the {@link DriverSelectionPolicy}. The items of a bulk send
+ *   are split the same way and every driver sends its share concurrently to the others
+ * - Broadcasts are sent by every driver because the radios may use different frequencies
+ * - Incoming messages of every driver are forwarded to the same {@link MessageHandler}
+ * - Configuration requests like address or channel changes are applied to every driver,
+ *   {@link #setChannels(int...)} tunes every radio to its own channel
+ */
+public class MultiRadioDriver implements GalaxyDriver {
+    private final List<GalaxyDriver> drivers;
+    private final DriverSelectionPolicy policy;
+    private final AtomicIntegerArray pendingSends;
+
+    private final DriverLoad load = new DriverLoad() {
+        @Override
+        public int getDriverCount() {
+            return drivers.size();
+        }
+
+        @Override
+        public int getPendingSends(int index) {
+            return pendingSends.get(index);
+        }
+    };
+
+    /**
+     * Default initializer
+     *
+     * @param drivers The drivers to combine
+     * @param policy The policy used to distribute outbound payloads
+     * @throws IllegalArgumentException if drivers is null, empty or contains null or the policy is null
+     */
+    public MultiRadioDriver(List<GalaxyDriver> drivers, DriverSelectionPolicy policy) throws IllegalArgumentException {
+        if(drivers == null || drivers.isEmpty() || drivers.contains(null)) {
+            throw new IllegalArgumentException("Drivers must not be null, empty nor contain null");
+        }
+        if(policy == null) {
+            throw new IllegalArgumentException("Policy must not be null");
+        }
+        this.drivers = Collections.unmodifiableList(new ArrayList<>(drivers));
+        this.policy = policy;
+        this.pendingSends = new AtomicIntegerArray(drivers.size());
+    }
+
+    /**
+     * Method to get all combined drivers
+     *
+     * @return unmodifiable list of drivers
+     */
+    public List<GalaxyDriver> getDrivers() {
+        return drivers;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> sendMessage(String msg, String receiver) throws IllegalArgumentException {
+        if(msg == null || receiver == null) {
+            throw new IllegalArgumentException("Message and received must not be null!");
+        }
+        return sendPayload(msg.getBytes(StandardCharsets.UTF_8), receiver);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> sendBroadcastMessage(String msg) throws IllegalArgumentException {
+        if(msg == null) {
+            throw new IllegalArgumentException("Message must not be null!");
+        }
+        return sendBroadcastPayload(msg.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> sendPayload(byte[] payload, String receiver) throws IllegalArgumentException {
+        if(payload == null || receiver == null) {
+            throw new IllegalArgumentException("Payload and receiver must not be null!");
+        }
+        return sendBySelectedDriver(receiver, driver -> driver.sendPayload(payload, receiver));
+    }
+
+    @Override
+    public CompletableFuture<SendOutcome> sendPayloadWithOutcome(byte[] payload, String receiver) {
+        if(payload == null || receiver == null) {
+            throw new IllegalArgumentException("Payload and receiver must not be null!");
+        }
+        return sendBySelectedDriver(receiver, driver -> driver.sendPayloadWithOutcome(payload, receiver));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> sendBroadcastPayload(byte[] payload) throws IllegalArgumentException {
+        if(payload == null) {
+            throw new IllegalArgumentException("Payload must not be null!");
+        }
+        return applyToAll(driver -> driver.sendBroadcastPayload(payload));
+    }
+
+    /**
+     * Method to broadcast the given payload on every driver
+     *
+     * @param payload The payload to send
+     * @return Future containing SENT if every driver sent the payload, otherwise the outcome of the first failed driver
+     */
+    @Override
+    public CompletableFuture<SendOutcome> sendBroadcastPayloadWithOutcome(byte[] payload) {
+        if(payload == null) {
+            throw new IllegalArgumentException("Payload must not be null!");
+        }
+        List<CompletableFuture<SendOutcome>> futures = new ArrayList<>(drivers.size());
+
+        for(GalaxyDriver driver: drivers) {
+            futures.add(driver.sendBroadcastPayloadWithOutcome(payload));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenApply(nothing -> futures.stream()
+                        .map(CompletableFuture::join)
+                        .filter(outcome -> outcome != SendOutcome.SENT)
+                        .findFirst()
+                        .orElse(SendOutcome.SENT));
+    }
+
+    /**
+     * Method to send several payloads at once
+     *
+     * Every item is assigned to a driver by the policy. Each driver sends its items as a bulk of its own, all
+     * drivers at the same time
+     *
+     * @param payloads The items to send
+     * @throws IllegalArgumentException if the list is null or an item exceeds the max supported payload size
+     * @throws IllegalStateException if the policy selected a driver which does not exist
+     *
+     * @return CompletableFuture containing the status of every item in the order the items were passed
+     */
+    @Override
+    public CompletableFuture<BulkSendResult> sendPayloads(List<OutboundPayload> payloads)
+            throws IllegalArgumentException, IllegalStateException {
+        if(payloads == null) {
+            throw new IllegalArgumentException("Payloads must not be null!");
+        }
+        int maximumSize = getMaximumPayloadSize();
+
+        for(OutboundPayload item : payloads) {
+            if(item.getPayload().length > maximumSize) {
+                throw new IllegalArgumentException("Payload must not exceed the maximum supported payload size!");
+            }
+        }
+        List<List<Integer>> positions = new ArrayList<>(drivers.size());
+        drivers.forEach(driver -> positions.add(new ArrayList<>()));
+
+        try {
+            for(int i = 0; i < payloads.size(); i++) {
+                int index = select(payloads.get(i).getReceiver());
+
+                // counted right away, so load based policies spread the remaining items
+                pendingSends.incrementAndGet(index);
+                positions.get(index).add(i);
+            }
+        } catch (IllegalStateException e) {
+            for(int index = 0; index < drivers.size(); index++) {
+                pendingSends.addAndGet(index, -positions.get(index).size());
+            }
+            throw e;
+        }
+        boolean[] sent = new boolean[payloads.size()];
+        List<CompletableFuture<Void>> bulks = new ArrayList<>(drivers.size());
+
+        for(int index = 0; index < drivers.size(); index++) {
+            List<Integer> share = positions.get(index);
+
+            if(share.isEmpty()) {
+                continue;
+            }
+            final int driverIndex = index;
+            List<OutboundPayload> items = new ArrayList<>(share.size());
+            share.forEach(position -> items.add(payloads.get(position)));
+
+            bulks.add(sendBulk(drivers.get(index), items).thenAccept(result -> {
+                pendingSends.addAndGet(driverIndex, -share.size());
+
+                for(int i = 0; i < share.size(); i++) {
+                    sent[share.get(i)] = result.isSent(i);
+                }
+            }));
+        }
+        return CompletableFuture.allOf(bulks.toArray(new CompletableFuture<?>[0]))
+                .thenApply(nothing -> new BulkSendResult(sent));
+    }
+
+    @Override
+    public void setMessageHandler(MessageHandler handler) {
+        drivers.forEach(driver -> driver.setMessageHandler(handler));
+    }
+
+    @Override
+    public long getTimeOnAirMicros(int payloadLength) {
+        long timeOnAir = 0;
+
+        for(GalaxyDriver driver: drivers) {
+            timeOnAir = Math.max(timeOnAir, driver.getTimeOnAirMicros(payloadLength));
+        }
+        return timeOnAir;
+    }
+
+    @Override
+    public int getMaximumPayloadSize() {
+        int size = Integer.MAX_VALUE;
+
+        for(GalaxyDriver driver: drivers) {
+            size = Math.min(size, driver.getMaximumPayloadSize());
+        }
+        return size;
+    }
+
+    @Override
+    public CompletableFuture<String> getAddress() {
+        return drivers.get(0).getAddress();
+    }
+
+    @Override
+    public CompletableFuture<Boolean> setAddress(String address) {
+        return applyToAll(driver -> driver.setAddress(address));
+    }
+
+    @Override
+    public int[] getSupportedChannels() {
+        return drivers.get(0).getSupportedChannels();
+    }
+
+    @Override
+    public CompletableFuture<Integer> getChannel() {
+        return drivers.get(0).getChannel();
+    }
+
+    /**
+     * Method to tune every driver to the given channel. See {@link #setChannels(int...)} to use different channels
+     *
+     * @param channel The channel to use
+     * @throws IllegalArgumentException if a driver does not support the channel
+     * @return Future indicating if every driver changed its channel
+     */
+    @Override
+    public CompletableFuture<Boolean> setChannel(int channel) throws IllegalArgumentException {
+        return applyToAll(driver -> driver.setChannel(channel));
+    }
+
+    /**
+     * Method to tune every driver to its own channel, e.g. to listen on several channels at once.
+     *
+     * {@link #getChannel()} reports the channel of the first driver
+     *
+     * @param channels One channel per driver, in the order of {@link #getDrivers()}
+     * @throws IllegalArgumentException if the number of channels does not match the number of drivers or a driver
+     * does not support its channel
+     * @return Future indicating if every driver changed its channel
+     */
+    public CompletableFuture<Boolean> setChannels(int... channels) throws IllegalArgumentException {
+        if(channels == null || channels.length != drivers.size()) {
+            throw new IllegalArgumentException("Exactly one channel per driver is required");
+        }
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>(drivers.size());
+
+        for(int i = 0; i < channels.length; i++) {
+            futures.add(drivers.get(i).setChannel(channels[i]));
+        }
+        return allSucceeded(futures);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> connect() {
+        return applyToAll(GalaxyDriver::connect);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> disconnect() {
+        return applyToAll(GalaxyDriver::disconnect);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> reboot() {
+        return applyToAll(GalaxyDriver::reboot);
+    }
+
+    @Override
+    public void setLogger(GalaxyLogger logger) {
+        drivers.forEach(driver -> driver.setLogger(logger));
+    }
+
+    @Override
+    public void setTracer(GalaxyTracer tracer) {
+        drivers.forEach(driver -> driver.setTracer(tracer));
+    }
+
+    /**
+     * Applies the given request to every driver concurrently
+     *
+     * @param request The request to apply
+     * @return Future indicating if the request succeeded for every driver
+     */
+    private CompletableFuture<Boolean> applyToAll(Function<GalaxyDriver, CompletableFuture<Boolean>> request) {
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>(drivers.size());
+
+        for(GalaxyDriver driver: drivers) {
+            futures.add(request.apply(driver));
+        }
+        return allSucceeded(futures);
+    }
+
+    private static CompletableFuture<Boolean> allSucceeded(List<CompletableFuture<Boolean>> futures) {
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenApply(nothing -> futures.stream().allMatch(CompletableFuture::join));
+    }
+
+    /**
+     * Sends a payload by the driver selected for its receiver and keeps track of the pending sends
+     *
+     * @param receiver The receiver of the payload
+     * @param send Function sending the payload by the given driver
+     * @return Future of the selected driver
+     */
+    private <T> CompletableFuture<T> sendBySelectedDriver(String receiver,
+                                                          Function<GalaxyDriver, CompletableFuture<T>> send) {
+        int index = select(receiver);
+
+        pendingSends.incrementAndGet(index);
+        try {
+            return send.apply(drivers.get(index))
+                    .whenComplete((result, error) -> pendingSends.decrementAndGet(index));
+        } catch (RuntimeException e) {
+            pendingSends.decrementAndGet(index);
+            throw e;
+        }
+    }
+
+    /**
+     * Hands a share of a bulk send to a single driver
+     *
+     * @return Future of the driver's result - every item failed if the driver failed
+     */
+    private static CompletableFuture<BulkSendResult> sendBulk(GalaxyDriver driver, List<OutboundPayload> items) {
+        try {
+            return driver.sendPayloads(items)
+                    .exceptionally(error -> BulkSendResult.failed(items.size()));
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(BulkSendResult.failed(items.size()));
+        }
+    }
+
+    /**
+     * Asks the policy for the driver sending the next payload
+     *
+     * @param receiver The receiver of the payload
+     * @return index of the selected driver
+     * @throws IllegalStateException if the policy selected a driver which does not exist
+     */
+    private int select(String receiver) throws IllegalStateException {
+        int index = policy.select(receiver, load);
+
+        if(index < 0 || index >= drivers.size()) {
+            throw new IllegalStateException("Policy " + policy.getClass().getSimpleName() + " selected driver "
+                    + index + " but only " + drivers.size() + " drivers exist");
+        }
+        return index;
+    }
+}
@@ -0,0 +1,42 @@
+package de.dev_kiste.galaxy.driver;
+
+/**
+ * Payload and receiver of a single item of a bulk send
+ *
+ * @author Benny Lach
+ */
+public class OutboundPayload {
+    private final byte[] payload;
+    private final String receiver;
+
+    /**
+     * Default initializer
+     *
+     * @param payload The payload to send
+     * @param receiver The receiver - typically the MAC address
+     * @throws IllegalArgumentException if the payload or the receiver is null
+     */
+    public OutboundPayload(byte[] payload, String receiver) throws IllegalArgumentException {
+        if(payload == null || receiver == null) {
+            throw new IllegalArgumentException("Payload and receiver must not be null!");
+        }
+        this.payload = payload;
+        this.receiver = receiver;
+    }
+
+    /**
+     * Method to get the payload
+     * @return payload
+     */
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    /**
+     * Method to get the receiver
+     * @return the receiver
+     */
+    public String getReceiver() {
+        return receiver;
+    }
+}
@@ -0,0 +1,81 @@
+package de.dev_kiste.galaxy.driver;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Result of a single send attempt, classifying why a payload was not sent
+ *
+ * @author Benny Lach
+ */
+public enum SendOutcome {
+    SENT(false),
+    /**
+     * The module accepted the payload but did not transmit it, e.g. because the channel was busy
+     */
+    CHANNEL_BUSY(true),
+    /**
+     * The module did not accept the payload, e.g. because it is still being configured
+     */
+    MODULE_BUSY(true),
+    /**
+     * The module is not connected or the connection is being recovered
+     */
+    DISCONNECTED(true),
+    /**
+     * The module refused the command, e.g. because of an invalid receiver address
+     */
+    REJECTED(false),
+    /**
+     * The payload or receiver is invalid, e.g. the payload exceeds the maximum payload size
+     */
+    INVALID(false),
+    /**
+     * The send failed for a reason the driver does not report
+     */
+    FAILED(true);
+
+    private final boolean isRetryable;
+
+    SendOutcome(boolean isRetryable) {
+        this.isRetryable = isRetryable;
+    }
+
+    /**
+     * Method to check if the payload was sent
+     */
+    public boolean isSent() {
+        return this == SENT;
+    }
+
+    /**
+     * Method to check if a later attempt may succeed
+     */
+    public boolean isRetryable() {
+        return isRetryable;
+    }
+
+    /**
+     * Method to classify a send which only reports success. Invalid arguments are reported as {@link #INVALID},
+     * a missing connection as {@link #DISCONNECTED} and all other failures as {@link #FAILED}
+     *
+     * @param send The send to execute
+     * @return Future containing the outcome
+     */
+    public static CompletableFuture<SendOutcome> classify(Supplier<CompletableFuture<Boolean>> send) {
+        try {
+            return send.get().handle((didSend, error) -> error != null ? classify(error) : didSend ? SENT : FAILED);
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(classify(e));
+        }
+    }
+
+    private static SendOutcome classify(Throwable error) {
+        Throwable cause = error.getCause() != null ? error.getCause() : error;
+
+        if(cause instanceof IllegalArgumentException) {
+            return INVALID;
+        }
+        return cause instanceof IllegalStateException ? DISCONNECTED : FAILED;
+    }
+}
@@ -0,0 +1,30 @@
+package de.dev_kiste.galaxy.driver;
+
+import com.fazecast.jSerialComm.SerialPort;
+
+/**
+ * Flow control of the serial link between host and module
+ *
+ * @author Benny Lach
+ */
+public enum SerialFlowControl {
+    NONE(SerialPort.FLOW_CONTROL_DISABLED),
+    /**
+     * Hardware flow control using the RTS and CTS lines
+     */
+    HARDWARE(SerialPort.FLOW_CONTROL_RTS_ENABLED | SerialPort.FLOW_CONTROL_CTS_ENABLED),
+    /**
+     * Software flow control using XON and XOFF characters. Only suited for text payloads
+     */
+    SOFTWARE(SerialPort.FLOW_CONTROL_XONXOFF_IN_ENABLED | SerialPort.FLOW_CONTROL_XONXOFF_OUT_ENABLED);
+
+    private final int value;
+
+    SerialFlowControl(int value) {
+        this.value = value;
+    }
+
+    int getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,29 @@
+package de.dev_kiste.galaxy.driver;
+
+/**
+ * The operations {@link HTWLoRaDriver} performs on its serial port
+ *
+ * @author Benny Lach
+ */
+interface SerialLink {
+    boolean openPort();
+
+    boolean closePort();
+
+    boolean isOpen();
+
+    /**
+     * @return number of bytes which can be read without blocking or -1 if the port is not readable
+     */
+    int bytesAvailable();
+
+    /**
+     * @return number of read bytes or -1 on failure
+     */
+    int readBytes(byte[] buffer, int length);
+
+    /**
+     * @return number of written bytes or -1 on failure
+     */
+    int writeBytes(byte[] buffer, int length);
+}
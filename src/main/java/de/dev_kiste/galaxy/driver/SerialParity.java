@@ -0,0 +1,24 @@
+package de.dev_kiste.galaxy.driver;
+
+import com.fazecast.jSerialComm.SerialPort;
+
+/**
+ * Parity of the serial link between host and module
+ *
+ * @author Benny Lach
+ */
+public enum SerialParity {
+    NONE(SerialPort.NO_PARITY),
+    EVEN(SerialPort.EVEN_PARITY),
+    ODD(SerialPort.ODD_PARITY);
+
+    private final int value;
+
+    SerialParity(int value) {
+        this.value = value;
+    }
+
+    int getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,136 @@
+package de.dev_kiste.galaxy.driver;
+
+import com.fazecast.jSerialComm.SerialPort;
+import de.dev_kiste.galaxy.util.BlockingTasks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * Finds LoRa modules attached to the host, so port descriptors do not have to be configured by hand.
+ *
+ * Every serial port of the host is opened and probed with an <code>AT</code> handshake. All ports are probed
+ * concurrently, so discovery takes about one probe timeout regardless of the number of ports.
+ *
+ * @author Benny Lach
+ */
+public class SerialPortDiscovery {
+    private final int baudRate;
+    private final long timeoutMillis;
+    private final Supplier<List<String>> descriptors;
+    private final BiFunction<String, Integer, SerialLink> links;
+
+    /**
+     * Default initializer probing at 115200 baud with a timeout of one second
+     */
+    public SerialPortDiscovery() {
+        this(115200, 1000);
+    }
+
+    /**
+     * Initializer
+     *
+     * @param baudRate The baud rate the modules are configured for
+     * @param timeoutMillis Time to wait for the answer of a module
+     * @throws IllegalArgumentException if baud rate or timeout are not positive
+     */
+    public SerialPortDiscovery(int baudRate, long timeoutMillis) throws IllegalArgumentException {
+        this(baudRate, timeoutMillis, SerialPortDiscovery::hostPorts, SerialPortDiscovery::openablePort);
+    }
+
+    /**
+     * Initializer using the given ports instead of the ones of the host, e.g. to simulate modules
+     *
+     * @param baudRate The baud rate the modules are configured for
+     * @param timeoutMillis Time to wait for the answer of a module
+     * @param descriptors Supplier of the descriptors of all ports
+     * @param links Creates an unopened link for the given descriptor and baud rate
+     * @throws IllegalArgumentException if baud rate or timeout are not positive
+     */
+    SerialPortDiscovery(int baudRate, long timeoutMillis, Supplier<List<String>> descriptors,
+                        BiFunction<String, Integer, SerialLink> links) throws IllegalArgumentException {
+        if(baudRate <= 0 || timeoutMillis <= 0) {
+            throw new IllegalArgumentException("Baud rate and timeout must be positive");
+        }
+        this.baudRate = baudRate;
+        this.timeoutMillis = timeoutMillis;
+        this.descriptors = descriptors;
+        this.links = links;
+    }
+
+    /**
+     * Method to find the descriptors of all ports with a responding module. Ports which are already in use are
+     * skipped
+     *
+     * @return Future containing the descriptors in the order the ports were enumerated
+     */
+    public CompletableFuture<List<String>> findModules() {
+        List<String> ports = descriptors.get();
+        List<Supplier<CompletableFuture<Boolean>>> probes = new ArrayList<>();
+
+        for(String port : ports) {
+            probes.add(() -> CompletableFuture.completedFuture(probe(port)));
+        }
+        return BlockingTasks.runAll(probes, "SerialPortDiscovery-Probe", false)
+                .thenApply(results -> {
+                    List<String> found = new ArrayList<>();
+
+                    for(int i = 0; i < ports.size(); i++) {
+                        if(results.get(i)) {
+                            found.add(ports.get(i));
+                        }
+                    }
+                    return found;
+                });
+    }
+
+    /**
+     * Method to create a driver for every responding module. The drivers are not connected yet
+     *
+     * @return Future containing the drivers
+     */
+    public CompletableFuture<List<HTWLoRaDriver>> discoverDrivers() {
+        return findModules().thenApply(descriptors -> {
+            List<HTWLoRaDriver> drivers = new ArrayList<>();
+
+            for(String descriptor : descriptors) {
+                HTWLoRaDriver driver = new HTWLoRaDriver(descriptor);
+                driver.setBaudRate(baudRate);
+                drivers.add(driver);
+            }
+            return drivers;
+        });
+    }
+
+    private boolean probe(String descriptor) {
+        SerialLink link = links.apply(descriptor, baudRate);
+
+        if(!link.openPort()) {
+            return false;
+        }
+        try {
+            return AtProbe.answers(link, 1, timeoutMillis);
+        } finally {
+            link.closePort();
+        }
+    }
+
+    private static List<String> hostPorts() {
+        List<String> descriptors = new ArrayList<>();
+
+        for(SerialPort port : SerialPort.getCommPorts()) {
+            descriptors.add(port.getSystemPortName());
+        }
+        return descriptors;
+    }
+
+    private static SerialLink openablePort(String descriptor, int baudRate) {
+        SerialPort port = SerialPort.getCommPort(descriptor);
+        port.setComPortParameters(baudRate, 8, 1, SerialPort.NO_PARITY);
+
+        return new JSerialCommLink(port);
+    }
+}
@@ -0,0 +1,432 @@
+package de.dev_kiste.galaxy.driver;
+
+import de.dev_kiste.galaxy.messaging.GalaxyMessage;
+import de.dev_kiste.galaxy.messaging.MessageHandler;
+import de.dev_kiste.galaxy.messaging.MessageLogger;
+import de.dev_kiste.galaxy.tracing.GalaxyTracer;
+import de.dev_kiste.galaxy.tracing.MessageTrace;
+import de.dev_kiste.galaxy.tracing.TraceStage;
+import de.dev_kiste.galaxy.util.GalaxyAddress;
+import de.dev_kiste.galaxy.util.GalaxyLogger;
+
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+/**
+ * {@link GalaxyDriver} exchanging payloads as UDP datagrams, e.g. to run nodes on localhost or to link gateways
+ * over IP.
+ *
+ * Every datagram carries a magic byte and the 16 bit address of the sender in front of the payload. 4 hex digit
+ * addresses are mapped to socket endpoints by the peer table, which is filled by {@link #addPeer} and updated by
+ * every received datagram, so a peer coming back on another port is reached there. Broadcasts to <code>FFFF</code>
+ * are sent to the multicast group if one is set, otherwise to every known peer. A broadcast without either is
+ * rejected.
+ *
+ * Datagrams are encoded into and read from direct buffers, so neither sending nor receiving copies the payload
+ * through an intermediate heap buffer.
+ * <pre>
+ * UdpGalaxyDriver driver = new UdpGalaxyDriver("0010", new InetSocketAddress("127.0.0.1", 7010));
+ * driver.addPeer("0020", new InetSocketAddress("127.0.0.1", 7020));
+ * </pre>
+ *
+ * @author Benny Lach
+ */
+public class UdpGalaxyDriver implements GalaxyDriver {
+    final static byte MAGIC = (byte) 0xB1;
+    final static int HEADER_LENGTH = 3;
+
+    private final static String BROADCAST = "FFFF";
+    private final static String LOG_PREFIX = "UdpGalaxyDriver >> ";
+    private final static int MAX_PAYLOAD_SIZE = 250;
+
+    private final InetSocketAddress bindAddress;
+    private final Map<String, SocketAddress> peers = new ConcurrentHashMap<>();
+    private final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(HEADER_LENGTH + MAX_PAYLOAD_SIZE);
+
+    private volatile String address;
+    private volatile MessageHandler messageHandler = new MessageLogger();
+    private volatile DatagramChannel channel;
+    private Optional<GalaxyLogger> logger = Optional.empty();
+    private Optional<GalaxyTracer> tracer = Optional.empty();
+    private Optional<InetSocketAddress> multicastGroup = Optional.empty();
+    private Optional<NetworkInterface> multicastInterface = Optional.empty();
+
+    /**
+     * Default initializer
+     *
+     * @param address The 4 hex digit address of the node
+     * @param bindAddress The local endpoint to receive datagrams on - port 0 picks an ephemeral port
+     * @throws IllegalArgumentException if a value is null or the address is not a 4 hex digit address
+     */
+    public UdpGalaxyDriver(String address, InetSocketAddress bindAddress) throws IllegalArgumentException {
+        if(address == null || bindAddress == null) {
+            throw new IllegalArgumentException("Address and bind address must not be null");
+        }
+        if(GalaxyAddress.parse(address) < 0) {
+            throw new IllegalArgumentException("Address must consist of 4 hex digits: " + address);
+        }
+        this.address = address.toUpperCase();
+        this.bindAddress = bindAddress;
+    }
+
+    /**
+     * Initializer receiving datagrams on all local interfaces
+     *
+     * @param address The 4 hex digit address of the node
+     * @param port The local port to receive datagrams on
+     * @throws IllegalArgumentException if the address is null or not a 4 hex digit address
+     */
+    public UdpGalaxyDriver(String address, int port) throws IllegalArgumentException {
+        this(address, new InetSocketAddress(port));
+    }
+
+    /**
+     * Method to map an address to a socket endpoint
+     *
+     * @param address The 4 hex digit address of the peer
+     * @param endpoint The endpoint the peer receives datagrams on
+     * @return Updated driver
+     * @throws IllegalArgumentException if a value is null or the address is not a 4 hex digit address
+     */
+    public UdpGalaxyDriver addPeer(String address, InetSocketAddress endpoint) throws IllegalArgumentException {
+        if(address == null || endpoint == null) {
+            throw new IllegalArgumentException("Address and endpoint must not be null");
+        }
+        if(GalaxyAddress.parse(address) < 0 || address.equalsIgnoreCase(BROADCAST)) {
+            throw new IllegalArgumentException("Peer address must consist of 4 hex digits: " + address);
+        }
+        peers.put(address.toUpperCase(), endpoint);
+
+        return this;
+    }
+
+    /**
+     * Method to remove the endpoint of a peer
+     *
+     * @param address The address of the peer
+     */
+    public void removePeer(String address) {
+        if(address != null) {
+            peers.remove(address.toUpperCase());
+        }
+    }
+
+    /**
+     * Method to send broadcasts to a multicast group instead of every known peer. Must be called before connecting.
+     * The group is joined on connect, so the bind address must use the port of the group
+     *
+     * @param group The multicast group and port
+     * @param networkInterface The interface to join the group on
+     * @return Updated driver
+     * @throws IllegalArgumentException if a value is null or the group is not a multicast address
+     */
+    public UdpGalaxyDriver setMulticastGroup(InetSocketAddress group, NetworkInterface networkInterface) throws IllegalArgumentException {
+        if(group == null || networkInterface == null) {
+            throw new IllegalArgumentException("Group and network interface must not be null");
+        }
+        if(group.getAddress() == null || !group.getAddress().isMulticastAddress()) {
+            throw new IllegalArgumentException("Not a multicast group: " + group);
+        }
+        multicastGroup = Optional.of(group);
+        multicastInterface = Optional.of(networkInterface);
+
+        return this;
+    }
+
+    /**
+     * Method to get the local endpoint datagrams are received on
+     *
+     * @return the bound endpoint or null if the driver is not connected
+     */
+    public InetSocketAddress getLocalAddress() {
+        DatagramChannel current = channel;
+
+        try {
+            return current == null ? null : (InetSocketAddress) current.getLocalAddress();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Boolean> sendMessage(String msg, String receiver) throws IllegalArgumentException {
+        if(msg == null) {
+            throw new IllegalArgumentException("Message must not be null!");
+        }
+        return sendPayload(msg.getBytes(StandardCharsets.UTF_8), receiver);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> sendBroadcastMessage(String msg) throws IllegalArgumentException {
+        return sendMessage(msg, BROADCAST);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> sendPayload(byte[] payload, String receiver) throws IllegalArgumentException {
+        return sendPayloadWithOutcome(payload, receiver).thenApply(SendOutcome::isSent);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> sendBroadcastPayload(byte[] payload) throws IllegalArgumentException {
+        return sendPayload(payload, BROADCAST);
+    }
+
+    @Override
+    public CompletableFuture<SendOutcome> sendPayloadWithOutcome(byte[] payload, String receiver) throws IllegalArgumentException {
+        if(payload == null || receiver == null) {
+            throw new IllegalArgumentException("Payload and receiver must not be null!");
+        }
+        if(payload.length > getMaximumPayloadSize()) {
+            throw new IllegalArgumentException("Payload must not exceed the maximum supported payload size!");
+        }
+        DatagramChannel current = channel;
+
+        if(current == null) {
+            return CompletableFuture.completedFuture(SendOutcome.DISCONNECTED);
+        }
+        return CompletableFuture.completedFuture(transmit(current, payload, receiver.toUpperCase()));
+    }
+
+    @Override
+    public CompletableFuture<SendOutcome> sendBroadcastPayloadWithOutcome(byte[] payload) throws IllegalArgumentException {
+        return sendPayloadWithOutcome(payload, BROADCAST);
+    }
+
+    @Override
+    public void setMessageHandler(MessageHandler handler) {
+        if(handler != null) {
+            messageHandler = handler;
+        }
+    }
+
+    @Override
+    public int getMaximumPayloadSize() {
+        return MAX_PAYLOAD_SIZE;
+    }
+
+    @Override
+    public CompletableFuture<String> getAddress() {
+        return CompletableFuture.completedFuture(address);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> setAddress(String address) {
+        if(address == null || GalaxyAddress.parse(address) < 0) {
+            return CompletableFuture.completedFuture(false);
+        }
+        this.address = address.toUpperCase();
+
+        return CompletableFuture.completedFuture(true);
+    }
+
+    @Override
+    public int[] getSupportedChannels() {
+        return new int[]{0};
+    }
+
+    @Override
+    public CompletableFuture<Integer> getChannel() {
+        return CompletableFuture.completedFuture(0);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> setChannel(int channel) throws IllegalArgumentException {
+        return CompletableFuture.completedFuture(channel == 0);
+    }
+
+    @Override
+    public synchronized CompletableFuture<Boolean> connect() {
+        if(channel != null) {
+            return CompletableFuture.completedFuture(true);
+        }
+        DatagramChannel opened = null;
+
+        try {
+            opened = multicastGroup.isPresent() && multicastGroup.get().getAddress() instanceof Inet6Address
+                    ? DatagramChannel.open(StandardProtocolFamily.INET6)
+                    : DatagramChannel.open(StandardProtocolFamily.INET);
+            opened.setOption(StandardSocketOptions.SO_REUSEADDR, multicastGroup.isPresent());
+            opened.bind(bindAddress);
+
+            if(multicastGroup.isPresent()) {
+                opened.setOption(StandardSocketOptions.IP_MULTICAST_IF, multicastInterface.get());
+                opened.join(multicastGroup.get().getAddress(), multicastInterface.get());
+            }
+            channel = opened;
+            startReceiving(opened);
+            logIfAvailable(Level.INFO, "Listening on {}", opened.getLocalAddress());
+
+            return CompletableFuture.completedFuture(true);
+        } catch (IOException | RuntimeException e) {
+            logIfAvailable(Level.WARNING, "Connecting failed: {}", e);
+            close(opened);
+
+            return CompletableFuture.completedFuture(false);
+        }
+    }
+
+    @Override
+    public synchronized CompletableFuture<Boolean> disconnect() {
+        DatagramChannel current = channel;
+        channel = null;
+
+        return CompletableFuture.completedFuture(current == null || close(current));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> reboot() {
+        return disconnect().thenCompose(didDisconnect -> connect());
+    }
+
+    @Override
+    public void setLogger(GalaxyLogger logger) {
+        this.logger = Optional.ofNullable(logger);
+    }
+
+    @Override
+    public void setTracer(GalaxyTracer tracer) {
+        this.tracer = Optional.ofNullable(tracer);
+    }
+
+    /**
+     * Method to send the payload to the endpoints of the receiver
+     *
+     * @return the outcome of the send
+     */
+    private SendOutcome transmit(DatagramChannel current, byte[] payload, String receiver) {
+        Set<SocketAddress> endpoints = new HashSet<>();
+
+        if(receiver.equals(BROADCAST)) {
+            if(multicastGroup.isPresent()) {
+                endpoints.add(multicastGroup.get());
+            } else if(peers.isEmpty()) {
+                logIfAvailable(Level.WARNING, "No peer known to receive the broadcast of {}", address);
+                return SendOutcome.REJECTED;
+            } else {
+                endpoints.addAll(peers.values());
+            }
+        } else {
+            SocketAddress endpoint = peers.get(receiver);
+
+            if(endpoint == null) {
+                logIfAvailable(Level.WARNING, "No endpoint known for receiver {}", receiver);
+                return SendOutcome.REJECTED;
+            }
+            endpoints.add(endpoint);
+        }
+        int source = GalaxyAddress.parse(address);
+
+        synchronized (sendBuffer) {
+            ((Buffer) sendBuffer).clear();
+            sendBuffer.put(MAGIC).putShort((short) source).put(payload);
+            ((Buffer) sendBuffer).flip();
+
+            try {
+                for(SocketAddress endpoint : endpoints) {
+                    ((Buffer) sendBuffer).rewind();
+                    current.send(sendBuffer, endpoint);
+                }
+            } catch (ClosedChannelException e) {
+                return SendOutcome.DISCONNECTED;
+            } catch (IOException e) {
+                logIfAvailable(Level.WARNING, "Sending failed: {}", e.getMessage());
+                return SendOutcome.FAILED;
+            }
+        }
+        return SendOutcome.SENT;
+    }
+
+    private void startReceiving(DatagramChannel current) {
+        Thread reader = new Thread(() -> receive(current), "UdpGalaxyDriver-" + address);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Receive loop of the reader thread, ends when the channel is closed
+     */
+    private void receive(DatagramChannel current) {
+        // one spare byte to detect datagrams exceeding the maximum payload size
+        ByteBuffer buffer = ByteBuffer.allocateDirect(HEADER_LENGTH + MAX_PAYLOAD_SIZE + 1);
+
+        while(current.isOpen()) {
+            try {
+                ((Buffer) buffer).clear();
+                SocketAddress sender = current.receive(buffer);
+                long receivedAt = System.nanoTime();
+                ((Buffer) buffer).flip();
+
+                handleDatagram(buffer, sender, receivedAt);
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                logIfAvailable(Level.WARNING, "Reading failed: {}", e.getMessage());
+            } catch (RuntimeException e) {
+                logIfAvailable(Level.WARNING, "Handling incoming message failed: {}", e);
+            }
+        }
+    }
+
+    private void handleDatagram(ByteBuffer buffer, SocketAddress sender, long receivedAt) {
+        int length = buffer.remaining() - HEADER_LENGTH;
+
+        if(length < 0 || length > MAX_PAYLOAD_SIZE || buffer.get() != MAGIC) {
+            logIfAvailable(Level.FINE, "Dropping invalid datagram from {}", sender);
+            return;
+        }
+        String source = GalaxyAddress.format(buffer.getShort() & 0xFFFF);
+
+        if(source.equals(address)) {
+            // own broadcast looped back by the multicast group
+            return;
+        }
+        peers.put(source, sender);
+
+        byte[] payload = new byte[length];
+        buffer.get(payload);
+
+        MessageTrace trace = tracer.isPresent() ? tracer.get().sample(source) : null;
+
+        if(trace != null) {
+            trace.mark(TraceStage.FRAME_COMPLETE, receivedAt);
+            trace.mark(TraceStage.REMOTE_MESSAGE);
+        }
+        messageHandler.received(new GalaxyMessage(payload, source, trace));
+    }
+
+    private boolean close(DatagramChannel current) {
+        if(current == null) {
+            return true;
+        }
+        try {
+            current.close();
+            return true;
+        } catch (IOException e) {
+            logIfAvailable(Level.WARNING, "Closing failed: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void logIfAvailable(Level lvl, String pattern, Object argument) {
+        if(logger.isPresent() && logger.get().isLoggable(lvl)) {
+            logger.get().log(lvl, LOG_PREFIX + GalaxyLogger.format(pattern, argument));
+        }
+    }
+}
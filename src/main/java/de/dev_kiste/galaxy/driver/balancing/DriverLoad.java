@@ -0,0 +1,23 @@
+package de.dev_kiste.galaxy.driver.balancing;
+
+/**
+ * Read only view on the drivers a {@link DriverSelectionPolicy} can choose from
+ *
+ * @author Benny Lach
+ */
+public interface DriverLoad {
+    /**
+     * Method to get the number of available drivers
+     *
+     * @return number of drivers
+     */
+    int getDriverCount();
+
+    /**
+     * Method to get the number of sends currently in flight on the driver at the given index
+     *
+     * @param index The driver index
+     * @return number of pending sends
+     */
+    int getPendingSends(int index);
+}
@@ -0,0 +1,17 @@
+package de.dev_kiste.galaxy.driver.balancing;
+
+/**
+ * Policy deciding which driver of a {@link de.dev_kiste.galaxy.driver.MultiRadioDriver} sends an outbound payload
+ *
+ * @author Benny Lach
+ */
+public interface DriverSelectionPolicy {
+    /**
+     * Method to select the driver for the next send
+     *
+     * @param receiver The receiver of the payload
+     * @param load The current load of all drivers
+     * @return index of the driver to use. Must be in range of <code>[0, load.getDriverCount())</code>
+     */
+    int select(String receiver, DriverLoad load);
+}
@@ -0,0 +1,32 @@
+package de.dev_kiste.galaxy.driver.balancing;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link DriverSelectionPolicy} using the driver with the fewest sends in flight.
+ * Ties are broken in turn so idle drivers are used evenly
+ *
+ * @author Benny Lach
+ */
+public class LeastLoadedPolicy implements DriverSelectionPolicy {
+    private final AtomicInteger offset = new AtomicInteger();
+
+    @Override
+    public int select(String receiver, DriverLoad load) {
+        int count = load.getDriverCount();
+        int start = Math.floorMod(offset.getAndIncrement(), count);
+        int selected = start;
+        int minimum = Integer.MAX_VALUE;
+
+        for(int i = 0; i < count; i++) {
+            int index = (start + i) % count;
+            int pending = load.getPendingSends(index);
+
+            if(pending < minimum) {
+                minimum = pending;
+                selected = index;
+            }
+        }
+        return selected;
+    }
+}
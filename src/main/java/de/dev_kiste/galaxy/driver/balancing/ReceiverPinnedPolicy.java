@@ -0,0 +1,15 @@
+package de.dev_kiste.galaxy.driver.balancing;
+
+/**
+ * {@link DriverSelectionPolicy} always using the same driver for the same receiver.
+ * Keeps the order of payloads sent to a single receiver
+ *
+ * @author Benny Lach
+ */
+public class ReceiverPinnedPolicy implements DriverSelectionPolicy {
+
+    @Override
+    public int select(String receiver, DriverLoad load) {
+        return Math.floorMod(receiver.hashCode(), load.getDriverCount());
+    }
+}
@@ -0,0 +1,17 @@
+package de.dev_kiste.galaxy.driver.balancing;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link DriverSelectionPolicy} using all drivers in turn
+ *
+ * @author Benny Lach
+ */
+public class RoundRobinPolicy implements DriverSelectionPolicy {
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public int select(String receiver, DriverLoad load) {
+        return Math.floorMod(counter.getAndIncrement(), load.getDriverCount());
+    }
+}
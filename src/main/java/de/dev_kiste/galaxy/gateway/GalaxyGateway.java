@@ -0,0 +1,517 @@
+package de.dev_kiste.galaxy.gateway;
+
+import de.dev_kiste.galaxy.messaging.GalaxyMessage;
+import de.dev_kiste.galaxy.messaging.stream.Subscriber;
+import de.dev_kiste.galaxy.messaging.stream.Subscription;
+import de.dev_kiste.galaxy.node.GalaxyNode;
+import de.dev_kiste.galaxy.util.GalaxyLogger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * TCP server streaming the messages received by a {@link GalaxyNode} to its clients and sending payloads on their
+ * behalf.
+ *
+ * All connections are served by one selector thread. Every received message is encoded once and copied into the
+ * bounded outbound buffer of every client. A client whose buffer cannot take the next frame is disconnected, so a
+ * slow consumer neither blocks the others nor makes the gateway buffer without limit. Messages are requested from
+ * {@link GalaxyNode#getMessagePublisher()} in batches as they are handed to the clients, so the overflow strategy of
+ * the node applies if the gateway falls behind.
+ *
+ * Clients send payloads with SEND frames and get a SEND_RESULT frame once the node completed the send. See
+ * {@link GatewayFrame} for the wire format.
+ * <pre>
+ * GalaxyGateway gateway = new GalaxyGateway(node, new InetSocketAddress(7000));
+ * gateway.start();
+ * </pre>
+ *
+ * @author Benny Lach
+ */
+public class GalaxyGateway {
+    private final static String LOG_PREFIX = "GalaxyGateway >> ";
+    private final static int DEFAULT_CLIENT_BUFFER_SIZE = 64 * 1024;
+    private final static int REQUEST_BATCH = 256;
+
+    private static class Client {
+        private final SocketChannel channel;
+        private final ByteBuffer inbound;
+        private final ByteBuffer outbound;
+
+        private Client(SocketChannel channel, int maxRequestLength, int bufferSize) {
+            this.channel = channel;
+            this.inbound = ByteBuffer.allocate(GatewayFrame.LENGTH_PREFIX + maxRequestLength);
+            this.outbound = ByteBuffer.allocate(bufferSize);
+        }
+    }
+
+    /**
+     * Frame waiting for the selector thread
+     */
+    private static class Outgoing {
+        private final byte[] frame;
+        private final Client target;
+
+        /**
+         * @param frame The encoded frame
+         * @param target The receiving client or null to send the frame to all clients
+         */
+        private Outgoing(byte[] frame, Client target) {
+            this.frame = frame;
+            this.target = target;
+        }
+    }
+
+    private final GalaxyNode node;
+    private final InetSocketAddress bindAddress;
+    private final int clientBufferSize;
+
+    private final Set<Client> clients = new HashSet<>();
+    private final ConcurrentLinkedQueue<Outgoing> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean isWakeUpPending = new AtomicBoolean(false);
+    private final AtomicLong slowClientDisconnects = new AtomicLong();
+
+    private volatile int clientCount = 0;
+    private volatile boolean isRunning = false;
+    private volatile Selector selector;
+    private volatile Subscription subscription;
+    private ServerSocketChannel server;
+    private Thread selectorThread;
+    private int maxRequestLength;
+    private Optional<GalaxyLogger> logger = Optional.empty();
+
+    /**
+     * Default initializer using buffers of 64 KiB per client
+     *
+     * @param node The node whose messages are served
+     * @param bindAddress The local endpoint to accept clients on
+     * @throws IllegalArgumentException if a value is null
+     */
+    public GalaxyGateway(GalaxyNode node, InetSocketAddress bindAddress) throws IllegalArgumentException {
+        this(node, bindAddress, DEFAULT_CLIENT_BUFFER_SIZE);
+    }
+
+    /**
+     * Initializer
+     *
+     * @param node The node whose messages are served
+     * @param bindAddress The local endpoint to accept clients on
+     * @param clientBufferSize Bytes buffered for every client before it is disconnected as slow consumer
+     * @throws IllegalArgumentException if a value is null or the buffer cannot hold a single frame
+     */
+    public GalaxyGateway(GalaxyNode node, InetSocketAddress bindAddress, int clientBufferSize) throws IllegalArgumentException {
+        if(node == null || bindAddress == null) {
+            throw new IllegalArgumentException("Node and bind address must not be null");
+        }
+        if(clientBufferSize < 1024) {
+            throw new IllegalArgumentException("Client buffer size must be at least 1024 bytes");
+        }
+        this.node = node;
+        this.bindAddress = bindAddress;
+        this.clientBufferSize = clientBufferSize;
+    }
+
+    /**
+     * Method to set the logger
+     *
+     * @param logger The logger to use
+     */
+    public void setLogger(GalaxyLogger logger) {
+        this.logger = Optional.ofNullable(logger);
+    }
+
+    /**
+     * Method to start accepting clients and to subscribe to the messages of the node
+     *
+     * @throws IOException if the server socket could not be opened
+     * @throws IllegalStateException if the gateway was already started
+     */
+    public synchronized void start() throws IOException, IllegalStateException {
+        if(isRunning) {
+            throw new IllegalStateException("Gateway is already running");
+        }
+        maxRequestLength = GatewayFrame.SEND_HEADER_LENGTH + GatewayFrame.MAX_ADDRESS_LENGTH + node.getMaximumMessageSize();
+        selector = Selector.open();
+
+        try {
+            server = ServerSocketChannel.open();
+            server.bind(bindAddress);
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            closeQuietly(server);
+            selector.close();
+            throw e;
+        }
+        isRunning = true;
+        selectorThread = new Thread(this::run, "GalaxyGateway");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+
+        node.getMessagePublisher().subscribe(new Subscriber<GalaxyMessage>() {
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                GalaxyGateway.this.subscription = subscription;
+                subscription.request(REQUEST_BATCH);
+            }
+
+            @Override
+            public void onNext(GalaxyMessage item) {
+                try {
+                    post(new Outgoing(GatewayFrame.message(item), null));
+                } catch (IllegalArgumentException e) {
+                    logIfAvailable(Level.WARNING, "Dropping message: {}", e.getMessage());
+                    subscription.request(1);
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                logIfAvailable(Level.WARNING, "Message stream failed: {}", throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                logIfAvailable(Level.INFO, "Message stream completed");
+            }
+        });
+        logIfAvailable(Level.INFO, "Accepting clients on {}", server.getLocalAddress());
+    }
+
+    /**
+     * Method to disconnect all clients and to stop accepting new ones
+     */
+    public void stop() {
+        Thread thread;
+
+        synchronized (this) {
+            if(!isRunning) {
+                return;
+            }
+            isRunning = false;
+            thread = selectorThread;
+        }
+        if(subscription != null) {
+            subscription.cancel();
+        }
+        selector.wakeup();
+
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Method to get the local endpoint clients connect to
+     *
+     * @return the bound endpoint or null if the gateway is not running
+     */
+    public InetSocketAddress getLocalAddress() {
+        try {
+            return isRunning ? (InetSocketAddress) server.getLocalAddress() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Method to get the number of connected clients
+     */
+    public int getClientCount() {
+        return clientCount;
+    }
+
+    /**
+     * Method to get the number of clients disconnected because their buffer was full
+     */
+    public long getSlowClientDisconnects() {
+        return slowClientDisconnects.get();
+    }
+
+    /**
+     * Hands a frame to the selector thread, waking it up only if it is not already about to drain the queue
+     */
+    private void post(Outgoing outgoing) {
+        pending.add(outgoing);
+
+        if(isWakeUpPending.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    private void run() {
+        try {
+            while(isRunning) {
+                selector.select();
+                isWakeUpPending.set(false);
+                drainPending();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+                while(keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    if(!key.isValid()) {
+                        continue;
+                    }
+                    if(key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Client client = (Client) key.attachment();
+
+                    if(key.isReadable()) {
+                        read(key, client);
+                    }
+                    if(key.isValid() && key.isWritable()) {
+                        flush(key, client);
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            logIfAvailable(Level.SEVERE, "Selector failed: {}", e);
+        } finally {
+            shutDown();
+        }
+    }
+
+    /**
+     * Accepts all pending connections. A connection failing to be set up is closed without affecting the others
+     */
+    private void accept() {
+        while(true) {
+            SocketChannel channel;
+
+            try {
+                channel = server.accept();
+            } catch (IOException e) {
+                // e.g. out of file descriptors - the connection stays pending until the next selection
+                logIfAvailable(Level.WARNING, "Accepting connection failed: {}", e.getMessage());
+                return;
+            }
+            if(channel == null) {
+                return;
+            }
+            try {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+                Client client = new Client(channel, maxRequestLength, clientBufferSize);
+                channel.register(selector, SelectionKey.OP_READ, client);
+                clients.add(client);
+                clientCount = clients.size();
+            } catch (IOException e) {
+                logIfAvailable(Level.WARNING, "Setting up connection failed: {}", e.getMessage());
+                closeQuietly(channel);
+            }
+        }
+    }
+
+    /**
+     * Copies all pending frames into the buffers of their clients and writes as much as the sockets take
+     */
+    private void drainPending() {
+        List<Client> touched = new ArrayList<>();
+        Set<Client> slow = new HashSet<>();
+        int messages = 0;
+        Outgoing outgoing;
+
+        while((outgoing = pending.poll()) != null) {
+            if(outgoing.target == null) {
+                messages++;
+
+                for(Client client : clients) {
+                    enqueue(client, outgoing.frame, touched, slow);
+                }
+            } else if(clients.contains(outgoing.target)) {
+                enqueue(outgoing.target, outgoing.frame, touched, slow);
+            }
+        }
+        for(Client client : slow) {
+            slowClientDisconnects.incrementAndGet();
+            logIfAvailable(Level.WARNING, "Disconnecting slow client {}", remoteAddress(client));
+            close(client);
+        }
+        for(Client client : touched) {
+            SelectionKey key = client.channel.keyFor(selector);
+
+            if(key != null && key.isValid()) {
+                flush(key, client);
+            }
+        }
+        if(messages > 0 && subscription != null && isRunning) {
+            subscription.request(messages);
+        }
+    }
+
+    private void enqueue(Client client, byte[] frame, List<Client> touched, Set<Client> slow) {
+        if(slow.contains(client)) {
+            return;
+        }
+        if(client.outbound.remaining() < frame.length) {
+            slow.add(client);
+            return;
+        }
+        if(client.outbound.position() == 0) {
+            touched.add(client);
+        }
+        client.outbound.put(frame);
+    }
+
+    private void flush(SelectionKey key, Client client) {
+        ((Buffer) client.outbound).flip();
+
+        try {
+            client.channel.write(client.outbound);
+        } catch (IOException e) {
+            close(client);
+            return;
+        }
+        client.outbound.compact();
+        key.interestOps(client.outbound.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    private void read(SelectionKey key, Client client) {
+        int count;
+
+        try {
+            count = client.channel.read(client.inbound);
+        } catch (IOException e) {
+            count = -1;
+        }
+        if(count < 0) {
+            close(client);
+            return;
+        }
+        ByteBuffer inbound = client.inbound;
+        ((Buffer) inbound).flip();
+
+        while(inbound.remaining() >= GatewayFrame.LENGTH_PREFIX) {
+            int length = inbound.getShort(inbound.position()) & 0xFFFF;
+
+            if(length < GatewayFrame.SEND_HEADER_LENGTH || length > maxRequestLength) {
+                logIfAvailable(Level.WARNING, "Invalid frame length - disconnecting {}", remoteAddress(client));
+                close(client);
+                return;
+            }
+            if(inbound.remaining() < GatewayFrame.LENGTH_PREFIX + length) {
+                break;
+            }
+            ((Buffer) inbound).position(inbound.position() + GatewayFrame.LENGTH_PREFIX);
+
+            if(!handleRequest(client, inbound, length)) {
+                logIfAvailable(Level.WARNING, "Invalid request - disconnecting {}", remoteAddress(client));
+                close(client);
+                return;
+            }
+        }
+        inbound.compact();
+    }
+
+    /**
+     * Method to handle a request frame
+     *
+     * @param inbound Buffer positioned at the frame type, advanced past the frame
+     * @param length The length of the frame
+     * @return false if the frame is invalid
+     */
+    private boolean handleRequest(Client client, ByteBuffer inbound, int length) {
+        if(inbound.get() != GatewayFrame.SEND) {
+            return false;
+        }
+        int requestId = inbound.getInt();
+        int receiverLength = inbound.get() & 0xFF;
+        int payloadLength = length - GatewayFrame.SEND_HEADER_LENGTH - receiverLength;
+
+        if(payloadLength < 0) {
+            return false;
+        }
+        byte[] receiver = new byte[receiverLength];
+        byte[] payload = new byte[payloadLength];
+        inbound.get(receiver).get(payload);
+
+        CompletableFuture<Boolean> future;
+
+        try {
+            future = node.sendPayload(payload, new String(receiver, StandardCharsets.US_ASCII));
+        } catch (RuntimeException e) {
+            future = CompletableFuture.completedFuture(false);
+        }
+        future.whenComplete((didSend, error) ->
+                post(new Outgoing(GatewayFrame.sendResult(requestId, error == null && didSend), client)));
+
+        return true;
+    }
+
+    private void close(Client client) {
+        if(clients.remove(client)) {
+            clientCount = clients.size();
+        }
+        closeQuietly(client.channel);
+    }
+
+    private void shutDown() {
+        for(Client client : new ArrayList<>(clients)) {
+            close(client);
+        }
+        pending.clear();
+        closeQuietly(server);
+        closeQuietly(selector);
+        isRunning = false;
+    }
+
+    private void closeQuietly(Closeable closeable) {
+        if(closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            logIfAvailable(Level.FINE, "Closing failed: {}", e.getMessage());
+        }
+    }
+
+    private static Object remoteAddress(Client client) {
+        try {
+            return client.channel.getRemoteAddress();
+        } catch (IOException e) {
+            return "unknown client";
+        }
+    }
+
+    private void logIfAvailable(Level lvl, String message) {
+        if(logger.isPresent() && logger.get().isLoggable(lvl)) {
+            logger.get().log(lvl, LOG_PREFIX + message);
+        }
+    }
+
+    private void logIfAvailable(Level lvl, String pattern, Object argument) {
+        if(logger.isPresent() && logger.get().isLoggable(lvl)) {
+            logger.get().log(lvl, LOG_PREFIX + GalaxyLogger.format(pattern, argument));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package de.dev_kiste.galaxy.gateway;
+
+import de.dev_kiste.galaxy.messaging.GalaxyMessage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encoding of the frames exchanged between a {@link GalaxyGateway} and its clients.
+ *
+ * Every frame starts with its length as unsigned 16 bit big endian value, followed by the frame type:
+ * - MESSAGE (server to client): source length (1 byte), source (ASCII), payload
+ * - SEND (client to server): request id (4 bytes), receiver length (1 byte), receiver (ASCII), payload
+ * - SEND_RESULT (server to client): request id (4 bytes), 1 if the payload was sent, otherwise 0
+ *
+ * @author Benny Lach
+ */
+class GatewayFrame {
+    final static byte MESSAGE = 0x01;
+    final static byte SEND = 0x02;
+    final static byte SEND_RESULT = 0x03;
+
+    final static int LENGTH_PREFIX = 2;
+    final static int MAX_ADDRESS_LENGTH = 255;
+    /**
+     * Length of a SEND frame without receiver and payload, excluding the length prefix
+     */
+    final static int SEND_HEADER_LENGTH = 6;
+
+    /**
+     * Method to encode a received message
+     *
+     * @param message The message
+     * @return the frame including the length prefix
+     */
+    static byte[] message(GalaxyMessage message) {
+        byte[] source = address(message.getSource());
+        byte[] payload = message.getPayload();
+        ByteBuffer frame = allocate(2 + source.length + payload.length);
+
+        frame.put(MESSAGE).put((byte) source.length).put(source).put(payload);
+
+        return frame.array();
+    }
+
+    /**
+     * Method to encode a send request
+     *
+     * @param requestId The id echoed by the result
+     * @param receiver The destination address
+     * @param payload The payload to send
+     * @return the frame including the length prefix
+     */
+    static byte[] send(int requestId, String receiver, byte[] payload) {
+        byte[] address = address(receiver);
+        ByteBuffer frame = allocate(SEND_HEADER_LENGTH + address.length + payload.length);
+
+        frame.put(SEND).putInt(requestId).put((byte) address.length).put(address).put(payload);
+
+        return frame.array();
+    }
+
+    /**
+     * Method to encode the result of a send request
+     *
+     * @param requestId The id of the request
+     * @param didSend true if the payload was sent
+     * @return the frame including the length prefix
+     */
+    static byte[] sendResult(int requestId, boolean didSend) {
+        ByteBuffer frame = allocate(6);
+
+        frame.put(SEND_RESULT).putInt(requestId).put((byte) (didSend ? 1 : 0));
+
+        return frame.array();
+    }
+
+    private static ByteBuffer allocate(int length) {
+        if(length > 0xFFFF) {
+            throw new IllegalArgumentException("Frame exceeds the maximum frame length: " + length);
+        }
+        return ByteBuffer.allocate(LENGTH_PREFIX + length).putShort((short) length);
+    }
+
+    private static byte[] address(String address) {
+        byte[] bytes = address == null ? new byte[0] : address.getBytes(StandardCharsets.US_ASCII);
+
+        if(bytes.length > MAX_ADDRESS_LENGTH) {
+            throw new IllegalArgumentException("Address exceeds " + MAX_ADDRESS_LENGTH + " bytes");
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,338 @@
+package de.dev_kiste.galaxy.journal;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only audit journal of received messages backed by memory-mapped segment files.
+ *
+ * Record body layout:
+ * <pre>
+ * 0-7   timestamp in milliseconds since epoch
+ * 8     source length
+ * 9-    source (UTF-8)
+ * ...   payload
+ * </pre>
+ *
+ * Timestamps never decrease within a journal, so records are ordered by time. Every
+ * {@link InboundJournal#INDEX_INTERVAL}th record and the first record of every segment are added to a sparse
+ * in-memory time index, which lets a replay skip directly to the first record of the requested time range.
+ * The index is rebuilt from the record headers when the journal is opened.
+ * Changes are flushed to the storage device by a background task every group commit interval.
+ *
+ * @author Benny Lach
+ */
+public class InboundJournal implements AutoCloseable {
+    private final static String SEGMENT_PREFIX = "inbound-";
+    private final static String SEGMENT_SUFFIX = ".seg";
+    private final static int HEADER_SIZE = Long.BYTES + 1;
+    private final static int INDEX_INTERVAL = 64;
+
+    /**
+     * Consumer of replayed records
+     */
+    @FunctionalInterface
+    public interface RecordConsumer {
+        /**
+         * Called for every replayed record in journal order
+         *
+         * @param timestamp The time the message was received in milliseconds since epoch
+         * @param source The source of the message
+         * @param payload The payload of the message
+         */
+        void accept(long timestamp, String source, byte[] payload);
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final TreeMap<Long, MappedSegment> segments = new TreeMap<>();
+    private final ScheduledExecutorService flusher;
+
+    private long[] indexTimestamps = new long[64];
+    private long[] indexSegments = new long[64];
+    private int[] indexPositions = new int[64];
+    private int indexSize = 0;
+
+    private MappedSegment active;
+    private long lastTimestamp = Long.MIN_VALUE;
+    private long recordCount = 0;
+    private boolean isClosed = false;
+
+    private InboundJournal(Path directory, int segmentSize, long groupCommitMillis) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+
+        load();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "InboundJournal");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, groupCommitMillis, groupCommitMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens the journal in the given directory. Records of previous runs are kept and can be replayed
+     *
+     * @param directory The directory holding the segment files. Will be created if needed
+     * @param segmentSize The size of a single segment file in bytes
+     * @param groupCommitMillis Interval in milliseconds appended records are flushed to the storage device
+     * @return the opened journal
+     * @throws IOException if the journal can not be opened
+     * @throws IllegalArgumentException if one of the values is invalid
+     */
+    public static InboundJournal open(Path directory, int segmentSize, long groupCommitMillis) throws IOException, IllegalArgumentException {
+        if(directory == null || segmentSize < 1024 || groupCommitMillis <= 0) {
+            throw new IllegalArgumentException("Directory must not be null, segments must have at least 1024 bytes and the commit interval must be positive");
+        }
+        Files.createDirectories(directory);
+
+        return new InboundJournal(directory, segmentSize, groupCommitMillis);
+    }
+
+    /**
+     * Appends a message received right now
+     *
+     * @param payload The payload of the message
+     * @param source The source of the message
+     * @return the timestamp of the stored record
+     * @throws IOException if a new segment can not be created
+     * @throws IllegalArgumentException if the record does not fit into a segment
+     * @throws IllegalStateException if the journal was closed
+     */
+    public long append(byte[] payload, String source) throws IOException, IllegalArgumentException, IllegalStateException {
+        return append(payload, source, System.currentTimeMillis());
+    }
+
+    /**
+     * Appends a message received at the given time.
+     * If the timestamp is older than the last stored record, the timestamp of the last record is used instead
+     *
+     * @param payload The payload of the message
+     * @param source The source of the message
+     * @param timestamp The time the message was received in milliseconds since epoch
+     * @return the timestamp of the stored record
+     * @throws IOException if a new segment can not be created
+     * @throws IllegalArgumentException if the record does not fit into a segment
+     * @throws IllegalStateException if the journal was closed
+     */
+    public synchronized long append(byte[] payload, String source, long timestamp) throws IOException, IllegalArgumentException, IllegalStateException {
+        if(isClosed) {
+            throw new IllegalStateException("Journal was closed");
+        }
+        byte[] sourceBytes = source.getBytes(StandardCharsets.UTF_8);
+        int length = HEADER_SIZE + sourceBytes.length + payload.length;
+
+        if(sourceBytes.length > 0xFF || 2 * MappedSegment.LENGTH_SIZE + length > segmentSize) {
+            throw new IllegalArgumentException("Record does not fit into a journal segment");
+        }
+        if(!active.canAppend(length)) {
+            rollSegment();
+        }
+        long stored = Math.max(timestamp, lastTimestamp);
+        MappedByteBuffer buffer = active.buffer();
+        int position = active.reserve(length);
+
+        buffer.putLong(position, stored);
+        buffer.put(position + Long.BYTES, (byte) sourceBytes.length);
+        for(int i = 0; i < sourceBytes.length; i++) {
+            buffer.put(position + HEADER_SIZE + i, sourceBytes[i]);
+        }
+        int payloadPosition = position + HEADER_SIZE + sourceBytes.length;
+        for(int i = 0; i < payload.length; i++) {
+            buffer.put(payloadPosition + i, payload[i]);
+        }
+        active.commit(position, length);
+        indexRecord(stored, active, position - MappedSegment.LENGTH_SIZE);
+
+        return stored;
+    }
+
+    /**
+     * Replays all records received within the given time range on the calling thread
+     *
+     * @param fromMillis Start of the range in milliseconds since epoch (inclusive)
+     * @param toMillis End of the range in milliseconds since epoch (exclusive)
+     * @param consumer Consumer called for every record in the range
+     * @return number of replayed records
+     */
+    public long replay(long fromMillis, long toMillis, RecordConsumer consumer) {
+        List<MappedSegment> snapshot = new ArrayList<>();
+        int[] limits;
+        int startPosition;
+
+        synchronized (this) {
+            int start = floorIndexEntry(fromMillis);
+
+            if(start < 0 || isClosed) {
+                return 0;
+            }
+            startPosition = indexPositions[start];
+            snapshot.addAll(segments.tailMap(indexSegments[start], true).values());
+            limits = new int[snapshot.size()];
+
+            for(int i = 0; i < limits.length; i++) {
+                limits[i] = snapshot.get(i).getWritePosition();
+            }
+        }
+        long count = 0;
+
+        for(int i = 0; i < snapshot.size(); i++) {
+            MappedByteBuffer buffer = snapshot.get(i).buffer();
+            int position = i == 0 ? startPosition : 0;
+
+            while(position < limits[i]) {
+                int length = buffer.getInt(position);
+                int body = position + MappedSegment.LENGTH_SIZE;
+                long timestamp = buffer.getLong(body);
+
+                if(timestamp >= toMillis) {
+                    return count;
+                }
+                if(timestamp >= fromMillis) {
+                    int sourceLength = buffer.get(body + Long.BYTES) & 0xFF;
+                    byte[] source = new byte[sourceLength];
+                    byte[] payload = new byte[length - HEADER_SIZE - sourceLength];
+
+                    for(int j = 0; j < sourceLength; j++) {
+                        source[j] = buffer.get(body + HEADER_SIZE + j);
+                    }
+                    int payloadPosition = body + HEADER_SIZE + sourceLength;
+                    for(int j = 0; j < payload.length; j++) {
+                        payload[j] = buffer.get(payloadPosition + j);
+                    }
+                    consumer.accept(timestamp, new String(source, StandardCharsets.UTF_8), payload);
+                    count++;
+                }
+                position = body + length;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Method to get the number of stored records
+     *
+     * @return number of records
+     */
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Flushes all changes and closes the segment files
+     */
+    @Override
+    public void close() {
+        flusher.shutdown();
+
+        synchronized (this) {
+            if(isClosed) {
+                return;
+            }
+            flush();
+            isClosed = true;
+
+            for(MappedSegment segment : segments.values()) {
+                try {
+                    segment.close();
+                } catch (IOException e) {
+                    // nothing left to do for this segment
+                }
+            }
+        }
+    }
+
+    private synchronized void flush() {
+        if(isClosed) {
+            return;
+        }
+        active.force();
+    }
+
+    private void rollSegment() throws IOException {
+        long index = active.getIndex() + 1;
+
+        active.force();
+        active = MappedSegment.open(MappedSegment.path(directory, SEGMENT_PREFIX, index, SEGMENT_SUFFIX), index, segmentSize);
+        segments.put(index, active);
+    }
+
+    /**
+     * Adds the record at the given position to the sparse index if needed
+     */
+    private void indexRecord(long timestamp, MappedSegment segment, int position) {
+        if(recordCount++ % INDEX_INTERVAL == 0 || position == 0) {
+            if(indexSize == indexTimestamps.length) {
+                indexTimestamps = Arrays.copyOf(indexTimestamps, indexSize * 2);
+                indexSegments = Arrays.copyOf(indexSegments, indexSize * 2);
+                indexPositions = Arrays.copyOf(indexPositions, indexSize * 2);
+            }
+            indexTimestamps[indexSize] = timestamp;
+            indexSegments[indexSize] = segment.getIndex();
+            indexPositions[indexSize] = position;
+            indexSize++;
+        }
+        lastTimestamp = timestamp;
+    }
+
+    /**
+     * Method to find the last index entry whose record is not newer than the given time
+     *
+     * @return position in the index or -1 if the index is empty
+     */
+    private int floorIndexEntry(long timestamp) {
+        int low = 0;
+        int high = indexSize - 1;
+        int found = indexSize > 0 ? 0 : -1;
+
+        while(low <= high) {
+            int middle = (low + high) >>> 1;
+
+            // records with equal timestamps may precede an index entry, so only entries strictly older qualify
+            if(indexTimestamps[middle] < timestamp) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Opens all existing segments and rebuilds the time index from the record headers
+     */
+    private void load() throws IOException {
+        TreeMap<Long, Path> existing = MappedSegment.list(directory, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+
+        for(Long index : existing.keySet()) {
+            MappedSegment segment = MappedSegment.open(existing.get(index), index, segmentSize);
+            MappedByteBuffer buffer = segment.buffer();
+            int position = 0;
+
+            segments.put(index, segment);
+            while(position < segment.getWritePosition()) {
+                indexRecord(buffer.getLong(position + MappedSegment.LENGTH_SIZE), segment, position);
+                position += MappedSegment.LENGTH_SIZE + segment.recordLength(position);
+            }
+        }
+        if(segments.isEmpty()) {
+            active = MappedSegment.open(MappedSegment.path(directory, SEGMENT_PREFIX, 0, SEGMENT_SUFFIX), 0, segmentSize);
+            segments.put(0L, active);
+        } else {
+            active = segments.lastEntry().getValue();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package de.dev_kiste.galaxy.journal;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.TreeMap;
+
+/**
+ * Fixed size journal file mapped into memory.
+ *
+ * Records are appended as <code>[int length][body]</code>. The length is written after the body, so a record
+ * is only visible once it was written completely. A length of 0 marks the end of the written data.
+ *
+ * @author Benny Lach
+ */
+class MappedSegment {
+    final static int LENGTH_SIZE = Integer.BYTES;
+
+    private final Path path;
+    private final long index;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private int writePosition;
+    private boolean isDirty = false;
+
+    private MappedSegment(Path path, long index, FileChannel channel, MappedByteBuffer buffer) {
+        this.path = path;
+        this.index = index;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.writePosition = findEnd();
+    }
+
+    /**
+     * Opens or creates the segment file at the given path
+     *
+     * @param path The segment file
+     * @param index The position of the segment in the journal
+     * @param capacity The size of the segment in bytes
+     * @return the opened segment
+     * @throws IOException if the file can not be opened or mapped
+     */
+    static MappedSegment open(Path path, long index, int capacity) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        int size = (int) Math.max(capacity, channel.size());
+
+        return new MappedSegment(path, index, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+    }
+
+    /**
+     * Lists all segment files in the given directory
+     *
+     * @param directory The journal directory
+     * @param prefix The file name prefix of the journal
+     * @param suffix The file name suffix of the journal
+     * @return segment files by index
+     * @throws IOException if the directory can not be read
+     */
+    static TreeMap<Long, Path> list(Path directory, String prefix, String suffix) throws IOException {
+        TreeMap<Long, Path> segments = new TreeMap<>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for(Path path : stream) {
+                String name = path.getFileName().toString();
+
+                try {
+                    segments.put(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())), path);
+                } catch (NumberFormatException e) {
+                    // not a segment of this journal
+                }
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Method to get the path of the segment file with the given index
+     */
+    static Path path(Path directory, String prefix, long index, String suffix) {
+        return directory.resolve(String.format("%s%020d%s", prefix, index, suffix));
+    }
+
+    long getIndex() {
+        return index;
+    }
+
+    int getWritePosition() {
+        return writePosition;
+    }
+
+    /**
+     * Method to check if a record with the given body length still fits into the segment
+     */
+    boolean canAppend(int bodyLength) {
+        // keep space for the terminating length
+        return writePosition + LENGTH_SIZE + bodyLength + LENGTH_SIZE <= buffer.capacity();
+    }
+
+    /**
+     * Reserves space for a record with the given body length
+     *
+     * @return the position of the body. The caller writes the body and calls {@link MappedSegment#commit(int, int)}
+     */
+    int reserve(int bodyLength) {
+        int position = writePosition + LENGTH_SIZE;
+
+        writePosition = position + bodyLength;
+        isDirty = true;
+
+        return position;
+    }
+
+    /**
+     * Publishes the record whose body starts at the given position
+     */
+    void commit(int bodyPosition, int bodyLength) {
+        buffer.putInt(bodyPosition - LENGTH_SIZE, bodyLength);
+    }
+
+    /**
+     * Method to get the body length of the record at the given position
+     *
+     * @return the body length or 0 if there is no record
+     */
+    int recordLength(int position) {
+        if(position + LENGTH_SIZE > buffer.capacity()) {
+            return 0;
+        }
+        return buffer.getInt(position);
+    }
+
+    MappedByteBuffer buffer() {
+        return buffer;
+    }
+
+    void markDirty() {
+        isDirty = true;
+    }
+
+    /**
+     * Writes all changes to the storage device if there are any
+     */
+    void force() {
+        if(isDirty) {
+            isDirty = false;
+            buffer.force();
+        }
+    }
+
+    void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    void delete() throws IOException {
+        channel.close();
+        Files.deleteIfExists(path);
+    }
+
+    private int findEnd() {
+        int position = 0;
+        int length;
+
+        while((length = recordLength(position)) > 0 && position + LENGTH_SIZE + length <= buffer.capacity()) {
+            position += LENGTH_SIZE + length;
+        }
+        return position;
+    }
+}
@@ -0,0 +1,369 @@
+package de.dev_kiste.galaxy.journal;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable, append-only journal of outbound payloads backed by memory-mapped segment files.
+ *
+ * Record body layout:
+ * <pre>
+ * 0     state - pending or acknowledged
+ * 1     tag - defined by the application, e.g. the priority of the payload
+ * 2     receiver length
+ * 3-    receiver (UTF-8)
+ * ...   payload
+ * </pre>
+ *
+ * Appends only write into the mapped segment. Changes are flushed to the storage device by a background task
+ * every group commit interval, so many appends share a single fsync. Acknowledged records are marked in place.
+ * A segment is deleted as soon as all of its records are acknowledged, and opening a journal copies the pending
+ * records of all existing segments into a fresh segment.
+ *
+ * @author Benny Lach
+ */
+public class OutboundJournal implements AutoCloseable {
+    private final static String SEGMENT_PREFIX = "outbound-";
+    private final static String SEGMENT_SUFFIX = ".seg";
+    private final static byte STATE_PENDING = 1;
+    private final static byte STATE_ACKNOWLEDGED = 2;
+    private final static int HEADER_LENGTH = 3;
+
+    /**
+     * Payload stored in the journal
+     */
+    public static class Entry {
+        private final byte[] payload;
+        private final String receiver;
+        private final int tag;
+        private final SegmentState segment;
+        private final int position;
+        private final CompletableFuture<Void> durable = new CompletableFuture<>();
+
+        private Entry(byte[] payload, String receiver, int tag, SegmentState segment, int position) {
+            this.payload = payload;
+            this.receiver = receiver;
+            this.tag = tag;
+            this.segment = segment;
+            this.position = position;
+        }
+
+        /**
+         * Method to get the payload
+         * @return payload
+         */
+        public byte[] getPayload() {
+            return payload;
+        }
+
+        /**
+         * Method to get the receiver
+         * @return the receiver
+         */
+        public String getReceiver() {
+            return receiver;
+        }
+
+        /**
+         * Method to get the tag stored with the payload
+         * @return the tag between 0 and 255
+         */
+        public int getTag() {
+            return tag;
+        }
+
+        /**
+         * Method to get a future completing once the entry was written to the storage device
+         * @return durability future
+         */
+        public CompletableFuture<Void> getDurableFuture() {
+            return durable;
+        }
+    }
+
+    private static class SegmentState {
+        private final MappedSegment segment;
+        private int pending = 0;
+
+        private SegmentState(MappedSegment segment) {
+            this.segment = segment;
+        }
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final TreeMap<Long, SegmentState> segments = new TreeMap<>();
+    private final List<Entry> recoveredEntries;
+    private final ScheduledExecutorService flusher;
+    private List<Entry> unflushedEntries = new ArrayList<>();
+    private SegmentState active;
+    private boolean isClosed = false;
+
+    private OutboundJournal(Path directory, int segmentSize, long groupCommitMillis) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.recoveredEntries = Collections.unmodifiableList(recover());
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "OutboundJournal");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, groupCommitMillis, groupCommitMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens the journal in the given directory. Pending entries of a previous run are available via
+     * {@link OutboundJournal#getRecoveredEntries()}
+     *
+     * @param directory The directory holding the segment files. Will be created if needed
+     * @param segmentSize The size of a single segment file in bytes
+     * @param groupCommitMillis Interval in milliseconds appended entries are flushed to the storage device
+     * @return the opened journal
+     * @throws IOException if the journal can not be opened
+     * @throws IllegalArgumentException if one of the values is invalid
+     */
+    public static OutboundJournal open(Path directory, int segmentSize, long groupCommitMillis) throws IOException, IllegalArgumentException {
+        if(directory == null || segmentSize < 1024 || groupCommitMillis <= 0) {
+            throw new IllegalArgumentException("Directory must not be null, segments must have at least 1024 bytes and the commit interval must be positive");
+        }
+        Files.createDirectories(directory);
+
+        return new OutboundJournal(directory, segmentSize, groupCommitMillis);
+    }
+
+    /**
+     * Method to get all pending entries found while opening the journal
+     *
+     * @return pending entries in append order
+     */
+    public List<Entry> getRecoveredEntries() {
+        return recoveredEntries;
+    }
+
+    /**
+     * Appends the given payload to the journal
+     *
+     * @param payload The payload
+     * @param receiver The receiver of the payload
+     * @return the stored entry
+     * @throws IOException if a new segment can not be created
+     * @throws IllegalArgumentException if the entry does not fit into a segment
+     * @throws IllegalStateException if the journal was closed
+     */
+    public Entry append(byte[] payload, String receiver) throws IOException, IllegalArgumentException, IllegalStateException {
+        return append(payload, receiver, 0);
+    }
+
+    /**
+     * Appends the given payload to the journal
+     *
+     * @param payload The payload
+     * @param receiver The receiver of the payload
+     * @param tag Value between 0 and 255 stored with the payload, see {@link Entry#getTag()}
+     * @return the stored entry
+     * @throws IOException if a new segment can not be created
+     * @throws IllegalArgumentException if the tag is out of range or the entry does not fit into a segment
+     * @throws IllegalStateException if the journal was closed
+     */
+    public synchronized Entry append(byte[] payload, String receiver, int tag) throws IOException, IllegalArgumentException, IllegalStateException {
+        if(isClosed) {
+            throw new IllegalStateException("Journal was closed");
+        }
+        if(tag < 0 || tag > 0xFF) {
+            throw new IllegalArgumentException("Tag must be between 0 and 255");
+        }
+        Entry entry = write(payload, receiver, tag);
+        unflushedEntries.add(entry);
+
+        return entry;
+    }
+
+    /**
+     * Marks the given entry as acknowledged. Segments without pending entries are deleted
+     *
+     * @param entry The acknowledged entry
+     */
+    public synchronized void acknowledge(Entry entry) {
+        if(isClosed || entry.segment.segment.buffer().get(entry.position) != STATE_PENDING) {
+            return;
+        }
+        entry.segment.segment.buffer().put(entry.position, STATE_ACKNOWLEDGED);
+        entry.segment.segment.markDirty();
+        entry.segment.pending--;
+
+        if(entry.segment.pending == 0 && entry.segment != active) {
+            deleteSegment(entry.segment);
+        }
+    }
+
+    /**
+     * Flushes all changes and closes the segment files
+     */
+    @Override
+    public void close() {
+        flusher.shutdown();
+
+        synchronized (this) {
+            if(isClosed) {
+                return;
+            }
+            flush();
+            isClosed = true;
+
+            for(SegmentState state : segments.values()) {
+                try {
+                    state.segment.close();
+                } catch (IOException e) {
+                    // nothing left to do for this segment
+                }
+            }
+        }
+    }
+
+    private synchronized void flush() {
+        if(isClosed) {
+            return;
+        }
+        for(SegmentState state : segments.values()) {
+            state.segment.force();
+        }
+        List<Entry> flushed = unflushedEntries;
+        unflushedEntries = new ArrayList<>();
+
+        flushed.forEach(entry -> entry.durable.complete(null));
+    }
+
+    private Entry write(byte[] payload, String receiver, int tag) throws IOException {
+        byte[] receiverBytes = receiver.getBytes(StandardCharsets.UTF_8);
+        int length = HEADER_LENGTH + receiverBytes.length + payload.length;
+
+        if(receiverBytes.length > 0xFF || !fitsEmptySegment(length)) {
+            throw new IllegalArgumentException("Entry does not fit into a journal segment");
+        }
+        if(!active.segment.canAppend(length)) {
+            rollSegment();
+        }
+        MappedSegment segment = active.segment;
+        MappedByteBuffer buffer = segment.buffer();
+        int position = segment.reserve(length);
+
+        buffer.put(position, STATE_PENDING);
+        buffer.put(position + 1, (byte) tag);
+        buffer.put(position + 2, (byte) receiverBytes.length);
+        for(int i = 0; i < receiverBytes.length; i++) {
+            buffer.put(position + HEADER_LENGTH + i, receiverBytes[i]);
+        }
+        int payloadPosition = position + HEADER_LENGTH + receiverBytes.length;
+        for(int i = 0; i < payload.length; i++) {
+            buffer.put(payloadPosition + i, payload[i]);
+        }
+        segment.commit(position, length);
+        active.pending++;
+
+        return new Entry(payload, receiver, tag, active, position);
+    }
+
+    private boolean fitsEmptySegment(int length) {
+        return 3 * MappedSegment.LENGTH_SIZE + length <= segmentSize;
+    }
+
+    private void rollSegment() throws IOException {
+        SegmentState previous = active;
+        long index = previous == null ? 0 : previous.segment.getIndex() + 1;
+
+        active = new SegmentState(MappedSegment.open(segmentPath(index), index, segmentSize));
+        segments.put(index, active);
+
+        if(previous != null) {
+            previous.segment.force();
+
+            if(previous.pending == 0) {
+                deleteSegment(previous);
+            }
+        }
+    }
+
+    private void deleteSegment(SegmentState state) {
+        segments.remove(state.segment.getIndex());
+
+        try {
+            state.segment.delete();
+        } catch (IOException e) {
+            // the segment will be compacted on the next open
+        }
+    }
+
+    /**
+     * Reads the pending entries of all existing segments, copies them into a new segment and deletes the old ones
+     */
+    private List<Entry> recover() throws IOException {
+        TreeMap<Long, Path> existing = MappedSegment.list(directory, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        List<byte[]> payloads = new ArrayList<>();
+        List<String> receivers = new ArrayList<>();
+        List<Integer> tags = new ArrayList<>();
+        List<MappedSegment> oldSegments = new ArrayList<>();
+
+        for(Long index : existing.keySet()) {
+            MappedSegment segment = MappedSegment.open(existing.get(index), index, segmentSize);
+            MappedByteBuffer buffer = segment.buffer();
+            int position = 0;
+            int length;
+
+            while((length = segment.recordLength(position)) > 0 && position < segment.getWritePosition()) {
+                int body = position + MappedSegment.LENGTH_SIZE;
+
+                if(buffer.get(body) == STATE_PENDING) {
+                    int receiverLength = buffer.get(body + 2) & 0xFF;
+                    byte[] receiver = new byte[receiverLength];
+                    byte[] payload = new byte[length - HEADER_LENGTH - receiverLength];
+
+                    for(int i = 0; i < receiverLength; i++) {
+                        receiver[i] = buffer.get(body + HEADER_LENGTH + i);
+                    }
+                    for(int i = 0; i < payload.length; i++) {
+                        payload[i] = buffer.get(body + HEADER_LENGTH + receiverLength + i);
+                    }
+                    tags.add(buffer.get(body + 1) & 0xFF);
+                    receivers.add(new String(receiver, StandardCharsets.UTF_8));
+                    payloads.add(payload);
+                }
+                position = body + length;
+            }
+            oldSegments.add(segment);
+        }
+        long nextIndex = existing.isEmpty() ? 0 : existing.lastKey() + 1;
+        active = new SegmentState(MappedSegment.open(segmentPath(nextIndex), nextIndex, segmentSize));
+        segments.put(nextIndex, active);
+
+        List<Entry> entries = new ArrayList<>(payloads.size());
+        for(int i = 0; i < payloads.size(); i++) {
+            Entry entry = write(payloads.get(i), receivers.get(i), tags.get(i));
+
+            entry.durable.complete(null);
+            entries.add(entry);
+        }
+        for(SegmentState state : segments.values()) {
+            state.segment.force();
+        }
+        for(MappedSegment segment : oldSegments) {
+            segment.delete();
+        }
+        return entries;
+    }
+
+    private Path segmentPath(long index) {
+        return MappedSegment.path(directory, SEGMENT_PREFIX, index, SEGMENT_SUFFIX);
+    }
+}
@@ -0,0 +1,193 @@
+package de.dev_kiste.galaxy.loadtest;
+
+import de.dev_kiste.galaxy.crypto.PayloadCipher;
+import de.dev_kiste.galaxy.driver.GalaxyDriver;
+import de.dev_kiste.galaxy.driver.HTWLoRaDriver;
+import de.dev_kiste.galaxy.node.GalaxyNode;
+import de.dev_kiste.galaxy.node.GalaxyNodeBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator for {@link GalaxyNode} objects reporting throughput, latency percentiles and failures
+ * as JSON.
+ *
+ * Messages are scheduled at a fixed rate and spread round robin across the sender nodes. The generator never waits
+ * for outstanding sends, and latencies are measured from the scheduled send time, which corrects for coordinated
+ * omission. Nodes either use real modules via {@link HTWLoRaDriver} or {@link LoopbackDriver} objects on a shared
+ * {@link LoopbackMedium}. With <code>--encryption on</code> all nodes share a {@link PayloadCipher}, so runs with
+ * the same seed send the same payloads encrypted and in plain and can be compared. Run without arguments for a short test against one fake receiver, use
+ * <code>--help</code> to print all options.
+ *
+ * @author Benny Lach
+ */
+public class GalaxyLoadTest {
+    private final LoadTestConfig config;
+    private final Random random;
+    private final Optional<PayloadCipher> cipher;
+    private final List<GalaxyNode> senders = new ArrayList<>();
+    private final List<GalaxyNode> receivers = new ArrayList<>();
+    private final List<String> receiverAddresses = new ArrayList<>();
+
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final Map<String, AtomicLong> failures = new ConcurrentHashMap<>();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong outstanding = new AtomicLong();
+
+    private GalaxyLoadTest(LoadTestConfig config) {
+        this.config = config;
+        this.random = new Random(config.seed);
+        this.cipher = config.encrypted ? Optional.of(createCipher(config.seed)) : Optional.empty();
+    }
+
+    /**
+     * Creates the cipher shared by all nodes. The key has its own generator, so payloads do not depend on it
+     */
+    private static PayloadCipher createCipher(long seed) {
+        byte[] key = new byte[16];
+        new Random(~seed).nextBytes(key);
+
+        return new PayloadCipher(key);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if(args.length == 1 && args[0].equals("--help")) {
+            System.out.println(LoadTestConfig.USAGE);
+            return;
+        }
+        LoadTestConfig config;
+
+        try {
+            config = LoadTestConfig.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage() + "\n" + LoadTestConfig.USAGE);
+            System.exit(2);
+            return;
+        }
+        String json = new GalaxyLoadTest(config).run().toJson();
+
+        if(config.output == null) {
+            System.out.print(json);
+        } else {
+            Files.write(Paths.get(config.output), json.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private LoadTestReport run() throws InterruptedException {
+        setupNodes();
+
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / config.rate);
+        long total = (long) (config.rate * config.durationSeconds);
+        long start = System.nanoTime();
+
+        for(long i = 0; i < total; i++) {
+            long intended = start + i * interval;
+            long delay = intended - System.nanoTime();
+
+            if(delay > 0) {
+                LockSupport.parkNanos(delay);
+            }
+            send(senders.get((int) (i % senders.size())), intended);
+        }
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(config.drainTimeoutSeconds);
+
+        while(outstanding.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(10);
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        long timedOut = outstanding.get();
+
+        if(timedOut > 0) {
+            failures.computeIfAbsent("timeout", key -> new AtomicLong()).addAndGet(timedOut);
+        }
+        Map<String, Long> failureCounts = new ConcurrentHashMap<>();
+        failures.forEach((reason, count) -> failureCounts.put(reason, count.get()));
+
+        senders.forEach(GalaxyNode::disconnect);
+        receivers.forEach(GalaxyNode::disconnect);
+
+        return new LoadTestReport(config, latencies, failureCounts, total, succeeded.get(), delivered.get(), elapsed);
+    }
+
+    private void send(GalaxyNode sender, long intended) {
+        int length = config.minPayload + random.nextInt(config.maxPayload - config.minPayload + 1);
+        byte[] payload = new byte[length];
+        random.nextBytes(payload);
+
+        boolean isBroadcast = receiverAddresses.isEmpty() || random.nextDouble() < config.broadcastShare;
+        CompletableFuture<Boolean> future;
+
+        outstanding.incrementAndGet();
+        try {
+            future = isBroadcast ? sender.sendBroadcastPayload(payload)
+                    : sender.sendPayload(payload, receiverAddresses.get(random.nextInt(receiverAddresses.size())));
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        future.whenComplete((didSend, error) -> {
+            outstanding.decrementAndGet();
+            latencies.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended));
+
+            if(error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                failures.computeIfAbsent(cause.getClass().getSimpleName(), key -> new AtomicLong()).incrementAndGet();
+            } else if(!didSend) {
+                failures.computeIfAbsent("rejected", key -> new AtomicLong()).incrementAndGet();
+            } else {
+                succeeded.incrementAndGet();
+            }
+        });
+    }
+
+    private void setupNodes() {
+        if(config.usesSerialPorts()) {
+            config.ports.forEach(port -> senders.add(buildNode(new HTWLoRaDriver(port))));
+        } else {
+            LoopbackMedium medium = new LoopbackMedium(config.bitsPerSecond, config.commandLatencyMicros, config.lossRate, config.seed);
+
+            for(int i = 0; i < config.senders; i++) {
+                senders.add(buildNode(new LoopbackDriver(medium, String.format("%04X", 0x1000 + i))));
+            }
+            for(int i = 0; i < config.fakeReceivers; i++) {
+                String address = String.format("%04X", 0x2000 + i);
+
+                receivers.add(buildNode(new LoopbackDriver(medium, address)));
+                receiverAddresses.add(address);
+            }
+        }
+        if(!config.receivers.isEmpty()) {
+            receiverAddresses.clear();
+            receiverAddresses.addAll(config.receivers);
+        }
+        GalaxyNode.bootstrapAll(senders).join();
+        GalaxyNode.bootstrapAll(receivers).join();
+    }
+
+    private GalaxyNode buildNode(GalaxyDriver driver) {
+        GalaxyNodeBuilder builder = new GalaxyNodeBuilder()
+                .setDriver(driver)
+                .setMessageHandler(message -> delivered.incrementAndGet())
+                .setPriorityScheduling(config.maxInFlight, TimeUnit.MINUTES.toMillis(1));
+        cipher.ifPresent(builder::setPayloadCipher);
+
+        for(int i = 0; i < config.middlewares; i++) {
+            builder.use((message, caller, stopper) -> caller.call(message));
+        }
+        return builder.build();
+    }
+}
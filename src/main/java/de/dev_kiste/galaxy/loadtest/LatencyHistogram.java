@@ -0,0 +1,81 @@
+package de.dev_kiste.galaxy.loadtest;
+
+/**
+ * Histogram of latencies in microseconds with a relative precision of about 3 percent.
+ *
+ * Values below 64 are counted exactly. Larger values are counted in 32 buckets per power of two,
+ * so the memory footprint is fixed no matter how many values are recorded.
+ *
+ * @author Benny Lach
+ */
+class LatencyHistogram {
+    private final static int SUB_BUCKETS = 32;
+    private final static int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+
+    private final long[] counts = new long[LINEAR_LIMIT + 57 * SUB_BUCKETS];
+    private long totalCount = 0;
+    private long maximum = 0;
+
+    /**
+     * Records the given latency
+     *
+     * @param micros The latency in microseconds
+     */
+    synchronized void record(long micros) {
+        long value = Math.max(0, micros);
+
+        counts[index(value)]++;
+        totalCount++;
+        maximum = Math.max(maximum, value);
+    }
+
+    synchronized long getTotalCount() {
+        return totalCount;
+    }
+
+    synchronized long getMaximum() {
+        return maximum;
+    }
+
+    /**
+     * Method to get the value at the given percentile
+     *
+     * @param percentile The percentile between 0 and 100
+     * @return the highest value of the bucket containing the percentile or 0 if nothing was recorded
+     */
+    synchronized long getValueAtPercentile(double percentile) {
+        if(totalCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long seen = 0;
+
+        for(int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+
+            if(seen >= rank) {
+                return Math.min(maximum, highestValue(i));
+            }
+        }
+        return maximum;
+    }
+
+    private static int index(long value) {
+        if(value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - 5;
+
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    private static long highestValue(int index) {
+        if(index < LINEAR_LIMIT) {
+            return index;
+        }
+        int shift = (index - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+        long subBucket = (index - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
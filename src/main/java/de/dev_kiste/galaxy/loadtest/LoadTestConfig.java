@@ -0,0 +1,141 @@
+package de.dev_kiste.galaxy.loadtest;
+
+import de.dev_kiste.galaxy.crypto.PayloadCipher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parameters of a load test parsed from the command line
+ *
+ * @author Benny Lach
+ */
+class LoadTestConfig {
+    final static String USAGE = String.join("\n",
+            "Usage: java -cp galaxy.jar de.dev_kiste.galaxy.loadtest.GalaxyLoadTest [options]",
+            "  --rate <n>               messages per second across all senders (default 10)",
+            "  --duration <s>           seconds to generate load (default 10)",
+            "  --payload <min>[-<max>]  payload size in bytes, uniformly distributed (default 16-64)",
+            "  --receivers <a,b,...>    receiver addresses, picked uniformly (default all fake receivers)",
+            "  --broadcast-share <p>    share of broadcasts between 0 and 1 (default 0)",
+            "  --middlewares <n>        pass-through middleware per node (default 0)",
+            "  --max-in-flight <n>      payloads in flight per sender node (default 1)",
+            "  --encryption <on|off>    encrypt all traffic with a shared key (default off)",
+            "  --port <descriptor>      use a real module, repeat for several sender nodes",
+            "  --senders <n>            fake sender nodes if no port is given (default 1)",
+            "  --fake-receivers <n>     fake receiver nodes (default 1)",
+            "  --bitrate <bps>          fake radio data rate (default 5470)",
+            "  --command-latency <us>   fake module latency per payload (default 2000)",
+            "  --loss <p>               fake radio loss rate between 0 and 1 (default 0)",
+            "  --drain-timeout <s>      seconds to wait for outstanding sends (default 30)",
+            "  --seed <n>               random seed (default 1)",
+            "  --output <file>          write the JSON report to a file instead of stdout");
+
+    double rate = 10;
+    long durationSeconds = 10;
+    int minPayload = 16;
+    int maxPayload = 64;
+    List<String> receivers = new ArrayList<>();
+    double broadcastShare = 0;
+    int middlewares = 0;
+    int maxInFlight = 1;
+    boolean encrypted = false;
+    List<String> ports = new ArrayList<>();
+    int senders = 1;
+    int fakeReceivers = 1;
+    long bitsPerSecond = 5470;
+    long commandLatencyMicros = 2000;
+    double lossRate = 0;
+    long drainTimeoutSeconds = 30;
+    long seed = 1;
+    String output;
+
+    /**
+     * Parses the given command line arguments
+     *
+     * @param args The arguments
+     * @return the parsed configuration
+     * @throws IllegalArgumentException if an argument is unknown or invalid
+     */
+    static LoadTestConfig parse(String[] args) throws IllegalArgumentException {
+        LoadTestConfig config = new LoadTestConfig();
+
+        for(int i = 0; i < args.length; i++) {
+            String option = args[i];
+
+            if(i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+
+            try {
+                switch (option) {
+                    case "--rate": config.rate = Double.parseDouble(value); break;
+                    case "--duration": config.durationSeconds = Long.parseLong(value); break;
+                    case "--payload": config.parsePayload(value); break;
+                    case "--receivers": config.receivers.addAll(Arrays.asList(value.split(","))); break;
+                    case "--broadcast-share": config.broadcastShare = Double.parseDouble(value); break;
+                    case "--middlewares": config.middlewares = Integer.parseInt(value); break;
+                    case "--max-in-flight": config.maxInFlight = Integer.parseInt(value); break;
+                    case "--encryption": config.encrypted = parseSwitch(option, value); break;
+                    case "--port": config.ports.add(value); break;
+                    case "--senders": config.senders = Integer.parseInt(value); break;
+                    case "--fake-receivers": config.fakeReceivers = Integer.parseInt(value); break;
+                    case "--bitrate": config.bitsPerSecond = Long.parseLong(value); break;
+                    case "--command-latency": config.commandLatencyMicros = Long.parseLong(value); break;
+                    case "--loss": config.lossRate = Double.parseDouble(value); break;
+                    case "--drain-timeout": config.drainTimeoutSeconds = Long.parseLong(value); break;
+                    case "--seed": config.seed = Long.parseLong(value); break;
+                    case "--output": config.output = value; break;
+                    default: throw new IllegalArgumentException("Unknown option " + option);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value for " + option + ": " + value);
+            }
+        }
+        config.validate();
+
+        return config;
+    }
+
+    /**
+     * Method to check if real modules are used
+     */
+    boolean usesSerialPorts() {
+        return !ports.isEmpty();
+    }
+
+    private static boolean parseSwitch(String option, String value) throws IllegalArgumentException {
+        switch (value) {
+            case "on": return true;
+            case "off": return false;
+            default: throw new IllegalArgumentException("Invalid value for " + option + ": " + value);
+        }
+    }
+
+    private void parsePayload(String value) {
+        String[] range = value.split("-");
+
+        minPayload = Integer.parseInt(range[0]);
+        maxPayload = range.length > 1 ? Integer.parseInt(range[1]) : minPayload;
+    }
+
+    private void validate() throws IllegalArgumentException {
+        if(rate <= 0 || durationSeconds <= 0 || minPayload < 0 || maxPayload < minPayload || maxPayload > 250) {
+            throw new IllegalArgumentException("Rate and duration must be positive and payload sizes between 0 and 250 bytes");
+        }
+        if(encrypted && maxPayload > 250 - PayloadCipher.OVERHEAD) {
+            throw new IllegalArgumentException("Payload sizes must not exceed " + (250 - PayloadCipher.OVERHEAD) + " bytes with encryption");
+        }
+        if(broadcastShare < 0 || broadcastShare > 1 || middlewares < 0 || maxInFlight <= 0 || senders <= 0 || fakeReceivers < 0) {
+            throw new IllegalArgumentException("Invalid share, middleware, in-flight or node count");
+        }
+        if(usesSerialPorts() && receivers.isEmpty() && broadcastShare < 1) {
+            throw new IllegalArgumentException("Receivers must be given when real modules are used");
+        }
+        if(!usesSerialPorts() && receivers.isEmpty() && fakeReceivers == 0 && broadcastShare < 1) {
+            throw new IllegalArgumentException("At least one receiver is required");
+        }
+    }
+}
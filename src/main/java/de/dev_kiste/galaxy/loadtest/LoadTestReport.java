@@ -0,0 +1,84 @@
+package de.dev_kiste.galaxy.loadtest;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Result of a load test rendered as JSON
+ *
+ * @author Benny Lach
+ */
+class LoadTestReport {
+    private final LoadTestConfig config;
+    private final LatencyHistogram latencies;
+    private final Map<String, Long> failures;
+    private final long attempted;
+    private final long succeeded;
+    private final long delivered;
+    private final double elapsedSeconds;
+
+    LoadTestReport(LoadTestConfig config, LatencyHistogram latencies, Map<String, Long> failures,
+                   long attempted, long succeeded, long delivered, double elapsedSeconds) {
+        this.config = config;
+        this.latencies = latencies;
+        this.failures = new TreeMap<>(failures);
+        this.attempted = attempted;
+        this.succeeded = succeeded;
+        this.delivered = delivered;
+        this.elapsedSeconds = elapsedSeconds;
+    }
+
+    /**
+     * Method to render the report
+     *
+     * Latencies are measured from the time a message was scheduled to be sent, not from the time it was actually
+     * handed to the node, so a stalled sender does not hide the delay of the messages queued behind it
+     *
+     * @return the report as JSON object
+     */
+    String toJson() {
+        StringBuilder json = new StringBuilder("{\n");
+
+        json.append("  \"mode\": \"").append(config.usesSerialPorts() ? "serial" : "fake").append("\",\n");
+        json.append("  \"targetRate\": ").append(config.rate).append(",\n");
+        json.append("  \"durationSeconds\": ").append(config.durationSeconds).append(",\n");
+        json.append("  \"payloadBytes\": {\"min\": ").append(config.minPayload)
+                .append(", \"max\": ").append(config.maxPayload).append("},\n");
+        json.append("  \"middlewares\": ").append(config.middlewares).append(",\n");
+        json.append("  \"encrypted\": ").append(config.encrypted).append(",\n");
+        json.append("  \"attempted\": ").append(attempted).append(",\n");
+        json.append("  \"succeeded\": ").append(succeeded).append(",\n");
+        if(!config.usesSerialPorts()) {
+            json.append("  \"delivered\": ").append(delivered).append(",\n");
+        }
+        json.append("  \"elapsedSeconds\": ").append(format(elapsedSeconds)).append(",\n");
+        json.append("  \"throughput\": ").append(format(elapsedSeconds > 0 ? succeeded / elapsedSeconds : 0)).append(",\n");
+        json.append("  \"latencyMillis\": {")
+                .append("\"p50\": ").append(millis(latencies.getValueAtPercentile(50))).append(", ")
+                .append("\"p95\": ").append(millis(latencies.getValueAtPercentile(95))).append(", ")
+                .append("\"p99\": ").append(millis(latencies.getValueAtPercentile(99))).append(", ")
+                .append("\"max\": ").append(millis(latencies.getMaximum())).append(", ")
+                .append("\"correctedForCoordinatedOmission\": true},\n");
+        json.append("  \"failures\": {");
+
+        String separator = "";
+        for(Map.Entry<String, Long> failure : failures.entrySet()) {
+            json.append(separator).append('"').append(escape(failure.getKey())).append("\": ").append(failure.getValue());
+            separator = ", ";
+        }
+        return json.append("}\n}\n").toString();
+    }
+
+    private static String millis(long micros) {
+        return format(micros / 1000.0);
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
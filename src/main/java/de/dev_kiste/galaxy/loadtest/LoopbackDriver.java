@@ -0,0 +1,173 @@
+package de.dev_kiste.galaxy.loadtest;
+
+import de.dev_kiste.galaxy.driver.GalaxyDriver;
+import de.dev_kiste.galaxy.messaging.GalaxyMessage;
+import de.dev_kiste.galaxy.messaging.MessageHandler;
+import de.dev_kiste.galaxy.messaging.MessageLogger;
+import de.dev_kiste.galaxy.util.GalaxyLogger;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link GalaxyDriver} simulating a radio module on a {@link LoopbackMedium}.
+ *
+ * Like a real module the driver transmits one payload at a time. A send completes once the simulated
+ * transmission finished, independent of whether the receiver got the payload.
+ *
+ * @author Benny Lach
+ */
+public class LoopbackDriver implements GalaxyDriver {
+    final static String BROADCAST = "FFFF";
+
+    private final LoopbackMedium medium;
+    private volatile String address;
+    private volatile MessageHandler messageHandler = new MessageLogger();
+    private volatile boolean isConnected = false;
+    private long busyUntil = 0;
+
+    /**
+     * Default initializer
+     *
+     * @param medium The simulated radio channel
+     * @param address The address of the simulated module
+     * @throws IllegalArgumentException if a value is null
+     */
+    public LoopbackDriver(LoopbackMedium medium, String address) throws IllegalArgumentException {
+        if(medium == null || address == null) {
+            throw new IllegalArgumentException("Medium and address must not be null");
+        }
+        this.medium = medium;
+        this.address = address;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> sendMessage(String msg, String receiver) throws IllegalArgumentException {
+        if(msg == null) {
+            throw new IllegalArgumentException("Message must not be null!");
+        }
+        return sendPayload(msg.getBytes(StandardCharsets.UTF_8), receiver);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> sendBroadcastMessage(String msg) throws IllegalArgumentException {
+        return sendMessage(msg, BROADCAST);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> sendPayload(byte[] payload, String receiver) throws IllegalArgumentException {
+        if(payload == null || receiver == null) {
+            throw new IllegalArgumentException("Payload and receiver must not be null!");
+        }
+        if(payload.length > getMaximumPayloadSize()) {
+            throw new IllegalArgumentException("Payload must not exceed the maximum supported payload size!");
+        }
+        if(!isConnected) {
+            return CompletableFuture.completedFuture(false);
+        }
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        final byte[] copy = payload.clone();
+        long now = System.nanoTime();
+        long finishedAt;
+
+        synchronized (this) {
+            finishedAt = Math.max(now, busyUntil) + medium.getTransmitNanos(payload.length);
+            busyUntil = finishedAt;
+        }
+        medium.schedule(() -> {
+            medium.deliver(this, receiver, copy);
+            future.complete(true);
+        }, finishedAt - now);
+
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> sendBroadcastPayload(byte[] payload) throws IllegalArgumentException {
+        return sendPayload(payload, BROADCAST);
+    }
+
+    @Override
+    public void setMessageHandler(MessageHandler handler) {
+        if(handler != null) {
+            messageHandler = handler;
+        }
+    }
+
+    @Override
+    public int getMaximumPayloadSize() {
+        return 250;
+    }
+
+    @Override
+    public long getTimeOnAirMicros(int payloadLength) {
+        return TimeUnit.NANOSECONDS.toMicros(medium.getTransmitNanos(payloadLength));
+    }
+
+    @Override
+    public CompletableFuture<String> getAddress() {
+        return CompletableFuture.completedFuture(address);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> setAddress(String address) {
+        if(address == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        medium.leave(this);
+        this.address = address;
+
+        if(isConnected) {
+            medium.join(this);
+        }
+        return CompletableFuture.completedFuture(true);
+    }
+
+    @Override
+    public int[] getSupportedChannels() {
+        return new int[]{0};
+    }
+
+    @Override
+    public CompletableFuture<Integer> getChannel() {
+        return CompletableFuture.completedFuture(0);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> setChannel(int channel) throws IllegalArgumentException {
+        return CompletableFuture.completedFuture(channel == 0);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> connect() {
+        isConnected = true;
+        medium.join(this);
+
+        return CompletableFuture.completedFuture(true);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> disconnect() {
+        isConnected = false;
+        medium.leave(this);
+
+        return CompletableFuture.completedFuture(true);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> reboot() {
+        return CompletableFuture.completedFuture(isConnected);
+    }
+
+    @Override
+    public void setLogger(GalaxyLogger logger) {}
+
+    String getAddressValue() {
+        return address;
+    }
+
+    void received(GalaxyMessage message) {
+        messageHandler.received(message);
+    }
+}
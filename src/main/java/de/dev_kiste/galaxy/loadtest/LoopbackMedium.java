@@ -0,0 +1,101 @@
+package de.dev_kiste.galaxy.loadtest;
+
+import de.dev_kiste.galaxy.messaging.GalaxyMessage;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process radio channel shared by {@link LoopbackDriver} objects.
+ *
+ * Transmissions take the time the payload needs at the configured bit rate plus a fixed command latency,
+ * and may get lost with the configured probability.
+ *
+ * @author Benny Lach
+ */
+public class LoopbackMedium {
+    private final long bitsPerSecond;
+    private final long commandLatencyNanos;
+    private final double lossRate;
+    private final Random random;
+    private final Map<String, LoopbackDriver> drivers = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "LoopbackMedium");
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
+    /**
+     * Default initializer
+     *
+     * @param bitsPerSecond The simulated data rate
+     * @param commandLatencyMicros The simulated time the module needs to accept a payload in microseconds
+     * @param lossRate Probability between 0 and 1 that a transmission is not received
+     * @param seed Seed of the random number generator deciding which transmissions get lost
+     * @throws IllegalArgumentException if one of the values is invalid
+     */
+    public LoopbackMedium(long bitsPerSecond, long commandLatencyMicros, double lossRate, long seed) throws IllegalArgumentException {
+        if(bitsPerSecond <= 0 || commandLatencyMicros < 0 || lossRate < 0 || lossRate > 1) {
+            throw new IllegalArgumentException("Bit rate must be positive, latency must not be negative and loss rate must be between 0 and 1");
+        }
+        this.bitsPerSecond = bitsPerSecond;
+        this.commandLatencyNanos = TimeUnit.MICROSECONDS.toNanos(commandLatencyMicros);
+        this.lossRate = lossRate;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Method to get the time the transmission of the given number of bytes takes
+     *
+     * @param length The payload length
+     * @return duration in nanoseconds
+     */
+    long getTransmitNanos(int length) {
+        return commandLatencyNanos + length * 8L * 1_000_000_000L / bitsPerSecond;
+    }
+
+    void join(LoopbackDriver driver) {
+        drivers.put(driver.getAddressValue(), driver);
+    }
+
+    void leave(LoopbackDriver driver) {
+        drivers.remove(driver.getAddressValue(), driver);
+    }
+
+    void schedule(Runnable task, long delayNanos) {
+        scheduler.schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Delivers a finished transmission to the receiver or - for broadcasts - to every other driver
+     */
+    void deliver(LoopbackDriver sender, String receiver, byte[] payload) {
+        if(LoopbackDriver.BROADCAST.equals(receiver)) {
+            drivers.values().stream()
+                    .filter(driver -> driver != sender)
+                    .forEach(driver -> deliverTo(driver, sender, payload));
+        } else {
+            LoopbackDriver driver = drivers.get(receiver);
+
+            if(driver != null) {
+                deliverTo(driver, sender, payload);
+            }
+        }
+    }
+
+    private void deliverTo(LoopbackDriver driver, LoopbackDriver sender, byte[] payload) {
+        boolean isLost;
+
+        synchronized (random) {
+            isLost = random.nextDouble() < lossRate;
+        }
+        if(!isLost) {
+            driver.received(new GalaxyMessage(payload, sender.getAddressValue()));
+        }
+    }
+}
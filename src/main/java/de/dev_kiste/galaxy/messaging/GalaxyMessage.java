@@ -1,5 +1,10 @@
 package de.dev_kiste.galaxy.messaging;
 
+import de.dev_kiste.galaxy.tracing.MessageTrace;
+
+import java.util.Arrays;
+import java.util.Optional;
+
 /**
  * Class representing an incoming message
  *
@@ -8,6 +13,8 @@ package de.dev_kiste.galaxy.messaging;
 public class GalaxyMessage {
     private byte[] payload;
     private String source;
+    private Optional<MessageTrace> trace;
+    private volatile boolean isRateLimited = false;
 
     /**
      * Default initializer
@@ -15,8 +22,33 @@ public class GalaxyMessage {
      * @param source message source
      */
     public GalaxyMessage(byte[] payload, String source) {
+        this(payload, source, null);
+    }
+
+    /**
+     * Initializer for a message which may be traced
+     * @param payload message payload
+     * @param source message source
+     * @param trace the trace of the message or null if the message is not traced
+     */
+    public GalaxyMessage(byte[] payload, String source, MessageTrace trace) {
         this.source = source;
         this.payload = payload.clone();
+        this.trace = Optional.ofNullable(trace);
+    }
+
+    /**
+     * Initializer for a message whose payload is a range of the given array
+     * @param payload array containing the message payload
+     * @param offset position of the first payload byte
+     * @param length length of the payload
+     * @param source message source
+     * @param trace the trace of the message or null if the message is not traced
+     */
+    public GalaxyMessage(byte[] payload, int offset, int length, String source, MessageTrace trace) {
+        this.source = source;
+        this.payload = Arrays.copyOfRange(payload, offset, offset + length);
+        this.trace = Optional.ofNullable(trace);
     }
 
     /**
@@ -34,4 +66,29 @@ public class GalaxyMessage {
     public String getSource() {
         return source;
     }
+
+    /**
+     * Method to get the trace of the message
+     * @return the trace if the message was sampled
+     */
+    public Optional<MessageTrace> getTrace() {
+        return trace;
+    }
+
+    /**
+     * Method to check if the source of the message exceeded its rate limit.
+     * Only set if the node tags such messages instead of dropping them
+     * @return true if the source exceeded its rate limit
+     */
+    public boolean isRateLimited() {
+        return isRateLimited;
+    }
+
+    /**
+     * Method to mark the message as received while its source exceeded its rate limit
+     * @param isRateLimited true if the source exceeded its rate limit
+     */
+    public void setRateLimited(boolean isRateLimited) {
+        this.isRateLimited = isRateLimited;
+    }
 }
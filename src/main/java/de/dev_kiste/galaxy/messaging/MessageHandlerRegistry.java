@@ -0,0 +1,323 @@
+package de.dev_kiste.galaxy.messaging;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Registry of {@link MessageHandler} objects selected by the source address or the payload prefix of a message.
+ *
+ * Every handler whose interest matches a message receives it. Matching uses indexes rebuilt on every registration,
+ * so dispatching does not scan all registered handlers:
+ * - exact sources are looked up in a hash map
+ * - address ranges are resolved once per 16 bit source address and cached
+ * - payload prefixes are matched by walking a byte trie along the payload
+ *
+ * Handlers registered with an executor are called on it, all others on the dispatching thread. An exception thrown
+ * by a handler is swallowed, so it does not keep the message from the remaining handlers.
+ * <pre>
+ * MessageHandlerRegistry registry = new MessageHandlerRegistry()
+ *         .onSource("0010", gatewayHandler)
+ *         .onSourceRange("1000", "1FFF", sensorHandler, sensorExecutor)
+ *         .onPrefix(new byte[] { 0x01, 0x02 }, firmwareHandler);
+ * </pre>
+ *
+ * @author Benny Lach
+ */
+public class MessageHandlerRegistry {
+    private final static Registration[] NONE = new Registration[0];
+    private final static int MAX_ADDRESS = 0xFFFF;
+
+    private static class Registration {
+        private final MessageHandler handler;
+        private final Executor executor;
+
+        private Registration(MessageHandler handler, Executor executor) {
+            this.handler = handler;
+            this.executor = executor;
+        }
+
+        private void dispatch(GalaxyMessage message) {
+            try {
+                if(executor == null) {
+                    received(message);
+                } else {
+                    executor.execute(() -> received(message));
+                }
+            } catch (RuntimeException e) {
+                // a rejecting executor must not stop the dispatch either
+            }
+        }
+
+        private void received(GalaxyMessage message) {
+            try {
+                handler.received(message);
+            } catch (RuntimeException e) {
+                // a failing handler must not stop the dispatch to the remaining handlers
+            }
+        }
+    }
+
+    private static class RangeRegistration {
+        private final int from;
+        private final int to;
+        private final Registration registration;
+
+        private RangeRegistration(int from, int to, Registration registration) {
+            this.from = from;
+            this.to = to;
+            this.registration = registration;
+        }
+    }
+
+    private static class TrieNode {
+        private byte[] keys = new byte[0];
+        private TrieNode[] children = new TrieNode[0];
+        private Registration[] registrations = NONE;
+
+        private TrieNode child(byte key) {
+            for(int i = 0; i < keys.length; i++) {
+                if(keys[i] == key) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        private TrieNode addChild(byte key) {
+            TrieNode child = child(key);
+
+            if(child == null) {
+                child = new TrieNode();
+                keys = Arrays.copyOf(keys, keys.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                keys[keys.length - 1] = key;
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+    }
+
+    /**
+     * Immutable snapshot of all indexes. Replaced on every registration
+     */
+    private static class Index {
+        private final Map<String, Registration[]> bySource;
+        private final RangeRegistration[] ranges;
+        private final TrieNode prefixes;
+        // keyed by the parsed address, so it holds at most one entry per 16 bit address
+        private final ConcurrentHashMap<Integer, Registration[]> rangeCache = new ConcurrentHashMap<>();
+
+        private Index(Map<String, Registration[]> bySource, RangeRegistration[] ranges, TrieNode prefixes) {
+            this.bySource = bySource;
+            this.ranges = ranges;
+            this.prefixes = prefixes;
+        }
+
+        private Registration[] matchingRanges(String source) {
+            int address = parseAddress(source);
+
+            if(ranges.length == 0 || address < 0) {
+                return NONE;
+            }
+            if(address > MAX_ADDRESS) {
+                return resolveRanges(address);
+            }
+            return rangeCache.computeIfAbsent(address, this::resolveRanges);
+        }
+
+        private Registration[] resolveRanges(int address) {
+            List<Registration> matches = new ArrayList<>();
+
+            // ranges are sorted by their start
+            for(int i = 0; i < ranges.length && ranges[i].from <= address; i++) {
+                if(address <= ranges[i].to) {
+                    matches.add(ranges[i].registration);
+                }
+            }
+            return matches.isEmpty() ? NONE : matches.toArray(NONE);
+        }
+    }
+
+    private final Map<String, List<Registration>> sources = new HashMap<>();
+    private final List<RangeRegistration> ranges = new ArrayList<>();
+    private final TrieNode prefixes = new TrieNode();
+    private volatile Index index = new Index(new HashMap<>(), new RangeRegistration[0], new TrieNode());
+
+    /**
+     * Method to register a handler for messages of the given source
+     *
+     * @param source The source address
+     * @param handler The handler
+     * @return Updated registry
+     * @throws IllegalArgumentException if a value is null
+     */
+    public MessageHandlerRegistry onSource(String source, MessageHandler handler) throws IllegalArgumentException {
+        return onSource(source, handler, null);
+    }
+
+    /**
+     * Method to register a handler for messages of the given source
+     *
+     * @param source The source address
+     * @param handler The handler
+     * @param executor The executor the handler is called on - null to call it on the dispatching thread
+     * @return Updated registry
+     * @throws IllegalArgumentException if source or handler is null
+     */
+    public synchronized MessageHandlerRegistry onSource(String source, MessageHandler handler, Executor executor) throws IllegalArgumentException {
+        if(source == null || handler == null) {
+            throw new IllegalArgumentException("Source and handler must not be null");
+        }
+        sources.computeIfAbsent(source, key -> new ArrayList<>()).add(new Registration(handler, executor));
+        rebuild();
+
+        return this;
+    }
+
+    /**
+     * Method to register a handler for messages of all sources between the given hexadecimal addresses
+     *
+     * @param from The first address of the range
+     * @param to The last address of the range
+     * @param handler The handler
+     * @return Updated registry
+     * @throws IllegalArgumentException if a value is null, an address is not hexadecimal or the range is empty
+     */
+    public MessageHandlerRegistry onSourceRange(String from, String to, MessageHandler handler) throws IllegalArgumentException {
+        return onSourceRange(from, to, handler, null);
+    }
+
+    /**
+     * Method to register a handler for messages of all sources between the given hexadecimal addresses
+     *
+     * @param from The first address of the range
+     * @param to The last address of the range
+     * @param handler The handler
+     * @param executor The executor the handler is called on - null to call it on the dispatching thread
+     * @return Updated registry
+     * @throws IllegalArgumentException if from, to or handler is null, an address is not hexadecimal or the range
+     * is empty
+     */
+    public synchronized MessageHandlerRegistry onSourceRange(String from, String to, MessageHandler handler, Executor executor) throws IllegalArgumentException {
+        if(from == null || to == null || handler == null) {
+            throw new IllegalArgumentException("Range and handler must not be null");
+        }
+        int first = parseAddress(from);
+        int last = parseAddress(to);
+
+        if(first < 0 || last < first) {
+            throw new IllegalArgumentException("Invalid address range " + from + " - " + to);
+        }
+        ranges.add(new RangeRegistration(first, last, new Registration(handler, executor)));
+        ranges.sort((a, b) -> Integer.compare(a.from, b.from));
+        rebuild();
+
+        return this;
+    }
+
+    /**
+     * Method to register a handler for messages whose payload starts with the given bytes
+     *
+     * @param prefix The prefix - an empty prefix matches every message
+     * @param handler The handler
+     * @return Updated registry
+     * @throws IllegalArgumentException if a value is null
+     */
+    public MessageHandlerRegistry onPrefix(byte[] prefix, MessageHandler handler) throws IllegalArgumentException {
+        return onPrefix(prefix, handler, null);
+    }
+
+    /**
+     * Method to register a handler for messages whose payload starts with the given bytes
+     *
+     * @param prefix The prefix - an empty prefix matches every message
+     * @param handler The handler
+     * @param executor The executor the handler is called on - null to call it on the dispatching thread
+     * @return Updated registry
+     * @throws IllegalArgumentException if prefix or handler is null
+     */
+    public synchronized MessageHandlerRegistry onPrefix(byte[] prefix, MessageHandler handler, Executor executor) throws IllegalArgumentException {
+        if(prefix == null || handler == null) {
+            throw new IllegalArgumentException("Prefix and handler must not be null");
+        }
+        TrieNode node = prefixes;
+
+        for(byte key : prefix) {
+            node = node.addChild(key);
+        }
+        node.registrations = Arrays.copyOf(node.registrations, node.registrations.length + 1);
+        node.registrations[node.registrations.length - 1] = new Registration(handler, executor);
+        rebuild();
+
+        return this;
+    }
+
+    /**
+     * Method to pass the given message to every matching handler
+     *
+     * @param message The message
+     * @return number of matching handlers
+     */
+    public int dispatch(GalaxyMessage message) {
+        Index current = index;
+        String source = message.getSource() == null ? "" : message.getSource();
+        int matches = 0;
+
+        Registration[] exact = current.bySource.get(source);
+        if(exact != null) {
+            matches += dispatch(exact, message);
+        }
+        matches += dispatch(current.matchingRanges(source), message);
+
+        byte[] payload = message.getPayload();
+        TrieNode node = current.prefixes;
+
+        for(int i = 0; node != null; i++) {
+            matches += dispatch(node.registrations, message);
+            node = i < payload.length ? node.child(payload[i]) : null;
+        }
+        return matches;
+    }
+
+    private static int dispatch(Registration[] registrations, GalaxyMessage message) {
+        for(Registration registration : registrations) {
+            registration.dispatch(message);
+        }
+        return registrations.length;
+    }
+
+    /**
+     * Publishes a new snapshot of the indexes. Must be called while holding the lock
+     */
+    private void rebuild() {
+        Map<String, Registration[]> bySource = new HashMap<>();
+        sources.forEach((source, registrations) -> bySource.put(source, registrations.toArray(NONE)));
+
+        index = new Index(bySource, ranges.toArray(new RangeRegistration[0]), copy(prefixes));
+    }
+
+    private static TrieNode copy(TrieNode node) {
+        TrieNode copy = new TrieNode();
+        copy.keys = node.keys.clone();
+        copy.registrations = node.registrations.clone();
+        copy.children = new TrieNode[node.children.length];
+
+        for(int i = 0; i < node.children.length; i++) {
+            copy.children[i] = copy(node.children[i]);
+        }
+        return copy;
+    }
+
+    private static int parseAddress(String address) {
+        try {
+            return address.isEmpty() ? -1 : Integer.parseInt(address, 16);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
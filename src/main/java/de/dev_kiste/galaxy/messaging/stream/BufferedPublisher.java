@@ -0,0 +1,295 @@
+package de.dev_kiste.galaxy.messaging.stream;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link Publisher} buffering items per subscriber until they were requested.
+ *
+ * Every subscriber has its own bounded buffer and demand, so a slow subscriber never delays a fast one.
+ * If a buffer is full, the configured {@link OverflowStrategy} is applied to that subscriber only.
+ * Items are delivered on the given executor, at most one task per subscriber at a time.
+ *
+ * A producer able to hold items back checks {@link #hasCapacity()} before publishing and registers a capacity
+ * listener to continue once a subscriber requested more items, so the demand of the subscribers reaches it.
+ *
+ * @author Benny Lach
+ */
+public class BufferedPublisher<T> implements Publisher<T> {
+    private final int bufferSize;
+    private final OverflowStrategy strategy;
+    private final Executor executor;
+    private final CopyOnWriteArrayList<BufferedSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicLong droppedItems = new AtomicLong();
+    private volatile Runnable capacityListener;
+    private volatile boolean isClosed = false;
+
+    private class BufferedSubscription implements Subscription {
+        private final Subscriber<? super T> subscriber;
+        private final ArrayDeque<T> buffer = new ArrayDeque<>();
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger pendingDrains = new AtomicInteger();
+        private Throwable failure;
+        private boolean isCompleted = false;
+        private volatile boolean isCancelled = false;
+
+        private BufferedSubscription(Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if(n <= 0) {
+                fail(new IllegalArgumentException("Requested demand must be positive"));
+                return;
+            }
+            demand.accumulateAndGet(n, (current, added) -> {
+                long sum = current + added;
+                // demand of Long.MAX_VALUE is treated as unbounded
+                return sum < 0 ? Long.MAX_VALUE : sum;
+            });
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            isCancelled = true;
+            subscriptions.remove(this);
+
+            synchronized (this) {
+                buffer.clear();
+            }
+            notifyCapacity();
+        }
+
+        private void offer(T item) {
+            boolean shouldFail = false;
+
+            synchronized (this) {
+                if(buffer.size() < bufferSize) {
+                    buffer.add(item);
+                } else {
+                    droppedItems.incrementAndGet();
+
+                    switch (strategy) {
+                        case DROP_OLDEST:
+                            buffer.poll();
+                            buffer.add(item);
+                            break;
+                        case DROP_NEWEST:
+                            break;
+                        case FAIL:
+                            shouldFail = true;
+                    }
+                }
+            }
+            if(shouldFail) {
+                fail(new IllegalStateException("Subscriber did not keep up - buffer of " + bufferSize + " items overflowed"));
+            } else {
+                drain();
+            }
+        }
+
+        private void fail(Throwable throwable) {
+            synchronized (this) {
+                failure = throwable;
+                buffer.clear();
+            }
+            subscriptions.remove(this);
+            drain();
+            notifyCapacity();
+        }
+
+        private synchronized boolean isFull() {
+            return buffer.size() >= bufferSize;
+        }
+
+        private void complete() {
+            synchronized (this) {
+                isCompleted = true;
+            }
+            drain();
+        }
+
+        private void drain() {
+            if(pendingDrains.getAndIncrement() == 0) {
+                executor.execute(this::deliver);
+            }
+        }
+
+        /**
+         * Delivers buffered items while there is demand. Runs on the executor only
+         */
+        private void deliver() {
+            int missed = 1;
+
+            do {
+                while(!isCancelled) {
+                    T item = null;
+                    Throwable error;
+                    boolean shouldComplete;
+                    boolean wasFull = false;
+
+                    synchronized (this) {
+                        error = failure;
+                        shouldComplete = isCompleted && buffer.isEmpty();
+
+                        if(error == null && demand.get() > 0) {
+                            wasFull = buffer.size() >= bufferSize;
+                            item = buffer.poll();
+                        }
+                    }
+                    if(error != null || shouldComplete) {
+                        isCancelled = true;
+
+                        if(error != null) {
+                            subscriber.onError(error);
+                        } else {
+                            subscriber.onComplete();
+                        }
+                        break;
+                    }
+                    if(item == null) {
+                        break;
+                    }
+                    if(demand.get() != Long.MAX_VALUE) {
+                        demand.decrementAndGet();
+                    }
+                    subscriber.onNext(item);
+
+                    if(wasFull) {
+                        notifyCapacity();
+                    }
+                }
+                missed = pendingDrains.addAndGet(-missed);
+            } while(missed != 0);
+        }
+    }
+
+    /**
+     * Initializer using a daemon thread pool to deliver items
+     *
+     * @param bufferSize Maximum number of items buffered per subscriber
+     * @param strategy The strategy applied if a buffer is full
+     * @throws IllegalArgumentException if the buffer size is not positive or the strategy is null
+     */
+    public BufferedPublisher(int bufferSize, OverflowStrategy strategy) throws IllegalArgumentException {
+        this(bufferSize, strategy, Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "BufferedPublisher");
+            thread.setDaemon(true);
+
+            return thread;
+        }));
+    }
+
+    /**
+     * Default initializer
+     *
+     * @param bufferSize Maximum number of items buffered per subscriber
+     * @param strategy The strategy applied if a buffer is full
+     * @param executor Executor used to deliver items
+     * @throws IllegalArgumentException if the buffer size is not positive or one of the values is null
+     */
+    public BufferedPublisher(int bufferSize, OverflowStrategy strategy, Executor executor) throws IllegalArgumentException {
+        if(bufferSize <= 0 || strategy == null || executor == null) {
+            throw new IllegalArgumentException("Buffer size must be positive, strategy and executor must not be null");
+        }
+        this.bufferSize = bufferSize;
+        this.strategy = strategy;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+        if(subscriber == null) {
+            throw new NullPointerException("Subscriber must not be null");
+        }
+        BufferedSubscription subscription = new BufferedSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+
+        if(isClosed) {
+            subscription.complete();
+        } else if(!subscription.isCancelled) {
+            subscriptions.add(subscription);
+        }
+    }
+
+    /**
+     * Publishes the given item to all current subscribers
+     *
+     * @param item The item to publish
+     */
+    public void publish(T item) {
+        if(isClosed) {
+            return;
+        }
+        for(BufferedSubscription subscription : subscriptions) {
+            subscription.offer(item);
+        }
+    }
+
+    /**
+     * Completes all subscriptions once their buffered items were delivered. Later items are ignored
+     */
+    public void close() {
+        isClosed = true;
+
+        for(BufferedSubscription subscription : subscriptions) {
+            subscriptions.remove(subscription);
+            subscription.complete();
+        }
+    }
+
+    /**
+     * Method to check if every subscriber can buffer another item
+     *
+     * @return true if publishing an item does not overflow a buffer
+     */
+    public boolean hasCapacity() {
+        for(BufferedSubscription subscription : subscriptions) {
+            if(subscription.isFull()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sets the listener called whenever a full buffer got room again or a subscriber left
+     *
+     * @param listener The listener - null to remove it
+     */
+    public void setCapacityListener(Runnable listener) {
+        capacityListener = listener;
+    }
+
+    private void notifyCapacity() {
+        Runnable listener = capacityListener;
+
+        if(listener != null) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Method to check if there is at least one subscriber
+     *
+     * @return true if items are delivered to anyone
+     */
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    /**
+     * Method to get the number of items dropped or refused because of full buffers
+     *
+     * @return number of dropped items across all subscribers
+     */
+    public long getDroppedItems() {
+        return droppedItems.get();
+    }
+}
@@ -0,0 +1,21 @@
+package de.dev_kiste.galaxy.messaging.stream;
+
+/**
+ * Behaviour of a subscription whose buffer is full because its subscriber does not keep up
+ *
+ * @author Benny Lach
+ */
+public enum OverflowStrategy {
+    /**
+     * The oldest buffered item is dropped to make room for the new one
+     */
+    DROP_OLDEST,
+    /**
+     * The new item is dropped
+     */
+    DROP_NEWEST,
+    /**
+     * The subscription is terminated with an error
+     */
+    FAIL
+}
@@ -0,0 +1,19 @@
+package de.dev_kiste.galaxy.messaging.stream;
+
+/**
+ * Producer of items consumed by {@link Subscriber} objects according to their demand.
+ *
+ * Mirrors <code>java.util.concurrent.Flow.Publisher</code> of the Reactive Streams specification,
+ * which is not available on Java 8
+ *
+ * @author Benny Lach
+ */
+@FunctionalInterface
+public interface Publisher<T> {
+    /**
+     * Adds the given subscriber. {@link Subscriber#onSubscribe(Subscription)} is called before any other signal
+     *
+     * @param subscriber The subscriber to add
+     */
+    void subscribe(Subscriber<? super T> subscriber);
+}
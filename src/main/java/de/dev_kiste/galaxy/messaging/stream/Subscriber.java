@@ -0,0 +1,38 @@
+package de.dev_kiste.galaxy.messaging.stream;
+
+/**
+ * Receiver of items published by a {@link Publisher}.
+ *
+ * Mirrors <code>java.util.concurrent.Flow.Subscriber</code> of the Reactive Streams specification.
+ * Signals are never called concurrently for the same subscription
+ *
+ * @author Benny Lach
+ */
+public interface Subscriber<T> {
+    /**
+     * Called once before any other signal. No item is delivered until demand was signaled using
+     * {@link Subscription#request(long)}
+     *
+     * @param subscription The subscription of this subscriber
+     */
+    void onSubscribe(Subscription subscription);
+
+    /**
+     * Called for every item as long as there is outstanding demand
+     *
+     * @param item The next item
+     */
+    void onNext(T item);
+
+    /**
+     * Called if the subscription failed. No other signal follows
+     *
+     * @param throwable The reason
+     */
+    void onError(Throwable throwable);
+
+    /**
+     * Called if the publisher will not publish any further items. No other signal follows
+     */
+    void onComplete();
+}
@@ -0,0 +1,22 @@
+package de.dev_kiste.galaxy.messaging.stream;
+
+/**
+ * Link between a {@link Publisher} and a {@link Subscriber} used to signal demand.
+ *
+ * Mirrors <code>java.util.concurrent.Flow.Subscription</code> of the Reactive Streams specification
+ *
+ * @author Benny Lach
+ */
+public interface Subscription {
+    /**
+     * Adds the given number of items to the outstanding demand
+     *
+     * @param n The number of additional items. Must be positive
+     */
+    void request(long n);
+
+    /**
+     * Stops the delivery of items. Buffered items are dropped
+     */
+    void cancel();
+}
@@ -0,0 +1,70 @@
+package de.dev_kiste.galaxy.node;
+
+import java.util.Arrays;
+
+/**
+ * Assignment of receivers to the channel they are listening on
+ *
+ * @author Benny Lach
+ */
+public interface ChannelAssignment {
+    /**
+     * Channel value indicating that the receiver can be reached on any channel
+     */
+    int ANY_CHANNEL = -1;
+
+    /**
+     * Method to get the channel the given receiver is listening on
+     *
+     * @param receiver The receiver address
+     * @return the assigned channel or {@link ChannelAssignment#ANY_CHANNEL}
+     */
+    int getChannel(String receiver);
+
+    /**
+     * Method to get the channels a broadcast is sent on, one copy per channel
+     *
+     * @return the channels - defaults to {@link ChannelAssignment#ANY_CHANNEL} sending a single copy on the current channel
+     */
+    default int[] getBroadcastChannels() {
+        return new int[] { ANY_CHANNEL };
+    }
+
+    /**
+     * Creates an assignment spreading receivers evenly across the given channels.
+     *
+     * 4-hex-digit addresses are assigned by their numeric value, other addresses by their hash.
+     * Broadcasts are sent on every channel, so they reach all receivers
+     *
+     * @param channels The channels to use
+     * @return the created assignment
+     * @throws IllegalArgumentException if channels is null or empty
+     */
+    static ChannelAssignment spread(int[] channels) throws IllegalArgumentException {
+        if(channels == null || channels.length == 0) {
+            throw new IllegalArgumentException("Channels must not be null nor empty");
+        }
+        final int[] copy = channels.clone();
+
+        return new ChannelAssignment() {
+            @Override
+            public int getChannel(String receiver) {
+                if(GalaxyNode.BROADCAST_ADDRESS.equals(receiver)) {
+                    return ANY_CHANNEL;
+                }
+                int value;
+                try {
+                    value = Integer.parseInt(receiver, 16);
+                } catch (NumberFormatException e) {
+                    value = receiver.hashCode();
+                }
+                return copy[Math.floorMod(value, copy.length)];
+            }
+
+            @Override
+            public int[] getBroadcastChannels() {
+                return Arrays.stream(copy).distinct().toArray();
+            }
+        };
+    }
+}
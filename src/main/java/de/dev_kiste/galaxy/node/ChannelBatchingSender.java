@@ -0,0 +1,217 @@
+package de.dev_kiste.galaxy.node;
+
+import de.dev_kiste.galaxy.driver.GalaxyDriver;
+import de.dev_kiste.galaxy.driver.SendOutcome;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link PayloadSender} spreading outbound payloads across the channels assigned to their receivers.
+ *
+ * Payloads are queued per channel and sent in batches. The channel of the underlying driver is only changed
+ * if the current channel has no pending payloads left or the batch limit was reached, so the cost of
+ * reconfiguring the module is paid once per batch instead of once per payload.
+ * If all queues are drained the driver is switched back to the home channel the node is listening on.
+ * A broadcast is queued once for each of {@link ChannelAssignment#getBroadcastChannels()} and counts as sent
+ * once every copy was sent.
+ *
+ * @author Benny Lach
+ */
+class ChannelBatchingSender implements PayloadSender {
+    private final static int NO_CHANNEL = Integer.MIN_VALUE;
+
+    private static class PendingPayload {
+        private final byte[] payload;
+        private final String receiver;
+        private final CompletableFuture<SendOutcome> future = new CompletableFuture<>();
+
+        private PendingPayload(byte[] payload, String receiver) {
+            this.payload = payload;
+            this.receiver = receiver;
+        }
+    }
+
+    private final PayloadSender downstream;
+    private final GalaxyDriver driver;
+    private final ChannelAssignment assignment;
+    private final int maxBatchSize;
+
+    private final Map<Integer, ArrayDeque<PendingPayload>> queues = new TreeMap<>();
+    private final ArrayDeque<PendingPayload> anyChannelQueue = new ArrayDeque<>();
+
+    private int currentChannel = ChannelAssignment.ANY_CHANNEL;
+    private int homeChannel = ChannelAssignment.ANY_CHANNEL;
+    private int batchCount = 0;
+    private boolean isDraining = false;
+
+    ChannelBatchingSender(PayloadSender downstream, GalaxyDriver driver, ChannelAssignment assignment, int maxBatchSize) {
+        this.downstream = downstream;
+        this.driver = driver;
+        this.assignment = assignment;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Method to get the channel assignment used to spread payloads
+     *
+     * @return the used assignment
+     */
+    ChannelAssignment getAssignment() {
+        return assignment;
+    }
+
+    /**
+     * Sets the channel the node is listening on. The driver must already use the given channel
+     *
+     * @param channel The home channel
+     */
+    synchronized void setHomeChannel(int channel) {
+        homeChannel = channel;
+        currentChannel = channel;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> send(byte[] payload, String receiver) {
+        return sendWithOutcome(payload, receiver).thenApply(SendOutcome::isSent);
+    }
+
+    @Override
+    public CompletableFuture<SendOutcome> sendWithOutcome(byte[] payload, String receiver) {
+        int[] channels = GalaxyNode.BROADCAST_ADDRESS.equals(receiver)
+                ? assignment.getBroadcastChannels()
+                : new int[] { assignment.getChannel(receiver) };
+
+        if(channels.length == 0) {
+            channels = new int[] { ChannelAssignment.ANY_CHANNEL };
+        }
+        List<PendingPayload> copies = new ArrayList<>(channels.length);
+        boolean shouldDrain;
+
+        synchronized (this) {
+            for(int channel : channels) {
+                PendingPayload pending = new PendingPayload(payload, receiver);
+                copies.add(pending);
+
+                if(channel == ChannelAssignment.ANY_CHANNEL) {
+                    anyChannelQueue.add(pending);
+                } else {
+                    queues.computeIfAbsent(channel, key -> new ArrayDeque<>()).add(pending);
+                }
+            }
+            shouldDrain = !isDraining;
+            isDraining = true;
+        }
+        if(shouldDrain) {
+            drainNext();
+        }
+        if(copies.size() == 1) {
+            return copies.get(0).future;
+        }
+        return CompletableFuture.allOf(copies.stream().map(copy -> copy.future).toArray(CompletableFuture[]::new))
+                .thenApply(nothing -> copies.stream()
+                        .map(copy -> copy.future.join())
+                        .filter(outcome -> outcome != SendOutcome.SENT)
+                        .findFirst()
+                        .orElse(SendOutcome.SENT));
+    }
+
+    private void drainNext() {
+        PendingPayload next = null;
+        int switchTo = NO_CHANNEL;
+
+        synchronized (this) {
+            ArrayDeque<PendingPayload> current = queues.get(currentChannel);
+
+            if(current != null && !current.isEmpty() && batchCount < maxBatchSize) {
+                next = current.poll();
+                batchCount++;
+            } else if(!anyChannelQueue.isEmpty()) {
+                next = anyChannelQueue.poll();
+            } else {
+                switchTo = fullestChannel();
+
+                if(switchTo == currentChannel) {
+                    // nothing else is waiting - keep sending on the current channel
+                    batchCount = 1;
+                    next = current.poll();
+                    switchTo = NO_CHANNEL;
+                } else if(switchTo == NO_CHANNEL) {
+                    if(homeChannel != ChannelAssignment.ANY_CHANNEL && currentChannel != homeChannel) {
+                        switchTo = homeChannel;
+                    } else {
+                        isDraining = false;
+                        return;
+                    }
+                }
+            }
+        }
+        if(next != null) {
+            final PendingPayload pending = next;
+
+            sendDownstream(pending).whenCompleteAsync((outcome, error) -> {
+                pending.future.complete(error == null ? outcome : SendOutcome.FAILED);
+                drainNext();
+            });
+        } else {
+            switchChannel(switchTo);
+        }
+    }
+
+    private CompletableFuture<SendOutcome> sendDownstream(PendingPayload pending) {
+        try {
+            return downstream.sendWithOutcome(pending.payload, pending.receiver);
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(SendOutcome.FAILED);
+        }
+    }
+
+    private void switchChannel(final int channel) {
+        driver.setChannel(channel).whenCompleteAsync((didSwitch, error) -> {
+            boolean switched = error == null && didSwitch;
+            ArrayDeque<PendingPayload> failed = null;
+
+            synchronized (this) {
+                if(switched) {
+                    currentChannel = channel;
+                    batchCount = 0;
+                } else {
+                    // the receivers of this channel are not reachable - fail their payloads instead of retrying forever
+                    failed = queues.remove(channel);
+                }
+            }
+            if(failed != null) {
+                failed.forEach(pending -> pending.future.complete(SendOutcome.FAILED));
+            }
+            if(!switched && channel == homeChannel) {
+                synchronized (this) {
+                    currentChannel = ChannelAssignment.ANY_CHANNEL;
+                    homeChannel = ChannelAssignment.ANY_CHANNEL;
+                }
+            }
+            drainNext();
+        });
+    }
+
+    /**
+     * Method to get the channel with the most pending payloads
+     *
+     * @return the channel or NO_CHANNEL if no payload is pending
+     */
+    private int fullestChannel() {
+        int channel = NO_CHANNEL;
+        int maximum = 0;
+
+        for(Map.Entry<Integer, ArrayDeque<PendingPayload>> entry : queues.entrySet()) {
+            if(entry.getValue().size() > maximum) {
+                maximum = entry.getValue().size();
+                channel = entry.getKey();
+            }
+        }
+        return channel;
+    }
+}
@@ -0,0 +1,210 @@
+package de.dev_kiste.galaxy.node;
+
+import de.dev_kiste.galaxy.driver.SendOutcome;
+import de.dev_kiste.galaxy.journal.OutboundJournal;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PayloadSender} storing every outbound payload in an {@link OutboundJournal} before it is sent.
+ *
+ * Payloads are handed to the next stage in journal order, at most a window of them at a time. With a window of 1
+ * they are sent one after another. A larger window lets a stage below, e.g. the {@link PriorityScheduler}, reorder
+ * the backlog while every payload stays in the journal until it was sent. The priority of a payload is stored with
+ * it, so it still applies after a restart.
+ *
+ * A payload is acknowledged in the journal once it was sent or once the downstream reported an outcome a later
+ * attempt can not change, see {@link SendOutcome#isRetryable()}. On every other outcome, e.g. a busy channel or a
+ * disconnected module, the payload goes back to its place in the queue and sending pauses for the retry delay.
+ * Pending payloads of a previous run are sent once the node was bootstrapped.
+ *
+ * @author Benny Lach
+ */
+class DurableOutboundQueue implements PayloadSender {
+    private final static long RETRY_DELAY_MILLIS = 1000;
+    private final static SendPriority[] PRIORITIES = SendPriority.values();
+
+    private static class QueuedPayload {
+        private final OutboundJournal.Entry entry;
+        private final long sequence;
+        private final CompletableFuture<SendOutcome> future = new CompletableFuture<>();
+
+        private QueuedPayload(OutboundJournal.Entry entry, long sequence) {
+            this.entry = entry;
+            this.sequence = sequence;
+        }
+
+        private SendPriority priority() {
+            int tag = entry.getTag();
+
+            return tag < PRIORITIES.length ? PRIORITIES[tag] : SendPriority.NORMAL;
+        }
+    }
+
+    private final PayloadSender downstream;
+    private final OutboundJournal journal;
+    private final int window;
+    private final long retryDelayMillis;
+    // ordered by journal position, so payloads put back after a failure keep their place
+    private final PriorityQueue<QueuedPayload> queue = new PriorityQueue<>(Comparator.comparingLong(queued -> queued.sequence));
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "DurableOutboundQueue");
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
+    private ScheduledFuture<?> retry;
+    private long nextSequence = 0;
+    private int inFlight = 0;
+    private boolean isPaused = true;
+
+    DurableOutboundQueue(PayloadSender downstream, OutboundJournal journal, int window) {
+        this(downstream, journal, window, RETRY_DELAY_MILLIS);
+    }
+
+    /**
+     * Initializer
+     *
+     * @param downstream The next stage
+     * @param journal The journal storing the payloads
+     * @param window Maximum number of payloads handed to the next stage at a time
+     * @param retryDelayMillis Pause in milliseconds after a send failed with a retryable outcome
+     */
+    DurableOutboundQueue(PayloadSender downstream, OutboundJournal journal, int window, long retryDelayMillis) {
+        this.downstream = downstream;
+        this.journal = journal;
+        this.window = window;
+        this.retryDelayMillis = retryDelayMillis;
+
+        journal.getRecoveredEntries().forEach(entry -> queue.add(new QueuedPayload(entry, nextSequence++)));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> send(byte[] payload, String receiver) {
+        return send(payload, receiver, SendPriority.NORMAL);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> send(byte[] payload, String receiver, SendPriority priority) {
+        return sendWithOutcome(payload, receiver, priority).thenApply(SendOutcome::isSent);
+    }
+
+    @Override
+    public CompletableFuture<SendOutcome> sendWithOutcome(byte[] payload, String receiver) {
+        return sendWithOutcome(payload, receiver, SendPriority.NORMAL);
+    }
+
+    @Override
+    public CompletableFuture<SendOutcome> sendWithOutcome(byte[] payload, String receiver, SendPriority priority) {
+        QueuedPayload queued;
+
+        try {
+            // appending while holding the lock keeps the queue in journal order
+            synchronized (this) {
+                queued = new QueuedPayload(journal.append(payload, receiver, priority.ordinal()), nextSequence++);
+                queue.add(queued);
+            }
+        } catch (IOException | IllegalStateException e) {
+            CompletableFuture<SendOutcome> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+
+            return failed;
+        }
+        drain();
+
+        return queued.future;
+    }
+
+    /**
+     * Method to get the number of payloads waiting to be sent
+     *
+     * @return number of pending payloads
+     */
+    synchronized int getPendingCount() {
+        return queue.size() + inFlight;
+    }
+
+    /**
+     * Starts sending pending payloads right away
+     */
+    void resume() {
+        synchronized (this) {
+            isPaused = false;
+
+            if(retry != null) {
+                retry.cancel(false);
+                retry = null;
+            }
+        }
+        drain();
+    }
+
+    /**
+     * Stops sending until {@link DurableOutboundQueue#resume()} is called. Queued payloads are kept
+     */
+    synchronized void pause() {
+        isPaused = true;
+    }
+
+    private void drain() {
+        while(true) {
+            QueuedPayload next;
+
+            synchronized (this) {
+                if(inFlight >= window || isPaused || retry != null || queue.isEmpty()) {
+                    return;
+                }
+                inFlight++;
+                next = queue.poll();
+            }
+            CompletableFuture<SendOutcome> result;
+
+            try {
+                result = downstream.sendWithOutcome(next.entry.getPayload(), next.entry.getReceiver(), next.priority());
+            } catch (RuntimeException e) {
+                result = CompletableFuture.completedFuture(SendOutcome.FAILED);
+            }
+            result.whenCompleteAsync((outcome, error) -> finished(next, error == null ? outcome : SendOutcome.FAILED));
+        }
+    }
+
+    /**
+     * Handles the result of a send attempt
+     *
+     * @param queued The sent payload
+     * @param outcome The outcome of the attempt
+     */
+    private void finished(QueuedPayload queued, SendOutcome outcome) {
+        boolean isDone = !outcome.isRetryable();
+
+        synchronized (this) {
+            inFlight--;
+
+            if(!isDone) {
+                queue.add(queued);
+
+                if(retry == null) {
+                    retry = scheduler.schedule(() -> {
+                        synchronized (this) {
+                            retry = null;
+                        }
+                        drain();
+                    }, retryDelayMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+        if(isDone) {
+            journal.acknowledge(queued.entry);
+            queued.future.complete(outcome);
+        }
+        drain();
+    }
+}
@@ -0,0 +1,34 @@
+package de.dev_kiste.galaxy.node;
+
+import de.dev_kiste.galaxy.crypto.PayloadCipher;
+import de.dev_kiste.galaxy.driver.SendOutcome;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link PayloadSender} encrypting every outbound payload right before it is handed to the driver.
+ *
+ * It is the last stage of the outbound path, so payloads are stored and queued as plaintext and every
+ * transmission gets its own nonce.
+ *
+ * @author Benny Lach
+ */
+class EncryptingSender implements PayloadSender {
+    private final PayloadSender downstream;
+    private final PayloadCipher cipher;
+
+    EncryptingSender(PayloadSender downstream, PayloadCipher cipher) {
+        this.downstream = downstream;
+        this.cipher = cipher;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> send(byte[] payload, String receiver) {
+        return downstream.send(cipher.encrypt(payload), receiver);
+    }
+
+    @Override
+    public CompletableFuture<SendOutcome> sendWithOutcome(byte[] payload, String receiver) {
+        return downstream.sendWithOutcome(cipher.encrypt(payload), receiver);
+    }
+}
@@ -1,14 +1,37 @@
 package de.dev_kiste.galaxy.node;
 
+import de.dev_kiste.galaxy.codec.MessageSchema;
+import de.dev_kiste.galaxy.crypto.PayloadCipher;
+import de.dev_kiste.galaxy.util.BlockingTasks;
 import de.dev_kiste.galaxy.util.GalaxyLogger;
 import de.dev_kiste.galaxy.node.middleware.GalaxyMiddleware;
+import de.dev_kiste.galaxy.driver.BulkSendResult;
 import de.dev_kiste.galaxy.driver.GalaxyDriver;
+import de.dev_kiste.galaxy.driver.OutboundPayload;
+import de.dev_kiste.galaxy.driver.SendOutcome;
+import de.dev_kiste.galaxy.driver.SerialPortDiscovery;
+import de.dev_kiste.galaxy.journal.InboundJournal;
 import de.dev_kiste.galaxy.messaging.GalaxyMessage;
 import de.dev_kiste.galaxy.messaging.MessageHandler;
-
+import de.dev_kiste.galaxy.messaging.MessageHandlerRegistry;
+import de.dev_kiste.galaxy.messaging.stream.BufferedPublisher;
+import de.dev_kiste.galaxy.messaging.stream.Publisher;
+import de.dev_kiste.galaxy.tracing.GalaxyTracer;
+import de.dev_kiste.galaxy.tracing.MessageTrace;
+import de.dev_kiste.galaxy.tracing.TraceStage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 
 /**
@@ -17,11 +40,32 @@ import java.util.logging.Level;
  * @author Benny Lach
  */
 public class GalaxyNode {
+    /**
+     * Receiver address used for broadcasts
+     */
+    public final static String BROADCAST_ADDRESS = "FFFF";
+
     private Optional<GalaxyDriver> driver;
     private Optional<MessageHandler> messageHandler;
+    private final MessageHandlerRegistry handlerRegistry;
     private ArrayList<GalaxyMiddleware> middlewares;
 
     private final Optional<GalaxyLogger> logger;
+    private final Optional<GalaxyTracer> tracer;
+    private final Optional<InboundJournal> inboundJournal;
+    private final BufferedPublisher<GalaxyMessage> messagePublisher;
+    private final InboundDispatcher inboundDispatcher;
+    private final Optional<PayloadCipher> cipher;
+    private final Optional<SourceRateLimiter> rateLimiter;
+    private ScheduledExecutorService deferredMessages;
+
+    private Optional<ChannelBatchingSender> channelBatching = Optional.empty();
+    private Optional<DurableOutboundQueue> durableQueue = Optional.empty();
+    private Optional<PriorityScheduler> priorityScheduler = Optional.empty();
+    private Optional<SlottedSender> slottedSender = Optional.empty();
+    private Optional<SlotClock> slotClock = Optional.empty();
+    private final PayloadSender outbound;
+    private boolean hasOutboundStages = false;
 
     private String address;
     private boolean didBootstrap = false;
@@ -29,10 +73,26 @@ public class GalaxyNode {
     GalaxyNode(GalaxyNodeBuilder builder) {
         driver = builder.getDriver();
         messageHandler = builder.getMessageHandler();
-        middlewares = builder.getMiddlewares();
+        handlerRegistry = builder.getHandlerRegistry();
+        middlewares = new ArrayList<>(builder.getMiddlewares());
         logger = builder.getLogger();
-
-        logIfNeeded(Level.INFO,
+        tracer = builder.getTracer();
+        inboundJournal = builder.getInboundJournal();
+        messagePublisher = new BufferedPublisher<>(builder.getMessageBufferSize(), builder.getOverflowStrategy());
+        inboundDispatcher = new InboundDispatcher(builder.getMessageBufferSize(),
+                builder.getOverflowStrategy(),
+                messagePublisher,
+                this::dispatchIncomingMessage);
+        cipher = builder.getPayloadCipher();
+        // every node counts its own sources, even if several nodes are built by the same builder
+        rateLimiter = builder.getRateLimitPolicy()
+                .map(policy -> new SourceRateLimiter(builder.getRateLimitPerSecond(), builder.getRateLimitBurst(), policy));
+
+        outbound = buildOutboundPath(builder);
+        // beacons must correct the clock before any other middleware sees them
+        slotClock.ifPresent(clock -> middlewares.add(0, clock));
+
+        logIfNeeded(Level.INFO, () ->
                 "Node initialized\n" +
                         "Driver: " + driver + "\n" +
                         "Message Handler: " + messageHandler + "\n" +
@@ -48,11 +108,28 @@ public class GalaxyNode {
 
          return driver.map(driver -> {
             driver.setMessageHandler(message -> proceedIncomingMessage(message));
+            tracer.ifPresent(driver::setTracer);
 
             return driver.connect()
+                    .thenCompose(didConnect -> {
+                        if(!didConnect || !channelBatching.isPresent()) {
+                            return CompletableFuture.completedFuture(didConnect);
+                        }
+                        return joinHomeChannel(driver, channelBatching.get()).thenApply(didJoin -> didConnect);
+                    })
+                    .thenCompose(didConnect -> {
+                        if(!didConnect || !slottedSender.isPresent()) {
+                            return CompletableFuture.completedFuture(didConnect);
+                        }
+                        return assignSlot(driver, slottedSender.get());
+                    })
                     .thenCompose(didConnect -> {
                         didBootstrap  = didConnect;
-                        logIfNeeded(Level.INFO, "Galaxy Node bootstrapping finished - Did connect: " + didConnect);
+                        logIfNeeded(Level.INFO, "Galaxy Node bootstrapping finished - Did connect: {}", didConnect);
+
+                        if(didConnect) {
+                            durableQueue.ifPresent(DurableOutboundQueue::resume);
+                        }
 
                         return CompletableFuture.completedFuture(didConnect);
                     });
@@ -63,6 +140,57 @@ public class GalaxyNode {
         });
     }
 
+    /**
+     * Method to bootstrap several nodes concurrently, see {@link #bootstrap}
+     *
+     * Connecting a module blocks while the port is opened, so every node is bootstrapped on its own thread
+     *
+     * @param nodes The nodes to bootstrap
+     * @return Future containing the bootstrap result of every node in the given order
+     * @throws IllegalArgumentException if nodes is null
+     */
+    public static CompletableFuture<List<Boolean>> bootstrapAll(List<GalaxyNode> nodes) throws IllegalArgumentException {
+        if(nodes == null) {
+            throw new IllegalArgumentException("Nodes must not be null!");
+        }
+        List<Supplier<CompletableFuture<Boolean>>> tasks = new ArrayList<>();
+
+        for(GalaxyNode node : nodes) {
+            tasks.add(node::bootstrap);
+        }
+        return BlockingTasks.runAll(tasks, "GalaxyNode-Bootstrap", false);
+    }
+
+    /**
+     * Method to create and bootstrap a node for every module found by the given discovery
+     *
+     * @param discovery The discovery used to find the modules
+     * @param builders Supplier of a configured builder for each node. The driver is set by this method
+     * @return Future containing the nodes which bootstrapped successfully
+     * @throws IllegalArgumentException if discovery or builders is null
+     */
+    public static CompletableFuture<List<GalaxyNode>> bootstrapDiscovered(SerialPortDiscovery discovery,
+                                                                         Supplier<GalaxyNodeBuilder> builders) throws IllegalArgumentException {
+        if(discovery == null || builders == null) {
+            throw new IllegalArgumentException("Discovery and builders must not be null!");
+        }
+        return discovery.discoverDrivers().thenCompose(drivers -> {
+            List<GalaxyNode> nodes = new ArrayList<>();
+            drivers.forEach(driver -> nodes.add(builders.get().setDriver(driver).build()));
+
+            return bootstrapAll(nodes).thenApply(results -> {
+                List<GalaxyNode> bootstrapped = new ArrayList<>();
+
+                for(int i = 0; i < nodes.size(); i++) {
+                    if(results.get(i)) {
+                        bootstrapped.add(nodes.get(i));
+                    }
+                }
+                return bootstrapped;
+            });
+        });
+    }
+
     /**
      * Method to disconnect from the underlying hardware module
      *
@@ -73,8 +201,9 @@ public class GalaxyNode {
         return driver.map(GalaxyDriver::disconnect)
                 .map(future -> future.thenCompose(disconnected -> {
                     didBootstrap = false;
+                    durableQueue.ifPresent(DurableOutboundQueue::pause);
                     address = null;
-                    logIfNeeded(Level.INFO, "Disconnected from underlying hardware module: " + disconnected);
+                    logIfNeeded(Level.INFO, "Disconnected from underlying hardware module: {}", disconnected);
 
                     return CompletableFuture.completedFuture(disconnected);
                 }))
@@ -95,7 +224,7 @@ public class GalaxyNode {
     public CompletableFuture<Boolean> setAddress(String newAddress) {
         return driver.map(driver -> driver.setAddress(newAddress))
                 .map(future -> future.thenCompose(didSet -> {
-                    logIfNeeded(Level.INFO, "Did updated address: " + didSet);
+                    logIfNeeded(Level.INFO, "Did updated address: {}", didSet);
                     if(didSet) {
                         this.address = newAddress;
                     }
@@ -184,7 +313,7 @@ public class GalaxyNode {
     public CompletableFuture<Boolean> setChannel(final int channel) {
         return driver.map(driver -> driver.setChannel(channel))
                 .map(future -> future.thenCompose(didSetChannel -> {
-                    logIfNeeded(Level.INFO, "Requesting channel update returned - new channel set: " + didSetChannel);
+                    logIfNeeded(Level.INFO, "Requesting channel update returned - new channel set: {}", didSetChannel);
 
                     return CompletableFuture.completedFuture(didSetChannel);
                 }))
@@ -204,7 +333,7 @@ public class GalaxyNode {
         return driver.map(driver -> {
             logIfNeeded(Level.INFO, "Requested maximum allowed message size" );
 
-            return driver.getMaximumPayloadSize();
+            return maximumPayloadSize(driver);
         })
                 .orElseGet(() -> {
                     logIfNeeded(Level.WARNING, "GalaxyDriver instance is missing");
@@ -221,30 +350,40 @@ public class GalaxyNode {
      * @param msg The payload to send
      * @param receiver The destination address
      * @return Future indicating if the message was send
+     * @throws IllegalArgumentException if the message is null
      */
-    public CompletableFuture<Boolean> sendMessage(final String msg, final String receiver) {
-        if(!didBootstrap) {
-            logIfNeeded(Level.WARNING, "GalaxyNode has not been bootstrapped - sending messages not working");
-
-            return CompletableFuture.completedFuture(false);
+    public CompletableFuture<Boolean> sendMessage(final String msg, final String receiver) throws IllegalArgumentException {
+        if(msg == null) {
+            throw new IllegalArgumentException("Message must not be null!");
         }
-        return driver.map(driver -> driver.sendMessage(msg, receiver))
-                .map(future -> future.thenCompose(didSend -> {
-                    logIfNeeded(Level.INFO, "Request to send message returned - did send: " + didSend);
-
-                    return CompletableFuture.completedFuture(didSend);
-                }))
-                .orElseGet(() -> {
-                    logIfNeeded(Level.WARNING, "GalaxyDriver instance is missing");
+        return sendPayload(msg.getBytes(StandardCharsets.UTF_8), receiver);
+    }
 
-                    return CompletableFuture.completedFuture(false);
-                });
+    /**
+     * Method to send the given object encoded with the given schema to a specific host
+     *
+     * - The Node must be bootstrapped {@link GalaxyNode#bootstrap} before sending is working
+     * - The encoded object must not exceed the maximum allowed payload size
+     * - Receivers decode the object using a {@link de.dev_kiste.galaxy.codec.TypedMessageRouter}
+     *
+     * @param value The object to send
+     * @param schema The schema used to encode the object
+     * @param receiver The destination address
+     * @return Future indicating if the message was send
+     * @throws IllegalArgumentException if the object can not be encoded
+     */
+    public <T> CompletableFuture<Boolean> sendObject(final T value, final MessageSchema<T> schema, final String receiver) throws IllegalArgumentException {
+        if(schema == null) {
+            throw new IllegalArgumentException("Schema must not be null!");
+        }
+        return sendPayload(schema.encode(value), receiver);
     }
 
     /**
      * Method to send the given bytes to a specific host
      *
      * - The Node must be bootstrapped {@link GalaxyNode#bootstrap} before sending is working
+     * - If an outbound journal is used, payloads are queued until the node was bootstrapped
      * - The size of the payload must not exceed the maximum allowed payload size
      *
      * @param payload The payload to send
@@ -252,14 +391,31 @@ public class GalaxyNode {
      * @return Future indicating if the message was send
      */
     public CompletableFuture<Boolean> sendPayload(final byte[] payload, final String receiver) {
-        if(!didBootstrap) {
+        return sendPayload(payload, receiver, SendPriority.NORMAL);
+    }
+
+    /**
+     * Method to send the given bytes to a specific host with the given priority
+     *
+     * - The Node must be bootstrapped {@link GalaxyNode#bootstrap} before sending is working
+     * - If an outbound journal is used, payloads are queued until the node was bootstrapped
+     * - The size of the payload must not exceed the maximum allowed payload size
+     * - The priority is only considered if priority scheduling is enabled, see {@link GalaxyNodeBuilder#setPriorityScheduling}
+     *
+     * @param payload The payload to send
+     * @param receiver The destination address
+     * @param priority The priority of the payload
+     * @return Future indicating if the message was send
+     */
+    public CompletableFuture<Boolean> sendPayload(final byte[] payload, final String receiver, final SendPriority priority) {
+        if(!didBootstrap && !durableQueue.isPresent()) {
             logIfNeeded(Level.WARNING, "GalaxyNode has not been bootstrapped - sending messages not working");
 
             return CompletableFuture.completedFuture(false);
         }
-        return driver.map(driver -> driver.sendPayload(payload, receiver))
+        return driver.map(driver -> outbound.send(checkedPayload(payload, driver), receiver, checkedPriority(priority)))
                 .map(future -> future.thenCompose(didSend -> {
-                    logIfNeeded(Level.INFO, "Request to send message returned - did send: " + didSend);
+                    logIfNeeded(Level.INFO, "Request to send message returned - did send: {}", didSend);
 
                     return CompletableFuture.completedFuture(didSend);
                 }))
@@ -271,32 +427,60 @@ public class GalaxyNode {
     }
 
     /**
-     * Method to send a broadcast message
+     * Method to send several payloads at once
+     *
      * - The Node must be bootstrapped {@link GalaxyNode#bootstrap} before sending is working
-     * - The size of the message must not exceed the maximum allowed payload size
+     * - The size of every payload must not exceed the maximum allowed payload size
+     * - Without additional outbound stages the items are handed to the driver at once, see
+     *   {@link GalaxyDriver#sendPayloads}. Otherwise every item passes the outbound stages on its own
+     *   with {@link SendPriority#BULK}
      *
-     * @param msg The payload to send
-     * @return Future indicating if the message was send
+     * @param payloads The items to send
+     * @return Future containing the status of every item
+     * @throws IllegalArgumentException if the list is null or an item is invalid
      */
-    public CompletableFuture<Boolean> sendBroadcastMessage(final String msg) {
-        if(!didBootstrap) {
-            logIfNeeded(Level.WARNING, "GalaxyNode has not been bootstrapped  - sending messages not working");
+    public CompletableFuture<BulkSendResult> sendPayloads(final List<OutboundPayload> payloads) throws IllegalArgumentException {
+        if(payloads == null) {
+            throw new IllegalArgumentException("Payloads must not be null!");
+        }
+        if(!didBootstrap && !durableQueue.isPresent()) {
+            logIfNeeded(Level.WARNING, "GalaxyNode has not been bootstrapped - sending messages not working");
 
-            return CompletableFuture.completedFuture(false);
+            return CompletableFuture.completedFuture(BulkSendResult.failed(payloads.size()));
         }
-        return driver.map(driver -> driver.sendBroadcastMessage(msg))
-                .map(future -> future.thenCompose(didSend -> {
-                    logIfNeeded(Level.INFO, "Request to send broadcast returned - did send: " + didSend);
+        return driver.map(driver -> {
+            payloads.forEach(item -> checkedPayload(item.getPayload(), driver));
 
-                    return CompletableFuture.completedFuture(didSend);
+            return hasOutboundStages ? sendThroughOutboundPath(payloads) : driver.sendPayloads(payloads);
+        })
+                .map(future -> future.thenCompose(result -> {
+                    logIfNeeded(Level.INFO, "Request to send payloads returned: {}", result);
+
+                    return CompletableFuture.completedFuture(result);
                 }))
                 .orElseGet(() -> {
                     logIfNeeded(Level.WARNING, "GalaxyDriver instance is missing");
 
-                    return CompletableFuture.completedFuture(false);
+                    return CompletableFuture.completedFuture(BulkSendResult.failed(payloads.size()));
                 });
     }
 
+    /**
+     * Method to send a broadcast message
+     * - The Node must be bootstrapped {@link GalaxyNode#bootstrap} before sending is working
+     * - The size of the message must not exceed the maximum allowed payload size
+     *
+     * @param msg The payload to send
+     * @return Future indicating if the message was send
+     * @throws IllegalArgumentException if the message is null
+     */
+    public CompletableFuture<Boolean> sendBroadcastMessage(final String msg) throws IllegalArgumentException {
+        if(msg == null) {
+            throw new IllegalArgumentException("Message must not be null!");
+        }
+        return sendBroadcastPayload(msg.getBytes(StandardCharsets.UTF_8));
+    }
+
     /**
      * Method to send the given bytes as broadcast
      * - The Node must be bootstrapped {@link GalaxyNode#bootstrap} before sending is working
@@ -306,14 +490,28 @@ public class GalaxyNode {
      * @return Future indicating if the message was send
      */
     public CompletableFuture<Boolean> sendBroadcastPayload(final byte[] payload) {
-        if(!didBootstrap) {
+        return sendBroadcastPayload(payload, SendPriority.NORMAL);
+    }
+
+    /**
+     * Method to send the given bytes as broadcast with the given priority
+     * - The Node must be bootstrapped {@link GalaxyNode#bootstrap} before sending is working
+     * - The size of the payload must not exceed the maximum allowed payload size
+     * - The priority is only considered if priority scheduling is enabled, see {@link GalaxyNodeBuilder#setPriorityScheduling}
+     *
+     * @param payload The payload to send
+     * @param priority The priority of the payload
+     * @return Future indicating if the message was send
+     */
+    public CompletableFuture<Boolean> sendBroadcastPayload(final byte[] payload, final SendPriority priority) {
+        if(!didBootstrap && !durableQueue.isPresent()) {
             logIfNeeded(Level.WARNING, "GalaxyNode has not been bootstrapped  - sending messages not working");
 
             return CompletableFuture.completedFuture(false);
         }
-        return driver.map(driver -> driver.sendBroadcastPayload(payload))
+        return driver.map(driver -> outbound.send(checkedPayload(payload, driver), BROADCAST_ADDRESS, checkedPriority(priority)))
                 .map(future -> future.thenCompose(didSend -> {
-                    logIfNeeded(Level.INFO, "Request to send broadcast returned - did send: " + didSend);
+                    logIfNeeded(Level.INFO, "Request to send broadcast returned - did send: {}", didSend);
 
                     return CompletableFuture.completedFuture(didSend);
                 }))
@@ -324,17 +522,332 @@ public class GalaxyNode {
                 });
     }
 
-    private void proceedIncomingMessage(GalaxyMessage message) {
-        CompletableFuture.supplyAsync(() -> {
-            MiddlewarePipeline pipe = new MiddlewarePipeline(middlewares, message);
-            logIfNeeded(Level.INFO, "New message received - registered middleware will be executed");
+    /**
+     * Method to get the registry of handlers selected by source and payload prefix. Handlers can be registered
+     * at any time, matching handlers receive messages in addition to the message handler
+     *
+     * @return the used registry
+     */
+    public MessageHandlerRegistry getHandlerRegistry() {
+        return handlerRegistry;
+    }
+
+    /**
+     * Method to get a publisher of all received messages that passed the registered middleware.
+     *
+     * In contrast to the message handler every subscriber signals its demand and gets its own bounded buffer,
+     * see {@link GalaxyNodeBuilder#setMessageBuffer}. Messages are published in addition to the message handler
+     *
+     * @return publisher of received messages
+     */
+    public Publisher<GalaxyMessage> getMessagePublisher() {
+        return messagePublisher;
+    }
+
+    /**
+     * Method to get the queue depth and wait time metrics of every priority class
+     *
+     * @return metrics per priority class - empty if priority scheduling is not enabled
+     */
+    public Map<SendPriority, SendClassMetrics> getOutboundMetrics() {
+        return priorityScheduler.map(PriorityScheduler::getMetrics).orElse(Collections.emptyMap());
+    }
+
+    /**
+     * Method to get the sources which sent the most messages, see {@link GalaxyNodeBuilder#setSourceRateLimit}
+     *
+     * @param count Maximum number of sources
+     * @return traffic of the sources ordered by their total message count - empty if rate limiting is not enabled
+     */
+    public List<SourceTraffic> getTopTalkers(int count) {
+        return rateLimiter.map(limiter -> limiter.getTopTalkers(count)).orElse(Collections.emptyList());
+    }
+
+    /**
+     * Builds the chain of {@link PayloadSender} stages every outbound payload passes
+     *
+     * @param builder The builder holding the stage configuration
+     * @return the first stage of the outbound path
+     */
+    private PayloadSender buildOutboundPath(GalaxyNodeBuilder builder) {
+        PayloadSender sender = new PayloadSender() {
+            @Override
+            public CompletableFuture<Boolean> send(byte[] payload, String receiver) {
+                return sendToDriver(payload, receiver);
+            }
+
+            @Override
+            public CompletableFuture<SendOutcome> sendWithOutcome(byte[] payload, String receiver) {
+                return sendToDriverWithOutcome(payload, receiver);
+            }
+        };
+
+        if(!driver.isPresent()) {
+            return sender;
+        }
+        GalaxyDriver driver = this.driver.get();
+
+        if(cipher.isPresent()) {
+            sender = new EncryptingSender(sender, cipher.get());
+            hasOutboundStages = true;
+        }
+        if(builder.getSlotCount() > 0) {
+            int overhead = cipher.isPresent() ? PayloadCipher.OVERHEAD : 0;
+            long guardMicros = TimeUnit.MILLISECONDS.toMicros(builder.getSlotGuardMillis());
+            long maximumAirtime = driver.getTimeOnAirMicros(driver.getMaximumPayloadSize());
+
+            if(maximumAirtime <= 0) {
+                throw new IllegalStateException("Slotted transmission requires a driver reporting its time on air");
+            }
+            SlotSchedule schedule = new SlotSchedule(builder.getSlotCount(), maximumAirtime + 2 * guardMicros, guardMicros);
+
+            slotClock = Optional.of(new SlotClock(driver.getTimeOnAirMicros(SlotClock.BEACON_LENGTH + overhead)));
+            slottedSender = Optional.of(new SlottedSender(sender, schedule, slotClock.get(),
+                    length -> driver.getTimeOnAirMicros(length + overhead), builder.getBeaconIntervalFrames()));
+            sender = slottedSender.get();
+            hasOutboundStages = true;
+        }
+        if(builder.getRetryPolicy().isPresent()) {
+            sender = new RetryingSender(sender, builder.getRetryPolicy().get(), builder.getSendReportListener());
+            hasOutboundStages = true;
+        }
+        if(builder.getChannelAssignment().isPresent()) {
+            channelBatching = Optional.of(new ChannelBatchingSender(sender, driver,
+                    builder.getChannelAssignment().get(), builder.getChannelBatchSize()));
+            sender = channelBatching.get();
+            hasOutboundStages = true;
+        }
+        if(builder.getMaxInFlight() > 0) {
+            priorityScheduler = Optional.of(new PriorityScheduler(sender, builder.getMaxInFlight(), builder.getStarvationMillis()));
+            sender = priorityScheduler.get();
+            hasOutboundStages = true;
+        }
+        if(builder.getOutboundJournal().isPresent()) {
+            // the scheduler below needs the whole backlog to reorder it, the journal keeps it until it was sent
+            int window = priorityScheduler.isPresent() ? Integer.MAX_VALUE : 1;
+
+            durableQueue = Optional.of(new DurableOutboundQueue(sender, builder.getOutboundJournal().get(), window));
+            sender = durableQueue.get();
+            hasOutboundStages = true;
+        }
+        return sender;
+    }
+
+    /**
+     * Passes every item of a bulk send through the outbound path on its own
+     *
+     * @param payloads The items to send
+     * @return Future containing the status of every item
+     */
+    private CompletableFuture<BulkSendResult> sendThroughOutboundPath(List<OutboundPayload> payloads) {
+        boolean[] sent = new boolean[payloads.size()];
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[payloads.size()];
+
+        for(int i = 0; i < futures.length; i++) {
+            final int index = i;
+            OutboundPayload item = payloads.get(i);
+
+            futures[i] = outbound.send(item.getPayload(), item.getReceiver(), SendPriority.BULK)
+                    .handle((didSend, error) -> sent[index] = error == null && didSend);
+        }
+        return CompletableFuture.allOf(futures).thenApply(nothing -> new BulkSendResult(sent));
+    }
+
+    /**
+     * Validates the payload before it enters the outbound path, so queued payloads fail early
+     *
+     * @param payload The payload to send
+     * @param driver The used driver
+     * @return the validated payload
+     * @throws IllegalArgumentException if the payload is null or exceeds the max supported payload size
+     */
+    private byte[] checkedPayload(byte[] payload, GalaxyDriver driver) throws IllegalArgumentException {
+        if(payload == null) {
+            throw new IllegalArgumentException("Payload must not be null!");
+        }
+        if(payload.length > maximumPayloadSize(driver)) {
+            throw new IllegalArgumentException("Payload must not exceed the maximum supported payload size!");
+        }
+        return payload;
+    }
+
+    /**
+     * Validates the priority of a payload
+     *
+     * @param priority The priority
+     * @return the validated priority
+     * @throws IllegalArgumentException if the priority is null
+     */
+    private SendPriority checkedPriority(SendPriority priority) throws IllegalArgumentException {
+        if(priority == null) {
+            throw new IllegalArgumentException("Priority must not be null!");
+        }
+        return priority;
+    }
+
+    /**
+     * Method to get the maximum payload size of the given driver reduced by the overhead of the outbound stages
+     *
+     * @param driver The used driver
+     * @return max. payload size in bytes
+     */
+    private int maximumPayloadSize(GalaxyDriver driver) {
+        return driver.getMaximumPayloadSize() - (cipher.isPresent() ? PayloadCipher.OVERHEAD : 0);
+    }
+
+    /**
+     * Last stage of the outbound path handing the payload to the driver
+     *
+     * @param payload The payload to send
+     * @param receiver The destination address
+     * @return Future indicating if the payload was sent
+     */
+    private CompletableFuture<Boolean> sendToDriver(byte[] payload, String receiver) {
+        GalaxyDriver driver = this.driver.get();
+
+        if(BROADCAST_ADDRESS.equals(receiver)) {
+            return driver.sendBroadcastPayload(payload);
+        }
+        return driver.sendPayload(payload, receiver);
+    }
+
+    /**
+     * Hands the given payload to the driver and reports why it was not sent
+     *
+     * @param payload The payload to send
+     * @param receiver The destination address
+     * @return Future containing the outcome of the send
+     */
+    private CompletableFuture<SendOutcome> sendToDriverWithOutcome(byte[] payload, String receiver) {
+        GalaxyDriver driver = this.driver.get();
+
+        if(BROADCAST_ADDRESS.equals(receiver)) {
+            return driver.sendBroadcastPayloadWithOutcome(payload);
+        }
+        return driver.sendPayloadWithOutcome(payload, receiver);
+    }
+
+    /**
+     * Switches the driver to the channel assigned to the address of this node
+     *
+     * @param driver The used driver
+     * @param batching The used channel batching stage
+     * @return Future indicating if the home channel was joined
+     */
+    private CompletableFuture<Boolean> joinHomeChannel(GalaxyDriver driver, ChannelBatchingSender batching) {
+        return driver.getAddress().thenCompose(address -> {
+            int home = batching.getAssignment().getChannel(address);
+
+            if(home == ChannelAssignment.ANY_CHANNEL) {
+                return CompletableFuture.completedFuture(true);
+            }
+            return driver.setChannel(home).thenApply(didSet -> {
+                logIfNeeded(Level.INFO, "Joined home channel: {}", didSet ? home : "failed");
+                if(didSet) {
+                    batching.setHomeChannel(home);
+                }
+                return didSet;
+            });
+        });
+    }
+
+    /**
+     * Assigns the slot derived from the address of this node
+     *
+     * @param driver The used driver
+     * @param slotted The used slotted transmission stage
+     * @return Future indicating if a slot was assigned
+     */
+    private CompletableFuture<Boolean> assignSlot(GalaxyDriver driver, SlottedSender slotted) {
+        return driver.getAddress().thenApply(address -> {
+            if(address == null || address.isEmpty()) {
+                logIfNeeded(Level.WARNING, "Can not assign a transmission slot without node address");
+
+                return false;
+            }
+            logIfNeeded(Level.INFO, "Transmitting in slot: {}", slotted.assignSlot(address));
+
+            return true;
+        });
+    }
+
+    private void proceedIncomingMessage(GalaxyMessage received) {
+        if(!rateLimiter.isPresent()) {
+            admitIncomingMessage(received);
+            return;
+        }
+        SourceRateLimiter limiter = rateLimiter.get();
+        long delay = limiter.acquire(received.getSource());
+
+        if(delay == 0) {
+            admitIncomingMessage(received);
+        } else if(delay > 0) {
+            deferredMessages().schedule(() -> admitIncomingMessage(received), delay, TimeUnit.NANOSECONDS);
+        } else if(limiter.getPolicy() == RateLimitPolicy.TAG) {
+            received.setRateLimited(true);
+            admitIncomingMessage(received);
+        } else {
+            logIfNeeded(Level.FINE, "Dropped message exceeding the rate limit - source: {}", received.getSource());
+        }
+    }
+
+    private synchronized ScheduledExecutorService deferredMessages() {
+        if(deferredMessages == null) {
+            deferredMessages = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "GalaxyNode-DeferredMessages");
+                thread.setDaemon(true);
+
+                return thread;
+            });
+        }
+        return deferredMessages;
+    }
+
+    private void admitIncomingMessage(GalaxyMessage received) {
+        GalaxyMessage message = cipher.isPresent() ? decrypt(received, cipher.get()) : received;
 
+        if(message == null) {
+            return;
+        }
+        // journal on the receiving thread, so records keep the order the messages arrived in
+        inboundJournal.ifPresent(journal -> journalIncomingMessage(journal, message));
+
+        inboundDispatcher.enqueue(message).ifPresent(dropped -> logIfNeeded(Level.FINE,
+                "Dropped message because subscribers do not keep up - source: {}", dropped.getSource()));
+    }
+
+    /**
+     * Executes the middleware for a received message and hands the result to all subscribers and handlers.
+     *
+     * Called on the dispatcher thread, one message at a time
+     *
+     * @param message The received message
+     */
+    private void dispatchIncomingMessage(GalaxyMessage message) {
+        MessageTrace trace = message.getTrace().orElse(null);
+
+        if(trace != null) {
+            trace.mark(TraceStage.DISPATCH_START);
+        }
+        MiddlewarePipeline pipe = new MiddlewarePipeline(middlewares, message, trace);
+        logIfNeeded(Level.INFO, "New message received - registered middleware will be executed");
+
+        try {
             pipe.execute((result) -> {
                 logIfNeeded(Level.INFO, "Registered middleware was executed");
+                messagePublisher.publish(result);
+
+                int matches = handlerRegistry.dispatch(result);
+                if(matches > 0) {
+                    logIfNeeded(Level.INFO, "Message was forwarded to {} registered handlers", matches);
+                }
 
                 messageHandler.map((handler) -> {
                     logIfNeeded(Level.INFO, "New message will be forwarded to registered message handler");
 
+                    if(trace != null) {
+                        trace.mark(TraceStage.HANDLER_RECEIVED);
+                    }
                     handler.received(result);
                     return Optional.empty();
                 }).orElseGet(() -> {
@@ -343,8 +856,50 @@ public class GalaxyNode {
                     return null;
                 });
             });
+        } catch (RuntimeException e) {
+            // a failing handler must not stop the messages queued behind this one
+            logIfNeeded(Level.WARNING, "Dispatching received message failed - source: {}", message.getSource());
+        }
+        if(trace != null) {
+            trace.mark(TraceStage.COMPLETED);
+            tracer.ifPresent(t -> t.export(trace));
+        }
+    }
+
+    /**
+     * Decrypts the payload of the given message in place
+     *
+     * @param message The received message
+     * @param cipher The used cipher
+     * @return the decrypted message or null if the message is not authentic
+     */
+    private GalaxyMessage decrypt(GalaxyMessage message, PayloadCipher cipher) {
+        byte[] frame = message.getPayload();
+        int length = cipher.decrypt(frame);
+
+        if(length < 0) {
+            logIfNeeded(Level.WARNING, "Dropped message which is not authentic - source: {}", message.getSource());
+
             return null;
-        });
+        }
+        GalaxyMessage decrypted = new GalaxyMessage(frame, PayloadCipher.PAYLOAD_OFFSET, length, message.getSource(), message.getTrace().orElse(null));
+        decrypted.setRateLimited(message.isRateLimited());
+
+        return decrypted;
+    }
+
+    /**
+     * Records the given message in the inbound journal
+     *
+     * @param journal The used journal
+     * @param message The received message
+     */
+    private void journalIncomingMessage(InboundJournal journal, GalaxyMessage message) {
+        try {
+            journal.append(message.getPayload(), Optional.ofNullable(message.getSource()).orElse(""));
+        } catch (IOException | IllegalArgumentException | IllegalStateException e) {
+            logIfNeeded(Level.WARNING, "Could not journal incoming message: {}", e);
+        }
     }
 
     /**
@@ -354,6 +909,33 @@ public class GalaxyNode {
      * @param message The message to log
      */
     private void logIfNeeded(Level level, String message) {
-        logger.ifPresent(logger -> logger.log(level, message));
+        if(logger.isPresent() && logger.get().isLoggable(level)) {
+            logger.get().log(level, message);
+        }
+    }
+
+    /**
+     * Method to log a parameterized message for debugging. The message is only built if the level is loggable
+     *
+     * @param level The log level of the message
+     * @param pattern The message pattern
+     * @param argument The argument to insert
+     */
+    private void logIfNeeded(Level level, String pattern, Object argument) {
+        if(logger.isPresent()) {
+            logger.get().log(level, pattern, argument);
+        }
+    }
+
+    /**
+     * Method to log a lazily created message for debugging. The supplier is only called if the level is loggable
+     *
+     * @param level The log level of the message
+     * @param messageSupplier Supplier creating the message to log
+     */
+    private void logIfNeeded(Level level, Supplier<String> messageSupplier) {
+        if(logger.isPresent()) {
+            logger.get().log(level, messageSupplier);
+        }
     }
 }
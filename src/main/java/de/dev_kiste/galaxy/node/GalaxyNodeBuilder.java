@@ -2,8 +2,17 @@ package de.dev_kiste.galaxy.node;
 
 import de.dev_kiste.galaxy.util.GalaxyLogger;
 import de.dev_kiste.galaxy.node.middleware.GalaxyMiddleware;
+import de.dev_kiste.galaxy.crypto.PayloadCipher;
 import de.dev_kiste.galaxy.driver.GalaxyDriver;
+import de.dev_kiste.galaxy.driver.MultiRadioDriver;
+import de.dev_kiste.galaxy.driver.balancing.DriverSelectionPolicy;
+import de.dev_kiste.galaxy.driver.balancing.RoundRobinPolicy;
+import de.dev_kiste.galaxy.journal.InboundJournal;
+import de.dev_kiste.galaxy.journal.OutboundJournal;
 import de.dev_kiste.galaxy.messaging.MessageHandler;
+import de.dev_kiste.galaxy.messaging.MessageHandlerRegistry;
+import de.dev_kiste.galaxy.messaging.stream.OverflowStrategy;
+import de.dev_kiste.galaxy.tracing.GalaxyTracer;
 
 import java.util.ArrayList;
 import java.util.Optional;
@@ -14,9 +23,29 @@ import java.util.Optional;
  * @author Benny Lach
  */
 public class GalaxyNodeBuilder {
-    private Optional<GalaxyDriver> driver = Optional.empty();
+    private ArrayList<GalaxyDriver> drivers = new ArrayList<>();
+    private DriverSelectionPolicy driverSelectionPolicy = new RoundRobinPolicy();
     private Optional<MessageHandler> messageHandler = Optional.empty();
+    private MessageHandlerRegistry handlerRegistry = new MessageHandlerRegistry();
     private Optional<GalaxyLogger> logger = Optional.empty();
+    private Optional<GalaxyTracer> tracer = Optional.empty();
+    private Optional<ChannelAssignment> channelAssignment = Optional.empty();
+    private int channelBatchSize = 16;
+    private Optional<OutboundJournal> outboundJournal = Optional.empty();
+    private Optional<InboundJournal> inboundJournal = Optional.empty();
+    private Optional<PayloadCipher> cipher = Optional.empty();
+    private int messageBufferSize = 256;
+    private int maxInFlight = 0;
+    private long starvationMillis = 0;
+    private double rateLimitPerSecond = 0;
+    private int rateLimitBurst = 0;
+    private Optional<RateLimitPolicy> rateLimitPolicy = Optional.empty();
+    private Optional<RetryPolicy> retryPolicy = Optional.empty();
+    private Optional<SendReportListener> sendReportListener = Optional.empty();
+    private int slotCount = 0;
+    private long slotGuardMillis = 0;
+    private int beaconIntervalFrames = 0;
+    private OverflowStrategy overflowStrategy = OverflowStrategy.DROP_OLDEST;
     private ArrayList<GalaxyMiddleware> middlewares = new ArrayList();
 
     /**
@@ -26,7 +55,35 @@ public class GalaxyNodeBuilder {
      * @return Updated GalaxyNodeBuilderInterface object
      */
     public GalaxyNodeBuilder setDriver(GalaxyDriver driver) {
-        this.driver = Optional.ofNullable(driver);
+        drivers.clear();
+
+        return addDriver(driver);
+    }
+
+    /**
+     * Method to add another {@link GalaxyDriver} object.
+     *
+     * If more than one driver is added, the node uses all of them via a {@link MultiRadioDriver}.
+     * Outbound payloads are distributed using the policy set by {@link GalaxyNodeBuilder#setDriverSelectionPolicy}
+     *
+     * @param driver The driver to add
+     * @return Updated GalaxyNodeBuilderInterface object
+     */
+    public GalaxyNodeBuilder addDriver(GalaxyDriver driver) {
+        Optional.ofNullable(driver).ifPresent(value -> drivers.add(value));
+
+        return this;
+    }
+
+    /**
+     * Method to set the policy used to distribute outbound payloads if more than one driver was added.
+     * Defaults to {@link RoundRobinPolicy}
+     *
+     * @param policy The policy to use
+     * @return Updated GalaxyNodeBuilderInterface object
+     */
+    public GalaxyNodeBuilder setDriverSelectionPolicy(DriverSelectionPolicy policy) {
+        Optional.ofNullable(policy).ifPresent(value -> driverSelectionPolicy = value);
 
         return this;
     }
@@ -43,10 +100,220 @@ public class GalaxyNodeBuilder {
         return this;
     }
 
+    /**
+     * Method to set the {@link MessageHandlerRegistry} selecting additional handlers by source and payload prefix.
+     * Matching handlers receive messages in addition to the message handler
+     *
+     * @param registry The registry to use
+     * @return Updated GalaxyNodeBuilderInterface object
+     */
+    public GalaxyNodeBuilder setHandlerRegistry(MessageHandlerRegistry registry) {
+        if(registry != null) {
+            handlerRegistry = registry;
+        }
+        return this;
+    }
+
     public void setLogger(GalaxyLogger logger) {
         this.logger = Optional.ofNullable(logger);
     }
 
+    /**
+     * Method to set the {@link GalaxyTracer} used to sample incoming messages
+     *
+     * @param tracer The tracer to use
+     * @return Updated GalaxyNodeBuilderInterface object
+     */
+    public GalaxyNodeBuilder setTracer(GalaxyTracer tracer) {
+        this.tracer = Optional.ofNullable(tracer);
+
+        return this;
+    }
+
+    /**
+     * Method to spread outbound payloads across channels.
+     *
+     * Every payload is sent on the channel assigned to its receiver. Payloads for the same channel are sent in batches
+     * of up to <code>maxBatchSize</code> before the driver switches to another channel. On bootstrap the node joins the
+     * channel assigned to its own address
+     *
+     * @param assignment The assignment of receivers to channels
+     * @param maxBatchSize Maximum number of payloads sent in a row while other channels are waiting
+     * @return Updated GalaxyNodeBuilderInterface object
+     * @throws IllegalArgumentException if maxBatchSize is not positive
+     */
+    public GalaxyNodeBuilder setChannelAssignment(ChannelAssignment assignment, int maxBatchSize) throws IllegalArgumentException {
+        if(maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.channelAssignment = Optional.ofNullable(assignment);
+        this.channelBatchSize = maxBatchSize;
+
+        return this;
+    }
+
+    /**
+     * Method to store every outbound payload in the given journal before it is sent.
+     *
+     * Queued payloads survive disconnects and restarts of the process and are sent as soon as the node was
+     * bootstrapped. Payloads can be sent before bootstrapping the node
+     *
+     * @param journal The journal to use
+     * @return Updated GalaxyNodeBuilderInterface object
+     */
+    public GalaxyNodeBuilder setOutboundJournal(OutboundJournal journal) {
+        this.outboundJournal = Optional.ofNullable(journal);
+
+        return this;
+    }
+
+    /**
+     * Method to record every received message in the given journal before it is dispatched.
+     *
+     * Recorded traffic can be replayed through any middleware chain using {@link JournalReplay}
+     *
+     * @param journal The journal to use
+     * @return Updated GalaxyNodeBuilderInterface object
+     */
+    public GalaxyNodeBuilder setInboundJournal(InboundJournal journal) {
+        this.inboundJournal = Optional.ofNullable(journal);
+
+        return this;
+    }
+
+    /**
+     * Method to configure the buffer every subscriber of {@link GalaxyNode#getMessagePublisher()} gets.
+     *
+     * Received messages are dispatched in order on a single thread. While a subscriber has no room left, dispatching
+     * pauses and up to the same number of received messages wait before the strategy drops one of them.
+     * Defaults to 256 messages dropping the oldest message if a subscriber does not keep up
+     *
+     * @param size Maximum number of messages buffered per subscriber
+     * @param strategy The strategy applied if a buffer is full
+     * @return Updated GalaxyNodeBuilderInterface object
+     * @throws IllegalArgumentException if the size is not positive or the strategy is null
+     */
+    public GalaxyNodeBuilder setMessageBuffer(int size, OverflowStrategy strategy) throws IllegalArgumentException {
+        if(size <= 0 || strategy == null) {
+            throw new IllegalArgumentException("Buffer size must be positive and strategy must not be null");
+        }
+        this.messageBufferSize = size;
+        this.overflowStrategy = strategy;
+
+        return this;
+    }
+
+    /**
+     * Method to encrypt and authenticate all traffic of the node with the given cipher.
+     *
+     * Outbound payloads are encrypted right before they are handed to the driver. Received messages are decrypted
+     * before the middleware is executed, messages which are not authentic are dropped.
+     * The maximum message size shrinks by {@link PayloadCipher#OVERHEAD} bytes
+     *
+     * @param cipher The cipher to use
+     * @return Updated GalaxyNodeBuilderInterface object
+     */
+    public GalaxyNodeBuilder setPayloadCipher(PayloadCipher cipher) {
+        this.cipher = Optional.ofNullable(cipher);
+
+        return this;
+    }
+
+    /**
+     * Method to enable priority scheduling of outbound payloads, see {@link SendPriority}.
+     *
+     * Payloads are queued per priority and only the given number of payloads is passed on to the radio at a time.
+     * Payloads waiting longer than the starvation limit are sent next regardless of their priority.
+     * If an outbound journal is set, every payload is journaled before it is queued here, together with its priority
+     *
+     * @param maxInFlight Maximum number of payloads sent at the same time
+     * @param starvationMillis Time in milliseconds after which a waiting payload is sent next
+     * @return Updated GalaxyNodeBuilderInterface object
+     * @throws IllegalArgumentException if one of the values is not positive
+     */
+    public GalaxyNodeBuilder setPriorityScheduling(int maxInFlight, long starvationMillis) throws IllegalArgumentException {
+        if(maxInFlight <= 0 || starvationMillis <= 0) {
+            throw new IllegalArgumentException("Values must be positive");
+        }
+        this.maxInFlight = maxInFlight;
+        this.starvationMillis = starvationMillis;
+
+        return this;
+    }
+
+    /**
+     * Method to limit the rate of received messages per source.
+     *
+     * Every source gets a token bucket refilled at the given rate and holding up to burst tokens. The limit is
+     * applied before the message is decrypted, journaled or passed to the middleware
+     *
+     * @param ratePerSecond Sustained messages per second of each source
+     * @param burst Messages a source may send at once
+     * @param policy Handling of messages exceeding the limit
+     * @return Updated GalaxyNodeBuilderInterface object
+     * @throws IllegalArgumentException if rate or burst are not positive or policy is null
+     */
+    public GalaxyNodeBuilder setSourceRateLimit(double ratePerSecond, int burst, RateLimitPolicy policy) throws IllegalArgumentException {
+        if(ratePerSecond <= 0 || burst <= 0 || policy == null) {
+            throw new IllegalArgumentException("Rate and burst must be positive and policy must not be null");
+        }
+        this.rateLimitPerSecond = ratePerSecond;
+        this.rateLimitBurst = burst;
+        this.rateLimitPolicy = Optional.of(policy);
+
+        return this;
+    }
+
+    /**
+     * Method to retry outbound payloads the driver did not send for a retryable reason, see {@link RetryPolicy}
+     *
+     * @param policy The policy to use
+     * @return Updated GalaxyNodeBuilderInterface object
+     */
+    public GalaxyNodeBuilder setRetryPolicy(RetryPolicy policy) {
+        retryPolicy = Optional.ofNullable(policy);
+
+        return this;
+    }
+
+    /**
+     * Method to set the listener notified about the outcome and number of attempts of every payload sent with
+     * the retry policy
+     *
+     * @param listener The listener to notify
+     * @return Updated GalaxyNodeBuilderInterface object
+     */
+    public GalaxyNodeBuilder setSendReportListener(SendReportListener listener) {
+        sendReportListener = Optional.ofNullable(listener);
+
+        return this;
+    }
+
+    /**
+     * Method to enable slotted transmissions, avoiding collisions between nodes sending periodically.
+     *
+     * Time is divided into frames of the given number of slots and every node only transmits in the slot derived
+     * from its address. A slot lasts the time on air of a payload of maximum size reported by the driver plus the
+     * guard time before and after it. Frames follow the host clock, one node per network should send beacons to
+     * correct the drift between the nodes
+     *
+     * @param slotCount Number of slots per frame
+     * @param guardMillis Guard time at both borders of a slot
+     * @param beaconIntervalFrames Frames between two beacons sent by this node - 0 to only receive beacons
+     * @return Updated GalaxyNodeBuilderInterface object
+     * @throws IllegalArgumentException if slot count is not positive or guard time or beacon interval are negative
+     */
+    public GalaxyNodeBuilder setSlottedTransmission(int slotCount, long guardMillis, int beaconIntervalFrames) throws IllegalArgumentException {
+        if(slotCount <= 0 || guardMillis < 0 || beaconIntervalFrames < 0) {
+            throw new IllegalArgumentException("Slot count must be positive, guard time and beacon interval must not be negative");
+        }
+        this.slotCount = slotCount;
+        this.slotGuardMillis = guardMillis;
+        this.beaconIntervalFrames = beaconIntervalFrames;
+
+        return this;
+    }
+
     public GalaxyNodeBuilder use(GalaxyMiddleware middleware) {
         Optional.ofNullable(middleware).ifPresent(value -> middlewares.add(value));
 
@@ -60,10 +327,13 @@ public class GalaxyNodeBuilder {
     /**
      * Package private Getter for the {@link GalaxyDriver} object
      *
-     * @return the used driver
+     * @return the used driver - a {@link MultiRadioDriver} if more than one driver was added
      */
     Optional<GalaxyDriver> getDriver() {
-        return driver;
+        if(drivers.size() > 1) {
+            return Optional.of(new MultiRadioDriver(drivers, driverSelectionPolicy));
+        }
+        return drivers.stream().findFirst();
     }
 
     /**
@@ -75,6 +345,15 @@ public class GalaxyNodeBuilder {
         return messageHandler;
     }
 
+    /**
+     * Package private Getter for the {@link MessageHandlerRegistry} object
+     *
+     * @return the used registry
+     */
+    MessageHandlerRegistry getHandlerRegistry() {
+        return handlerRegistry;
+    }
+
     /**
      * Package private Getter of defined {@link GalaxyMiddleware} objects
      * @return defined middlewares
@@ -84,4 +363,166 @@ public class GalaxyNodeBuilder {
     public Optional<GalaxyLogger> getLogger() {
         return logger;
     }
+
+    /**
+     * Package private Getter for the {@link ChannelAssignment} object
+     *
+     * @return the used channel assignment
+     */
+    Optional<ChannelAssignment> getChannelAssignment() {
+        return channelAssignment;
+    }
+
+    /**
+     * Package private Getter for the maximum channel batch size
+     *
+     * @return the maximum batch size
+     */
+    int getChannelBatchSize() {
+        return channelBatchSize;
+    }
+
+    /**
+     * Package private Getter for the {@link OutboundJournal} object
+     *
+     * @return the used outbound journal
+     */
+    Optional<OutboundJournal> getOutboundJournal() {
+        return outboundJournal;
+    }
+
+    /**
+     * Package private Getter for the {@link InboundJournal} object
+     *
+     * @return the used inbound journal
+     */
+    Optional<InboundJournal> getInboundJournal() {
+        return inboundJournal;
+    }
+
+    /**
+     * Package private Getter for the {@link PayloadCipher} object
+     *
+     * @return the used cipher
+     */
+    Optional<PayloadCipher> getPayloadCipher() {
+        return cipher;
+    }
+
+    /**
+     * Package private Getter for the maximum number of payloads in flight
+     *
+     * @return the maximum or 0 if priority scheduling is disabled
+     */
+    int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Package private Getter for the starvation limit of priority scheduling
+     *
+     * @return the limit in milliseconds
+     */
+    long getStarvationMillis() {
+        return starvationMillis;
+    }
+
+    /**
+     * Package private Getter for the {@link RetryPolicy} object
+     *
+     * @return the used retry policy
+     */
+    Optional<RetryPolicy> getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Package private Getter for the {@link SendReportListener} object
+     *
+     * @return the used listener
+     */
+    Optional<SendReportListener> getSendReportListener() {
+        return sendReportListener;
+    }
+
+    /**
+     * Package private Getter for the number of slots per frame
+     *
+     * @return slot count - 0 if slotted transmission is disabled
+     */
+    int getSlotCount() {
+        return slotCount;
+    }
+
+    /**
+     * Package private Getter for the guard time of slots
+     *
+     * @return guard time in milliseconds
+     */
+    long getSlotGuardMillis() {
+        return slotGuardMillis;
+    }
+
+    /**
+     * Package private Getter for the number of frames between two beacons
+     *
+     * @return beacon interval - 0 if the node sends no beacons
+     */
+    int getBeaconIntervalFrames() {
+        return beaconIntervalFrames;
+    }
+
+    /**
+     * Package private Getter for the sustained messages per second of each source
+     *
+     * @return the rate or 0 if received messages are not limited
+     */
+    double getRateLimitPerSecond() {
+        return rateLimitPerSecond;
+    }
+
+    /**
+     * Package private Getter for the messages a source may send at once
+     *
+     * @return the burst or 0 if received messages are not limited
+     */
+    int getRateLimitBurst() {
+        return rateLimitBurst;
+    }
+
+    /**
+     * Package private Getter for the {@link RateLimitPolicy} object
+     *
+     * @return the policy - empty if received messages are not limited
+     */
+    Optional<RateLimitPolicy> getRateLimitPolicy() {
+        return rateLimitPolicy;
+    }
+
+    /**
+     * Package private Getter for the message buffer size per subscriber
+     *
+     * @return the buffer size
+     */
+    int getMessageBufferSize() {
+        return messageBufferSize;
+    }
+
+    /**
+     * Package private Getter for the {@link OverflowStrategy} of subscriber buffers
+     *
+     * @return the overflow strategy
+     */
+    OverflowStrategy getOverflowStrategy() {
+        return overflowStrategy;
+    }
+
+    /**
+     * Package private Getter for the {@link GalaxyTracer} object
+     *
+     * @return the used tracer
+     */
+    Optional<GalaxyTracer> getTracer() {
+        return tracer;
+    }
 }
@@ -0,0 +1,121 @@
+package de.dev_kiste.galaxy.node;
+
+import de.dev_kiste.galaxy.messaging.GalaxyMessage;
+import de.dev_kiste.galaxy.messaging.stream.BufferedPublisher;
+import de.dev_kiste.galaxy.messaging.stream.OverflowStrategy;
+
+import java.util.ArrayDeque;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Bounded queue handing received messages to the node one after another on a single thread.
+ *
+ * Messages are dispatched in the order they were received. While a subscriber of the message publisher has no room
+ * left in its buffer, dispatching pauses and received messages wait in the backlog. Once the backlog is full, the
+ * {@link OverflowStrategy} decides which message is dropped. With {@link OverflowStrategy#FAIL} the publisher
+ * terminates subscriptions falling behind instead, so dispatching never pauses for them and a backlog filled by slow
+ * middleware drops the new message.
+ *
+ * @author Benny Lach
+ */
+class InboundDispatcher {
+    private final int capacity;
+    private final OverflowStrategy strategy;
+    private final BufferedPublisher<GalaxyMessage> publisher;
+    private final Consumer<GalaxyMessage> dispatch;
+    private final ArrayDeque<GalaxyMessage> backlog = new ArrayDeque<>();
+    private final AtomicInteger pendingDrains = new AtomicInteger();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "GalaxyNode-Dispatcher");
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
+    /**
+     * Initializer
+     *
+     * @param capacity Maximum number of messages waiting to be dispatched
+     * @param strategy The strategy applied if the backlog is full
+     * @param publisher The publisher whose subscribers control the pace of dispatching
+     * @param dispatch Handles a single message - must not throw
+     */
+    InboundDispatcher(int capacity,
+                      OverflowStrategy strategy,
+                      BufferedPublisher<GalaxyMessage> publisher,
+                      Consumer<GalaxyMessage> dispatch) {
+        this.capacity = capacity;
+        this.strategy = strategy;
+        this.publisher = publisher;
+        this.dispatch = dispatch;
+
+        publisher.setCapacityListener(this::drain);
+    }
+
+    /**
+     * Method to queue a received message for dispatching
+     *
+     * @param message The received message
+     * @return the message dropped because the backlog was full
+     */
+    Optional<GalaxyMessage> enqueue(GalaxyMessage message) {
+        GalaxyMessage dropped = null;
+
+        synchronized (this) {
+            if(backlog.size() < capacity) {
+                backlog.add(message);
+            } else if(strategy == OverflowStrategy.DROP_OLDEST) {
+                dropped = backlog.poll();
+                backlog.add(message);
+            } else {
+                dropped = message;
+            }
+        }
+        drain();
+
+        return Optional.ofNullable(dropped);
+    }
+
+    /**
+     * Method to get the number of messages waiting to be dispatched
+     *
+     * @return number of queued messages
+     */
+    synchronized int getBacklogSize() {
+        return backlog.size();
+    }
+
+    private void drain() {
+        if(pendingDrains.getAndIncrement() == 0) {
+            executor.execute(this::dispatchPending);
+        }
+    }
+
+    private void dispatchPending() {
+        int missed = 1;
+
+        while(true) {
+            GalaxyMessage next;
+
+            while((next = nextMessage()) != null) {
+                dispatch.accept(next);
+            }
+            missed = pendingDrains.addAndGet(-missed);
+
+            if(missed == 0) {
+                return;
+            }
+        }
+    }
+
+    private synchronized GalaxyMessage nextMessage() {
+        if(strategy != OverflowStrategy.FAIL && !publisher.hasCapacity()) {
+            return null;
+        }
+        return backlog.poll();
+    }
+}
@@ -0,0 +1,44 @@
+package de.dev_kiste.galaxy.node;
+
+import de.dev_kiste.galaxy.journal.InboundJournal;
+import de.dev_kiste.galaxy.messaging.GalaxyMessage;
+import de.dev_kiste.galaxy.messaging.MessageHandler;
+import de.dev_kiste.galaxy.node.middleware.GalaxyMiddleware;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replays messages recorded in an {@link InboundJournal} through a chain of {@link GalaxyMiddleware} objects.
+ *
+ * Records are replayed back to back on the calling thread without reproducing the original timing, so a replay
+ * is only limited by the speed of the middleware chain and the message handler.
+ *
+ * @author Benny Lach
+ */
+public class JournalReplay {
+    private final ArrayList<GalaxyMiddleware> middlewares;
+
+    /**
+     * Default initializer
+     *
+     * @param middlewares The middleware chain every replayed message passes
+     */
+    public JournalReplay(List<GalaxyMiddleware> middlewares) {
+        this.middlewares = new ArrayList<>(middlewares);
+    }
+
+    /**
+     * Method to replay all messages received within the given time range
+     *
+     * @param journal The journal to read from
+     * @param fromMillis Start of the range in milliseconds since epoch (inclusive)
+     * @param toMillis End of the range in milliseconds since epoch (exclusive)
+     * @param handler Handler receiving every message that passed the middleware chain
+     * @return number of replayed messages
+     */
+    public long replay(InboundJournal journal, long fromMillis, long toMillis, MessageHandler handler) {
+        return journal.replay(fromMillis, toMillis, (timestamp, source, payload) ->
+                new MiddlewarePipeline(middlewares, new GalaxyMessage(payload, source)).execute(handler::received));
+    }
+}
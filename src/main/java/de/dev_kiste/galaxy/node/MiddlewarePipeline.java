@@ -2,6 +2,7 @@ package de.dev_kiste.galaxy.node;
 
 import de.dev_kiste.galaxy.node.middleware.GalaxyMiddleware;
 import de.dev_kiste.galaxy.messaging.GalaxyMessage;
+import de.dev_kiste.galaxy.tracing.MessageTrace;
 
 import java.util.ArrayList;
 import java.util.concurrent.CompletableFuture;
@@ -14,11 +15,21 @@ import java.util.function.Consumer;
  */
 class MiddlewarePipeline {
     private final ArrayList<GalaxyMiddleware> middlewares;
+    private final MessageTrace trace;
     private GalaxyMessage message;
 
     MiddlewarePipeline(ArrayList<GalaxyMiddleware> middlewares, GalaxyMessage message) {
+        this(middlewares, message, null);
+    }
+
+    MiddlewarePipeline(ArrayList<GalaxyMiddleware> middlewares, GalaxyMessage message, MessageTrace trace) {
         this.middlewares = middlewares;
         this.message = message;
+        this.trace = trace;
+
+        if(trace != null) {
+            trace.startMiddleware(middlewares.size());
+        }
     }
 
     /**
@@ -67,6 +78,9 @@ class MiddlewarePipeline {
             f.thenAccept(message -> {
                 this.message = message;
 
+                if(trace != null) {
+                    trace.markMiddleware(index);
+                }
                 _execute(callback, index + 1);
             }).get();
         } catch (Exception e) {}
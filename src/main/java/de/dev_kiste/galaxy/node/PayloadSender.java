@@ -0,0 +1,60 @@
+package de.dev_kiste.galaxy.node;
+
+import de.dev_kiste.galaxy.driver.SendOutcome;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Single stage of the outbound path of a {@link GalaxyNode}
+ *
+ * Stages wrap each other and the last one hands the payload to the {@link de.dev_kiste.galaxy.driver.GalaxyDriver}
+ *
+ * @author Benny Lach
+ */
+interface PayloadSender {
+    /**
+     * Method to send the given payload
+     *
+     * @param payload The payload to send
+     * @param receiver The destination address - {@link GalaxyNode#BROADCAST_ADDRESS} for broadcasts
+     * @return Future indicating if the payload was sent
+     */
+    CompletableFuture<Boolean> send(byte[] payload, String receiver);
+
+    /**
+     * Method to send the given payload with the given priority. Stages without priority support ignore it
+     *
+     * @param payload The payload to send
+     * @param receiver The destination address - {@link GalaxyNode#BROADCAST_ADDRESS} for broadcasts
+     * @param priority The priority of the payload
+     * @return Future indicating if the payload was sent
+     */
+    default CompletableFuture<Boolean> send(byte[] payload, String receiver, SendPriority priority) {
+        return send(payload, receiver);
+    }
+
+    /**
+     * Method to send the given payload and report why it was not sent. Stages between the driver and a stage
+     * evaluating the outcome must pass it on, all others classify the result of {@link #send}
+     *
+     * @param payload The payload to send
+     * @param receiver The destination address - {@link GalaxyNode#BROADCAST_ADDRESS} for broadcasts
+     * @return Future containing the outcome of the send
+     */
+    default CompletableFuture<SendOutcome> sendWithOutcome(byte[] payload, String receiver) {
+        return SendOutcome.classify(() -> send(payload, receiver));
+    }
+
+    /**
+     * Method to send the given payload with the given priority and report why it was not sent. Stages without
+     * priority support ignore it
+     *
+     * @param payload The payload to send
+     * @param receiver The destination address - {@link GalaxyNode#BROADCAST_ADDRESS} for broadcasts
+     * @param priority The priority of the payload
+     * @return Future containing the outcome of the send
+     */
+    default CompletableFuture<SendOutcome> sendWithOutcome(byte[] payload, String receiver, SendPriority priority) {
+        return sendWithOutcome(payload, receiver);
+    }
+}
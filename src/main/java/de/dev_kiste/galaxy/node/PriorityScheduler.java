@@ -0,0 +1,199 @@
+package de.dev_kiste.galaxy.node;
+
+import de.dev_kiste.galaxy.driver.SendOutcome;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PayloadSender} queuing outbound payloads per {@link SendPriority} and releasing them to the next stage in
+ * priority order.
+ *
+ * Only a limited number of payloads is passed on at a time, so the backlog waits here where it can be overtaken.
+ * Payloads are selected as follows:
+ * - a payload which waited longer than the starvation limit is sent first, the oldest one wins
+ * - otherwise urgent payloads are sent before everything else
+ * - otherwise the other classes are served by smooth weighted round robin according to their weight
+ *
+ * @author Benny Lach
+ */
+class PriorityScheduler implements PayloadSender {
+    private final static SendPriority[] PRIORITIES = SendPriority.values();
+
+    private static class QueuedPayload {
+        private final byte[] payload;
+        private final String receiver;
+        private final long enqueuedAt = System.nanoTime();
+        private final CompletableFuture<SendOutcome> future = new CompletableFuture<>();
+
+        private QueuedPayload(byte[] payload, String receiver) {
+            this.payload = payload;
+            this.receiver = receiver;
+        }
+    }
+
+    private static class ClassState {
+        private final ArrayDeque<QueuedPayload> queue = new ArrayDeque<>();
+        private int currentWeight = 0;
+        private long sentCount = 0;
+        private long totalWaitNanos = 0;
+        private long maximumWaitNanos = 0;
+    }
+
+    private final PayloadSender downstream;
+    private final int maxInFlight;
+    private final long starvationNanos;
+    private final ClassState[] states = new ClassState[PRIORITIES.length];
+    private int inFlight = 0;
+
+    PriorityScheduler(PayloadSender downstream, int maxInFlight, long starvationMillis) {
+        this.downstream = downstream;
+        this.maxInFlight = maxInFlight;
+        this.starvationNanos = TimeUnit.MILLISECONDS.toNanos(starvationMillis);
+
+        for(int i = 0; i < states.length; i++) {
+            states[i] = new ClassState();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Boolean> send(byte[] payload, String receiver) {
+        return send(payload, receiver, SendPriority.NORMAL);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> send(byte[] payload, String receiver, SendPriority priority) {
+        return sendWithOutcome(payload, receiver, priority).thenApply(SendOutcome::isSent);
+    }
+
+    @Override
+    public CompletableFuture<SendOutcome> sendWithOutcome(byte[] payload, String receiver) {
+        return sendWithOutcome(payload, receiver, SendPriority.NORMAL);
+    }
+
+    @Override
+    public CompletableFuture<SendOutcome> sendWithOutcome(byte[] payload, String receiver, SendPriority priority) {
+        QueuedPayload queued = new QueuedPayload(payload, receiver);
+
+        synchronized (this) {
+            states[priority.ordinal()].queue.add(queued);
+        }
+        dispatch();
+
+        return queued.future;
+    }
+
+    /**
+     * Method to get the current metrics of every priority class
+     *
+     * @return metrics per class
+     */
+    synchronized Map<SendPriority, SendClassMetrics> getMetrics() {
+        Map<SendPriority, SendClassMetrics> metrics = new EnumMap<>(SendPriority.class);
+
+        for(SendPriority priority : PRIORITIES) {
+            ClassState state = states[priority.ordinal()];
+            double averageWait = state.sentCount == 0 ? 0 : state.totalWaitNanos / 1e6 / state.sentCount;
+
+            metrics.put(priority, new SendClassMetrics(priority, state.queue.size(), state.sentCount,
+                    averageWait, state.maximumWaitNanos / 1e6));
+        }
+        return metrics;
+    }
+
+    private void dispatch() {
+        while(true) {
+            QueuedPayload next;
+
+            synchronized (this) {
+                if(inFlight >= maxInFlight || (next = selectNext()) == null) {
+                    return;
+                }
+                inFlight++;
+            }
+            final QueuedPayload sending = next;
+
+            sendDownstream(sending).whenCompleteAsync((outcome, error) -> {
+                synchronized (this) {
+                    inFlight--;
+                }
+                sending.future.complete(error == null ? outcome : SendOutcome.FAILED);
+                dispatch();
+            });
+        }
+    }
+
+    private CompletableFuture<SendOutcome> sendDownstream(QueuedPayload queued) {
+        try {
+            return downstream.sendWithOutcome(queued.payload, queued.receiver);
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(SendOutcome.FAILED);
+        }
+    }
+
+    /**
+     * Removes the next payload to send from its queue. Must be called while holding the lock
+     *
+     * @return the payload or null if all queues are empty
+     */
+    private QueuedPayload selectNext() {
+        long now = System.nanoTime();
+        ClassState selected = null;
+
+        // starvation protection
+        for(ClassState state : states) {
+            QueuedPayload head = state.queue.peek();
+
+            if(head != null && now - head.enqueuedAt > starvationNanos
+                    && (selected == null || head.enqueuedAt < selected.queue.peek().enqueuedAt)) {
+                selected = state;
+            }
+        }
+        if(selected == null && !states[SendPriority.URGENT.ordinal()].queue.isEmpty()) {
+            selected = states[SendPriority.URGENT.ordinal()];
+        }
+        if(selected == null) {
+            selected = selectWeighted();
+        }
+        if(selected == null) {
+            return null;
+        }
+        QueuedPayload next = selected.queue.poll();
+        long wait = now - next.enqueuedAt;
+
+        selected.sentCount++;
+        selected.totalWaitNanos += wait;
+        selected.maximumWaitNanos = Math.max(selected.maximumWaitNanos, wait);
+
+        return next;
+    }
+
+    /**
+     * Smooth weighted round robin between the non-empty weighted classes
+     */
+    private ClassState selectWeighted() {
+        ClassState selected = null;
+        int totalWeight = 0;
+
+        for(SendPriority priority : PRIORITIES) {
+            ClassState state = states[priority.ordinal()];
+
+            if(priority.getWeight() == 0 || state.queue.isEmpty()) {
+                continue;
+            }
+            state.currentWeight += priority.getWeight();
+            totalWeight += priority.getWeight();
+
+            if(selected == null || state.currentWeight > selected.currentWeight) {
+                selected = state;
+            }
+        }
+        if(selected != null) {
+            selected.currentWeight -= totalWeight;
+        }
+        return selected;
+    }
+}
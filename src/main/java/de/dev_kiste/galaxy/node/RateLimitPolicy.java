@@ -0,0 +1,22 @@
+package de.dev_kiste.galaxy.node;
+
+/**
+ * Handling of received messages whose source exceeded its rate limit,
+ * see {@link GalaxyNodeBuilder#setSourceRateLimit}
+ *
+ * @author Benny Lach
+ */
+public enum RateLimitPolicy {
+    /**
+     * The message is dropped before the middleware is executed
+     */
+    DROP,
+    /**
+     * The message is delayed until the source has a token again. Messages exceeding a second burst are dropped
+     */
+    DEFER,
+    /**
+     * The message passes and is marked, see {@link de.dev_kiste.galaxy.messaging.GalaxyMessage#isRateLimited}
+     */
+    TAG
+}
@@ -0,0 +1,72 @@
+package de.dev_kiste.galaxy.node;
+
+import de.dev_kiste.galaxy.driver.SendOutcome;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Policy for retrying outbound payloads which were not sent, see {@link GalaxyNodeBuilder#setRetryPolicy}.
+ *
+ * Only outcomes which are retryable, see {@link SendOutcome#isRetryable}, are retried. The backoff doubles with
+ * every attempt up to a maximum, and the actual delay is drawn uniformly between 0 and the backoff, so nodes which
+ * failed at the same time do not retry at the same time. Retries stop after the maximum number of attempts or if
+ * the next attempt would start after the deadline.
+ *
+ * @author Benny Lach
+ */
+public class RetryPolicy {
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final long deadlineMillis;
+
+    /**
+     * Initializer
+     *
+     * @param maxAttempts Maximum number of attempts including the first one
+     * @param initialBackoffMillis Backoff after the first attempt
+     * @param maxBackoffMillis Maximum backoff
+     * @param deadlineMillis Time after the first attempt no further attempt is started
+     * @throws IllegalArgumentException if a value is not positive or the maximum backoff is below the initial one
+     */
+    public RetryPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis, long deadlineMillis) throws IllegalArgumentException {
+        if(maxAttempts <= 0 || initialBackoffMillis <= 0 || maxBackoffMillis < initialBackoffMillis || deadlineMillis <= 0) {
+            throw new IllegalArgumentException("Values must be positive and the maximum backoff must not be below the initial backoff");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.deadlineMillis = deadlineMillis;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getDeadlineMillis() {
+        return deadlineMillis;
+    }
+
+    /**
+     * Method to check if a payload should be sent again
+     *
+     * @param outcome The outcome of the last attempt
+     * @param attempts The number of attempts so far
+     * @return true if another attempt is allowed
+     */
+    public boolean shouldRetry(SendOutcome outcome, int attempts) {
+        return outcome.isRetryable() && attempts < maxAttempts;
+    }
+
+    /**
+     * Method to get the delay before the next attempt
+     *
+     * @param attempts The number of attempts so far
+     * @return delay in milliseconds
+     */
+    public long getBackoffMillis(int attempts) {
+        long backoff = initialBackoffMillis << Math.min(attempts - 1, 30);
+
+        return ThreadLocalRandom.current().nextLong(Math.min(Math.max(backoff, initialBackoffMillis), maxBackoffMillis) + 1);
+    }
+}
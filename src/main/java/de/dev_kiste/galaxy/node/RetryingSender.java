@@ -0,0 +1,74 @@
+package de.dev_kiste.galaxy.node;
+
+import de.dev_kiste.galaxy.driver.SendOutcome;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PayloadSender} sending payloads again according to a {@link RetryPolicy} if the next stage reports a
+ * retryable outcome.
+ *
+ * Retries pass the following stages again, so a retried payload is encrypted with a new nonce and waits for the
+ * next transmission slot.
+ *
+ * @author Benny Lach
+ */
+class RetryingSender implements PayloadSender {
+    private final PayloadSender downstream;
+    private final RetryPolicy policy;
+    private final Optional<SendReportListener> listener;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "GalaxyNode-Retry");
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
+    RetryingSender(PayloadSender downstream, RetryPolicy policy, Optional<SendReportListener> listener) {
+        this.downstream = downstream;
+        this.policy = policy;
+        this.listener = listener;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> send(byte[] payload, String receiver) {
+        return sendWithOutcome(payload, receiver).thenApply(SendOutcome::isSent);
+    }
+
+    @Override
+    public CompletableFuture<SendOutcome> sendWithOutcome(byte[] payload, String receiver) {
+        CompletableFuture<SendOutcome> result = new CompletableFuture<>();
+
+        attempt(payload, receiver, 1, System.nanoTime(), result);
+
+        return result;
+    }
+
+    private void attempt(byte[] payload, String receiver, int attempts, long startedAt, CompletableFuture<SendOutcome> result) {
+        sendDownstream(payload, receiver).whenComplete((outcome, error) -> {
+            SendOutcome last = error == null ? outcome : SendOutcome.FAILED;
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+            long backoff = policy.shouldRetry(last, attempts) ? policy.getBackoffMillis(attempts) : -1;
+
+            if(backoff < 0 || elapsed + backoff > policy.getDeadlineMillis()) {
+                listener.ifPresent(l -> l.reported(new SendReport(receiver, last, attempts, elapsed)));
+                result.complete(last);
+
+                return;
+            }
+            scheduler.schedule(() -> attempt(payload, receiver, attempts + 1, startedAt, result), backoff, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    private CompletableFuture<SendOutcome> sendDownstream(byte[] payload, String receiver) {
+        try {
+            return downstream.sendWithOutcome(payload, receiver);
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(SendOutcome.FAILED);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package de.dev_kiste.galaxy.node;
+
+/**
+ * Snapshot of the outbound metrics of a single {@link SendPriority} class
+ *
+ * @author Benny Lach
+ */
+public class SendClassMetrics {
+    private final SendPriority priority;
+    private final int queueDepth;
+    private final long sentCount;
+    private final double averageWaitMillis;
+    private final double maximumWaitMillis;
+
+    SendClassMetrics(SendPriority priority, int queueDepth, long sentCount, double averageWaitMillis, double maximumWaitMillis) {
+        this.priority = priority;
+        this.queueDepth = queueDepth;
+        this.sentCount = sentCount;
+        this.averageWaitMillis = averageWaitMillis;
+        this.maximumWaitMillis = maximumWaitMillis;
+    }
+
+    public SendPriority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Method to get the number of payloads waiting to be scheduled
+     * @return queue depth
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Method to get the number of payloads handed to the next stage so far
+     * @return number of scheduled payloads
+     */
+    public long getSentCount() {
+        return sentCount;
+    }
+
+    /**
+     * Method to get the average time payloads waited in the queue
+     * @return average wait time in milliseconds
+     */
+    public double getAverageWaitMillis() {
+        return averageWaitMillis;
+    }
+
+    /**
+     * Method to get the longest time a payload waited in the queue
+     * @return maximum wait time in milliseconds
+     */
+    public double getMaximumWaitMillis() {
+        return maximumWaitMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{depth=%d, sent=%d, avgWait=%.1fms, maxWait=%.1fms}",
+                priority, queueDepth, sentCount, averageWaitMillis, maximumWaitMillis);
+    }
+}
@@ -0,0 +1,40 @@
+package de.dev_kiste.galaxy.node;
+
+/**
+ * Priority classes of outbound payloads
+ *
+ * If priority scheduling is enabled, see {@link GalaxyNodeBuilder#setPriorityScheduling}, urgent payloads are always
+ * sent first. The remaining classes share the radio according to their weight.
+ *
+ * @author Benny Lach
+ */
+public enum SendPriority {
+    /**
+     * Control traffic like acknowledgements and alarms - strict priority
+     */
+    URGENT(0),
+    HIGH(4),
+    /**
+     * Default priority of all send methods without priority parameter
+     */
+    NORMAL(2),
+    /**
+     * Bulk transfers like log uploads and bulk sends
+     */
+    BULK(1);
+
+    private final int weight;
+
+    SendPriority(int weight) {
+        this.weight = weight;
+    }
+
+    /**
+     * Method to get the share of the radio this class gets compared to the other weighted classes
+     *
+     * @return the weight - 0 for strict priority
+     */
+    public int getWeight() {
+        return weight;
+    }
+}
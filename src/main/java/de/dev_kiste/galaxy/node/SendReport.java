@@ -0,0 +1,50 @@
+package de.dev_kiste.galaxy.node;
+
+import de.dev_kiste.galaxy.driver.SendOutcome;
+
+/**
+ * Final result of an outbound payload sent with a {@link RetryPolicy}
+ *
+ * @author Benny Lach
+ */
+public class SendReport {
+    private final String receiver;
+    private final SendOutcome outcome;
+    private final int attempts;
+    private final long elapsedMillis;
+
+    SendReport(String receiver, SendOutcome outcome, int attempts, long elapsedMillis) {
+        this.receiver = receiver;
+        this.outcome = outcome;
+        this.attempts = attempts;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public String getReceiver() {
+        return receiver;
+    }
+
+    /**
+     * Method to get the outcome of the last attempt
+     * @return outcome
+     */
+    public SendOutcome getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * Method to get the number of attempts including the first one
+     * @return number of attempts
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Method to get the time between the first attempt and the final outcome
+     * @return elapsed time in milliseconds
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+}
@@ -0,0 +1,15 @@
+package de.dev_kiste.galaxy.node;
+
+/**
+ * Listener notified about the final result of every payload sent with a {@link RetryPolicy}
+ *
+ * @author Benny Lach
+ */
+public interface SendReportListener {
+    /**
+     * Method to notify about a finished payload
+     *
+     * @param report The result of the payload
+     */
+    void reported(SendReport report);
+}
@@ -0,0 +1,131 @@
+package de.dev_kiste.galaxy.node;
+
+import de.dev_kiste.galaxy.messaging.GalaxyMessage;
+import de.dev_kiste.galaxy.node.middleware.GalaxyMiddleware;
+import de.dev_kiste.galaxy.node.middleware.MiddlewareCaller;
+import de.dev_kiste.galaxy.node.middleware.MiddlewareStopper;
+
+import java.nio.ByteBuffer;
+import java.util.function.LongSupplier;
+
+/**
+ * Clock all nodes of a slotted network share, corrected by beacons.
+ *
+ * Without beacons the clock follows the wall clock of the host, so frames of nodes with synchronized host clocks
+ * line up. A beacon source broadcasts its clock time regularly. Receiving nodes compare it, advanced by the time
+ * on air of the beacon, to their own clock and move towards it. The first beacon is adopted at once, later ones
+ * are weighted, so a single delayed beacon does not shift the frame. The remaining error is covered by the guard
+ * time of the slots.
+ *
+ * Beacon frame layout: [byte magic][byte version][long clock time in microseconds][byte check]
+ *
+ * The check byte is the XOR of all previous bytes. Payloads of beacon length starting with the magic byte are only
+ * taken as beacon if version, check byte and a positive clock time match, all others are passed on.
+ *
+ * @author Benny Lach
+ */
+class SlotClock implements GalaxyMiddleware {
+    final static byte BEACON_MAGIC = (byte) 0xAF;
+    final static byte BEACON_VERSION = 1;
+    final static int BEACON_LENGTH = 11;
+    private final static double CORRECTION_WEIGHT = 0.25;
+
+    private final LongSupplier hostMicros;
+    private final long beaconAirtimeMicros;
+    private volatile long offsetMicros = 0;
+    private boolean isSynchronized = false;
+
+    /**
+     * Initializer
+     *
+     * @param beaconAirtimeMicros Time on air of a beacon frame
+     */
+    SlotClock(long beaconAirtimeMicros) {
+        this(beaconAirtimeMicros, hostClock());
+    }
+
+    /**
+     * Initializer
+     *
+     * @param beaconAirtimeMicros Time on air of a beacon frame
+     * @param hostMicros Source of the uncorrected time in microseconds
+     */
+    SlotClock(long beaconAirtimeMicros, LongSupplier hostMicros) {
+        this.beaconAirtimeMicros = beaconAirtimeMicros;
+        this.hostMicros = hostMicros;
+    }
+
+    private static LongSupplier hostClock() {
+        long baseMicros = System.currentTimeMillis() * 1000 - System.nanoTime() / 1000;
+
+        return () -> System.nanoTime() / 1000 + baseMicros;
+    }
+
+    /**
+     * Method to get the current clock time
+     *
+     * @return time in microseconds
+     */
+    long now() {
+        return hostMicros.getAsLong() + offsetMicros;
+    }
+
+    /**
+     * Method to create a beacon carrying the current clock time
+     *
+     * @return the beacon frame
+     */
+    byte[] beacon() {
+        byte[] beacon = ByteBuffer.allocate(BEACON_LENGTH).put(BEACON_MAGIC).put(BEACON_VERSION).putLong(now()).array();
+        beacon[BEACON_LENGTH - 1] = check(beacon);
+
+        return beacon;
+    }
+
+    /**
+     * Method to check if the given payload is a beacon frame
+     *
+     * @param payload The payload
+     * @return true if it is a beacon, otherwise false
+     */
+    static boolean isBeacon(byte[] payload) {
+        return payload.length == BEACON_LENGTH
+                && payload[0] == BEACON_MAGIC
+                && payload[1] == BEACON_VERSION
+                && payload[BEACON_LENGTH - 1] == check(payload)
+                && ByteBuffer.wrap(payload, 2, 8).getLong() > 0;
+    }
+
+    private static byte check(byte[] beacon) {
+        byte check = 0;
+
+        for(int i = 0; i < BEACON_LENGTH - 1; i++) {
+            check ^= beacon[i];
+        }
+        return check;
+    }
+
+    @Override
+    public void execute(GalaxyMessage message, MiddlewareCaller caller, MiddlewareStopper stopper) {
+        byte[] payload = message.getPayload();
+
+        if(!isBeacon(payload)) {
+            caller.call(message);
+            return;
+        }
+        correct(ByteBuffer.wrap(payload, 2, 8).getLong() + beaconAirtimeMicros);
+        stopper.stop();
+    }
+
+    /**
+     * Moves the clock towards the given time
+     *
+     * @param estimatedNow Estimated clock time of the beacon source
+     */
+    synchronized void correct(long estimatedNow) {
+        long error = estimatedNow - now();
+
+        offsetMicros += isSynchronized ? (long) (error * CORRECTION_WEIGHT) : error;
+        isSynchronized = true;
+    }
+}
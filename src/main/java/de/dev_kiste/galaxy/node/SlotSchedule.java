@@ -0,0 +1,75 @@
+package de.dev_kiste.galaxy.node;
+
+/**
+ * Frame layout of slotted transmissions.
+ *
+ * A frame consists of a fixed number of slots of equal length. Every node owns the slot derived from its address
+ * and transmits only within it, keeping a guard time to both slot borders.
+ *
+ * @author Benny Lach
+ */
+class SlotSchedule {
+    private final int slotCount;
+    private final long slotMicros;
+    private final long guardMicros;
+
+    SlotSchedule(int slotCount, long slotMicros, long guardMicros) {
+        this.slotCount = slotCount;
+        this.slotMicros = slotMicros;
+        this.guardMicros = guardMicros;
+    }
+
+    int getSlotCount() {
+        return slotCount;
+    }
+
+    long getSlotMicros() {
+        return slotMicros;
+    }
+
+    long getFrameMicros() {
+        return slotCount * slotMicros;
+    }
+
+    /**
+     * Method to get the slot owned by the given address.
+     * 4-hex-digit addresses are assigned by their numeric value, other addresses by their hash
+     *
+     * @param address The node address
+     * @return the slot index
+     */
+    int slotFor(String address) {
+        int value;
+
+        try {
+            value = Integer.parseInt(address, 16);
+        } catch (NumberFormatException e) {
+            value = address.hashCode();
+        }
+        return Math.floorMod(value, slotCount);
+    }
+
+    /**
+     * Method to get the time until a transmission of the given length may start in the given slot
+     *
+     * @param slot The slot index
+     * @param now The current schedule time in microseconds
+     * @param airtimeMicros Time on air of the transmission
+     * @return delay in microseconds - 0 if the transmission may start now
+     */
+    long delayUntilTransmission(int slot, long now, long airtimeMicros) {
+        long frame = getFrameMicros();
+        long slotStart = Math.floorDiv(now, frame) * frame + slot * slotMicros;
+        long earliest = slotStart + guardMicros;
+        // transmissions longer than the slot start right after the guard time
+        long latest = Math.max(earliest, slotStart + slotMicros - guardMicros - airtimeMicros);
+
+        if(now < earliest) {
+            return earliest - now;
+        }
+        if(now <= latest) {
+            return 0;
+        }
+        return earliest + frame - now;
+    }
+}
@@ -0,0 +1,194 @@
+package de.dev_kiste.galaxy.node;
+
+import de.dev_kiste.galaxy.driver.SendOutcome;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntToLongFunction;
+
+/**
+ * {@link PayloadSender} holding every payload until the slot of the node opens, see {@link SlotSchedule}.
+ *
+ * Payloads are sent one after another, each only if it fits into the rest of the slot including the guard time.
+ * Otherwise it waits for the slot of the next frame. Nothing is sent before the slot of the node is known.
+ * A beacon source additionally broadcasts a beacon of its {@link SlotClock} in its slot every few frames.
+ *
+ * @author Benny Lach
+ */
+class SlottedSender implements PayloadSender {
+    private static class Pending {
+        private final byte[] payload;
+        private final String receiver;
+        private final CompletableFuture<SendOutcome> future = new CompletableFuture<>();
+
+        private Pending(byte[] payload, String receiver) {
+            this.payload = payload;
+            this.receiver = receiver;
+        }
+    }
+
+    private final PayloadSender downstream;
+    private final SlotSchedule schedule;
+    private final SlotClock clock;
+    private final IntToLongFunction airtime;
+    private final int beaconFrames;
+    private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+    private final ScheduledExecutorService timer;
+
+    private int slot = -1;
+    private boolean isSending = false;
+    private long nextBeaconFrame = 0;
+    private long scheduledWakeUp = Long.MAX_VALUE;
+
+    /**
+     * Initializer
+     *
+     * @param downstream The next stage
+     * @param schedule The frame layout
+     * @param clock The shared clock
+     * @param airtime Time on air in microseconds of a payload of the given length
+     * @param beaconFrames Number of frames between two beacons - 0 if the node is no beacon source
+     */
+    SlottedSender(PayloadSender downstream, SlotSchedule schedule, SlotClock clock, IntToLongFunction airtime, int beaconFrames) {
+        this(downstream, schedule, clock, airtime, beaconFrames, Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "GalaxyNode-SlotTimer");
+            thread.setDaemon(true);
+
+            return thread;
+        }));
+    }
+
+    /**
+     * Initializer
+     *
+     * @param downstream The next stage
+     * @param schedule The frame layout
+     * @param clock The shared clock
+     * @param airtime Time on air in microseconds of a payload of the given length
+     * @param beaconFrames Number of frames between two beacons - 0 if the node is no beacon source
+     * @param timer The executor checking the queue again once the slot opens
+     */
+    SlottedSender(PayloadSender downstream, SlotSchedule schedule, SlotClock clock, IntToLongFunction airtime, int beaconFrames,
+                  ScheduledExecutorService timer) {
+        this.downstream = downstream;
+        this.schedule = schedule;
+        this.clock = clock;
+        this.airtime = airtime;
+        this.beaconFrames = beaconFrames;
+        this.timer = timer;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> send(byte[] payload, String receiver) {
+        return sendWithOutcome(payload, receiver).thenApply(SendOutcome::isSent);
+    }
+
+    @Override
+    public CompletableFuture<SendOutcome> sendWithOutcome(byte[] payload, String receiver) {
+        Pending pending = new Pending(payload, receiver);
+
+        synchronized (this) {
+            queue.add(pending);
+        }
+        pump();
+
+        return pending.future;
+    }
+
+    /**
+     * Method to assign the slot owned by the given address
+     *
+     * @param address The address of the node
+     * @return the assigned slot
+     */
+    int assignSlot(String address) {
+        int assigned = schedule.slotFor(address);
+
+        synchronized (this) {
+            slot = assigned;
+        }
+        pump();
+
+        return assigned;
+    }
+
+    private void pump() {
+        byte[] payload;
+        String receiver;
+        CompletableFuture<SendOutcome> future;
+
+        synchronized (this) {
+            if(isSending || slot < 0) {
+                return;
+            }
+            long now = clock.now();
+            long frame = Math.floorDiv(now, schedule.getFrameMicros());
+            boolean isBeaconDue = beaconFrames > 0 && frame >= nextBeaconFrame;
+            Pending next = queue.peek();
+
+            if(!isBeaconDue && next == null) {
+                if(beaconFrames > 0) {
+                    wakeUpIn(nextBeaconFrame * schedule.getFrameMicros() - now);
+                }
+                return;
+            }
+            int length = isBeaconDue ? SlotClock.BEACON_LENGTH : next.payload.length;
+            long delay = schedule.delayUntilTransmission(slot, now, airtime.applyAsLong(length));
+
+            if(delay > 0) {
+                wakeUpIn(delay);
+                return;
+            }
+            if(isBeaconDue) {
+                nextBeaconFrame = frame + beaconFrames;
+                payload = clock.beacon();
+                receiver = GalaxyNode.BROADCAST_ADDRESS;
+                future = null;
+            } else {
+                queue.poll();
+                payload = next.payload;
+                receiver = next.receiver;
+                future = next.future;
+            }
+            isSending = true;
+        }
+        sendDownstream(payload, receiver).whenCompleteAsync((outcome, error) -> {
+            synchronized (this) {
+                isSending = false;
+            }
+            if(future != null) {
+                future.complete(error == null ? outcome : SendOutcome.FAILED);
+            }
+            pump();
+        });
+    }
+
+    /**
+     * Schedules the next check unless an earlier one is pending. Must be called while holding the lock
+     */
+    private void wakeUpIn(long delayMicros) {
+        long wakeUp = clock.now() + delayMicros;
+
+        if(wakeUp >= scheduledWakeUp) {
+            return;
+        }
+        scheduledWakeUp = wakeUp;
+        timer.schedule(() -> {
+            synchronized (this) {
+                scheduledWakeUp = Long.MAX_VALUE;
+            }
+            pump();
+        }, Math.max(delayMicros, 1), TimeUnit.MICROSECONDS);
+    }
+
+    private CompletableFuture<SendOutcome> sendDownstream(byte[] payload, String receiver) {
+        try {
+            return downstream.sendWithOutcome(payload, receiver);
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(SendOutcome.FAILED);
+        }
+    }
+}
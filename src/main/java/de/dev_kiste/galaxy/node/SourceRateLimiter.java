@@ -0,0 +1,167 @@
+package de.dev_kiste.galaxy.node;
+
+import de.dev_kiste.galaxy.util.GalaxyAddress;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets limiting the rate of received messages per source.
+ *
+ * Buckets are held in a fixed size open addressing table keyed by the 16 bit address of the source. Sources which
+ * are not 4 hex digit addresses share one bucket. If all slots along the probe sequence of a new source are taken,
+ * the slot which was idle the longest is reused, so the table never grows and its statistics cover the currently
+ * active sources.
+ *
+ * @author Benny Lach
+ */
+class SourceRateLimiter {
+    /**
+     * Result of {@link #acquire} for messages exceeding the limit
+     */
+    final static long LIMITED = -1;
+    final static int DEFAULT_CAPACITY = 1024;
+
+    private final static int MAX_PROBES = 8;
+    private final static int EMPTY = -1;
+    private final static int UNKNOWN_SOURCE = GalaxyAddress.ADDRESS_SPACE;
+
+    private final double tokensPerNano;
+    private final double burst;
+    private final RateLimitPolicy policy;
+    private final LongSupplier clock;
+    private final int mask;
+
+    private final int[] keys;
+    private final String[] sources;
+    private final double[] tokens;
+    private final long[] updatedAt;
+    private final long[] acceptedCounts;
+    private final long[] limitedCounts;
+
+    SourceRateLimiter(double ratePerSecond, int burst, RateLimitPolicy policy) {
+        this(ratePerSecond, burst, policy, DEFAULT_CAPACITY, System::nanoTime);
+    }
+
+    /**
+     * Initializer
+     *
+     * @param ratePerSecond Sustained messages per second of each source
+     * @param burst Messages a source may send at once
+     * @param policy Handling of messages exceeding the limit
+     * @param capacity Number of sources tracked at once - rounded up to a power of two
+     * @param clock Source of the current time in nanoseconds
+     */
+    SourceRateLimiter(double ratePerSecond, int burst, RateLimitPolicy policy, int capacity, LongSupplier clock) {
+        int size = Integer.highestOneBit(Math.max(capacity, MAX_PROBES) - 1) << 1;
+
+        this.tokensPerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.policy = policy;
+        this.clock = clock;
+        this.mask = size - 1;
+
+        keys = new int[size];
+        sources = new String[size];
+        tokens = new double[size];
+        updatedAt = new long[size];
+        acceptedCounts = new long[size];
+        limitedCounts = new long[size];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    RateLimitPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Method to take a token for a message of the given source
+     *
+     * @param source The source of the message
+     * @return 0 if the message is within the limit, the delay in nanoseconds if the message is deferred or
+     * {@link #LIMITED} if the message exceeds the limit
+     */
+    synchronized long acquire(String source) {
+        long now = clock.getAsLong();
+        int slot = slotFor(source, now);
+
+        tokens[slot] = Math.min(burst, tokens[slot] + (now - updatedAt[slot]) * tokensPerNano);
+        updatedAt[slot] = now;
+
+        if(tokens[slot] >= 1) {
+            tokens[slot] -= 1;
+            acceptedCounts[slot]++;
+
+            return 0;
+        }
+        limitedCounts[slot]++;
+
+        // deferred messages borrow tokens up to a second burst
+        if(policy == RateLimitPolicy.DEFER && tokens[slot] - 1 >= -burst) {
+            tokens[slot] -= 1;
+
+            return Math.max(1, (long) Math.ceil(-tokens[slot] / tokensPerNano));
+        }
+        return LIMITED;
+    }
+
+    /**
+     * Method to get the sources which sent the most messages
+     *
+     * @param count Maximum number of sources
+     * @return traffic of the sources ordered by their total message count
+     */
+    synchronized List<SourceTraffic> getTopTalkers(int count) {
+        List<SourceTraffic> traffic = new ArrayList<>();
+
+        for(int i = 0; i < keys.length; i++) {
+            if(keys[i] != EMPTY) {
+                traffic.add(new SourceTraffic(sources[i], acceptedCounts[i], limitedCounts[i]));
+            }
+        }
+        traffic.sort((a, b) -> Long.compare(b.getTotalCount(), a.getTotalCount()));
+
+        return traffic.size() > count ? new ArrayList<>(traffic.subList(0, count)) : traffic;
+    }
+
+    private int slotFor(String source, long now) {
+        int key = keyOf(source);
+        int start = (key * 0x9E3779B9) >>> 16 & mask;
+        int idlest = start;
+
+        for(int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (start + probe) & mask;
+
+            if(keys[slot] == key) {
+                return slot;
+            }
+            if(keys[slot] == EMPTY) {
+                return claim(slot, key, source, now);
+            }
+            if(updatedAt[slot] < updatedAt[idlest]) {
+                idlest = slot;
+            }
+        }
+        return claim(idlest, key, source, now);
+    }
+
+    private int claim(int slot, int key, String source, long now) {
+        keys[slot] = key;
+        sources[slot] = key == UNKNOWN_SOURCE ? "" : source;
+        tokens[slot] = burst;
+        updatedAt[slot] = now;
+        acceptedCounts[slot] = 0;
+        limitedCounts[slot] = 0;
+
+        return slot;
+    }
+
+    private static int keyOf(String source) {
+        int key = GalaxyAddress.parse(source);
+
+        return key < 0 ? UNKNOWN_SOURCE : key;
+    }
+}
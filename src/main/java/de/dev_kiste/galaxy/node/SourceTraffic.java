@@ -0,0 +1,46 @@
+package de.dev_kiste.galaxy.node;
+
+/**
+ * Snapshot of the inbound traffic of a single source
+ *
+ * @author Benny Lach
+ */
+public class SourceTraffic {
+    private final String source;
+    private final long acceptedCount;
+    private final long limitedCount;
+
+    SourceTraffic(String source, long acceptedCount, long limitedCount) {
+        this.source = source;
+        this.acceptedCount = acceptedCount;
+        this.limitedCount = limitedCount;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Method to get the number of messages received within the rate limit
+     * @return number of accepted messages
+     */
+    public long getAcceptedCount() {
+        return acceptedCount;
+    }
+
+    /**
+     * Method to get the number of messages received while the source exceeded its rate limit
+     * @return number of dropped, deferred or tagged messages
+     */
+    public long getLimitedCount() {
+        return limitedCount;
+    }
+
+    /**
+     * Method to get the number of all received messages
+     * @return total number of messages
+     */
+    public long getTotalCount() {
+        return acceptedCount + limitedCount;
+    }
+}
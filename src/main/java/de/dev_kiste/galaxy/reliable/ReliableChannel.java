@@ -0,0 +1,427 @@
+package de.dev_kiste.galaxy.reliable;
+
+import de.dev_kiste.galaxy.messaging.GalaxyMessage;
+import de.dev_kiste.galaxy.node.GalaxyNode;
+import de.dev_kiste.galaxy.node.middleware.GalaxyMiddleware;
+import de.dev_kiste.galaxy.node.middleware.MiddlewareCaller;
+import de.dev_kiste.galaxy.node.middleware.MiddlewareStopper;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opt-in reliable delivery between {@link GalaxyNode}s.
+ *
+ * Payloads sent through the channel get a sequence number and are kept in a sliding window until the peer
+ * acknowledges them. Acknowledgements are cumulative with a selective bitmap for the following 32 sequence numbers
+ * and are piggybacked on every frame sent back to the peer. A standalone acknowledgement is only sent if there is no
+ * return traffic within the acknowledgement delay.
+ *
+ * Unacknowledged payloads are retransmitted after an adaptive timeout derived from the measured round trip time
+ * (RFC 6298, samples of retransmitted payloads are ignored). The future returned by
+ * {@link ReliableChannel#send(byte[], String)} completes with true once the peer acknowledged the payload and with
+ * false once the retransmission limit is reached.
+ *
+ * Received payloads are delivered once, in the order they arrive. Both peers must register a channel as middleware
+ * and attach it to their node:
+ * <pre>
+ * ReliableChannel channel = new ReliableChannel();
+ * GalaxyNode node = new GalaxyNodeBuilder().setDriver(driver).use(channel).build();
+ * channel.attach(node);
+ * </pre>
+ *
+ * @author Benny Lach
+ */
+public class ReliableChannel implements GalaxyMiddleware {
+    private final static int MAX_WINDOW = 32;
+
+    private static class PendingSend {
+        private final byte[] payload;
+        private final CompletableFuture<Boolean> future;
+
+        private PendingSend(byte[] payload, CompletableFuture<Boolean> future) {
+            this.payload = payload;
+            this.future = future;
+        }
+    }
+
+    private static class Outstanding {
+        private final int sequence;
+        private final byte[] payload;
+        private final CompletableFuture<Boolean> future;
+        private long sentAt;
+        private int transmissions = 0;
+        private ScheduledFuture<?> timer;
+
+        private Outstanding(int sequence, PendingSend pending) {
+            this.sequence = sequence;
+            this.payload = pending.payload;
+            this.future = pending.future;
+        }
+    }
+
+    private final int windowSize;
+    private final long initialTimeoutMillis;
+    private final int maxRetransmissions;
+    private final long ackDelayMillis;
+
+    private final ConcurrentHashMap<String, PeerSession> sessions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ReliableChannel");
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
+    volatile private Optional<GalaxyNode> node = Optional.empty();
+
+    /**
+     * Initializer using a window of 16 payloads, an initial retransmission timeout of 3 seconds,
+     * up to 5 retransmissions and an acknowledgement delay of 250 milliseconds
+     */
+    public ReliableChannel() {
+        this(16, 3000, 5, 250);
+    }
+
+    /**
+     * Default initializer
+     *
+     * @param windowSize maximum number of unacknowledged payloads per peer. Must be in range of [1, 32]
+     * @param initialTimeoutMillis retransmission timeout used until the first round trip was measured
+     * @param maxRetransmissions number of retransmissions before a payload is given up
+     * @param ackDelayMillis time to wait for return traffic before a standalone acknowledgement is sent
+     * @throws IllegalArgumentException if one of the values is out of range
+     */
+    public ReliableChannel(int windowSize, long initialTimeoutMillis, int maxRetransmissions, long ackDelayMillis) throws IllegalArgumentException {
+        if(windowSize <= 0 || windowSize > MAX_WINDOW) {
+            throw new IllegalArgumentException("Window size must be in range of [1, " + MAX_WINDOW + "]");
+        }
+        if(initialTimeoutMillis <= 0 || maxRetransmissions < 0 || ackDelayMillis < 0) {
+            throw new IllegalArgumentException("Timeout must be positive, retransmissions and delay must not be negative");
+        }
+        this.windowSize = windowSize;
+        this.initialTimeoutMillis = initialTimeoutMillis;
+        this.maxRetransmissions = maxRetransmissions;
+        this.ackDelayMillis = ackDelayMillis;
+    }
+
+    /**
+     * Attaches the channel to the node it is registered at
+     *
+     * @param node The node used to send frames
+     */
+    public void attach(GalaxyNode node) {
+        this.node = Optional.ofNullable(node);
+    }
+
+    /**
+     * Method to get the maximum payload size which can be sent through the channel
+     *
+     * @return max. payload size in bytes or -1 if the channel is not attached
+     */
+    public int getMaximumPayloadSize() {
+        return node.map(node -> node.getMaximumMessageSize() - ReliableFrame.HEADER_LENGTH).orElse(-1);
+    }
+
+    /**
+     * Method to get the current retransmission timeout used for the given peer
+     *
+     * @param peer The peer address
+     * @return timeout in milliseconds
+     */
+    public long getRetransmissionTimeout(String peer) {
+        PeerSession session = sessions.get(peer);
+
+        return session == null ? initialTimeoutMillis : session.getTimeout();
+    }
+
+    /**
+     * Method to send the given payload reliably to the given peer
+     *
+     * @param payload The payload to send
+     * @param receiver The peer address. Broadcasts are not supported
+     * @return Future completing with true once the peer acknowledged the payload
+     * @throws IllegalArgumentException if payload or receiver are invalid or the payload is too big
+     */
+    public CompletableFuture<Boolean> send(byte[] payload, String receiver) throws IllegalArgumentException {
+        if(payload == null || receiver == null) {
+            throw new IllegalArgumentException("Payload and receiver must not be null!");
+        }
+        if(GalaxyNode.BROADCAST_ADDRESS.equals(receiver)) {
+            throw new IllegalArgumentException("Broadcasts can not be sent reliably");
+        }
+        if(!node.isPresent()) {
+            return CompletableFuture.completedFuture(false);
+        }
+        if(payload.length > getMaximumPayloadSize()) {
+            throw new IllegalArgumentException("Payload must not exceed the maximum supported payload size!");
+        }
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        sessions.computeIfAbsent(receiver, PeerSession::new).enqueue(new PendingSend(payload.clone(), future));
+
+        return future;
+    }
+
+    @Override
+    public void execute(GalaxyMessage message, MiddlewareCaller caller, MiddlewareStopper stopper) {
+        byte[] frame = message.getPayload();
+
+        if(!ReliableFrame.isFrame(frame) || message.getSource() == null) {
+            caller.call(message);
+            return;
+        }
+        PeerSession session = sessions.computeIfAbsent(message.getSource(), PeerSession::new);
+
+        session.acknowledged(ReliableFrame.ack(frame), ReliableFrame.ackBits(frame));
+        session.skipTo(ReliableFrame.base(frame));
+
+        if(ReliableFrame.type(frame) == ReliableFrame.TYPE_DATA && session.received(ReliableFrame.sequence(frame))) {
+            byte[] payload = Arrays.copyOfRange(frame, ReliableFrame.HEADER_LENGTH, frame.length);
+
+            caller.call(new GalaxyMessage(payload, message.getSource(), message.getTrace().orElse(null)));
+        } else {
+            stopper.stop();
+        }
+    }
+
+    private void transmit(String peer, byte[] frame) {
+        node.ifPresent(node -> node.sendPayload(frame, peer));
+    }
+
+    /**
+     * Sender and receiver state of a single peer
+     */
+    private class PeerSession {
+        private final String peer;
+
+        // sender state
+        private final Outstanding[] window = new Outstanding[MAX_WINDOW];
+        private final ArrayDeque<PendingSend> queue = new ArrayDeque<>();
+        private int nextSequence = 0;
+        private int sendBase = 0;
+        private int outstandingCount = 0;
+        private final RetransmissionTimeout timeout = new RetransmissionTimeout(initialTimeoutMillis);
+
+        // receiver state - bit i of receivedBits is set if expected + i was received
+        private int expected = 0;
+        private long receivedBits = 0;
+        private ScheduledFuture<?> ackTimer;
+
+        private PeerSession(String peer) {
+            this.peer = peer;
+        }
+
+        private synchronized long getTimeout() {
+            return timeout.getTimeout();
+        }
+
+        private void enqueue(PendingSend pending) {
+            List<byte[]> frames;
+
+            synchronized (this) {
+                queue.add(pending);
+                frames = fillWindow();
+            }
+            frames.forEach(frame -> transmit(peer, frame));
+        }
+
+        /**
+         * Moves queued payloads into the window as long as there is space
+         *
+         * @return frames to transmit
+         */
+        private List<byte[]> fillWindow() {
+            List<byte[]> frames = new ArrayList<>();
+
+            while(!queue.isEmpty() && outstandingCount < windowSize
+                    && ReliableFrame.distance(sendBase, nextSequence) < windowSize) {
+                Outstanding outstanding = new Outstanding(nextSequence, queue.poll());
+
+                window[nextSequence % MAX_WINDOW] = outstanding;
+                outstandingCount++;
+                nextSequence = (nextSequence + 1) & 0xFFFF;
+                frames.add(prepare(outstanding));
+            }
+            return frames;
+        }
+
+        /**
+         * Creates the data frame for the given payload including the current acknowledgement state
+         * and arms the retransmission timer
+         */
+        private byte[] prepare(Outstanding outstanding) {
+            outstanding.sentAt = System.nanoTime();
+            outstanding.transmissions++;
+            outstanding.timer = scheduler.schedule(() -> timedOut(outstanding), timeout.getTimeout(), TimeUnit.MILLISECONDS);
+            cancelAckTimer();
+
+            return ReliableFrame.create(ReliableFrame.TYPE_DATA, outstanding.sequence, sendBase, expected, ackBits(), outstanding.payload);
+        }
+
+        private void timedOut(Outstanding outstanding) {
+            byte[] frame = null;
+            List<byte[]> frames = null;
+            boolean didGiveUp = false;
+
+            synchronized (this) {
+                if(window[outstanding.sequence % MAX_WINDOW] != outstanding) {
+                    return;
+                }
+                if(outstanding.transmissions > maxRetransmissions) {
+                    release(outstanding);
+                    didGiveUp = true;
+                    frames = fillWindow();
+                } else {
+                    timeout.backOff();
+                    frame = prepare(outstanding);
+                }
+            }
+            if(didGiveUp) {
+                outstanding.future.complete(false);
+                frames.forEach(value -> transmit(peer, value));
+            } else {
+                transmit(peer, frame);
+            }
+        }
+
+        private void acknowledged(int ack, int ackBits) {
+            List<Outstanding> completed = new ArrayList<>();
+            List<byte[]> frames;
+
+            synchronized (this) {
+                // ignore acknowledgements outside of the current window, e.g. of a restarted peer. A cumulative
+                // acknowledgement behind the window base still carries selective acknowledgements, e.g. while the
+                // peer did not yet skip a payload which was given up
+                if(outstandingCount == 0 || ReliableFrame.distance(ack, sendBase) > MAX_WINDOW
+                        || ReliableFrame.distance(ack, nextSequence) < 0) {
+                    return;
+                }
+                for(Outstanding outstanding : window) {
+                    if(outstanding == null) {
+                        continue;
+                    }
+                    int distance = ReliableFrame.distance(ack, outstanding.sequence);
+                    boolean isAcknowledged = distance < 0
+                            || (distance > 0 && distance <= MAX_WINDOW && (ackBits & (1 << (distance - 1))) != 0);
+
+                    if(isAcknowledged) {
+                        if(outstanding.transmissions == 1) {
+                            timeout.sampleRoundTrip((System.nanoTime() - outstanding.sentAt) / 1000000.0);
+                        }
+                        release(outstanding);
+                        completed.add(outstanding);
+                    }
+                }
+                frames = fillWindow();
+            }
+            completed.forEach(outstanding -> outstanding.future.complete(true));
+            frames.forEach(frame -> transmit(peer, frame));
+        }
+
+        /**
+         * Removes the given payload from the window and advances the window base
+         */
+        private void release(Outstanding outstanding) {
+            outstanding.timer.cancel(false);
+            window[outstanding.sequence % MAX_WINDOW] = null;
+            outstandingCount--;
+
+            while(sendBase != nextSequence && window[sendBase % MAX_WINDOW] == null) {
+                sendBase = (sendBase + 1) & 0xFFFF;
+            }
+        }
+
+        /**
+         * Moves the receive window to the window base of the peer, so sequence numbers the peer gave up on are
+         * no longer awaited
+         */
+        private synchronized void skipTo(int base) {
+            int distance = ReliableFrame.distance(expected, base);
+
+            if(distance <= 0) {
+                return;
+            }
+            receivedBits = distance >= Long.SIZE ? 0 : receivedBits >>> distance;
+            expected = base;
+
+            while((receivedBits & 1) != 0) {
+                receivedBits >>>= 1;
+                expected = (expected + 1) & 0xFFFF;
+            }
+        }
+
+        /**
+         * Records the given sequence number as received
+         *
+         * @return true if the payload was received for the first time and must be delivered
+         */
+        private boolean received(int sequence) {
+            boolean isNew;
+
+            synchronized (this) {
+                int distance = ReliableFrame.distance(expected, sequence);
+
+                if(distance < -MAX_WINDOW) {
+                    // the peer restarted - start over at its current sequence number
+                    expected = sequence;
+                    receivedBits = 0;
+                    distance = 0;
+                } else if(distance >= Long.SIZE) {
+                    // the peer gave up on older payloads - move the window forward
+                    expected = (sequence - (Long.SIZE - 1)) & 0xFFFF;
+                    receivedBits = 0;
+                    distance = Long.SIZE - 1;
+                }
+                isNew = distance >= 0 && (receivedBits & (1L << distance)) == 0;
+
+                if(isNew) {
+                    receivedBits |= 1L << distance;
+
+                    while((receivedBits & 1) != 0) {
+                        receivedBits >>>= 1;
+                        expected = (expected + 1) & 0xFFFF;
+                    }
+                    if(ackTimer == null) {
+                        ackTimer = scheduler.schedule(this::sendAck, ackDelayMillis, TimeUnit.MILLISECONDS);
+                    }
+                }
+            }
+            if(!isNew) {
+                // the peer did not get our acknowledgement - repeat it right away
+                sendAck();
+            }
+            return isNew;
+        }
+
+        private void sendAck() {
+            byte[] frame;
+
+            synchronized (this) {
+                cancelAckTimer();
+                frame = ReliableFrame.create(ReliableFrame.TYPE_ACK, 0, sendBase, expected, ackBits(), null);
+            }
+            transmit(peer, frame);
+        }
+
+        private void cancelAckTimer() {
+            if(ackTimer != null) {
+                ackTimer.cancel(false);
+                ackTimer = null;
+            }
+        }
+
+        private int ackBits() {
+            return (int) (receivedBits >>> 1);
+        }
+    }
+}
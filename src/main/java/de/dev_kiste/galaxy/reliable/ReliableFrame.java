@@ -0,0 +1,83 @@
+package de.dev_kiste.galaxy.reliable;
+
+/**
+ * Binary layout of the frames exchanged by {@link ReliableChannel}
+ *
+ * <pre>
+ * 0     magic
+ * 1     type
+ * 2-3   sequence number of the carried payload - unused for pure acknowledgements
+ * 4-5   window base of the sender - every sequence number before it was acknowledged or given up
+ * 6-7   cumulative acknowledgement - every sequence number before it was received
+ * 8-11  selective acknowledgement bitmap - bit i set means ack + 1 + i was received
+ * 12-   payload
+ * </pre>
+ *
+ * Every frame carries the acknowledgement state of the sender, so acknowledgements are piggybacked on return traffic.
+ * The window base lets the receiver skip sequence numbers the sender gave up on.
+ *
+ * @author Benny Lach
+ */
+final class ReliableFrame {
+    final static int HEADER_LENGTH = 12;
+
+    final static byte MAGIC = (byte) 0xA9;
+    final static int TYPE_DATA = 1;
+    final static int TYPE_ACK = 2;
+
+    private ReliableFrame() {}
+
+    static boolean isFrame(byte[] frame) {
+        return frame.length >= HEADER_LENGTH && frame[0] == MAGIC;
+    }
+
+    static byte[] create(int type, int sequence, int base, int ack, int ackBits, byte[] payload) {
+        int length = payload == null ? 0 : payload.length;
+        byte[] frame = new byte[HEADER_LENGTH + length];
+
+        frame[0] = MAGIC;
+        frame[1] = (byte) type;
+        frame[2] = (byte) (sequence >> 8);
+        frame[3] = (byte) sequence;
+        frame[4] = (byte) (base >> 8);
+        frame[5] = (byte) base;
+        frame[6] = (byte) (ack >> 8);
+        frame[7] = (byte) ack;
+        frame[8] = (byte) (ackBits >> 24);
+        frame[9] = (byte) (ackBits >> 16);
+        frame[10] = (byte) (ackBits >> 8);
+        frame[11] = (byte) ackBits;
+
+        if(length > 0) {
+            System.arraycopy(payload, 0, frame, HEADER_LENGTH, length);
+        }
+        return frame;
+    }
+
+    static int type(byte[] frame) {
+        return frame[1];
+    }
+
+    static int sequence(byte[] frame) {
+        return ((frame[2] & 0xFF) << 8) | (frame[3] & 0xFF);
+    }
+
+    static int base(byte[] frame) {
+        return ((frame[4] & 0xFF) << 8) | (frame[5] & 0xFF);
+    }
+
+    static int ack(byte[] frame) {
+        return ((frame[6] & 0xFF) << 8) | (frame[7] & 0xFF);
+    }
+
+    static int ackBits(byte[] frame) {
+        return ((frame[8] & 0xFF) << 24) | ((frame[9] & 0xFF) << 16) | ((frame[10] & 0xFF) << 8) | (frame[11] & 0xFF);
+    }
+
+    /**
+     * Signed distance between two 16 bit sequence numbers
+     */
+    static int distance(int from, int to) {
+        return (short) (to - from);
+    }
+}
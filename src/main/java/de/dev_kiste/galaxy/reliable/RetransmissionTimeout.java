@@ -0,0 +1,61 @@
+package de.dev_kiste.galaxy.reliable;
+
+/**
+ * Adaptive retransmission timeout of a single peer derived from the measured round trip times (RFC 6298).
+ *
+ * Not thread safe, the owning session synchronizes access
+ *
+ * @author Benny Lach
+ */
+class RetransmissionTimeout {
+    final static long MIN_TIMEOUT_MILLIS = 200;
+    final static long MAX_TIMEOUT_MILLIS = 60000;
+
+    private double smoothedRtt = -1;
+    private double rttVariance = 0;
+    private long timeout;
+
+    /**
+     * Initializer
+     *
+     * @param initialTimeoutMillis timeout used until the first round trip was measured
+     */
+    RetransmissionTimeout(long initialTimeoutMillis) {
+        this.timeout = initialTimeoutMillis;
+    }
+
+    /**
+     * Method to get the current timeout
+     *
+     * @return timeout in milliseconds
+     */
+    long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Method to update the timeout with a measured round trip. Round trips of retransmitted payloads must not be
+     * sampled, as it is unknown which transmission was acknowledged
+     *
+     * @param rtt The round trip time in milliseconds
+     */
+    void sampleRoundTrip(double rtt) {
+        if(smoothedRtt < 0) {
+            smoothedRtt = rtt;
+            rttVariance = rtt / 2;
+        } else {
+            rttVariance = 0.75 * rttVariance + 0.25 * Math.abs(smoothedRtt - rtt);
+            smoothedRtt = 0.875 * smoothedRtt + 0.125 * rtt;
+        }
+        long computed = (long) (smoothedRtt + Math.max(MIN_TIMEOUT_MILLIS, 4 * rttVariance));
+
+        timeout = Math.max(MIN_TIMEOUT_MILLIS, Math.min(computed, MAX_TIMEOUT_MILLIS));
+    }
+
+    /**
+     * Method to double the timeout after a retransmission
+     */
+    void backOff() {
+        timeout = Math.min(timeout * 2, MAX_TIMEOUT_MILLIS);
+    }
+}
@@ -0,0 +1,39 @@
+package de.dev_kiste.galaxy.routing;
+
+import java.util.Arrays;
+
+/**
+ * Remembers the most recent flooded frames by origin and sequence number to suppress rebroadcast storms.
+ *
+ * Keys are kept in a fixed size ring, the oldest key is forgotten first.
+ *
+ * @author Benny Lach
+ */
+final class DuplicateFilter {
+    private final int[] keys;
+    private int next = 0;
+
+    DuplicateFilter(int capacity) {
+        keys = new int[capacity];
+        Arrays.fill(keys, -1);
+    }
+
+    /**
+     * Marks the given frame as seen
+     *
+     * @return true if the frame was seen before
+     */
+    synchronized boolean markSeen(int origin, int sequence) {
+        int key = (origin << 16) | sequence;
+
+        for(int value : keys) {
+            if(value == key) {
+                return true;
+            }
+        }
+        keys[next] = key;
+        next = (next + 1) % keys.length;
+
+        return false;
+    }
+}
@@ -0,0 +1,115 @@
+package de.dev_kiste.galaxy.routing;
+
+import de.dev_kiste.galaxy.util.GalaxyAddress;
+
+/**
+ * Binary layout of the frames exchanged by {@link MeshRouter}
+ *
+ * <pre>
+ * 0     magic
+ * 1     version (high nibble) and type (low nibble)
+ * 2     hops travelled
+ * 3     remaining time to live
+ * 4-5   origin address
+ * 6-7   destination address
+ * 8-9   sequence number of the origin
+ * 10-   payload
+ * </pre>
+ *
+ * Frames are read and written in place, there is no object per frame.
+ *
+ * Other payloads may start with the magic byte as well, so a payload is only taken as frame if version, type,
+ * addresses and hop counts are consistent. Route requests and replies never carry a payload.
+ *
+ * @author Benny Lach
+ */
+final class MeshFrame {
+    final static int HEADER_LENGTH = 10;
+
+    final static byte MAGIC = (byte) 0xA7;
+    final static int VERSION = 1;
+    final static int TYPE_DATA = 1;
+    final static int TYPE_ROUTE_REQUEST = 2;
+    final static int TYPE_ROUTE_REPLY = 3;
+
+    private MeshFrame() {}
+
+    static boolean isFrame(byte[] frame) {
+        if(frame.length < HEADER_LENGTH || frame[0] != MAGIC || (frame[1] & 0xFF) >> 4 != VERSION) {
+            return false;
+        }
+        // hops travelled plus hops left stay at the initial limit while the frame is forwarded
+        if(hops(frame) + ttl(frame) > 0xFF || origin(frame) == GalaxyAddress.BROADCAST) {
+            return false;
+        }
+        int type = type(frame);
+
+        if(type == TYPE_DATA) {
+            return true;
+        }
+        return (type == TYPE_ROUTE_REQUEST || type == TYPE_ROUTE_REPLY)
+                && frame.length == HEADER_LENGTH
+                && destination(frame) != GalaxyAddress.BROADCAST;
+    }
+
+    static byte[] create(int type, int hops, int ttl, int origin, int destination, int sequence,
+                         byte[] payload, int offset, int length) {
+        byte[] frame = new byte[HEADER_LENGTH + length];
+
+        frame[0] = MAGIC;
+        frame[1] = (byte) (VERSION << 4 | type);
+        frame[2] = (byte) hops;
+        frame[3] = (byte) ttl;
+        writeShort(frame, 4, origin);
+        writeShort(frame, 6, destination);
+        writeShort(frame, 8, sequence);
+        System.arraycopy(payload, offset, frame, HEADER_LENGTH, length);
+
+        return frame;
+    }
+
+    /**
+     * Creates a copy of the given frame with one more hop travelled and one less hop to live
+     */
+    static byte[] forwarded(byte[] frame) {
+        byte[] copy = frame.clone();
+
+        copy[2] = (byte) Math.min(hops(frame) + 1, 0xFF);
+        copy[3] = (byte) (ttl(frame) - 1);
+
+        return copy;
+    }
+
+    static int type(byte[] frame) {
+        return frame[1] & 0x0F;
+    }
+
+    static int hops(byte[] frame) {
+        return frame[2] & 0xFF;
+    }
+
+    static int ttl(byte[] frame) {
+        return frame[3] & 0xFF;
+    }
+
+    static int origin(byte[] frame) {
+        return readShort(frame, 4);
+    }
+
+    static int destination(byte[] frame) {
+        return readShort(frame, 6);
+    }
+
+    static int sequence(byte[] frame) {
+        return readShort(frame, 8);
+    }
+
+    private static void writeShort(byte[] frame, int index, int value) {
+        frame[index] = (byte) (value >> 8);
+        frame[index + 1] = (byte) value;
+    }
+
+    private static int readShort(byte[] frame, int index) {
+        return ((frame[index] & 0xFF) << 8) | (frame[index + 1] & 0xFF);
+    }
+}
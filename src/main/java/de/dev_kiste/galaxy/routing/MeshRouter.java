@@ -0,0 +1,370 @@
+package de.dev_kiste.galaxy.routing;
+
+import de.dev_kiste.galaxy.messaging.GalaxyMessage;
+import de.dev_kiste.galaxy.node.GalaxyNode;
+import de.dev_kiste.galaxy.node.middleware.GalaxyMiddleware;
+import de.dev_kiste.galaxy.node.middleware.MiddlewareCaller;
+import de.dev_kiste.galaxy.node.middleware.MiddlewareStopper;
+import de.dev_kiste.galaxy.util.GalaxyAddress;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Multi-hop routing on top of a {@link GalaxyNode}.
+ *
+ * The router uses reactive route discovery: if no route to a destination is known, a route request is flooded
+ * through the network and the destination answers with a route reply along the reverse path. Every received frame
+ * also teaches the router a route back to its origin. Routes expire after the configured lifetime.
+ *
+ * Flooded frames - route requests and broadcasts - are rebroadcast after a random delay. A rebroadcast is
+ * suppressed if the same frame was already seen before or was heard from enough neighbours in the meantime.
+ *
+ * The router must be registered as the first middleware of the node and attached to the node afterwards:
+ * <pre>
+ * MeshRouter router = new MeshRouter();
+ * GalaxyNode node = new GalaxyNodeBuilder().setDriver(driver).use(router).build();
+ * router.attach(node);
+ * </pre>
+ * Frames addressed to this node are passed on to the following middleware with the origin as source,
+ * frames for other nodes are forwarded and not passed on.
+ *
+ * @author Benny Lach
+ */
+public class MeshRouter implements GalaxyMiddleware {
+    private final static byte[] EMPTY = new byte[0];
+    // number of copies of a flooded frame after which the own rebroadcast is suppressed
+    private final static int SUPPRESSION_THRESHOLD = 3;
+
+    private final RoutingTable routingTable;
+    private final DuplicateFilter duplicates = new DuplicateFilter(256);
+    private final int maxHops;
+    private final long discoveryTimeoutMillis;
+    private final long maxRebroadcastDelayMillis;
+
+    private final AtomicInteger sequence = new AtomicInteger();
+    private final ConcurrentHashMap<Integer, CompletableFuture<Boolean>> discoveries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, AtomicInteger> pendingRebroadcasts = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "MeshRouter");
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
+    volatile private Optional<GalaxyNode> node = Optional.empty();
+    volatile private int address = -1;
+
+    /**
+     * Initializer using up to 8 hops, a route lifetime of 5 minutes, a discovery timeout of 30 seconds
+     * and a rebroadcast delay of up to 500 milliseconds
+     */
+    public MeshRouter() {
+        this(8, 300000, 30000, 500);
+    }
+
+    /**
+     * Default initializer
+     *
+     * @param maxHops maximum number of hops a frame may travel
+     * @param routeLifetimeMillis time in milliseconds a route stays valid without being used
+     * @param discoveryTimeoutMillis time in milliseconds to wait for a route reply
+     * @param maxRebroadcastDelayMillis upper bound of the random delay before a flooded frame is rebroadcast
+     * @throws IllegalArgumentException if one of the values is out of range
+     */
+    public MeshRouter(int maxHops, long routeLifetimeMillis, long discoveryTimeoutMillis, long maxRebroadcastDelayMillis) throws IllegalArgumentException {
+        if(maxHops <= 0 || maxHops > 0xFF) {
+            throw new IllegalArgumentException("Max hops must be in range of [1, 255]");
+        }
+        if(discoveryTimeoutMillis <= 0 || maxRebroadcastDelayMillis < 0) {
+            throw new IllegalArgumentException("Discovery timeout must be positive and rebroadcast delay must not be negative");
+        }
+        this.routingTable = new RoutingTable(routeLifetimeMillis);
+        this.maxHops = maxHops;
+        this.discoveryTimeoutMillis = discoveryTimeoutMillis;
+        this.maxRebroadcastDelayMillis = maxRebroadcastDelayMillis;
+    }
+
+    /**
+     * Attaches the router to the node it is registered at
+     *
+     * @param node The node used to send frames
+     */
+    public void attach(GalaxyNode node) {
+        this.node = Optional.ofNullable(node);
+        this.address = -1;
+    }
+
+    /**
+     * Method to get the routing table
+     *
+     * @return the used routing table
+     */
+    public RoutingTable getRoutingTable() {
+        return routingTable;
+    }
+
+    /**
+     * Method to get the maximum payload size which can be sent through the mesh
+     *
+     * @return max. payload size in bytes or -1 if the router is not attached
+     */
+    public int getMaximumPayloadSize() {
+        return node.map(node -> node.getMaximumMessageSize() - MeshFrame.HEADER_LENGTH).orElse(-1);
+    }
+
+    /**
+     * Method to send the given payload to a node which may be several hops away.
+     * If no route is known, a route discovery is started first
+     *
+     * @param payload The payload to send
+     * @param destination The 4-hex-digit destination address - {@link GalaxyNode#BROADCAST_ADDRESS} floods the payload
+     * @return Future indicating if the payload was handed to the next hop
+     * @throws IllegalArgumentException if payload or destination are invalid or the payload is too big
+     */
+    public CompletableFuture<Boolean> send(byte[] payload, String destination) throws IllegalArgumentException {
+        if(payload == null) {
+            throw new IllegalArgumentException("Payload must not be null!");
+        }
+        int target = GalaxyAddress.parse(destination);
+
+        if(target < 0) {
+            throw new IllegalArgumentException("Destination must be a 4-hex-digit address");
+        }
+        if(!node.isPresent()) {
+            return CompletableFuture.completedFuture(false);
+        }
+        if(payload.length > getMaximumPayloadSize()) {
+            throw new IllegalArgumentException("Payload must not exceed the maximum supported payload size!");
+        }
+        GalaxyNode node = this.node.get();
+
+        return resolveAddress().thenCompose(self -> {
+            if(self < 0) {
+                return CompletableFuture.completedFuture(false);
+            }
+            int number = nextSequence();
+            byte[] frame = MeshFrame.create(MeshFrame.TYPE_DATA, 0, maxHops, self, target, number, payload, 0, payload.length);
+
+            if(target == GalaxyAddress.BROADCAST) {
+                duplicates.markSeen(self, number);
+
+                return node.sendBroadcastPayload(frame);
+            }
+            return sendTowards(target, frame, true);
+        });
+    }
+
+    @Override
+    public void execute(GalaxyMessage message, MiddlewareCaller caller, MiddlewareStopper stopper) {
+        byte[] frame = message.getPayload();
+
+        if(!MeshFrame.isFrame(frame) || !node.isPresent()) {
+            caller.call(message);
+            return;
+        }
+        resolveAddress().thenAccept(self -> {
+            if(self < 0) {
+                stopper.stop();
+            } else {
+                handleFrame(message, frame, self, caller, stopper);
+            }
+        });
+    }
+
+    private void handleFrame(GalaxyMessage message, byte[] frame, int self, MiddlewareCaller caller, MiddlewareStopper stopper) {
+        int previousHop = GalaxyAddress.parse(message.getSource());
+        int origin = MeshFrame.origin(frame);
+
+        if(previousHop < 0 || origin == self) {
+            stopper.stop();
+            return;
+        }
+        routingTable.update(previousHop, previousHop, 1);
+
+        if(origin != previousHop) {
+            routingTable.update(origin, previousHop, MeshFrame.hops(frame) + 1);
+        }
+        switch (MeshFrame.type(frame)) {
+            case MeshFrame.TYPE_DATA:
+                handleData(message, frame, self, caller, stopper);
+                break;
+            case MeshFrame.TYPE_ROUTE_REQUEST:
+                handleRouteRequest(frame, self, previousHop);
+                stopper.stop();
+                break;
+            case MeshFrame.TYPE_ROUTE_REPLY:
+                handleRouteReply(frame, self);
+                stopper.stop();
+                break;
+            default:
+                stopper.stop();
+        }
+    }
+
+    private void handleData(GalaxyMessage message, byte[] frame, int self, MiddlewareCaller caller, MiddlewareStopper stopper) {
+        int origin = MeshFrame.origin(frame);
+        int destination = MeshFrame.destination(frame);
+
+        if(destination == GalaxyAddress.BROADCAST) {
+            if(duplicates.markSeen(origin, MeshFrame.sequence(frame))) {
+                noteDuplicate(frame);
+                stopper.stop();
+
+                return;
+            }
+            scheduleRebroadcast(frame);
+        } else if(destination != self) {
+            forward(frame, destination);
+            stopper.stop();
+
+            return;
+        }
+        byte[] payload = Arrays.copyOfRange(frame, MeshFrame.HEADER_LENGTH, frame.length);
+
+        caller.call(new GalaxyMessage(payload, GalaxyAddress.format(origin), message.getTrace().orElse(null)));
+    }
+
+    private void handleRouteRequest(byte[] frame, int self, int previousHop) {
+        int origin = MeshFrame.origin(frame);
+
+        if(duplicates.markSeen(origin, MeshFrame.sequence(frame))) {
+            noteDuplicate(frame);
+            return;
+        }
+        if(MeshFrame.destination(frame) == self) {
+            byte[] reply = MeshFrame.create(MeshFrame.TYPE_ROUTE_REPLY, 0, maxHops, self, origin, nextSequence(), EMPTY, 0, 0);
+
+            node.ifPresent(node -> node.sendPayload(reply, GalaxyAddress.format(previousHop)));
+        } else {
+            scheduleRebroadcast(frame);
+        }
+    }
+
+    private void handleRouteReply(byte[] frame, int self) {
+        int destination = MeshFrame.destination(frame);
+
+        if(destination == self) {
+            finishDiscovery(MeshFrame.origin(frame), true);
+        } else {
+            forward(frame, destination);
+        }
+    }
+
+    private void forward(byte[] frame, int destination) {
+        if(MeshFrame.ttl(frame) == 0) {
+            return;
+        }
+        int nextHop = routingTable.getNextHop(destination);
+
+        if(nextHop != RoutingTable.NO_ROUTE) {
+            sendToHop(MeshFrame.forwarded(frame), destination, nextHop);
+        }
+    }
+
+    private CompletableFuture<Boolean> sendTowards(int destination, byte[] frame, boolean shouldDiscover) {
+        int nextHop = routingTable.getNextHop(destination);
+
+        if(nextHop != RoutingTable.NO_ROUTE) {
+            return sendToHop(frame, destination, nextHop);
+        }
+        if(!shouldDiscover) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return discover(destination).thenCompose(didFind -> didFind
+                ? sendTowards(destination, frame, false)
+                : CompletableFuture.completedFuture(false));
+    }
+
+    private CompletableFuture<Boolean> sendToHop(byte[] frame, int destination, int nextHop) {
+        return node.map(node -> node.sendPayload(frame, GalaxyAddress.format(nextHop)).thenApply(didSend -> {
+            if(didSend) {
+                routingTable.refresh(destination);
+            } else {
+                routingTable.remove(destination);
+            }
+            return didSend;
+        })).orElseGet(() -> CompletableFuture.completedFuture(false));
+    }
+
+    private CompletableFuture<Boolean> discover(int destination) {
+        CompletableFuture<Boolean> discovery = new CompletableFuture<>();
+        CompletableFuture<Boolean> running = discoveries.putIfAbsent(destination, discovery);
+
+        if(running != null) {
+            return running;
+        }
+        int number = nextSequence();
+        byte[] request = MeshFrame.create(MeshFrame.TYPE_ROUTE_REQUEST, 0, maxHops, address, destination, number, EMPTY, 0, 0);
+
+        duplicates.markSeen(address, number);
+        scheduler.schedule(() -> finishDiscovery(destination, false), discoveryTimeoutMillis, TimeUnit.MILLISECONDS);
+        node.map(node -> node.sendBroadcastPayload(request))
+                .orElseGet(() -> CompletableFuture.completedFuture(false))
+                .thenAccept(didSend -> {
+                    if(!didSend) {
+                        finishDiscovery(destination, false);
+                    }
+                });
+
+        return discovery;
+    }
+
+    private void finishDiscovery(int destination, boolean didFind) {
+        CompletableFuture<Boolean> discovery = discoveries.remove(destination);
+
+        if(discovery != null) {
+            discovery.complete(didFind);
+        }
+    }
+
+    private void scheduleRebroadcast(byte[] frame) {
+        if(MeshFrame.ttl(frame) == 0) {
+            return;
+        }
+        int key = (MeshFrame.origin(frame) << 16) | MeshFrame.sequence(frame);
+        AtomicInteger heard = new AtomicInteger(1);
+        long delay = ThreadLocalRandom.current().nextLong(maxRebroadcastDelayMillis + 1);
+
+        pendingRebroadcasts.put(key, heard);
+        scheduler.schedule(() -> {
+            pendingRebroadcasts.remove(key);
+
+            if(heard.get() < SUPPRESSION_THRESHOLD) {
+                node.ifPresent(node -> node.sendBroadcastPayload(MeshFrame.forwarded(frame)));
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void noteDuplicate(byte[] frame) {
+        AtomicInteger heard = pendingRebroadcasts.get((MeshFrame.origin(frame) << 16) | MeshFrame.sequence(frame));
+
+        if(heard != null) {
+            heard.incrementAndGet();
+        }
+    }
+
+    private CompletableFuture<Integer> resolveAddress() {
+        int current = address;
+
+        if(current >= 0 || !node.isPresent()) {
+            return CompletableFuture.completedFuture(current);
+        }
+        return node.get().getAddress().thenApply(value -> {
+            address = GalaxyAddress.parse(value);
+
+            return address;
+        });
+    }
+
+    private int nextSequence() {
+        return sequence.incrementAndGet() & 0xFFFF;
+    }
+}
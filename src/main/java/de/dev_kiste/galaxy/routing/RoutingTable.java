@@ -0,0 +1,148 @@
+package de.dev_kiste.galaxy.routing;
+
+import de.dev_kiste.galaxy.util.GalaxyAddress;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Routing table holding the next hop and distance of every known destination.
+ *
+ * The table is directly indexed by the numeric 4-hex-digit address, so lookups are O(1) without hashing or boxing.
+ * It uses about 700 KB independent of the number of known routes. Routes expire after the configured lifetime
+ * unless they are refreshed.
+ *
+ * @author Benny Lach
+ */
+public class RoutingTable {
+    /**
+     * Value returned for unknown destinations
+     */
+    public final static int NO_ROUTE = -1;
+
+    private final char[] nextHops = new char[GalaxyAddress.ADDRESS_SPACE];
+    private final byte[] hopCounts = new byte[GalaxyAddress.ADDRESS_SPACE];
+    // expiry times in milliseconds relative to epoch. 0 marks an empty entry
+    private final long[] expiresAt = new long[GalaxyAddress.ADDRESS_SPACE];
+
+    private final long lifetime;
+    private final LongSupplier clock;
+    private final long epoch;
+
+    /**
+     * Default initializer
+     *
+     * @param routeLifetimeMillis time in milliseconds a route stays valid without refresh
+     * @throws IllegalArgumentException if the lifetime is not positive or exceeds one day
+     */
+    public RoutingTable(long routeLifetimeMillis) throws IllegalArgumentException {
+        this(routeLifetimeMillis, System::currentTimeMillis);
+    }
+
+    /**
+     * Initializer using the given clock
+     *
+     * @param routeLifetimeMillis time in milliseconds a route stays valid without refresh
+     * @param clock clock returning the current time in milliseconds
+     * @throws IllegalArgumentException if the lifetime is not positive or exceeds one day
+     */
+    public RoutingTable(long routeLifetimeMillis, LongSupplier clock) throws IllegalArgumentException {
+        if(routeLifetimeMillis <= 0 || routeLifetimeMillis > 86400000L) {
+            throw new IllegalArgumentException("Route lifetime must be positive and must not exceed one day");
+        }
+        this.lifetime = routeLifetimeMillis;
+        this.clock = clock;
+        this.epoch = clock.getAsLong();
+    }
+
+    /**
+     * Method to get the next hop towards the given destination
+     *
+     * @param destination numeric destination address
+     * @return numeric address of the next hop or {@link RoutingTable#NO_ROUTE}
+     */
+    public synchronized int getNextHop(int destination) {
+        return isValid(destination, now()) ? nextHops[destination] : NO_ROUTE;
+    }
+
+    /**
+     * Method to get the number of hops to the given destination
+     *
+     * @param destination numeric destination address
+     * @return number of hops or {@link RoutingTable#NO_ROUTE}
+     */
+    public synchronized int getHopCount(int destination) {
+        return isValid(destination, now()) ? hopCounts[destination] & 0xFF : NO_ROUTE;
+    }
+
+    /**
+     * Offers a route to the table. The route is taken if there is no valid route yet, if it is not longer than the
+     * known one or if it uses the same next hop. Taking a route refreshes its lifetime
+     *
+     * @param destination numeric destination address
+     * @param nextHop numeric address of the next hop
+     * @param hopCount number of hops to the destination
+     * @return true if the route was taken
+     */
+    public synchronized boolean update(int destination, int nextHop, int hopCount) {
+        if(!isAddress(destination) || !isAddress(nextHop) || hopCount <= 0) {
+            return false;
+        }
+        long now = now();
+        int count = Math.min(hopCount, 0xFF);
+
+        if(isValid(destination, now) && nextHops[destination] != nextHop && (hopCounts[destination] & 0xFF) < count) {
+            return false;
+        }
+        nextHops[destination] = (char) nextHop;
+        hopCounts[destination] = (byte) count;
+        expiresAt[destination] = expiry(now);
+
+        return true;
+    }
+
+    /**
+     * Extends the lifetime of the route to the given destination if it is still valid
+     *
+     * @param destination numeric destination address
+     */
+    public synchronized void refresh(int destination) {
+        long now = now();
+
+        if(isValid(destination, now)) {
+            expiresAt[destination] = expiry(now);
+        }
+    }
+
+    /**
+     * Removes the route to the given destination
+     *
+     * @param destination numeric destination address
+     */
+    public synchronized void remove(int destination) {
+        if(isAddress(destination)) {
+            expiresAt[destination] = 0;
+        }
+    }
+
+    private boolean isValid(int destination, long now) {
+        if(!isAddress(destination)) {
+            return false;
+        }
+        long expires = expiresAt[destination];
+
+        return expires != 0 && expires > now;
+    }
+
+    private long expiry(long now) {
+        // the clock starts at epoch, so expiry times are always positive
+        return now + lifetime;
+    }
+
+    private long now() {
+        return clock.getAsLong() - epoch;
+    }
+
+    private static boolean isAddress(int address) {
+        return address >= 0 && address < GalaxyAddress.ADDRESS_SPACE;
+    }
+}
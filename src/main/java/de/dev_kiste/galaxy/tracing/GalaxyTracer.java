@@ -0,0 +1,62 @@
+package de.dev_kiste.galaxy.tracing;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracer deciding which incoming messages get a {@link MessageTrace} and exporting completed traces.
+ *
+ * Every n-th message is sampled. Unsampled messages cost a single counter increment and carry no trace at all.
+ *
+ * @author Benny Lach
+ */
+public class GalaxyTracer {
+    private final int sampleInterval;
+    private final TraceExporter exporter;
+    private final AtomicLong counter = new AtomicLong();
+
+    /**
+     * Default initializer
+     *
+     * @param sampleInterval every n-th message will be traced. 1 traces every message
+     * @param exporter The exporter completed traces are handed to
+     * @throws IllegalArgumentException if the interval is not positive or the exporter is null
+     */
+    public GalaxyTracer(int sampleInterval, TraceExporter exporter) throws IllegalArgumentException {
+        if(sampleInterval <= 0) {
+            throw new IllegalArgumentException("Sample interval must be positive");
+        }
+        if(exporter == null) {
+            throw new IllegalArgumentException("Exporter must not be null");
+        }
+        this.sampleInterval = sampleInterval;
+        this.exporter = exporter;
+    }
+
+    /**
+     * Method to decide if the next message should be traced
+     *
+     * @param source The source of the message
+     * @return a new trace or null if the message is not sampled
+     */
+    public MessageTrace sample(String source) {
+        long count = counter.getAndIncrement();
+
+        if(count % sampleInterval != 0) {
+            return null;
+        }
+        return new MessageTrace(count / sampleInterval, source);
+    }
+
+    /**
+     * Hands the completed trace to the exporter. Exceptions thrown by the exporter are swallowed
+     *
+     * @param trace The completed trace
+     */
+    public void export(MessageTrace trace) {
+        try {
+            exporter.export(trace);
+        } catch (RuntimeException e) {
+            // a failing exporter must not break message processing
+        }
+    }
+}
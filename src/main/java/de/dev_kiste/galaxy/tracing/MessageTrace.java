@@ -0,0 +1,150 @@
+package de.dev_kiste.galaxy.tracing;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Monotonic timestamps of a single sampled message taken at every {@link TraceStage} and after every middleware.
+ *
+ * All timestamps are {@link System#nanoTime()} values. A timestamp of 0 means the stage was not reached,
+ * e.g. {@link TraceStage#HANDLER_RECEIVED} is missing if a middleware stopped the execution.
+ *
+ * @author Benny Lach
+ */
+public class MessageTrace {
+    private final static long[] NO_MIDDLEWARE = new long[0];
+
+    private final long id;
+    private final String source;
+    private final long[] stages = new long[TraceStage.values().length];
+    private long[] middlewares = NO_MIDDLEWARE;
+
+    MessageTrace(long id, String source) {
+        this.id = id;
+        this.source = source;
+    }
+
+    /**
+     * Method to get the unique id of the trace
+     *
+     * @return trace id
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Method to get the source of the traced message
+     *
+     * @return the source
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Stamps the given stage with the current time
+     *
+     * @param stage The reached stage
+     */
+    public void mark(TraceStage stage) {
+        stages[stage.ordinal()] = System.nanoTime();
+    }
+
+    /**
+     * Stamps the given stage with the given time
+     *
+     * @param stage The reached stage
+     * @param nanoTime The time the stage was reached
+     */
+    public void mark(TraceStage stage, long nanoTime) {
+        stages[stage.ordinal()] = nanoTime;
+    }
+
+    /**
+     * Prepares the trace to record the given number of middleware executions
+     *
+     * @param count The number of middleware which will be executed
+     */
+    public void startMiddleware(int count) {
+        middlewares = count == 0 ? NO_MIDDLEWARE : new long[count];
+    }
+
+    /**
+     * Stamps the completion of the middleware at the given index with the current time
+     *
+     * @param index The index of the finished middleware
+     */
+    public void markMiddleware(int index) {
+        if(index >= 0 && index < middlewares.length) {
+            middlewares[index] = System.nanoTime();
+        }
+    }
+
+    /**
+     * Method to get the timestamp of the given stage
+     *
+     * @param stage The requested stage
+     * @return the timestamp or 0 if the stage was not reached
+     */
+    public long getTimestamp(TraceStage stage) {
+        return stages[stage.ordinal()];
+    }
+
+    /**
+     * Method to get the number of traced middleware
+     *
+     * @return number of middleware
+     */
+    public int getMiddlewareCount() {
+        return middlewares.length;
+    }
+
+    /**
+     * Method to get the completion timestamp of the middleware at the given index
+     *
+     * @param index The middleware index
+     * @return the timestamp or 0 if the middleware did not finish
+     */
+    public long getMiddlewareTimestamp(int index) {
+        return middlewares[index];
+    }
+
+    /**
+     * Method to get the elapsed nanoseconds between two stages
+     *
+     * @param from The start stage
+     * @param to The end stage
+     * @return elapsed time in nanoseconds or -1 if one of the stages was not reached
+     */
+    public long getDuration(TraceStage from, TraceStage to) {
+        long start = getTimestamp(from);
+        long end = getTimestamp(to);
+
+        return start == 0 || end == 0 ? -1 : end - start;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("MessageTrace{id=").append(id)
+                .append(", source=").append(source);
+        long origin = stages[TraceStage.FRAME_COMPLETE.ordinal()];
+
+        for(TraceStage stage : TraceStage.values()) {
+            appendOffset(builder, stage.name(), origin, stages[stage.ordinal()]);
+        }
+        for(int i = 0; i < middlewares.length; i++) {
+            appendOffset(builder, "MIDDLEWARE_" + i, origin, middlewares[i]);
+        }
+        return builder.append('}').toString();
+    }
+
+    private static void appendOffset(StringBuilder builder, String name, long origin, long timestamp) {
+        builder.append(", ").append(name).append('=');
+
+        if(timestamp == 0 || origin == 0) {
+            builder.append('-');
+        } else {
+            builder.append(TimeUnit.NANOSECONDS.toMicros(timestamp - origin)).append("us");
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package de.dev_kiste.galaxy.tracing;
+
+/**
+ * Interface used by {@link GalaxyTracer} to hand over completed traces
+ *
+ * @author Benny Lach
+ */
+public interface TraceExporter {
+    /**
+     * Method called for every completed trace
+     *
+     * Implementations are called on the thread that processed the message and should return fast
+     *
+     * @param trace The completed trace
+     */
+    void export(MessageTrace trace);
+}
@@ -0,0 +1,29 @@
+package de.dev_kiste.galaxy.tracing;
+
+/**
+ * Stages of the receive path a sampled message is stamped at
+ *
+ * @author Benny Lach
+ */
+public enum TraceStage {
+    /**
+     * The driver finished reading a complete frame from the module
+     */
+    FRAME_COMPLETE,
+    /**
+     * The driver parsed the frame into a remote message
+     */
+    REMOTE_MESSAGE,
+    /**
+     * The node started to dispatch the message on its executor
+     */
+    DISPATCH_START,
+    /**
+     * The message was forwarded to the registered message handler
+     */
+    HANDLER_RECEIVED,
+    /**
+     * Processing of the message finished
+     */
+    COMPLETED
+}
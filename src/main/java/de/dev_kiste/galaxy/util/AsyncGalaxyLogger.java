@@ -0,0 +1,151 @@
+package de.dev_kiste.galaxy.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+
+/**
+ * {@link GalaxyLogger} implementation forwarding messages to a delegate on a dedicated worker thread.
+ *
+ * Messages are handed over through a bounded, lock free ring buffer. Logging never blocks the calling thread:
+ * if the buffer is full the message is dropped and counted instead. See {@link AsyncGalaxyLogger#getDroppedMessages()}
+ *
+ * @author Benny Lach
+ */
+public class AsyncGalaxyLogger implements GalaxyLogger, AutoCloseable {
+    private final static long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final GalaxyLogger delegate;
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final Level[] levels;
+    private final String[] messages;
+
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong droppedMessages = new AtomicLong();
+    private long head = 0;
+
+    private final Thread worker;
+    volatile private boolean running = true;
+
+    /**
+     * Default initializer
+     *
+     * @param delegate the logger messages are forwarded to
+     * @param capacity the number of messages the buffer can hold. Will be rounded up to the next power of two
+     * @throws IllegalArgumentException if delegate is null or capacity is not positive
+     */
+    public AsyncGalaxyLogger(GalaxyLogger delegate, int capacity) throws IllegalArgumentException {
+        if(delegate == null) {
+            throw new IllegalArgumentException("Delegate must not be null");
+        }
+        if(capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Capacity must be positive and must not exceed 2^30");
+        }
+        int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+
+        this.delegate = delegate;
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        this.levels = new Level[size];
+        this.messages = new String[size];
+
+        for(int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        worker = new Thread(this::drain, "AsyncGalaxyLogger");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public boolean isLoggable(Level lvl) {
+        return running && delegate.isLoggable(lvl);
+    }
+
+    @Override
+    public void log(Level lvl, String message) {
+        if(!isLoggable(lvl)) {
+            return;
+        }
+        long position = tail.get();
+
+        while(true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+
+            if(difference == 0) {
+                if(tail.compareAndSet(position, position + 1)) {
+                    levels[index] = lvl;
+                    messages[index] = message;
+                    sequences.set(index, position + 1);
+
+                    return;
+                }
+                position = tail.get();
+            } else if(difference < 0) {
+                droppedMessages.incrementAndGet();
+
+                return;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Method to get the number of messages dropped because the buffer was full
+     *
+     * @return number of dropped messages
+     */
+    public long getDroppedMessages() {
+        return droppedMessages.get();
+    }
+
+    /**
+     * Stops the worker thread after all buffered messages were forwarded to the delegate
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(worker);
+
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        while(running || tail.get() != head) {
+            if(!forwardNext()) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private boolean forwardNext() {
+        int index = (int) (head & mask);
+
+        if(sequences.get(index) != head + 1) {
+            return false;
+        }
+        Level level = levels[index];
+        String message = messages[index];
+
+        levels[index] = null;
+        messages[index] = null;
+        sequences.set(index, head + mask + 1);
+        head++;
+
+        try {
+            delegate.log(level, message);
+        } catch (RuntimeException e) {
+            // a failing delegate must not stop the worker
+        }
+        return true;
+    }
+}
@@ -0,0 +1,55 @@
+package de.dev_kiste.galaxy.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Helper to run blocking tasks like opening serial ports concurrently, each on its own daemon thread
+ *
+ * @author Benny Lach
+ */
+public final class BlockingTasks {
+    private BlockingTasks() {}
+
+    /**
+     * Method to start every task on its own thread and collect the results
+     *
+     * @param tasks The tasks to run. A task may block before returning its future
+     * @param threadName Name of the started threads
+     * @param fallback Result of a task which failed
+     * @param <T> Type of the results
+     * @return Future containing the result of every task in the given order
+     */
+    public static <T> CompletableFuture<List<T>> runAll(List<Supplier<CompletableFuture<T>>> tasks,
+                                                        String threadName, T fallback) {
+        if(tasks.isEmpty()) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size(), runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+
+            return thread;
+        });
+        List<CompletableFuture<T>> results = new ArrayList<>();
+
+        for(Supplier<CompletableFuture<T>> task : tasks) {
+            results.add(CompletableFuture.supplyAsync(task, executor)
+                    .thenCompose(future -> future)
+                    .exceptionally(error -> fallback));
+        }
+        executor.shutdown();
+
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> {
+                    List<T> values = new ArrayList<>();
+                    results.forEach(result -> values.add(result.join()));
+
+                    return values;
+                });
+    }
+}
@@ -0,0 +1,63 @@
+package de.dev_kiste.galaxy.util;
+
+/**
+ * Helper to convert 4-hex-digit node addresses from and to their numeric representation
+ *
+ * @author Benny Lach
+ */
+public final class GalaxyAddress {
+    /**
+     * Number of distinct addresses
+     */
+    public final static int ADDRESS_SPACE = 0x10000;
+    /**
+     * Numeric broadcast address
+     */
+    public final static int BROADCAST = 0xFFFF;
+
+    private final static char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private GalaxyAddress() {}
+
+    /**
+     * Method to parse the given 4-hex-digit address without allocating
+     *
+     * @param address The address to parse
+     * @return the numeric address or -1 if the address is not made of exactly 4 hex digits
+     */
+    public static int parse(String address) {
+        if(address == null || address.length() != 4) {
+            return -1;
+        }
+        int value = 0;
+
+        for(int i = 0; i < 4; i++) {
+            int digit = Character.digit(address.charAt(i), 16);
+
+            if(digit < 0) {
+                return -1;
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    /**
+     * Method to format the given numeric address as 4 upper case hex digits
+     *
+     * @param address The numeric address
+     * @return the formatted address
+     * @throws IllegalArgumentException if the address is out of range
+     */
+    public static String format(int address) throws IllegalArgumentException {
+        if(address < 0 || address >= ADDRESS_SPACE) {
+            throw new IllegalArgumentException("Address must be in range of [0, 0xFFFF]");
+        }
+        return new String(new char[] {
+                HEX_DIGITS[(address >> 12) & 0xF],
+                HEX_DIGITS[(address >> 8) & 0xF],
+                HEX_DIGITS[(address >> 4) & 0xF],
+                HEX_DIGITS[address & 0xF]
+        });
+    }
+}
@@ -1,18 +1,106 @@
 package de.dev_kiste.galaxy.util;
 
+import java.util.function.Supplier;
 import java.util.logging.Level;
 
 /**
  * Logging interface to delegate logging functionality
  *
+ * Callers on hot paths should prefer the supplier or parameterized variants. They only build the final message
+ * if {@link GalaxyLogger#isLoggable(Level)} returns true for the requested level.
+ *
  * @author Benny Lach
  */
 public interface GalaxyLogger {
+    /**
+     * Placeholder used by the parameterized log methods
+     */
+    String PLACEHOLDER = "{}";
+
     /**
      * Triggers a new request to log the given content
-     * 
+     *
      * @param lvl used log level
      * @param message message to log
      */
     void log(Level lvl, String message);
+
+    /**
+     * Method to check if a message with the given level would be logged at all
+     *
+     * @param lvl the level to check
+     * @return true if messages of the given level are logged. Defaults to true
+     */
+    default boolean isLoggable(Level lvl) {
+        return true;
+    }
+
+    /**
+     * Logs the message provided by the given supplier. The supplier is only called if the level is loggable
+     *
+     * @param lvl used log level
+     * @param messageSupplier supplier creating the message to log
+     */
+    default void log(Level lvl, Supplier<String> messageSupplier) {
+        if(isLoggable(lvl)) {
+            log(lvl, messageSupplier.get());
+        }
+    }
+
+    /**
+     * Logs the given pattern after replacing the first {@link GalaxyLogger#PLACEHOLDER} with the given argument.
+     * The message is only built if the level is loggable
+     *
+     * @param lvl used log level
+     * @param pattern message pattern
+     * @param argument argument to insert
+     */
+    default void log(Level lvl, String pattern, Object argument) {
+        if(isLoggable(lvl)) {
+            log(lvl, format(pattern, argument));
+        }
+    }
+
+    /**
+     * Logs the given pattern after replacing the first two {@link GalaxyLogger#PLACEHOLDER}s with the given arguments.
+     * The message is only built if the level is loggable
+     *
+     * @param lvl used log level
+     * @param pattern message pattern
+     * @param first first argument to insert
+     * @param second second argument to insert
+     */
+    default void log(Level lvl, String pattern, Object first, Object second) {
+        if(isLoggable(lvl)) {
+            log(lvl, format(pattern, first, second));
+        }
+    }
+
+    /**
+     * Replaces the placeholders of the given pattern in order with the given arguments.
+     * Surplus arguments are ignored, surplus placeholders are kept
+     *
+     * @param pattern message pattern
+     * @param arguments arguments to insert
+     * @return the formatted message
+     */
+    static String format(String pattern, Object... arguments) {
+        if(pattern == null || arguments == null || arguments.length == 0) {
+            return pattern;
+        }
+        StringBuilder builder = new StringBuilder(pattern.length() + 16 * arguments.length);
+        int start = 0;
+        int argumentIndex = 0;
+
+        while(argumentIndex < arguments.length) {
+            int index = pattern.indexOf(PLACEHOLDER, start);
+
+            if(index < 0) {
+                break;
+            }
+            builder.append(pattern, start, index).append(arguments[argumentIndex++]);
+            start = index + PLACEHOLDER.length();
+        }
+        return builder.append(pattern, start, pattern.length()).toString();
+    }
 }
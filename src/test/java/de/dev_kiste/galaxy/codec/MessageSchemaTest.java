@@ -0,0 +1,93 @@
+package de.dev_kiste.galaxy.codec;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Benny Lach
+ *
+ * Unit tests for MessageSchema
+ */
+class MessageSchemaTest {
+    private enum State { IDLE, MEASURING, CHARGING }
+
+    private static class Reading {
+        private long sensor;
+        private double temperature;
+        private State state;
+        private boolean isAlarm;
+        private long flags;
+    }
+
+    private final MessageSchema<Reading> schema = MessageSchema.builder(7, Reading::new)
+            .varint(reading -> reading.sensor, (reading, value) -> reading.sensor = value)
+            .fixedPoint(reading -> reading.temperature, (reading, value) -> reading.temperature = value, -40, 85, 0.1)
+            .enumeration(State.class, reading -> reading.state, (reading, value) -> reading.state = value)
+            .flag(reading -> reading.isAlarm, (reading, value) -> reading.isAlarm = value)
+            .bits(5, reading -> reading.flags, (reading, value) -> reading.flags = value)
+            .build();
+
+    @Test
+    void encodedObjectShouldBeDecodedUnchanged() {
+        Reading reading = new Reading();
+        reading.sensor = -300;
+        reading.temperature = 21.7;
+        reading.state = State.CHARGING;
+        reading.isAlarm = true;
+        reading.flags = 19;
+
+        byte[] payload = schema.encode(reading);
+        Reading decoded = schema.decode(payload);
+
+        // header + 2 byte varint + 11 bit temperature + 2 bit state + 1 bit flag + 5 bits
+        assertEquals(7, payload.length);
+        assertEquals(7, MessageSchema.typeTag(payload));
+        assertEquals(-300, decoded.sensor);
+        assertEquals(21.7, decoded.temperature, 0.05);
+        assertEquals(State.CHARGING, decoded.state);
+        assertTrue(decoded.isAlarm);
+        assertEquals(19, decoded.flags);
+    }
+
+    @Test
+    void bitfieldOverflowShouldFail() {
+        Reading reading = new Reading();
+        reading.state = State.IDLE;
+        reading.flags = 32;
+
+        assertThrows(IllegalArgumentException.class, () -> schema.encode(reading));
+    }
+
+    @Test
+    void truncatedPayloadShouldFail() {
+        Reading reading = new Reading();
+        reading.state = State.IDLE;
+        byte[] payload = schema.encode(reading);
+
+        assertThrows(IllegalArgumentException.class, () -> schema.decode(payload, 0, 3));
+    }
+
+    @Test
+    void plainPayloadShouldHaveNoTypeTag() {
+        assertEquals(-1, MessageSchema.typeTag("Hello".getBytes()));
+    }
+
+    @Test
+    void fixedPointAboveRangeShouldFail() {
+        MessageSchema<Reading> temperatureSchema = MessageSchema.builder(8, Reading::new)
+                .fixedPoint(reading -> reading.temperature, (reading, value) -> reading.temperature = value, -40, 85, 0.1)
+                .build();
+        Reading reading = new Reading();
+        reading.temperature = 85;
+
+        byte[] payload = temperatureSchema.encode(reading);
+        assertEquals(85, temperatureSchema.decode(payload).temperature, 0.05);
+
+        // 11 bits hold up to 2047 steps, the range only 1250
+        for(int i = MessageSchema.HEADER_LENGTH; i < payload.length; i++) {
+            payload[i] = (byte) 0xFF;
+        }
+        assertThrows(IllegalArgumentException.class, () -> temperatureSchema.decode(payload));
+    }
+}
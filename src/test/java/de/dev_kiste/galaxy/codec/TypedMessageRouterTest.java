@@ -0,0 +1,76 @@
+package de.dev_kiste.galaxy.codec;
+
+import de.dev_kiste.galaxy.messaging.GalaxyMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Benny Lach
+ *
+ * Unit tests for TypedMessageRouter
+ */
+class TypedMessageRouterTest {
+    private static class Counter {
+        private long value;
+    }
+
+    private final MessageSchema<Counter> schema = MessageSchema.builder(9, Counter::new)
+            .varint(counter -> counter.value, (counter, value) -> counter.value = value)
+            .build();
+    private final List<GalaxyMessage> passedOn = new ArrayList<>();
+    private int stops = 0;
+
+    private void execute(TypedMessageRouter router, byte[] payload) {
+        router.execute(new GalaxyMessage(payload, "0001"), passedOn::add, () -> stops++);
+    }
+
+    @Test
+    void registeredMessageShouldBeDecodedAndConsumed() {
+        List<Long> received = new ArrayList<>();
+        TypedMessageRouter router = new TypedMessageRouter().register(schema, (counter, source) -> received.add(counter.value));
+        Counter counter = new Counter();
+        counter.value = 42;
+
+        execute(router, schema.encode(counter));
+
+        assertEquals(1, received.size());
+        assertEquals(42, received.get(0).longValue());
+        assertEquals(1, stops);
+        assertTrue(passedOn.isEmpty());
+    }
+
+    @Test
+    void undecodablePayloadShouldBePassedOn() {
+        TypedMessageRouter router = new TypedMessageRouter().register(schema, (counter, source) -> fail("Must not be called"));
+        Counter counter = new Counter();
+        counter.value = 1L << 40;
+        byte[] payload = schema.encode(counter);
+
+        execute(router, Arrays.copyOf(payload, payload.length - 1));
+
+        assertEquals(1, passedOn.size());
+        assertEquals(0, stops);
+    }
+
+    @Test
+    void failingHandlerShouldNotPassMessageOn() {
+        TypedMessageRouter router = new TypedMessageRouter().register(schema, (counter, source) -> {
+            throw new IllegalArgumentException("handler failed");
+        });
+
+        assertThrows(IllegalArgumentException.class, () -> execute(router, schema.encode(new Counter())));
+        assertTrue(passedOn.isEmpty());
+    }
+
+    @Test
+    void duplicateTypeTagShouldFail() {
+        TypedMessageRouter router = new TypedMessageRouter().register(schema, (counter, source) -> {});
+
+        assertThrows(IllegalArgumentException.class, () -> router.register(schema, (counter, source) -> {}));
+    }
+}
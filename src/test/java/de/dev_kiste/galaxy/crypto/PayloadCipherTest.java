@@ -0,0 +1,60 @@
+package de.dev_kiste.galaxy.crypto;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Benny Lach
+ *
+ * Unit tests for PayloadCipher
+ */
+class PayloadCipherTest {
+    private final PayloadCipher cipher = new PayloadCipher(new byte[16]);
+
+    @Test
+    void initWithInvalidKeyShouldFail() {
+        assertThrows(IllegalArgumentException.class, () -> new PayloadCipher(new byte[10]));
+    }
+
+    @Test
+    void encryptedFrameShouldBeDecryptedInPlace() {
+        byte[] payload = "Hello Galaxy".getBytes(StandardCharsets.UTF_8);
+        byte[] frame = cipher.encrypt(payload);
+
+        assertEquals(payload.length + PayloadCipher.OVERHEAD, frame.length);
+        assertTrue(PayloadCipher.isEncrypted(frame));
+
+        int length = cipher.decrypt(frame);
+        byte[] decrypted = Arrays.copyOfRange(frame, PayloadCipher.PAYLOAD_OFFSET, PayloadCipher.PAYLOAD_OFFSET + length);
+
+        assertArrayEquals(payload, decrypted);
+    }
+
+    @Test
+    void framesShouldUseDifferentNonces() {
+        byte[] payload = "same".getBytes(StandardCharsets.UTF_8);
+
+        assertFalse(Arrays.equals(cipher.encrypt(payload), cipher.encrypt(payload)));
+    }
+
+    @Test
+    void tamperedFrameShouldBeRejected() {
+        byte[] frame = cipher.encrypt("Hello Galaxy".getBytes(StandardCharsets.UTF_8));
+        frame[PayloadCipher.PAYLOAD_OFFSET] ^= 1;
+
+        assertEquals(-1, cipher.decrypt(frame));
+    }
+
+    @Test
+    void frameOfOtherKeyShouldBeRejected() {
+        byte[] key = new byte[16];
+        key[0] = 1;
+        byte[] frame = new PayloadCipher(key).encrypt("Hello Galaxy".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(-1, cipher.decrypt(frame));
+    }
+}
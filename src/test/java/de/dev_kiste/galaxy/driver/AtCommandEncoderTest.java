@@ -0,0 +1,40 @@
+package de.dev_kiste.galaxy.driver;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Benny Lach
+ *
+ * Unit tests for AtCommandEncoder
+ */
+class AtCommandEncoderTest {
+    private final AtCommandEncoder encoder = new AtCommandEncoder();
+
+    @Test
+    void commandsShouldBeTerminated() {
+        assertEquals("AT+RX\r\n", encoded(encoder.encode(AtCommandEncoder.RECEIVE)));
+        assertEquals("AT+SEND=0\r\n", encoded(encoder.encode(AtCommandEncoder.SEND, 0)));
+        assertEquals("AT+SEND=250\r\n", encoded(encoder.encode(AtCommandEncoder.SEND, 250)));
+        assertEquals("AT+DEST=FFFF\r\n", encoded(encoder.encode(AtCommandEncoder.DESTINATION, "FFFF")));
+    }
+
+    @Test
+    void bufferShouldGrowForLargePayloads() {
+        byte[] payload = new byte[1000];
+        payload[999] = 'x';
+
+        int length = encoder.encodePayload(payload);
+
+        assertEquals(1002, length);
+        assertEquals('x', encoder.getBuffer()[999]);
+        assertEquals('\n', encoder.getBuffer()[1001]);
+    }
+
+    private String encoded(int length) {
+        return new String(encoder.getBuffer(), 0, length, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,129 @@
+package de.dev_kiste.galaxy.driver;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Benny Lach
+ *
+ * Unit tests for BulkSender and the bulk send of HTWLoRaDriver
+ */
+class BulkSenderTest {
+    private final List<Integer> order = new ArrayList<>();
+
+    private List<OutboundPayload> payloads(String... receivers) {
+        List<OutboundPayload> payloads = new ArrayList<>();
+
+        for(int i = 0; i < receivers.length; i++) {
+            payloads.add(new OutboundPayload(new byte[] { (byte) i }, receivers[i]));
+        }
+        return payloads;
+    }
+
+    @Test
+    void itemsShouldBeGroupedByReceiverKeepingTheirOrder() {
+        List<OutboundPayload> payloads = payloads("0003", "0001", "0003", "0002", "0001");
+
+        BulkSendResult result = BulkSender.send(payloads, item -> {
+            order.add((int) item.getPayload()[0]);
+            return CompletableFuture.completedFuture(true);
+        }).join();
+
+        assertEquals(Arrays.asList(1, 4, 3, 0, 2), order);
+        assertTrue(result.isComplete());
+        assertEquals(5, result.getSentCount());
+    }
+
+    @Test
+    void statusShouldBeReportedPerItem() {
+        List<OutboundPayload> payloads = payloads("0001", "0001", "0001", "0001");
+
+        BulkSendResult result = BulkSender.send(payloads, item -> {
+            CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+            switch (item.getPayload()[0]) {
+                case 1:
+                    future.complete(false);
+                    break;
+                case 2:
+                    future.completeExceptionally(new IllegalStateException("failed"));
+                    break;
+                case 3:
+                    throw new IllegalStateException("failed");
+                default:
+                    future.complete(true);
+            }
+            return future;
+        }).join();
+
+        assertEquals(4, result.size());
+        assertTrue(result.isSent(0));
+        assertFalse(result.isSent(1));
+        assertFalse(result.isSent(2));
+        assertFalse(result.isSent(3));
+        assertFalse(result.isComplete());
+    }
+
+    @Test
+    void synchronousCompletionShouldNotGrowTheStack() {
+        String[] receivers = new String[100000];
+        Arrays.fill(receivers, "0001");
+
+        BulkSendResult result = BulkSender.send(payloads(receivers), item -> CompletableFuture.completedFuture(true)).join();
+
+        assertEquals(receivers.length, result.getSentCount());
+    }
+
+    @Test
+    void nextItemShouldWaitForPreviousOne() {
+        List<CompletableFuture<Boolean>> pending = new ArrayList<>();
+
+        CompletableFuture<BulkSendResult> result = BulkSender.send(payloads("0001", "0002", "0003"), item -> {
+            CompletableFuture<Boolean> future = new CompletableFuture<>();
+            pending.add(future);
+
+            return future;
+        });
+        assertEquals(1, pending.size());
+
+        pending.get(0).complete(true);
+        assertEquals(2, pending.size());
+
+        pending.get(1).complete(false);
+        pending.get(2).complete(true);
+
+        BulkSendResult completed = result.join();
+        assertTrue(completed.isSent(0));
+        assertFalse(completed.isSent(1));
+        assertTrue(completed.isSent(2));
+    }
+
+    @Test
+    void moduleShouldOnlyBeAddressedOncePerReceiver() throws Exception {
+        FakeLoRaModule module = new FakeLoRaModule();
+        HTWLoRaDriver driver = new HTWLoRaDriver("fake", rate -> module);
+
+        try {
+            assertTrue(driver.connect().get(5, TimeUnit.SECONDS));
+
+            BulkSendResult result = driver.sendPayloads(payloads("0003", "0002", "0003", "0002"))
+                    .get(5, TimeUnit.SECONDS);
+
+            assertEquals(4, result.getSentCount());
+            assertEquals(Arrays.asList("AT+DEST=0002", "AT+DEST=0003"), module.getCommands().stream()
+                    .filter(command -> command.startsWith("AT+DEST"))
+                    .collect(Collectors.toList()));
+            assertEquals(4, module.getCommands().stream().filter(command -> command.startsWith("AT+SEND")).count());
+        } finally {
+            driver.disconnect();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package de.dev_kiste.galaxy.driver;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * @author Benny Lach
+ *
+ * {@link SerialLink} simulating a LoRa module which answers every command with a single response per read.
+ * Configuration and address survive reopening the port, like a module which stays powered
+ */
+class FakeLoRaModule implements SerialLink {
+    private final ConcurrentLinkedQueue<byte[]> responses = new ConcurrentLinkedQueue<>();
+    private final List<String> commands = new ArrayList<>();
+    private final List<Long> openTimes = new ArrayList<>();
+    private volatile boolean isOpen = false;
+    private volatile boolean isOpenable = true;
+    private volatile boolean isResponsive = true;
+    private volatile boolean isReadable = true;
+    private volatile boolean isWritable = true;
+    private boolean isExpectingPayload = false;
+    private String config;
+    private String address = "0001";
+
+    void setOpenable(boolean isOpenable) {
+        this.isOpenable = isOpenable;
+    }
+
+    void setResponsive(boolean isResponsive) {
+        this.isResponsive = isResponsive;
+    }
+
+    void setReadable(boolean isReadable) {
+        this.isReadable = isReadable;
+    }
+
+    /**
+     * A module which is not writable accepts all but the last byte of every write
+     */
+    void setWritable(boolean isWritable) {
+        this.isWritable = isWritable;
+    }
+
+    /**
+     * Sets the configuration the module reports on AT+CFG? - null for a module which was never configured
+     */
+    synchronized void setConfig(String config) {
+        this.config = config;
+    }
+
+    synchronized List<String> getCommands() {
+        return new ArrayList<>(commands);
+    }
+
+    synchronized List<Long> getOpenTimes() {
+        return new ArrayList<>(openTimes);
+    }
+
+    synchronized int getOpenCount() {
+        return openTimes.size();
+    }
+
+    @Override
+    public synchronized boolean openPort() {
+        openTimes.add(System.nanoTime());
+        responses.clear();
+        isExpectingPayload = false;
+        isOpen = isOpenable;
+
+        return isOpen;
+    }
+
+    @Override
+    public boolean closePort() {
+        isOpen = false;
+
+        return true;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return isOpen;
+    }
+
+    @Override
+    public int bytesAvailable() {
+        if(!isReadable) {
+            return -1;
+        }
+        byte[] next = responses.peek();
+
+        return next == null ? 0 : next.length;
+    }
+
+    @Override
+    public int readBytes(byte[] buffer, int length) {
+        byte[] next = responses.poll();
+
+        if(next == null) {
+            return 0;
+        }
+        System.arraycopy(next, 0, buffer, 0, next.length);
+
+        return next.length;
+    }
+
+    @Override
+    public synchronized int writeBytes(byte[] buffer, int length) {
+        if(!isOpen) {
+            return -1;
+        }
+        if(!isWritable) {
+            return length - 1;
+        }
+        String command = new String(buffer, 0, length - 2, StandardCharsets.US_ASCII);
+        commands.add(command);
+
+        if(!isResponsive) {
+            return length;
+        }
+        if(isExpectingPayload) {
+            isExpectingPayload = false;
+            respond("AT,SENDING", "AT,SENDED");
+        } else if(command.equals("AT+ADDR?")) {
+            respond("AT," + address + ",OK");
+        } else if(command.startsWith("AT+ADDR=")) {
+            address = command.substring(8);
+            respond("AT,OK");
+        } else if(command.equals("AT+CFG?")) {
+            respond(config == null ? "AT,ERR:CMD" : "AT," + config + ",OK");
+        } else if(command.startsWith("AT+CFG=")) {
+            config = command.substring(7);
+            respond("AT,OK");
+        } else if(command.startsWith("AT+SEND=")) {
+            isExpectingPayload = true;
+            respond("AT,OK");
+        } else {
+            respond("AT,OK");
+        }
+        return length;
+    }
+
+    private void respond(String... messages) {
+        for(String message : messages) {
+            responses.add((message + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package de.dev_kiste.galaxy.driver;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Benny Lach
+ *
+ * Unit tests for the supervision of HTWLoRaDriver using a simulated module
+ */
+class HTWLoRaDriverSupervisionTest {
+    private final static long INITIAL_BACKOFF_MILLIS = 40;
+    private final static String DEFAULT_CONFIG = "433000000,20,6,12,1,1,0,0,0,0,3000,8,4";
+
+    private FakeLoRaModule module;
+    private HTWLoRaDriver testDriver;
+
+    @BeforeEach
+    void setup() {
+        module = new FakeLoRaModule();
+        testDriver = new HTWLoRaDriver("fake", rate -> module);
+        testDriver.setSupervisionTiming(10, 50, 100, 1000, INITIAL_BACKOFF_MILLIS);
+    }
+
+    @AfterEach
+    void deinit() {
+        testDriver.disconnect();
+    }
+
+    @Test
+    void connectShouldConfigureModule() throws Exception {
+        assertTrue(testDriver.connect().get(5, TimeUnit.SECONDS));
+        assertEquals("AT+CFG=", module.getCommands().get(0).substring(0, 7));
+        assertEquals("AT+RX", module.getCommands().get(1));
+    }
+
+    @Test
+    void autoBaudShouldUseTheRateTheModuleAnswersAt() throws Exception {
+        FakeLoRaModule silent = new FakeLoRaModule();
+        silent.setResponsive(false);
+        List<Integer> rates = new CopyOnWriteArrayList<>();
+        HTWLoRaDriver driver = new HTWLoRaDriver("fake", rate -> {
+            rates.add(rate);
+            return rate == 57600 ? module : silent;
+        });
+        driver.setAutoBaudRates(9600, 57600, 115200);
+
+        try {
+            assertTrue(driver.connect().get(5, TimeUnit.SECONDS));
+            assertEquals(57600, driver.getBaudRate());
+            // 115200 is given up after the first unanswered probe, 57600 is probed and then connected
+            assertEquals(Arrays.asList(115200, 57600, 57600), rates);
+            assertEquals(Collections.singletonList("AT"), silent.getCommands());
+            assertEquals(Arrays.asList("AT", "AT", "AT"), module.getCommands().subList(0, 3));
+            assertTrue(module.getCommands().get(3).startsWith("AT+CFG="));
+        } finally {
+            driver.disconnect();
+        }
+    }
+
+    @Test
+    void autoBaudShouldFailIfModuleAnswersAtNoRate() throws Exception {
+        module.setResponsive(false);
+        HTWLoRaDriver driver = new HTWLoRaDriver("fake", rate -> module);
+        driver.setAutoBaudRates(9600, 19200);
+
+        assertFalse(driver.connect().get(5, TimeUnit.SECONDS));
+        assertEquals(2, module.getOpenCount());
+        assertFalse(module.isOpen());
+    }
+
+    @Test
+    void warmStartShouldSkipConfigurationOfConfiguredModule() throws Exception {
+        module.setConfig(DEFAULT_CONFIG);
+        testDriver.setWarmStart(true);
+
+        assertTrue(testDriver.connect().get(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("AT+CFG?", "AT+RX"), setupCommands());
+    }
+
+    @Test
+    void warmStartShouldOnlyApplyDifferingAddress() throws Exception {
+        module.setConfig(DEFAULT_CONFIG);
+        testDriver.setWarmStart(true);
+        testDriver.setDesiredAddress("0042");
+
+        assertTrue(testDriver.connect().get(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("AT+CFG?", "AT+RX", "AT+ADDR?", "AT+ADDR=0042"), setupCommands());
+        testDriver.disconnect();
+
+        // the module kept its address, so reconnecting applies nothing
+        HTWLoRaDriver restarted = new HTWLoRaDriver("fake", rate -> module);
+        restarted.setWarmStart(true);
+        restarted.setDesiredAddress("0042");
+
+        try {
+            assertTrue(restarted.connect().get(5, TimeUnit.SECONDS));
+            List<String> commands = setupCommands();
+            assertEquals(Arrays.asList("AT+CFG?", "AT+RX", "AT+ADDR?"), commands.subList(4, commands.size()));
+        } finally {
+            restarted.disconnect();
+        }
+    }
+
+    @Test
+    void warmStartShouldConfigureModuleWithOtherConfiguration() throws Exception {
+        module.setConfig(DEFAULT_CONFIG.replace("433000000", "433200000"));
+        testDriver.setWarmStart(true);
+
+        assertTrue(testDriver.connect().get(5, TimeUnit.SECONDS));
+        assertEquals("AT+CFG?", setupCommands().get(0));
+        assertEquals("AT+CFG=" + DEFAULT_CONFIG, setupCommands().get(1));
+        assertTrue(setupCommands().contains("AT+RX"));
+    }
+
+    @Test
+    void idleModuleShouldBeProbed() throws Exception {
+        assertTrue(testDriver.connect().get(5, TimeUnit.SECONDS));
+
+        await(() -> module.getCommands().stream().filter("AT"::equals).count() >= 3);
+        assertEquals(1, module.getOpenCount());
+    }
+
+    @Test
+    void responsesShouldMatchCommandsWhileProbing() throws Exception {
+        testDriver.setSupervisionTiming(1, 1, 1000, 1000, INITIAL_BACKOFF_MILLIS);
+        assertTrue(testDriver.connect().get(5, TimeUnit.SECONDS));
+
+        List<CompletableFuture<String>> addresses = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+
+        for(int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                long minimum = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300);
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+                // keeps querying until a probe was sent in between, even if the watchdog is scheduled late
+                while(System.nanoTime() < deadline
+                        && (System.nanoTime() < minimum || !module.getCommands().contains("AT"))) {
+                    CompletableFuture<String> address = testDriver.getAddress();
+
+                    synchronized (addresses) {
+                        addresses.add(address);
+                    }
+                    try {
+                        // short idle gaps let the watchdog send probes in between, longer ones once it is overdue
+                        Thread.sleep(System.nanoTime() < minimum ? 1 : 10);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        for(CompletableFuture<String> address : addresses) {
+            assertEquals("0001", address.get(5, TimeUnit.SECONDS));
+        }
+        assertTrue(module.getCommands().contains("AT"));
+        assertEquals(1, module.getOpenCount());
+    }
+
+    @Test
+    void unresponsiveModuleShouldBeRecovered() throws Exception {
+        assertTrue(testDriver.connect().get(5, TimeUnit.SECONDS));
+
+        module.setResponsive(false);
+        module.setOpenable(false);
+        await(() -> module.getOpenCount() >= 3);
+
+        module.setOpenable(true);
+        module.setResponsive(true);
+        await(() -> "0001".equals(queryAddress()));
+    }
+
+    @Test
+    void failedReadShouldBeRecovered() throws Exception {
+        assertTrue(testDriver.connect().get(5, TimeUnit.SECONDS));
+
+        module.setReadable(false);
+        await(() -> module.getOpenCount() >= 2);
+
+        module.setReadable(true);
+        await(() -> "0001".equals(queryAddress()));
+    }
+
+    @Test
+    void reconnectionAttemptsShouldBackOff() throws Exception {
+        assertTrue(testDriver.connect().get(5, TimeUnit.SECONDS));
+
+        module.setResponsive(false);
+        module.setOpenable(false);
+        await(() -> module.getOpenCount() >= 5);
+
+        List<Long> opens = module.getOpenTimes();
+        // the first reconnection attempt is made right away, every further one waits twice as long as the previous
+        for(int i = 1; i < 4; i++) {
+            long gap = TimeUnit.NANOSECONDS.toMillis(opens.get(i + 1) - opens.get(i));
+
+            assertTrue(gap >= INITIAL_BACKOFF_MILLIS << (i - 1), "Gap " + gap + " after attempt " + i);
+        }
+    }
+
+    @Test
+    void incompleteWriteShouldFailCommand() throws Exception {
+        assertTrue(testDriver.connect().get(5, TimeUnit.SECONDS));
+
+        module.setWritable(false);
+        assertEquals("", testDriver.getAddress().get(1, TimeUnit.SECONDS));
+        assertFalse(testDriver.setAddress("0002").get(1, TimeUnit.SECONDS));
+
+        module.setWritable(true);
+        assertEquals("0001", testDriver.getAddress().get(1, TimeUnit.SECONDS));
+        assertEquals(1, module.getOpenCount());
+    }
+
+    @Test
+    void disconnectShouldStopWatchdog() throws Exception {
+        long watchdogs = countWatchdogs();
+
+        assertTrue(testDriver.connect().get(5, TimeUnit.SECONDS));
+        assertEquals(watchdogs + 1, countWatchdogs());
+
+        assertTrue(testDriver.disconnect().get(5, TimeUnit.SECONDS));
+        await(() -> countWatchdogs() == watchdogs);
+    }
+
+    /**
+     * Queries the address of the module
+     *
+     * @return the address or an empty string if the module is not available
+     */
+    private String queryAddress() {
+        try {
+            return testDriver.getAddress().get(500, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            return "";
+        }
+    }
+
+    private long countWatchdogs() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("HTWLoRaDriver-Watchdog"))
+                .count();
+    }
+
+    /**
+     * Commands received by the module without the probes of the watchdog
+     */
+    private List<String> setupCommands() {
+        return module.getCommands().stream().filter(command -> !command.equals("AT")).collect(Collectors.toList());
+    }
+
+    private void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        boolean isMet;
+
+        // evaluated once per iteration, conditions may send commands
+        while(!(isMet = condition.getAsBoolean()) && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(isMet);
+    }
+}
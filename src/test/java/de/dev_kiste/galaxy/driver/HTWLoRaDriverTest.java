@@ -85,7 +85,9 @@ import static org.junit.jupiter.api.Assertions.*;
         HTWLoRaDriver driver = new HTWLoRaDriver(portDescriptor);
         int[] supportedChannels = driver.getSupportedChannels();
 
-        assertEquals(0, supportedChannels.length);
+        assertEquals(9, supportedChannels.length);
+        assertEquals(0, supportedChannels[0]);
+        assertEquals(433000000, driver.getFrequency(supportedChannels[0]));
     }
 
     @Test
@@ -0,0 +1,27 @@
+package de.dev_kiste.galaxy.driver;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Benny Lach
+ *
+ * Unit tests for LoRaAirtime
+ */
+class LoRaAirtimeTest {
+
+    @Test
+    void timeOnAirShouldMatchModemCalculation() {
+        // SF7, 125 kHz, 4/5, 8 preamble symbols, CRC, explicit header: 12.544ms preamble + 28 payload symbols
+        assertEquals(41216, LoRaAirtime.timeOnAirMicros(10, 7, 125000, 1, 8, true, false));
+    }
+
+    @Test
+    void lowDataRateOptimizationShouldApplyToLongSymbols() {
+        // SF12 at 62.5 kHz has 65.5ms symbols
+        long withOptimization = LoRaAirtime.timeOnAirMicros(8, 12, 62500, 1, 4, true, false);
+
+        assertEquals(Math.ceil((4 + 4.25) * 65536 + 18 * 65536), withOptimization, 1);
+    }
+}
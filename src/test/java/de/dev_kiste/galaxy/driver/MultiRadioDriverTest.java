@@ -0,0 +1,229 @@
+package de.dev_kiste.galaxy.driver;
+
+import de.dev_kiste.galaxy.driver.balancing.DriverSelectionPolicy;
+import de.dev_kiste.galaxy.driver.balancing.LeastLoadedPolicy;
+import de.dev_kiste.galaxy.driver.balancing.ReceiverPinnedPolicy;
+import de.dev_kiste.galaxy.driver.balancing.RoundRobinPolicy;
+import de.dev_kiste.galaxy.messaging.GalaxyMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Benny Lach
+ *
+ * Unit tests for MultiRadioDriver
+ */
+class MultiRadioDriverTest {
+    private final List<RecordingDriver> radios = Arrays.asList(
+            new RecordingDriver("0001"), new RecordingDriver("0001"), new RecordingDriver("0001"));
+
+    private MultiRadioDriver createDriver(DriverSelectionPolicy policy) {
+        return new MultiRadioDriver(new ArrayList<>(radios), policy);
+    }
+
+    @Test
+    void initWithEmptyDriversShouldFail() {
+        assertThrows(IllegalArgumentException.class, () -> new MultiRadioDriver(new ArrayList<>(), new RoundRobinPolicy()));
+    }
+
+    @Test
+    void roundRobinShouldUseDriversInTurn() {
+        MultiRadioDriver driver = createDriver(new RoundRobinPolicy());
+
+        for(int i = 0; i < 6; i++) {
+            assertTrue(driver.sendPayload(new byte[] { (byte) i }, "0020").join());
+        }
+        for(int i = 0; i < radios.size(); i++) {
+            List<RecordingDriver.Sent> sent = radios.get(i).getSent();
+
+            assertEquals(2, sent.size());
+            assertEquals(i, sent.get(0).payload[0]);
+            assertEquals(i + 3, sent.get(1).payload[0]);
+        }
+    }
+
+    @Test
+    void leastLoadedShouldAvoidBusyDriver() {
+        radios.get(0).setHoldingSends(true);
+        MultiRadioDriver driver = createDriver(new LeastLoadedPolicy());
+
+        for(int i = 0; i < 10; i++) {
+            driver.sendPayload(new byte[] { (byte) i }, "0020");
+        }
+        assertEquals(1, radios.get(0).getSent().size());
+        assertEquals(9, radios.get(1).getSent().size() + radios.get(2).getSent().size());
+    }
+
+    @Test
+    void leastLoadedShouldSpreadPendingSends() {
+        radios.forEach(radio -> radio.setHoldingSends(true));
+        MultiRadioDriver driver = createDriver(new LeastLoadedPolicy());
+
+        for(int i = 0; i < 6; i++) {
+            driver.sendPayload(new byte[] { (byte) i }, "0020");
+        }
+        radios.forEach(radio -> assertEquals(2, radio.getSent().size()));
+
+        // the completed send frees its driver for the next payload
+        radios.get(1).getSent().get(0).future.complete(true);
+        driver.sendPayload(new byte[] { 6 }, "0020");
+
+        assertEquals(3, radios.get(1).getSent().size());
+    }
+
+    @Test
+    void receiverPinnedShouldKeepReceiverOnOneDriver() {
+        MultiRadioDriver driver = createDriver(new ReceiverPinnedPolicy());
+        List<String> receivers = Arrays.asList("0020", "0021", "0022", "0023", "0024");
+
+        for(int i = 0; i < 4; i++) {
+            receivers.forEach(receiver -> driver.sendPayload(new byte[] { 1 }, receiver));
+        }
+        for(String receiver : receivers) {
+            long drivers = radios.stream()
+                    .filter(radio -> radio.getSent().stream().anyMatch(sent -> sent.receiver.equals(receiver)))
+                    .count();
+
+            assertEquals(1, drivers, "Receiver " + receiver);
+        }
+    }
+
+    @Test
+    void broadcastShouldBeSentByEveryDriver() {
+        MultiRadioDriver driver = createDriver(new RoundRobinPolicy());
+
+        assertTrue(driver.sendBroadcastPayload(new byte[] { 1 }).join());
+        radios.forEach(radio -> assertEquals(1, radio.getSent().size()));
+
+        radios.get(1).setSendResult(false);
+        assertFalse(driver.sendBroadcastPayload(new byte[] { 2 }).join());
+    }
+
+    @Test
+    void connectShouldBeAppliedToEveryDriver() {
+        MultiRadioDriver driver = createDriver(new RoundRobinPolicy());
+
+        assertTrue(driver.connect().join());
+        radios.forEach(radio -> assertTrue(radio.isConnected()));
+
+        assertTrue(driver.disconnect().join());
+        radios.forEach(radio -> assertFalse(radio.isConnected()));
+
+        radios.get(2).setConnectable(false);
+        assertFalse(driver.connect().join());
+    }
+
+    @Test
+    void configurationShouldBeAppliedToEveryDriver() {
+        MultiRadioDriver driver = createDriver(new RoundRobinPolicy());
+
+        assertTrue(driver.setAddress("0042").join());
+        assertTrue(driver.setChannel(2).join());
+
+        for(RecordingDriver radio : radios) {
+            assertEquals(Arrays.asList("address:0042", "channel:2"), radio.getLog());
+        }
+        assertEquals("0042", driver.getAddress().join());
+        assertEquals(2, driver.getChannel().join().intValue());
+    }
+
+    @Test
+    void channelsShouldBeSetPerDriver() {
+        MultiRadioDriver driver = createDriver(new RoundRobinPolicy());
+
+        assertTrue(driver.setChannels(1, 2, 3).join());
+
+        for(int i = 0; i < radios.size(); i++) {
+            assertEquals(Arrays.asList("channel:" + (i + 1)), radios.get(i).getLog());
+        }
+        assertEquals(1, driver.getChannel().join().intValue());
+        assertThrows(IllegalArgumentException.class, () -> driver.setChannels(1, 2));
+    }
+
+    @Test
+    void selectionOutOfRangeShouldFailWithoutCountingSend() {
+        List<Integer> pendingSeen = new ArrayList<>();
+        MultiRadioDriver driver = createDriver((receiver, load) -> {
+            pendingSeen.add(load.getPendingSends(0) + load.getPendingSends(1) + load.getPendingSends(2));
+
+            return receiver.equals("0020") ? 3 : 0;
+        });
+        radios.forEach(radio -> radio.setHoldingSends(true));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> driver.sendPayload(new byte[] { 1 }, "0020"));
+        assertTrue(e.getMessage().contains("driver 3"));
+
+        driver.sendPayload(new byte[] { 1 }, "0021");
+        driver.sendPayload(new byte[] { 1 }, "0021");
+        // the failed selection left no pending send behind
+        assertEquals(Arrays.asList(0, 0, 1), pendingSeen);
+    }
+
+    @Test
+    void bulkShouldBeSplitAcrossDriversAndSentConcurrently() throws Exception {
+        radios.forEach(radio -> radio.setHoldingSends(true));
+        MultiRadioDriver driver = createDriver(new RoundRobinPolicy());
+        List<OutboundPayload> items = new ArrayList<>();
+
+        for(int i = 0; i < 6; i++) {
+            items.add(new OutboundPayload(new byte[] { (byte) i }, "00" + (20 + i)));
+        }
+        CompletableFuture<BulkSendResult> result = driver.sendPayloads(items);
+
+        // every driver works on its first item at the same time
+        for(int i = 0; i < radios.size(); i++) {
+            assertEquals(1, radios.get(i).getSent().size());
+            assertEquals(i, radios.get(i).getSent().get(0).payload[0]);
+        }
+        radios.forEach(radio -> radio.setHoldingSends(false));
+        radios.get(1).setSendResult(false);
+        radios.forEach(radio -> radio.getSent().get(0).future.complete(true));
+
+        BulkSendResult sent = result.get(5, TimeUnit.SECONDS);
+        assertEquals(6, sent.size());
+        assertEquals(5, sent.getSentCount());
+        assertFalse(sent.isSent(4));
+        assertEquals(4, radios.get(1).getSent().get(1).payload[0]);
+    }
+
+    @Test
+    void outcomesOfDriversShouldBePassedThrough() {
+        RecordingDriver busy = new RecordingDriver("0001") {
+            @Override
+            public CompletableFuture<SendOutcome> sendPayloadWithOutcome(byte[] payload, String receiver) {
+                return CompletableFuture.completedFuture(SendOutcome.CHANNEL_BUSY);
+            }
+
+            @Override
+            public CompletableFuture<SendOutcome> sendBroadcastPayloadWithOutcome(byte[] payload) {
+                return CompletableFuture.completedFuture(SendOutcome.MODULE_BUSY);
+            }
+        };
+        MultiRadioDriver driver = new MultiRadioDriver(Arrays.asList(radios.get(0), busy), new RoundRobinPolicy());
+
+        assertEquals(SendOutcome.SENT, driver.sendPayloadWithOutcome(new byte[] { 1 }, "0020").join());
+        assertEquals(SendOutcome.CHANNEL_BUSY, driver.sendPayloadWithOutcome(new byte[] { 2 }, "0020").join());
+        assertEquals(SendOutcome.MODULE_BUSY, driver.sendBroadcastPayloadWithOutcome(new byte[] { 3 }).join());
+    }
+
+    @Test
+    void messagesOfEveryDriverShouldReachHandler() {
+        MultiRadioDriver driver = createDriver(new RoundRobinPolicy());
+        List<GalaxyMessage> received = new ArrayList<>();
+
+        driver.setMessageHandler(received::add);
+        radios.get(0).receive(new byte[] { 1 }, "0020");
+        radios.get(2).receive(new byte[] { 2 }, "0021");
+
+        assertEquals(2, received.size());
+        assertEquals("0021", received.get(1).getSource());
+    }
+}
@@ -0,0 +1,239 @@
+package de.dev_kiste.galaxy.driver;
+
+import de.dev_kiste.galaxy.messaging.GalaxyMessage;
+import de.dev_kiste.galaxy.messaging.MessageHandler;
+import de.dev_kiste.galaxy.util.GalaxyLogger;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Benny Lach
+ *
+ * {@link GalaxyDriver} for tests recording every send and channel switch. Sends complete at once with the
+ * configured result unless the driver is set to hold them back
+ */
+public class RecordingDriver implements GalaxyDriver {
+    public final static String BROADCAST = "FFFF";
+
+    /**
+     * A payload handed to the driver
+     */
+    public static class Sent {
+        public final byte[] payload;
+        public final String receiver;
+        public final int channel;
+        public final CompletableFuture<Boolean> future;
+
+        private Sent(byte[] payload, String receiver, int channel, CompletableFuture<Boolean> future) {
+            this.payload = payload;
+            this.receiver = receiver;
+            this.channel = channel;
+            this.future = future;
+        }
+    }
+
+    private final List<Sent> sent = new ArrayList<>();
+    private final List<String> log = new ArrayList<>();
+    private volatile String address;
+    private volatile MessageHandler messageHandler;
+    private volatile int channel = 0;
+    private volatile int[] supportedChannels = new int[]{0, 1, 2, 3};
+    private volatile int maximumPayloadSize = 250;
+    private volatile long timeOnAirMicros = 0;
+    private volatile boolean sendResult = true;
+    private volatile boolean isHoldingSends = false;
+    private volatile boolean isConnectable = true;
+    private volatile boolean isConnected = false;
+
+    public RecordingDriver(String address) {
+        this.address = address;
+    }
+
+    public void setSendResult(boolean sendResult) {
+        this.sendResult = sendResult;
+    }
+
+    /**
+     * Sends are recorded but not completed until their future is completed by the test
+     */
+    public void setHoldingSends(boolean isHoldingSends) {
+        this.isHoldingSends = isHoldingSends;
+    }
+
+    public void setConnectable(boolean isConnectable) {
+        this.isConnectable = isConnectable;
+    }
+
+    public void setSupportedChannels(int... channels) {
+        this.supportedChannels = channels;
+    }
+
+    public void setMaximumPayloadSize(int maximumPayloadSize) {
+        this.maximumPayloadSize = maximumPayloadSize;
+    }
+
+    public void setTimeOnAirMicros(long timeOnAirMicros) {
+        this.timeOnAirMicros = timeOnAirMicros;
+    }
+
+    public boolean isConnected() {
+        return isConnected;
+    }
+
+    /**
+     * Method to get all payloads handed to the driver so far
+     */
+    public List<Sent> getSent() {
+        synchronized (sent) {
+            return new ArrayList<>(sent);
+        }
+    }
+
+    /**
+     * Method to get the calls made to the driver in order, e.g. <code>send:0020</code> or <code>channel:2</code>
+     */
+    public List<String> getLog() {
+        synchronized (sent) {
+            return new ArrayList<>(log);
+        }
+    }
+
+    /**
+     * Method to wait until the given number of payloads was handed to the driver
+     *
+     * @return all payloads sent so far
+     */
+    public List<Sent> awaitSent(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+        while(getSent().size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(2);
+        }
+        return getSent();
+    }
+
+    /**
+     * Method to pass a payload to the registered message handler as if it was received
+     */
+    public void receive(byte[] payload, String source) {
+        receive(new GalaxyMessage(payload, source));
+    }
+
+    /**
+     * Method to pass a message to the registered message handler as if it was received
+     */
+    public void receive(GalaxyMessage message) {
+        messageHandler.received(message);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> sendMessage(String msg, String receiver) throws IllegalArgumentException {
+        return sendPayload(msg.getBytes(StandardCharsets.UTF_8), receiver);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> sendBroadcastMessage(String msg) throws IllegalArgumentException {
+        return sendMessage(msg, BROADCAST);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> sendPayload(byte[] payload, String receiver) throws IllegalArgumentException {
+        if(payload == null || receiver == null) {
+            throw new IllegalArgumentException("Payload and receiver must not be null!");
+        }
+        if(payload.length > maximumPayloadSize) {
+            throw new IllegalArgumentException("Payload must not exceed the maximum supported payload size!");
+        }
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        synchronized (sent) {
+            sent.add(new Sent(payload.clone(), receiver, channel, future));
+            log.add("send:" + receiver);
+        }
+        if(!isHoldingSends) {
+            future.complete(sendResult);
+        }
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> sendBroadcastPayload(byte[] payload) throws IllegalArgumentException {
+        return sendPayload(payload, BROADCAST);
+    }
+
+    @Override
+    public void setMessageHandler(MessageHandler handler) {
+        this.messageHandler = handler;
+    }
+
+    @Override
+    public int getMaximumPayloadSize() {
+        return maximumPayloadSize;
+    }
+
+    @Override
+    public long getTimeOnAirMicros(int payloadLength) {
+        return timeOnAirMicros;
+    }
+
+    @Override
+    public CompletableFuture<String> getAddress() {
+        return CompletableFuture.completedFuture(address);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> setAddress(String address) {
+        synchronized (sent) {
+            log.add("address:" + address);
+        }
+        this.address = address;
+
+        return CompletableFuture.completedFuture(true);
+    }
+
+    @Override
+    public int[] getSupportedChannels() {
+        return supportedChannels.clone();
+    }
+
+    @Override
+    public CompletableFuture<Integer> getChannel() {
+        return CompletableFuture.completedFuture(channel);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> setChannel(int channel) throws IllegalArgumentException {
+        synchronized (sent) {
+            log.add("channel:" + channel);
+        }
+        this.channel = channel;
+
+        return CompletableFuture.completedFuture(true);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> connect() {
+        isConnected = isConnectable;
+
+        return CompletableFuture.completedFuture(isConnectable);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> disconnect() {
+        isConnected = false;
+
+        return CompletableFuture.completedFuture(true);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> reboot() {
+        return CompletableFuture.completedFuture(isConnected);
+    }
+
+    @Override
+    public void setLogger(GalaxyLogger logger) {}
+}
@@ -0,0 +1,131 @@
+package de.dev_kiste.galaxy.driver;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Benny Lach
+ *
+ * Unit tests for SerialPortDiscovery using simulated modules
+ */
+class SerialPortDiscoveryTest {
+    private final static long TIMEOUT_MILLIS = 500;
+
+    /**
+     * Module answering with the given delay, e.g. because it is still busy after a restart
+     */
+    private static class SlowModule extends FakeLoRaModule {
+        private final long delayNanos;
+        private volatile long answerAt = Long.MAX_VALUE;
+
+        private SlowModule(long delayMillis) {
+            this.delayNanos = TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        }
+
+        @Override
+        public synchronized int writeBytes(byte[] buffer, int length) {
+            answerAt = System.nanoTime() + delayNanos;
+
+            return super.writeBytes(buffer, length);
+        }
+
+        @Override
+        public int bytesAvailable() {
+            return System.nanoTime() < answerAt ? 0 : super.bytesAvailable();
+        }
+    }
+
+    private final Map<String, FakeLoRaModule> modules = new HashMap<>();
+    private final List<Integer> rates = new CopyOnWriteArrayList<>();
+
+    private SerialPortDiscovery discovery(CountDownLatch opening) {
+        return new SerialPortDiscovery(57600, TIMEOUT_MILLIS, () -> Arrays.asList("ttyA", "ttyB", "ttyC", "ttyD"),
+                (descriptor, rate) -> {
+                    rates.add(rate);
+                    FakeLoRaModule module = modules.get(descriptor);
+
+                    return new SerialLink() {
+                        @Override
+                        public boolean openPort() {
+                            // every probe waits until all ports are being opened
+                            opening.countDown();
+
+                            try {
+                                opening.await(5, TimeUnit.SECONDS);
+                            } catch (InterruptedException e) {
+                                return false;
+                            }
+                            return module.openPort();
+                        }
+
+                        @Override
+                        public boolean closePort() {
+                            return module.closePort();
+                        }
+
+                        @Override
+                        public boolean isOpen() {
+                            return module.isOpen();
+                        }
+
+                        @Override
+                        public int bytesAvailable() {
+                            return module.bytesAvailable();
+                        }
+
+                        @Override
+                        public int readBytes(byte[] buffer, int length) {
+                            return module.readBytes(buffer, length);
+                        }
+
+                        @Override
+                        public int writeBytes(byte[] buffer, int length) {
+                            return module.writeBytes(buffer, length);
+                        }
+                    };
+                });
+    }
+
+    @Test
+    void respondingPortsShouldBeFoundConcurrently() throws Exception {
+        FakeLoRaModule silent = new FakeLoRaModule();
+        silent.setResponsive(false);
+        FakeLoRaModule busy = new FakeLoRaModule();
+        busy.setOpenable(false);
+
+        modules.put("ttyA", new FakeLoRaModule());
+        modules.put("ttyB", silent);
+        modules.put("ttyC", new SlowModule(200));
+        modules.put("ttyD", busy);
+        CountDownLatch opening = new CountDownLatch(4);
+
+        List<String> found = discovery(opening).findModules().get(5, TimeUnit.SECONDS);
+
+        assertEquals(0, opening.getCount());
+        assertEquals(Arrays.asList("ttyA", "ttyC"), found);
+        assertEquals(Arrays.asList(57600, 57600, 57600, 57600), rates);
+        modules.values().forEach(module -> assertFalse(module.isOpen()));
+    }
+
+    @Test
+    void slowModuleExceedingTimeoutShouldNotBeFound() throws Exception {
+        modules.put("ttyA", new SlowModule(TIMEOUT_MILLIS * 2));
+        modules.put("ttyB", new FakeLoRaModule());
+        modules.put("ttyC", new FakeLoRaModule());
+        modules.put("ttyD", new FakeLoRaModule());
+
+        List<HTWLoRaDriver> drivers = discovery(new CountDownLatch(4)).discoverDrivers().get(5, TimeUnit.SECONDS);
+
+        assertEquals(3, drivers.size());
+        drivers.forEach(driver -> assertEquals(57600, driver.getBaudRate()));
+    }
+}
@@ -0,0 +1,116 @@
+package de.dev_kiste.galaxy.driver;
+
+import de.dev_kiste.galaxy.messaging.GalaxyMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Benny Lach
+ *
+ * Unit tests for UdpGalaxyDriver on localhost
+ */
+class UdpGalaxyDriverTest {
+    private UdpGalaxyDriver first;
+    private UdpGalaxyDriver second;
+
+    @BeforeEach
+    void setUp() {
+        first = new UdpGalaxyDriver("0010", new InetSocketAddress("127.0.0.1", 0));
+        second = new UdpGalaxyDriver("0020", new InetSocketAddress("127.0.0.1", 0));
+
+        assertTrue(first.connect().join());
+        assertTrue(second.connect().join());
+    }
+
+    @AfterEach
+    void tearDown() {
+        first.disconnect().join();
+        second.disconnect().join();
+    }
+
+    @Test
+    void payloadShouldReachPeerWithSourceAddress() throws Exception {
+        CompletableFuture<GalaxyMessage> received = new CompletableFuture<>();
+        second.setMessageHandler(received::complete);
+        first.addPeer("0020", second.getLocalAddress());
+
+        assertTrue(first.sendPayload(new byte[] { 1, 2, 3 }, "0020").join());
+
+        GalaxyMessage message = received.get(5, TimeUnit.SECONDS);
+        assertEquals("0010", message.getSource());
+        assertArrayEquals(new byte[] { 1, 2, 3 }, message.getPayload());
+    }
+
+    @Test
+    void receivedDatagramShouldTeachReplyEndpoint() throws Exception {
+        CompletableFuture<GalaxyMessage> request = new CompletableFuture<>();
+        CompletableFuture<GalaxyMessage> reply = new CompletableFuture<>();
+        second.setMessageHandler(request::complete);
+        first.setMessageHandler(reply::complete);
+        first.addPeer("0020", second.getLocalAddress());
+
+        first.sendMessage("ping", "0020").join();
+        request.get(5, TimeUnit.SECONDS);
+
+        assertTrue(second.sendMessage("pong", "0010").join());
+        assertEquals("0020", reply.get(5, TimeUnit.SECONDS).getSource());
+    }
+
+    @Test
+    void broadcastShouldReachAllPeers() throws Exception {
+        CompletableFuture<GalaxyMessage> received = new CompletableFuture<>();
+        second.setMessageHandler(received::complete);
+        first.addPeer("0020", second.getLocalAddress());
+
+        assertTrue(first.sendBroadcastMessage("hello").join());
+        assertEquals("0010", received.get(5, TimeUnit.SECONDS).getSource());
+    }
+
+    @Test
+    void broadcastWithoutPeersShouldBeRejected() {
+        assertEquals(SendOutcome.REJECTED, first.sendPayloadWithOutcome(new byte[] { 1 }, "FFFF").join());
+        assertFalse(first.sendBroadcastMessage("hello").join());
+    }
+
+    @Test
+    void peerShouldBeReachedOnNewEndpoint() throws Exception {
+        CompletableFuture<GalaxyMessage> request = new CompletableFuture<>();
+        CompletableFuture<GalaxyMessage> reply = new CompletableFuture<>();
+        second.setMessageHandler(request::complete);
+        first.setMessageHandler(reply::complete);
+        // stale endpoint of 0010 from before it came back on another port
+        second.addPeer("0010", new InetSocketAddress("127.0.0.1", 9));
+        first.addPeer("0020", second.getLocalAddress());
+
+        first.sendMessage("ping", "0020").join();
+        request.get(5, TimeUnit.SECONDS);
+
+        assertTrue(second.sendMessage("pong", "0010").join());
+        assertEquals("0020", reply.get(5, TimeUnit.SECONDS).getSource());
+    }
+
+    @Test
+    void unknownReceiverShouldBeRejected() {
+        assertEquals(SendOutcome.REJECTED, first.sendPayloadWithOutcome(new byte[] { 1 }, "0030").join());
+    }
+
+    @Test
+    void sendWithoutConnectionShouldReportDisconnected() {
+        first.disconnect().join();
+
+        assertEquals(SendOutcome.DISCONNECTED, first.sendPayloadWithOutcome(new byte[] { 1 }, "0020").join());
+    }
+
+    @Test
+    void invalidAddressShouldBeRefused() {
+        assertThrows(IllegalArgumentException.class, () -> new UdpGalaxyDriver("10", 0));
+        assertFalse(first.setAddress("XYZ1").join());
+    }
+}
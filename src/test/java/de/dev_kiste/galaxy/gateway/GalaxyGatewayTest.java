@@ -0,0 +1,132 @@
+package de.dev_kiste.galaxy.gateway;
+
+import de.dev_kiste.galaxy.driver.UdpGalaxyDriver;
+import de.dev_kiste.galaxy.messaging.GalaxyMessage;
+import de.dev_kiste.galaxy.node.GalaxyNode;
+import de.dev_kiste.galaxy.node.GalaxyNodeBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Benny Lach
+ *
+ * Unit tests for GalaxyGateway serving a node on localhost
+ */
+class GalaxyGatewayTest {
+    private final CompletableFuture<GalaxyMessage> remoteReceived = new CompletableFuture<>();
+
+    private GalaxyNode gatewayNode;
+    private GalaxyNode remoteNode;
+    private GalaxyGateway gateway;
+    private Socket client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        UdpGalaxyDriver gatewayDriver = new UdpGalaxyDriver("0010", new InetSocketAddress("127.0.0.1", 0));
+        UdpGalaxyDriver remoteDriver = new UdpGalaxyDriver("0020", new InetSocketAddress("127.0.0.1", 0));
+
+        gatewayNode = new GalaxyNodeBuilder().setDriver(gatewayDriver).build();
+        remoteNode = new GalaxyNodeBuilder().setDriver(remoteDriver).setMessageHandler(remoteReceived::complete).build();
+        assertTrue(gatewayNode.bootstrap().join());
+        assertTrue(remoteNode.bootstrap().join());
+
+        gatewayDriver.addPeer("0020", remoteDriver.getLocalAddress());
+        remoteDriver.addPeer("0010", gatewayDriver.getLocalAddress());
+
+        gateway = new GalaxyGateway(gatewayNode, new InetSocketAddress("127.0.0.1", 0));
+        gateway.start();
+
+        client = new Socket();
+        client.connect(gateway.getLocalAddress(), 5000);
+        client.setSoTimeout(5000);
+        awaitClientCount(1);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        client.close();
+        gateway.stop();
+        gatewayNode.disconnect().join();
+        remoteNode.disconnect().join();
+    }
+
+    @Test
+    void receivedMessageShouldBeStreamedToClient() throws IOException {
+        assertTrue(remoteNode.sendMessage("hello", "0010").join());
+
+        DataInputStream input = new DataInputStream(client.getInputStream());
+        byte[] frame = new byte[input.readUnsignedShort()];
+        input.readFully(frame);
+
+        assertEquals(GatewayFrame.MESSAGE, frame[0]);
+        assertEquals(4, frame[1]);
+        assertEquals("0020", new String(frame, 2, 4, StandardCharsets.US_ASCII));
+        assertEquals("hello", new String(frame, 6, frame.length - 6, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void sendRequestShouldBeSentAndAnswered() throws Exception {
+        client.getOutputStream().write(GatewayFrame.send(42, "0020", new byte[] { 7, 8 }));
+
+        DataInputStream input = new DataInputStream(client.getInputStream());
+        assertEquals(6, input.readUnsignedShort());
+        assertEquals(GatewayFrame.SEND_RESULT, input.readByte());
+        assertEquals(42, input.readInt());
+        assertEquals(1, input.readByte());
+
+        GalaxyMessage message = remoteReceived.get(5, TimeUnit.SECONDS);
+        assertEquals("0010", message.getSource());
+        assertArrayEquals(new byte[] { 7, 8 }, message.getPayload());
+    }
+
+    @Test
+    void invalidFrameShouldDisconnectClient() throws Exception {
+        client.getOutputStream().write(new byte[] { 0, 6, GatewayFrame.MESSAGE, 0, 0, 0, 0, 0 });
+
+        assertEquals(-1, client.getInputStream().read());
+        awaitClientCount(0);
+    }
+
+    @Test
+    void connectionsResetWhileAcceptingShouldNotStopGateway() throws Exception {
+        for(int i = 0; i < 20; i++) {
+            try (Socket reset = new Socket()) {
+                // closing with a linger time of 0 resets the connection instead of shutting it down
+                reset.setSoLinger(true, 0);
+                reset.connect(gateway.getLocalAddress(), 5000);
+            }
+        }
+        awaitClientCount(1);
+
+        try (Socket other = new Socket()) {
+            other.connect(gateway.getLocalAddress(), 5000);
+            other.setSoTimeout(5000);
+            other.getOutputStream().write(GatewayFrame.send(7, "0020", new byte[] { 1 }));
+
+            DataInputStream input = new DataInputStream(other.getInputStream());
+            assertEquals(6, input.readUnsignedShort());
+            assertEquals(GatewayFrame.SEND_RESULT, input.readByte());
+            assertEquals(7, input.readInt());
+        }
+    }
+
+    private void awaitClientCount(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+        while(gateway.getClientCount() != count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, gateway.getClientCount());
+    }
+}
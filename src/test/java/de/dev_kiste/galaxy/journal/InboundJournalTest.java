@@ -0,0 +1,75 @@
+package de.dev_kiste.galaxy.journal;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Benny Lach
+ *
+ * Unit tests for InboundJournal
+ */
+class InboundJournalTest {
+    private Path directory;
+
+    @BeforeEach
+    void setup() throws IOException {
+        directory = Files.createTempDirectory("inbound-journal");
+    }
+
+    @AfterEach
+    void deinit() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void replayShouldOnlyReturnRecordsInRange() throws IOException {
+        InboundJournal journal = InboundJournal.open(directory, 1024, 10);
+        for(int i = 0; i < 500; i++) {
+            journal.append(bytes("message " + i), "0010", 1000 + i);
+        }
+        List<String> replayed = new ArrayList<>();
+        long count = journal.replay(1200, 1210, (timestamp, source, payload) ->
+                replayed.add(timestamp + " " + new String(payload, StandardCharsets.UTF_8)));
+        journal.close();
+
+        assertEquals(10, count);
+        assertEquals("1200 message 200", replayed.get(0));
+        assertEquals("1209 message 209", replayed.get(9));
+    }
+
+    @Test
+    void recordsShouldSurviveReopening() throws IOException {
+        InboundJournal journal = InboundJournal.open(directory, 1024, 10);
+        journal.append(bytes("first"), "0010", 1000);
+        journal.append(bytes("second"), "0020", 2000);
+        journal.close();
+
+        InboundJournal reopened = InboundJournal.open(directory, 1024, 10);
+        long appended = reopened.append(bytes("third"), "0030", 1500);
+        List<String> sources = new ArrayList<>();
+        reopened.replay(0, Long.MAX_VALUE, (timestamp, source, payload) -> sources.add(source));
+        reopened.close();
+
+        assertEquals(2000, appended);
+        assertEquals(3, sources.size());
+        assertEquals("0030", sources.get(2));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
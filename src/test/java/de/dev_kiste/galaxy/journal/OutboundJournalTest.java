@@ -0,0 +1,88 @@
+package de.dev_kiste.galaxy.journal;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Benny Lach
+ *
+ * Unit tests for OutboundJournal
+ */
+class OutboundJournalTest {
+    private Path directory;
+
+    @BeforeEach
+    void setup() throws IOException {
+        directory = Files.createTempDirectory("outbound-journal");
+    }
+
+    @AfterEach
+    void deinit() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void initWithTooSmallSegmentShouldFail() {
+        assertThrows(IllegalArgumentException.class, () -> OutboundJournal.open(directory, 10, 10));
+    }
+
+    @Test
+    void pendingEntriesShouldBeRecovered() throws IOException {
+        OutboundJournal journal = OutboundJournal.open(directory, 4096, 10);
+        OutboundJournal.Entry first = journal.append(bytes("first"), "0010");
+        journal.append(bytes("second"), "0020", 3);
+        journal.acknowledge(first);
+        journal.close();
+
+        OutboundJournal reopened = OutboundJournal.open(directory, 4096, 10);
+        List<OutboundJournal.Entry> recovered = reopened.getRecoveredEntries();
+        reopened.close();
+
+        assertEquals(1, recovered.size());
+        assertEquals("0020", recovered.get(0).getReceiver());
+        assertArrayEquals(bytes("second"), recovered.get(0).getPayload());
+        assertEquals(3, recovered.get(0).getTag());
+    }
+
+    @Test
+    void acknowledgedSegmentsShouldBeDeleted() throws IOException {
+        OutboundJournal journal = OutboundJournal.open(directory, 1024, 10);
+
+        for(int i = 0; i < 100; i++) {
+            journal.acknowledge(journal.append(new byte[100], "0010"));
+        }
+        long segments;
+        try (Stream<Path> paths = Files.list(directory)) {
+            segments = paths.count();
+        }
+        journal.close();
+
+        assertEquals(1, segments);
+    }
+
+    @Test
+    void appendedEntriesShouldBecomeDurable() throws Exception {
+        OutboundJournal journal = OutboundJournal.open(directory, 4096, 10);
+        OutboundJournal.Entry entry = journal.append(bytes("foo"), "FFFF");
+
+        entry.getDurableFuture().get();
+        journal.close();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,81 @@
+package de.dev_kiste.galaxy.loadtest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Benny Lach
+ *
+ * Unit tests for LatencyHistogram
+ */
+class LatencyHistogramTest {
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    /**
+     * Method to get the highest value of the bucket the given value is counted in
+     */
+    private static long bucketOf(long value) {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        // a larger second value keeps the result from being capped at the maximum
+        histogram.record(value);
+        histogram.record(Long.MAX_VALUE);
+
+        return histogram.getValueAtPercentile(50);
+    }
+
+    @Test
+    void emptyHistogramShouldReturnZero() {
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        assertEquals(0, histogram.getTotalCount());
+    }
+
+    @Test
+    void smallValuesShouldBeCountedExactly() {
+        assertEquals(0, bucketOf(-5));
+        assertEquals(1, bucketOf(1));
+        assertEquals(63, bucketOf(63));
+    }
+
+    @Test
+    void bucketBoundariesShouldFollowTheLinearRange() {
+        assertEquals(65, bucketOf(64));
+        assertEquals(65, bucketOf(65));
+        assertEquals(67, bucketOf(66));
+        assertEquals(127, bucketOf(126));
+        assertEquals(131, bucketOf(128));
+        assertEquals((33L << 35) - 1, bucketOf(1L << 40));
+        assertEquals(Long.MAX_VALUE, bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    void bucketsShouldKeepRelativePrecision() {
+        Random random = new Random(42);
+
+        for(int i = 0; i < 10000; i++) {
+            long value = random.nextLong() >>> (1 + random.nextInt(63));
+            long highest = bucketOf(value);
+
+            assertTrue(highest >= value, "Value " + value);
+            assertTrue(highest - value <= value / 32, "Value " + value);
+        }
+    }
+
+    @Test
+    void percentilesShouldReturnHighestValueOfBucket() {
+        for(int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        assertEquals(100, histogram.getTotalCount());
+        assertEquals(100, histogram.getMaximum());
+        assertEquals(1, histogram.getValueAtPercentile(0));
+        assertEquals(50, histogram.getValueAtPercentile(49.5));
+        // 90 is counted in the bucket of 90 and 91
+        assertEquals(91, histogram.getValueAtPercentile(90));
+        assertEquals(100, histogram.getValueAtPercentile(99.9));
+        assertEquals(100, histogram.getValueAtPercentile(100));
+    }
+}
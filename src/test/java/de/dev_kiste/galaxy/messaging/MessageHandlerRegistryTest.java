@@ -0,0 +1,113 @@
+package de.dev_kiste.galaxy.messaging;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Benny Lach
+ *
+ * Unit tests for MessageHandlerRegistry
+ */
+class MessageHandlerRegistryTest {
+    private final List<String> received = new ArrayList<>();
+
+    private MessageHandler handler(String name) {
+        return message -> received.add(name);
+    }
+
+    @Test
+    void sourceAndRangeHandlersShouldMatch() {
+        MessageHandlerRegistry registry = new MessageHandlerRegistry()
+                .onSource("1234", handler("exact"))
+                .onSourceRange("1000", "1FFF", handler("range"))
+                .onSourceRange("2000", "2FFF", handler("other"));
+
+        assertEquals(2, registry.dispatch(new GalaxyMessage(new byte[0], "1234")));
+        assertEquals(1, registry.dispatch(new GalaxyMessage(new byte[0], "1000")));
+        assertEquals(0, registry.dispatch(new GalaxyMessage(new byte[0], "3000")));
+        assertEquals(0, registry.dispatch(new GalaxyMessage(new byte[0], "none")));
+        assertEquals(3, received.size());
+        assertTrue(received.contains("exact"));
+        assertFalse(received.contains("other"));
+    }
+
+    @Test
+    void everyMatchingPrefixShouldReceiveTheMessage() {
+        MessageHandlerRegistry registry = new MessageHandlerRegistry()
+                .onPrefix(new byte[] { 1 }, handler("short"))
+                .onPrefix(new byte[] { 1, 2 }, handler("long"))
+                .onPrefix(new byte[] { 1, 2, 3, 4 }, handler("longer than payload"))
+                .onPrefix(new byte[] { 2 }, handler("other"));
+
+        assertEquals(2, registry.dispatch(new GalaxyMessage(new byte[] { 1, 2, 3 }, "0001")));
+        assertEquals(1, registry.dispatch(new GalaxyMessage(new byte[] { 1, 5 }, "0001")));
+        assertEquals(0, registry.dispatch(new GalaxyMessage(new byte[0], "0001")));
+        assertEquals(3, received.size());
+    }
+
+    @Test
+    void handlersShouldRunOnTheirExecutor() {
+        List<Runnable> tasks = new ArrayList<>();
+        MessageHandlerRegistry registry = new MessageHandlerRegistry()
+                .onSource("0001", handler("deferred"), tasks::add);
+
+        registry.dispatch(new GalaxyMessage(new byte[0], "0001"));
+        assertTrue(received.isEmpty());
+
+        tasks.forEach(Runnable::run);
+        assertEquals(1, received.size());
+    }
+
+    @Test
+    void failingHandlerShouldNotStopDispatch() {
+        MessageHandler failing = message -> {
+            throw new IllegalStateException("failed");
+        };
+        MessageHandlerRegistry registry = new MessageHandlerRegistry()
+                .onSource("0001", failing)
+                .onSource("0001", handler("exact"))
+                .onSourceRange("0000", "00FF", failing)
+                .onSourceRange("0000", "00FF", handler("range"))
+                .onPrefix(new byte[0], handler("prefix"));
+
+        assertEquals(5, registry.dispatch(new GalaxyMessage(new byte[0], "0001")));
+        assertEquals(3, received.size());
+    }
+
+    @Test
+    void rejectingExecutorShouldNotStopDispatch() {
+        MessageHandlerRegistry registry = new MessageHandlerRegistry()
+                .onSource("0001", handler("rejected"), task -> {
+                    throw new RejectedExecutionException();
+                })
+                .onSource("0001", handler("exact"));
+
+        assertEquals(2, registry.dispatch(new GalaxyMessage(new byte[0], "0001")));
+        assertEquals(1, received.size());
+        assertEquals("exact", received.get(0));
+    }
+
+    @Test
+    void rangeShouldMatchEverySpellingOfAnAddress() {
+        MessageHandlerRegistry registry = new MessageHandlerRegistry()
+                .onSourceRange("1000", "1FFF", handler("range"));
+
+        assertEquals(1, registry.dispatch(new GalaxyMessage(new byte[0], "1abc")));
+        assertEquals(1, registry.dispatch(new GalaxyMessage(new byte[0], "1ABC")));
+        assertEquals(0, registry.dispatch(new GalaxyMessage(new byte[0], "11000")));
+        assertEquals(2, received.size());
+    }
+
+    @Test
+    void invalidRangeShouldThrow() {
+        MessageHandlerRegistry registry = new MessageHandlerRegistry();
+
+        assertThrows(IllegalArgumentException.class, () -> registry.onSourceRange("2000", "1000", handler("range")));
+        assertThrows(IllegalArgumentException.class, () -> registry.onSourceRange("XYZ", "1000", handler("range")));
+    }
+}
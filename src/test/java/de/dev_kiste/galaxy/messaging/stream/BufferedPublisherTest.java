@@ -0,0 +1,110 @@
+package de.dev_kiste.galaxy.messaging.stream;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Benny Lach
+ *
+ * Unit tests for BufferedPublisher
+ */
+class BufferedPublisherTest {
+
+    private static class RecordingSubscriber implements Subscriber<Integer> {
+        private final List<Integer> items = new ArrayList<>();
+        private Subscription subscription;
+        private Throwable error;
+        private boolean isCompleted = false;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(Integer item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            isCompleted = true;
+        }
+    }
+
+    @Test
+    void itemsShouldOnlyBeDeliveredOnDemand() {
+        BufferedPublisher<Integer> publisher = new BufferedPublisher<>(8, OverflowStrategy.DROP_NEWEST, Runnable::run);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        publisher.publish(1);
+        publisher.publish(2);
+        publisher.publish(3);
+        assertTrue(subscriber.items.isEmpty());
+
+        subscriber.subscription.request(2);
+        assertEquals(2, subscriber.items.size());
+
+        subscriber.subscription.request(5);
+        publisher.publish(4);
+        assertEquals(4, subscriber.items.size());
+    }
+
+    @Test
+    void subscribersShouldHaveIndependentDemand() {
+        BufferedPublisher<Integer> publisher = new BufferedPublisher<>(2, OverflowStrategy.DROP_OLDEST, Runnable::run);
+        RecordingSubscriber fast = new RecordingSubscriber();
+        RecordingSubscriber slow = new RecordingSubscriber();
+        publisher.subscribe(fast);
+        publisher.subscribe(slow);
+        fast.subscription.request(Long.MAX_VALUE);
+
+        for(int i = 0; i < 5; i++) {
+            publisher.publish(i);
+        }
+        slow.subscription.request(10);
+
+        assertEquals(5, fast.items.size());
+        assertEquals(2, slow.items.size());
+        assertEquals(3, (int) slow.items.get(0));
+        assertEquals(3, publisher.getDroppedItems());
+    }
+
+    @Test
+    void overflowShouldFailSubscriptionIfConfigured() {
+        BufferedPublisher<Integer> publisher = new BufferedPublisher<>(1, OverflowStrategy.FAIL, Runnable::run);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        publisher.publish(1);
+        publisher.publish(2);
+
+        assertTrue(subscriber.error instanceof IllegalStateException);
+        assertFalse(publisher.hasSubscribers());
+    }
+
+    @Test
+    void closeShouldCompleteAfterBufferedItems() {
+        BufferedPublisher<Integer> publisher = new BufferedPublisher<>(4, OverflowStrategy.FAIL, Runnable::run);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        publisher.publish(1);
+        publisher.close();
+        assertFalse(subscriber.isCompleted);
+
+        subscriber.subscription.request(1);
+        assertEquals(1, subscriber.items.size());
+        assertTrue(subscriber.isCompleted);
+    }
+}
@@ -0,0 +1,145 @@
+package de.dev_kiste.galaxy.node;
+
+import de.dev_kiste.galaxy.driver.RecordingDriver;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Benny Lach
+ *
+ * Unit tests for ChannelBatchingSender
+ */
+class ChannelBatchingSenderTest {
+    // receivers 00C1 and 00C2 listen on the channel named by their last digit, broadcasts on any channel
+    private final ChannelAssignment assignment = receiver -> receiver.startsWith("00C") ?
+            receiver.charAt(3) - '0' : ChannelAssignment.ANY_CHANNEL;
+    private final RecordingDriver driver = new RecordingDriver("0001");
+    private final List<CompletableFuture<Boolean>> results = new ArrayList<>();
+
+    private ChannelBatchingSender sender(int maxBatchSize, int homeChannel) {
+        ChannelBatchingSender sender = new ChannelBatchingSender(driver::sendPayload, driver, assignment, maxBatchSize);
+
+        if(homeChannel != ChannelAssignment.ANY_CHANNEL) {
+            driver.setChannel(homeChannel);
+            sender.setHomeChannel(homeChannel);
+        }
+        return sender;
+    }
+
+    @Test
+    void payloadsShouldBeSentInBatchesPerChannel() throws Exception {
+        ChannelBatchingSender sender = sender(2, 0);
+
+        // keeps the queues filling up until the first payload was sent
+        driver.setHoldingSends(true);
+        send(sender, "FFFF", "00C1", "00C2", "00C1", "00C2", "00C1");
+        driver.setHoldingSends(false);
+        driver.getSent().get(0).future.complete(true);
+
+        awaitLog(11);
+        assertEquals(Arrays.asList("channel:0", "send:FFFF",
+                "channel:1", "send:00C1", "send:00C1",
+                "channel:2", "send:00C2", "send:00C2",
+                "channel:1", "send:00C1",
+                "channel:0"), driver.getLog());
+
+        for(RecordingDriver.Sent sent : driver.getSent().subList(1, 6)) {
+            assertEquals(assignment.getChannel(sent.receiver), sent.channel);
+        }
+        for(CompletableFuture<Boolean> result : results) {
+            assertTrue(result.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void singleChannelShouldNotBeLimitedByBatchSize() throws Exception {
+        ChannelBatchingSender sender = sender(2, 0);
+
+        driver.setHoldingSends(true);
+        send(sender, "FFFF", "00C1", "00C1", "00C1", "00C1");
+        driver.setHoldingSends(false);
+        driver.getSent().get(0).future.complete(true);
+
+        awaitLog(8);
+        assertEquals(Arrays.asList("channel:0", "send:FFFF",
+                "channel:1", "send:00C1", "send:00C1", "send:00C1", "send:00C1",
+                "channel:0"), driver.getLog());
+    }
+
+    @Test
+    void anyChannelPayloadsShouldNotSwitchChannel() throws Exception {
+        ChannelBatchingSender sender = sender(2, 3);
+
+        send(sender, "FFFF", "0042");
+        for(CompletableFuture<Boolean> result : results) {
+            assertTrue(result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(Arrays.asList("channel:3", "send:FFFF", "send:0042"), driver.getLog());
+    }
+
+    @Test
+    void withoutHomeChannelDriverShouldStayOnLastChannel() throws Exception {
+        ChannelBatchingSender sender = sender(2, ChannelAssignment.ANY_CHANNEL);
+
+        send(sender, "00C2");
+        assertTrue(results.get(0).get(5, TimeUnit.SECONDS));
+
+        Thread.sleep(50);
+        assertEquals(Arrays.asList("channel:2", "send:00C2"), driver.getLog());
+    }
+
+    @Test
+    void broadcastShouldBeSentOnEverySpreadChannel() throws Exception {
+        ChannelBatchingSender sender = new ChannelBatchingSender(driver::sendPayload, driver,
+                ChannelAssignment.spread(new int[] { 0, 1, 2 }), 2);
+        driver.setChannel(0);
+        sender.setHomeChannel(0);
+
+        send(sender, "FFFF");
+        assertTrue(results.get(0).get(5, TimeUnit.SECONDS));
+
+        awaitLog(7);
+        assertEquals(Arrays.asList("channel:0", "send:FFFF",
+                "channel:1", "send:FFFF",
+                "channel:2", "send:FFFF",
+                "channel:0"), driver.getLog());
+    }
+
+    @Test
+    void broadcastShouldFailIfOneCopyFailed() throws Exception {
+        ChannelBatchingSender sender = new ChannelBatchingSender(driver::sendPayload, driver,
+                ChannelAssignment.spread(new int[] { 0, 1 }), 2);
+        driver.setChannel(0);
+        sender.setHomeChannel(0);
+        driver.setHoldingSends(true);
+
+        send(sender, "FFFF");
+        driver.awaitSent(1).get(0).future.complete(true);
+        driver.awaitSent(2).get(1).future.complete(false);
+
+        assertFalse(results.get(0).get(5, TimeUnit.SECONDS));
+        assertEquals(1, driver.getSent().get(1).channel);
+    }
+
+    private void send(ChannelBatchingSender sender, String... receivers) {
+        for(String receiver : receivers) {
+            results.add(sender.send(new byte[] { 1 }, receiver));
+        }
+    }
+
+    private void awaitLog(int size) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+        while(driver.getLog().size() < size && System.nanoTime() < deadline) {
+            Thread.sleep(2);
+        }
+        Thread.sleep(20);
+    }
+}
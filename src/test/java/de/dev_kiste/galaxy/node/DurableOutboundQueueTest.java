@@ -0,0 +1,217 @@
+package de.dev_kiste.galaxy.node;
+
+import de.dev_kiste.galaxy.driver.SendOutcome;
+import de.dev_kiste.galaxy.journal.OutboundJournal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Benny Lach
+ *
+ * Unit tests for DurableOutboundQueue
+ */
+class DurableOutboundQueueTest {
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+    private final ArrayDeque<SendOutcome> outcomes = new ArrayDeque<>();
+    private Path directory;
+    private OutboundJournal journal;
+
+    @BeforeEach
+    void setup() throws IOException {
+        directory = Files.createTempDirectory("durable-queue");
+        journal = OutboundJournal.open(directory, 4096, 10);
+    }
+
+    @AfterEach
+    void deinit() throws IOException {
+        journal.close();
+
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * Creates a queue whose downstream reports the given outcomes in order and SENT once they are used up
+     */
+    private DurableOutboundQueue queue(SendOutcome... scripted) {
+        return queue(1, scripted);
+    }
+
+    private DurableOutboundQueue queue(int window, SendOutcome... scripted) {
+        outcomes.addAll(Arrays.asList(scripted));
+
+        PayloadSender radio = new PayloadSender() {
+            @Override
+            public CompletableFuture<Boolean> send(byte[] payload, String receiver) {
+                return sendWithOutcome(payload, receiver).thenApply(SendOutcome::isSent);
+            }
+
+            @Override
+            public CompletableFuture<SendOutcome> sendWithOutcome(byte[] payload, String receiver) {
+                sent.add(receiver);
+
+                synchronized (outcomes) {
+                    return CompletableFuture.completedFuture(outcomes.isEmpty() ? SendOutcome.SENT : outcomes.poll());
+                }
+            }
+        };
+        return new DurableOutboundQueue(radio, journal, window, 10);
+    }
+
+    @Test
+    void queuedPayloadsShouldBeSentInOrderOnResume() throws Exception {
+        DurableOutboundQueue queue = queue();
+        CompletableFuture<Boolean> first = queue.send(new byte[] { 1 }, "0010");
+        CompletableFuture<Boolean> second = queue.send(new byte[] { 2 }, "0020");
+
+        Thread.sleep(50);
+        assertTrue(sent.isEmpty());
+        assertEquals(2, queue.getPendingCount());
+
+        queue.resume();
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertTrue(second.get(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("0010", "0020"), sent);
+        assertEquals(0, queue.getPendingCount());
+        assertTrue(reopenedEntries().isEmpty());
+    }
+
+    @Test
+    void transientFailuresShouldBeRetriedUntilSent() throws Exception {
+        DurableOutboundQueue queue = queue(SendOutcome.CHANNEL_BUSY, SendOutcome.MODULE_BUSY,
+                SendOutcome.DISCONNECTED, SendOutcome.FAILED, SendOutcome.DISCONNECTED);
+        queue.resume();
+
+        CompletableFuture<Boolean> first = queue.send(new byte[] { 1 }, "0010");
+        CompletableFuture<Boolean> second = queue.send(new byte[] { 2 }, "0020");
+
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertTrue(second.get(5, TimeUnit.SECONDS));
+        // the failing payload is retried before the next one is sent
+        assertEquals(Arrays.asList("0010", "0010", "0010", "0010", "0010", "0010", "0020"), sent);
+        assertTrue(reopenedEntries().isEmpty());
+    }
+
+    @Test
+    void permanentRejectionShouldDropPayload() throws Exception {
+        DurableOutboundQueue queue = queue(SendOutcome.REJECTED, SendOutcome.INVALID);
+        queue.resume();
+
+        CompletableFuture<SendOutcome> rejected = queue.sendWithOutcome(new byte[] { 1 }, "0010");
+        CompletableFuture<SendOutcome> invalid = queue.sendWithOutcome(new byte[] { 2 }, "0020");
+        CompletableFuture<SendOutcome> accepted = queue.sendWithOutcome(new byte[] { 3 }, "0030");
+
+        assertEquals(SendOutcome.REJECTED, rejected.get(5, TimeUnit.SECONDS));
+        assertEquals(SendOutcome.INVALID, invalid.get(5, TimeUnit.SECONDS));
+        assertEquals(SendOutcome.SENT, accepted.get(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("0010", "0020", "0030"), sent);
+        assertTrue(reopenedEntries().isEmpty());
+    }
+
+    @Test
+    void windowShouldLimitPayloadsInFlight() throws Exception {
+        List<CompletableFuture<SendOutcome>> pending = new CopyOnWriteArrayList<>();
+        DurableOutboundQueue queue = new DurableOutboundQueue(new PayloadSender() {
+            @Override
+            public CompletableFuture<Boolean> send(byte[] payload, String receiver) {
+                return sendWithOutcome(payload, receiver).thenApply(SendOutcome::isSent);
+            }
+
+            @Override
+            public CompletableFuture<SendOutcome> sendWithOutcome(byte[] payload, String receiver) {
+                CompletableFuture<SendOutcome> future = new CompletableFuture<>();
+                sent.add(receiver);
+                pending.add(future);
+
+                return future;
+            }
+        }, journal, 3, 10);
+
+        for(int i = 1; i <= 4; i++) {
+            queue.send(new byte[] { (byte) i }, "00" + i + "0");
+        }
+        queue.resume();
+        assertEquals(Arrays.asList("0010", "0020", "0030"), sent);
+
+        pending.get(1).complete(SendOutcome.SENT);
+        await(() -> sent.size() == 4);
+        assertEquals("0040", sent.get(3));
+
+        // the failed payload is sent again after the retry delay
+        pending.get(0).complete(SendOutcome.DISCONNECTED);
+        await(() -> sent.size() == 5);
+        assertEquals("0010", sent.get(4));
+        assertEquals(3, queue.getPendingCount());
+    }
+
+    @Test
+    void pausedQueueShouldKeepPayloadsAcrossReopen() throws Exception {
+        SendOutcome[] disconnected = new SendOutcome[1000];
+        Arrays.fill(disconnected, SendOutcome.DISCONNECTED);
+
+        DurableOutboundQueue queue = queue(disconnected);
+        queue.resume();
+        queue.send(new byte[] { 1 }, "0010");
+
+        // the module stays away while the payload is being retried
+        Thread.sleep(50);
+        queue.pause();
+        queue.send(new byte[] { 2 }, "0020");
+
+        List<OutboundJournal.Entry> recovered = reopenedEntries();
+        assertEquals(2, recovered.size());
+        assertEquals("0010", recovered.get(0).getReceiver());
+        assertEquals("0020", recovered.get(1).getReceiver());
+
+        synchronized (outcomes) {
+            outcomes.clear();
+        }
+        DurableOutboundQueue reopened = queue();
+        reopened.resume();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(reopened.getPendingCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(2);
+        }
+        assertEquals(0, reopened.getPendingCount());
+        assertTrue(sent.containsAll(Arrays.asList("0010", "0020")));
+    }
+
+    private void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+        while(!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(2);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    /**
+     * Closes the journal and opens it again
+     *
+     * @return the pending entries found while opening
+     */
+    private List<OutboundJournal.Entry> reopenedEntries() throws IOException {
+        journal.close();
+        journal = OutboundJournal.open(directory, 4096, 10);
+
+        return journal.getRecoveredEntries();
+    }
+}
@@ -0,0 +1,262 @@
+package de.dev_kiste.galaxy.node;
+
+import de.dev_kiste.galaxy.crypto.PayloadCipher;
+import de.dev_kiste.galaxy.driver.RecordingDriver;
+import de.dev_kiste.galaxy.journal.OutboundJournal;
+import de.dev_kiste.galaxy.messaging.GalaxyMessage;
+import de.dev_kiste.galaxy.messaging.stream.BufferedPublisher;
+import de.dev_kiste.galaxy.messaging.stream.OverflowStrategy;
+import de.dev_kiste.galaxy.messaging.stream.Subscriber;
+import de.dev_kiste.galaxy.messaging.stream.Subscription;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Benny Lach
+ *
+ * Unit tests for GalaxyNode combining several outbound stages
+ */
+class GalaxyNodeTest {
+    private Path directory;
+
+    @BeforeEach
+    void setup() throws IOException {
+        directory = Files.createTempDirectory("galaxy-node");
+    }
+
+    @AfterEach
+    void deinit() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void payloadsQueuedForPrioritySchedulingShouldSurviveReopen() throws Exception {
+        OutboundJournal journal = OutboundJournal.open(directory, 4096, 10);
+        RecordingDriver driver = new RecordingDriver("0001");
+        driver.setHoldingSends(true);
+
+        GalaxyNode node = scheduledNode(driver, journal);
+        assertTrue(node.bootstrap().get(5, TimeUnit.SECONDS));
+
+        node.sendPayload(new byte[] { 1 }, "0010", SendPriority.BULK);
+        node.sendPayload(new byte[] { 2 }, "0020", SendPriority.NORMAL);
+        node.sendPayload(new byte[] { 3 }, "0030", SendPriority.URGENT);
+        driver.awaitSent(1);
+
+        // only one payload reached the radio, the others wait in the scheduler
+        assertEquals(1, driver.getSent().size());
+        journal.close();
+
+        OutboundJournal reopened = OutboundJournal.open(directory, 4096, 10);
+        List<OutboundJournal.Entry> recovered = reopened.getRecoveredEntries();
+
+        assertEquals(Arrays.asList("0010", "0020", "0030"), recovered.stream()
+                .map(OutboundJournal.Entry::getReceiver)
+                .collect(Collectors.toList()));
+        assertEquals(SendPriority.URGENT.ordinal(), recovered.get(2).getTag());
+
+        RecordingDriver restarted = new RecordingDriver("0001");
+        assertTrue(scheduledNode(restarted, reopened).bootstrap().get(5, TimeUnit.SECONDS));
+
+        restarted.awaitSent(3);
+        assertEquals(3, restarted.getSent().size());
+        reopened.close();
+    }
+
+    @Test
+    void slowSubscriberShouldPaceDispatchingInOrder() throws Exception {
+        RecordingDriver driver = new RecordingDriver("0001");
+        AtomicInteger handled = new AtomicInteger();
+        GalaxyNode node = new GalaxyNodeBuilder()
+                .setDriver(driver)
+                .setMessageHandler(message -> handled.incrementAndGet())
+                .setMessageBuffer(4, OverflowStrategy.DROP_OLDEST)
+                .build();
+        List<Integer> received = new CopyOnWriteArrayList<>();
+
+        node.getMessagePublisher().subscribe(new Subscriber<GalaxyMessage>() {
+            private Subscription subscription;
+
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(GalaxyMessage item) {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                received.add((int) item.getPayload()[0]);
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {}
+
+            @Override
+            public void onComplete() {}
+        });
+        assertTrue(node.bootstrap().get(5, TimeUnit.SECONDS));
+
+        for(int i = 0; i < 30; i++) {
+            driver.receive(new byte[] { (byte) i }, "0002");
+        }
+        // handlers see a message once it was published, so they can not run ahead of the subscriber's buffer
+        assertTrue(handled.get() <= received.size() + 6);
+
+        await(() -> received.contains(29));
+        Thread.sleep(50);
+
+        for(int i = 1; i < received.size(); i++) {
+            assertTrue(received.get(i - 1) < received.get(i), "Messages were reordered: " + received);
+        }
+        // the subscriber's buffer and the inbound backlog hold 4 messages each, older ones were dropped
+        assertTrue(received.size() < 30);
+        assertEquals(received.size(), handled.get());
+        assertEquals(0, ((BufferedPublisher<GalaxyMessage>) node.getMessagePublisher()).getDroppedItems());
+    }
+
+    @Test
+    void encryptedPayloadsShouldRoundTripAndTamperedFramesBeDropped() throws Exception {
+        byte[] key = new byte[16];
+        Arrays.fill(key, (byte) 7);
+        RecordingDriver senderDriver = new RecordingDriver("0001");
+        RecordingDriver receiverDriver = new RecordingDriver("0002");
+        List<String> received = new CopyOnWriteArrayList<>();
+
+        GalaxyNode sender = new GalaxyNodeBuilder()
+                .setDriver(senderDriver)
+                .setPayloadCipher(new PayloadCipher(key))
+                .build();
+        GalaxyNode receiver = new GalaxyNodeBuilder()
+                .setDriver(receiverDriver)
+                .setPayloadCipher(new PayloadCipher(key))
+                .setMessageHandler(message -> received.add(new String(message.getPayload(), StandardCharsets.UTF_8)))
+                .build();
+        assertTrue(sender.bootstrap().get(5, TimeUnit.SECONDS));
+        assertTrue(receiver.bootstrap().get(5, TimeUnit.SECONDS));
+
+        assertTrue(sender.sendPayload(bytes("first"), "0002").get(5, TimeUnit.SECONDS));
+        assertTrue(sender.sendPayload(bytes("tampered"), "0002").get(5, TimeUnit.SECONDS));
+        assertTrue(sender.sendPayload(bytes("last"), "0002").get(5, TimeUnit.SECONDS));
+
+        List<RecordingDriver.Sent> frames = senderDriver.getSent();
+        assertEquals(3, frames.size());
+        assertTrue(PayloadCipher.isEncrypted(frames.get(0).payload));
+        assertFalse(new String(frames.get(0).payload, StandardCharsets.ISO_8859_1).contains("first"));
+
+        byte[] tampered = frames.get(1).payload.clone();
+        tampered[PayloadCipher.PAYLOAD_OFFSET] ^= 1;
+        byte[] foreignKey = new byte[16];
+        foreignKey[0] = 1;
+
+        receiverDriver.receive(frames.get(0).payload.clone(), "0001");
+        receiverDriver.receive(tampered, "0001");
+        receiverDriver.receive(bytes("plain"), "0001");
+        receiverDriver.receive(new PayloadCipher(foreignKey).encrypt(bytes("foreign")), "0001");
+        receiverDriver.receive(frames.get(2).payload.clone(), "0001");
+
+        await(() -> received.size() >= 2);
+        Thread.sleep(50);
+        assertEquals(Arrays.asList("first", "last"), received);
+    }
+
+    @Test
+    void nodesOfOneBuilderShouldLimitSourcesSeparately() throws Exception {
+        RecordingDriver first = new RecordingDriver("0001");
+        RecordingDriver second = new RecordingDriver("0002");
+        GalaxyNodeBuilder builder = new GalaxyNodeBuilder().setSourceRateLimit(0.001, 1, RateLimitPolicy.DROP);
+
+        GalaxyNode firstNode = builder.setDriver(first).build();
+        GalaxyNode secondNode = builder.setDriver(second).build();
+        assertTrue(firstNode.bootstrap().get(5, TimeUnit.SECONDS));
+        assertTrue(secondNode.bootstrap().get(5, TimeUnit.SECONDS));
+
+        first.receive(bytes("a"), "00AA");
+        second.receive(bytes("b"), "00AA");
+        second.receive(bytes("c"), "00AA");
+
+        assertEquals(1, firstNode.getTopTalkers(1).get(0).getAcceptedCount());
+        assertEquals(0, firstNode.getTopTalkers(1).get(0).getLimitedCount());
+        assertEquals(1, secondNode.getTopTalkers(1).get(0).getAcceptedCount());
+        assertEquals(1, secondNode.getTopTalkers(1).get(0).getLimitedCount());
+    }
+
+    @Test
+    void bootstrapAllShouldConnectNodesConcurrently() throws Exception {
+        // every connect blocks until all drivers are connecting, so a sequential bootstrap would time out
+        CountDownLatch connecting = new CountDownLatch(3);
+        List<GalaxyNode> nodes = new ArrayList<>();
+
+        for(int i = 0; i < 3; i++) {
+            RecordingDriver driver = new RecordingDriver("000" + i) {
+                @Override
+                public CompletableFuture<Boolean> connect() {
+                    connecting.countDown();
+
+                    try {
+                        if(!connecting.await(5, TimeUnit.SECONDS)) {
+                            return CompletableFuture.completedFuture(false);
+                        }
+                    } catch (InterruptedException e) {
+                        return CompletableFuture.completedFuture(false);
+                    }
+                    return super.connect();
+                }
+            };
+            driver.setConnectable(i != 1);
+            nodes.add(new GalaxyNodeBuilder().setDriver(driver).build());
+        }
+        List<Boolean> results = GalaxyNode.bootstrapAll(nodes).get(10, TimeUnit.SECONDS);
+
+        assertEquals(Arrays.asList(true, false, true), results);
+        assertThrows(IllegalArgumentException.class, () -> GalaxyNode.bootstrapAll(null));
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private GalaxyNode scheduledNode(RecordingDriver driver, OutboundJournal journal) {
+        return new GalaxyNodeBuilder()
+                .setDriver(driver)
+                .setOutboundJournal(journal)
+                .setPriorityScheduling(1, 60000)
+                .build();
+    }
+
+    private void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+        while(!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(2);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
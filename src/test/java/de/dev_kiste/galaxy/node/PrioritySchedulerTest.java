@@ -0,0 +1,73 @@
+package de.dev_kiste.galaxy.node;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Benny Lach
+ *
+ * Unit tests for PriorityScheduler
+ */
+class PrioritySchedulerTest {
+    private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+    private final List<CompletableFuture<Boolean>> pending = Collections.synchronizedList(new ArrayList<>());
+
+    private final PayloadSender radio = (payload, receiver) -> {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        sent.add(receiver);
+        pending.add(future);
+
+        return future;
+    };
+
+    @Test
+    void urgentPayloadShouldOvertakeBacklog() throws InterruptedException {
+        PriorityScheduler scheduler = new PriorityScheduler(radio, 1, 60000);
+
+        scheduler.send(new byte[0], "first", SendPriority.BULK);
+        scheduler.send(new byte[0], "bulk", SendPriority.BULK);
+        scheduler.send(new byte[0], "normal", SendPriority.NORMAL);
+        scheduler.send(new byte[0], "alarm", SendPriority.URGENT);
+
+        completeCurrent(2);
+
+        assertEquals("first", sent.get(0));
+        assertEquals("alarm", sent.get(1));
+    }
+
+    @Test
+    void weightedClassesShouldShareTheRadio() throws InterruptedException {
+        PriorityScheduler scheduler = new PriorityScheduler(radio, 1, 60000);
+
+        scheduler.send(new byte[0], "blocker", SendPriority.URGENT);
+        for(int i = 0; i < 7; i++) {
+            scheduler.send(new byte[0], "high", SendPriority.HIGH);
+            scheduler.send(new byte[0], "bulk", SendPriority.BULK);
+        }
+        for(int i = 2; i <= 6; i++) {
+            completeCurrent(i);
+        }
+        // weights 4:1 - one bulk payload within five weighted sends
+        assertEquals(6, sent.size());
+        assertEquals(1, Collections.frequency(sent.subList(1, 6), "bulk"));
+        assertEquals(1, scheduler.getMetrics().get(SendPriority.URGENT).getSentCount());
+    }
+
+    /**
+     * Completes the payload currently sent and waits until the scheduler released the given number of payloads
+     */
+    private void completeCurrent(int expectedSent) throws InterruptedException {
+        pending.get(pending.size() - 1).complete(true);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while(sent.size() < expectedSent && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package de.dev_kiste.galaxy.node;
+
+import de.dev_kiste.galaxy.driver.SendOutcome;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Benny Lach
+ *
+ * Unit tests for RetryingSender
+ */
+class RetryingSenderTest {
+    private final AtomicReference<SendReport> report = new AtomicReference<>();
+
+    private RetryingSender sender(RetryPolicy policy, SendOutcome... outcomes) {
+        ArrayDeque<SendOutcome> remaining = new ArrayDeque<>(Arrays.asList(outcomes));
+
+        PayloadSender radio = new PayloadSender() {
+            @Override
+            public CompletableFuture<Boolean> send(byte[] payload, String receiver) {
+                return sendWithOutcome(payload, receiver).thenApply(SendOutcome::isSent);
+            }
+
+            @Override
+            public CompletableFuture<SendOutcome> sendWithOutcome(byte[] payload, String receiver) {
+                return CompletableFuture.completedFuture(remaining.poll());
+            }
+        };
+        return new RetryingSender(radio, policy, Optional.of(report::set));
+    }
+
+    @Test
+    void retryableFailuresShouldBeRetried() throws Exception {
+        RetryingSender sender = sender(new RetryPolicy(5, 1, 4, 5000),
+                SendOutcome.CHANNEL_BUSY, SendOutcome.MODULE_BUSY, SendOutcome.SENT);
+
+        assertTrue(sender.send(new byte[0], "0001").get());
+        assertEquals(3, report.get().getAttempts());
+        assertEquals(SendOutcome.SENT, report.get().getOutcome());
+    }
+
+    @Test
+    void permanentFailureShouldNotBeRetried() throws Exception {
+        RetryingSender sender = sender(new RetryPolicy(5, 1, 4, 5000), SendOutcome.REJECTED, SendOutcome.SENT);
+
+        assertEquals(SendOutcome.REJECTED, sender.sendWithOutcome(new byte[0], "0001").get());
+        assertEquals(1, report.get().getAttempts());
+    }
+
+    @Test
+    void attemptsShouldBeCapped() throws Exception {
+        RetryingSender sender = sender(new RetryPolicy(2, 1, 4, 5000),
+                SendOutcome.CHANNEL_BUSY, SendOutcome.CHANNEL_BUSY, SendOutcome.SENT);
+
+        assertEquals(SendOutcome.CHANNEL_BUSY, sender.sendWithOutcome(new byte[0], "0001").get());
+        assertEquals(2, report.get().getAttempts());
+    }
+
+    @Test
+    void backoffShouldStayWithinBounds() {
+        RetryPolicy policy = new RetryPolicy(10, 100, 400, 5000);
+
+        for(int attempts = 1; attempts < 10; attempts++) {
+            long backoff = policy.getBackoffMillis(attempts);
+
+            assertTrue(backoff >= 0 && backoff <= Math.min(100L << (attempts - 1), 400));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package de.dev_kiste.galaxy.node;
+
+import de.dev_kiste.galaxy.messaging.GalaxyMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Benny Lach
+ *
+ * Unit tests for SlotClock
+ */
+class SlotClockTest {
+    private final AtomicLong sourceTime = new AtomicLong(1000000);
+    private final AtomicLong localTime = new AtomicLong(0);
+    private final SlotClock source = new SlotClock(500, sourceTime::get);
+    private final SlotClock local = new SlotClock(500, localTime::get);
+    private final List<GalaxyMessage> passed = new ArrayList<>();
+    private int stops = 0;
+
+    private void receive(byte[] payload) {
+        local.execute(new GalaxyMessage(payload, "0001"), passed::add, () -> stops++);
+    }
+
+    @Test
+    void beaconShouldBeAdoptedAndLaterOnesWeighted() {
+        receive(source.beacon());
+        assertEquals(1000500, local.now());
+
+        sourceTime.set(1002000);
+        receive(source.beacon());
+        // 2000us error corrected by a quarter
+        assertEquals(1001000, local.now());
+
+        assertEquals(2, stops);
+        assertTrue(passed.isEmpty());
+    }
+
+    @Test
+    void payloadOnlyResemblingBeaconShouldBePassedOn() {
+        byte[] beacon = source.beacon();
+        byte[] otherVersion = beacon.clone();
+        otherVersion[1]++;
+        byte[] wrongCheck = beacon.clone();
+        wrongCheck[5]++;
+        byte[] oldLayout = new byte[9];
+        oldLayout[0] = SlotClock.BEACON_MAGIC;
+
+        assertTrue(SlotClock.isBeacon(beacon));
+        receive(otherVersion);
+        receive(wrongCheck);
+        receive(oldLayout);
+
+        assertEquals(3, passed.size());
+        assertEquals(0, stops);
+        assertEquals(0, local.now());
+    }
+}
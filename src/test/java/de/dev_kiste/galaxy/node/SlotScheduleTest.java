@@ -0,0 +1,33 @@
+package de.dev_kiste.galaxy.node;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Benny Lach
+ *
+ * Unit tests for SlotSchedule
+ */
+class SlotScheduleTest {
+    // 4 slots of 100ms with 10ms guard time
+    private final SlotSchedule schedule = new SlotSchedule(4, 100000, 10000);
+
+    @Test
+    void transmissionShouldWaitForOwnSlot() {
+        assertEquals(210000, schedule.delayUntilTransmission(2, 0, 50000));
+        assertEquals(0, schedule.delayUntilTransmission(2, 230000, 50000));
+    }
+
+    @Test
+    void transmissionNotFittingIntoTheSlotShouldWaitForNextFrame() {
+        // latest start 240ms, the next slot opens at 610ms
+        assertEquals(360000, schedule.delayUntilTransmission(2, 250000, 50000));
+    }
+
+    @Test
+    void slotsShouldBeDerivedFromAddress() {
+        assertEquals(1, schedule.slotFor("0005"));
+        assertEquals(3, schedule.slotFor("FFFF"));
+    }
+}
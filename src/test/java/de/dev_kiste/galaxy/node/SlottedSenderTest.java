@@ -0,0 +1,151 @@
+package de.dev_kiste.galaxy.node;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Benny Lach
+ *
+ * Unit tests for SlottedSender running on a controlled clock. Wake-ups are recorded and run by the tests
+ */
+class SlottedSenderTest {
+    private static class WakeUp {
+        private final Runnable task;
+        private final long delayMicros;
+
+        private WakeUp(Runnable task, long delayMicros) {
+            this.task = task;
+            this.delayMicros = delayMicros;
+        }
+    }
+
+    // 4 slots of 100ms with 10ms guard time - address 0005 owns slot 1, sending between 110ms and 190ms
+    private final SlotSchedule schedule = new SlotSchedule(4, 100000, 10000);
+    private final AtomicLong now = new AtomicLong(0);
+    private final SlotClock clock = new SlotClock(1000, now::get);
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+    private final List<byte[]> payloads = new CopyOnWriteArrayList<>();
+    private final List<WakeUp> wakeUps = new CopyOnWriteArrayList<>();
+    private final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1) {
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            wakeUps.add(new WakeUp(command, unit.toMicros(delay)));
+            return null;
+        }
+    };
+
+    private SlottedSender sender(long airtimeMicros, int beaconFrames) {
+        PayloadSender radio = (payload, receiver) -> {
+            payloads.add(payload);
+            sent.add(receiver);
+
+            return CompletableFuture.completedFuture(true);
+        };
+        return new SlottedSender(radio, schedule, clock, length -> airtimeMicros, beaconFrames, timer);
+    }
+
+    @AfterEach
+    void deinit() {
+        timer.shutdownNow();
+    }
+
+    @Test
+    void nothingShouldBeSentBeforeSlotIsKnown() throws Exception {
+        SlottedSender sender = sender(1000, 0);
+        CompletableFuture<Boolean> result = sender.send(new byte[] { 1 }, "0042");
+
+        assertTrue(wakeUps.isEmpty());
+        assertTrue(sent.isEmpty());
+
+        now.set(110000);
+        assertEquals(1, sender.assignSlot("0005"));
+        assertTrue(result.get(5, TimeUnit.SECONDS));
+        assertEquals("0042", sent.get(0));
+    }
+
+    @Test
+    void queuedPayloadsShouldBeSentInOrderOnceSlotOpens() throws Exception {
+        SlottedSender sender = sender(1000, 0);
+        sender.assignSlot("0005");
+
+        CompletableFuture<Boolean> first = sender.send(new byte[] { 1 }, "0041");
+        CompletableFuture<Boolean> second = sender.send(new byte[] { 2 }, "0042");
+
+        // the second payload must not schedule another wake-up
+        assertEquals(1, wakeUps.size());
+        assertEquals(110000, wakeUps.get(0).delayMicros);
+        assertTrue(sent.isEmpty());
+
+        now.set(110000);
+        wakeUps.get(0).task.run();
+
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertTrue(second.get(5, TimeUnit.SECONDS));
+        assertEquals("0041", sent.get(0));
+        assertEquals("0042", sent.get(1));
+    }
+
+    @Test
+    void payloadNotFittingIntoRestOfSlotShouldWaitForNextFrame() throws Exception {
+        SlottedSender sender = sender(50000, 0);
+        sender.assignSlot("0005");
+
+        // the latest start is 140ms, the slot opens again at 510ms
+        now.set(150000);
+        CompletableFuture<Boolean> result = sender.send(new byte[] { 1 }, "0042");
+
+        assertEquals(1, wakeUps.size());
+        assertEquals(360000, wakeUps.get(0).delayMicros);
+
+        // an early wake-up sends nothing and checks again
+        now.set(400000);
+        wakeUps.get(0).task.run();
+        assertEquals(2, wakeUps.size());
+        assertEquals(110000, wakeUps.get(1).delayMicros);
+        assertTrue(sent.isEmpty());
+
+        now.set(510000);
+        wakeUps.get(1).task.run();
+        assertTrue(result.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void beaconSourceShouldBroadcastBeaconInItsSlot() throws Exception {
+        SlottedSender sender = sender(1000, 2);
+        sender.assignSlot("0005");
+
+        assertEquals(1, wakeUps.size());
+        assertEquals(110000, wakeUps.get(0).delayMicros);
+
+        now.set(110000);
+        wakeUps.get(0).task.run();
+
+        // the next beacon is due two frames later
+        await(() -> wakeUps.size() == 2);
+        assertEquals(690000, wakeUps.get(1).delayMicros);
+
+        assertEquals(1, sent.size());
+        assertEquals(GalaxyNode.BROADCAST_ADDRESS, sent.get(0));
+        assertTrue(SlotClock.isBeacon(payloads.get(0)));
+    }
+
+    private void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+        while(!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(2);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
@@ -0,0 +1,88 @@
+package de.dev_kiste.galaxy.node;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Benny Lach
+ *
+ * Unit tests for SourceRateLimiter
+ */
+class SourceRateLimiterTest {
+    private long now = 0;
+
+    private SourceRateLimiter limiter(RateLimitPolicy policy, int capacity) {
+        return new SourceRateLimiter(10, 2, policy, capacity, () -> now);
+    }
+
+    @Test
+    void burstShouldBeLimitedPerSource() {
+        SourceRateLimiter limiter = limiter(RateLimitPolicy.DROP, 16);
+
+        assertEquals(0, limiter.acquire("0001"));
+        assertEquals(0, limiter.acquire("0001"));
+        assertEquals(SourceRateLimiter.LIMITED, limiter.acquire("0001"));
+        assertEquals(0, limiter.acquire("0002"));
+
+        // 10 messages per second - one token after 100ms
+        now += TimeUnit.MILLISECONDS.toNanos(100);
+        assertEquals(0, limiter.acquire("0001"));
+        assertEquals(SourceRateLimiter.LIMITED, limiter.acquire("0001"));
+    }
+
+    @Test
+    void deferredMessagesShouldWaitForTheirToken() {
+        SourceRateLimiter limiter = limiter(RateLimitPolicy.DEFER, 16);
+
+        limiter.acquire("0001");
+        limiter.acquire("0001");
+
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), limiter.acquire("0001"), 1000);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(200), limiter.acquire("0001"), 1000);
+        assertEquals(SourceRateLimiter.LIMITED, limiter.acquire("0001"));
+    }
+
+    @Test
+    void topTalkersShouldBeOrderedByTraffic() {
+        SourceRateLimiter limiter = limiter(RateLimitPolicy.TAG, 16);
+
+        for(int i = 0; i < 5; i++) {
+            limiter.acquire("00AA");
+        }
+        limiter.acquire("00BB");
+        limiter.acquire("no address");
+
+        List<SourceTraffic> talkers = limiter.getTopTalkers(2);
+
+        assertEquals(2, talkers.size());
+        assertEquals("00AA", talkers.get(0).getSource());
+        assertEquals(2, talkers.get(0).getAcceptedCount());
+        assertEquals(3, talkers.get(0).getLimitedCount());
+    }
+
+    @Test
+    void sourcesWithoutAddressShouldShareOneBucket() {
+        SourceRateLimiter limiter = limiter(RateLimitPolicy.DROP, 16);
+
+        assertEquals(0, limiter.acquire("node-1"));
+        assertEquals(0, limiter.acquire(null));
+        assertEquals(SourceRateLimiter.LIMITED, limiter.acquire("00G1"));
+        // lower case hex digits are a regular address
+        assertEquals(0, limiter.acquire("00aa"));
+    }
+
+    @Test
+    void tableShouldStayBounded() {
+        SourceRateLimiter limiter = limiter(RateLimitPolicy.DROP, 8);
+
+        for(int i = 0; i < 100; i++) {
+            now++;
+            assertEquals(0, limiter.acquire(String.format("%04X", i)));
+        }
+        assertTrue(limiter.getTopTalkers(100).size() <= 8);
+    }
+}
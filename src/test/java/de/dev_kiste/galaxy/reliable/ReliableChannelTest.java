@@ -0,0 +1,151 @@
+package de.dev_kiste.galaxy.reliable;
+
+import de.dev_kiste.galaxy.driver.RecordingDriver;
+import de.dev_kiste.galaxy.messaging.GalaxyMessage;
+import de.dev_kiste.galaxy.node.GalaxyNode;
+import de.dev_kiste.galaxy.node.GalaxyNodeBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Benny Lach
+ *
+ * Unit tests for ReliableChannel. Frames are passed between the channels by the test, so loss, reordering and
+ * duplicates are under its control
+ */
+class ReliableChannelTest {
+    private final RecordingDriver senderDriver = new RecordingDriver("0001");
+    private final RecordingDriver receiverDriver = new RecordingDriver("0002");
+    private final List<byte[]> delivered = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger stopped = new AtomicInteger();
+
+    @Test
+    void lostPayloadShouldBeRetransmitted() throws Exception {
+        ReliableChannel sender = attach(new ReliableChannel(4, 50, 3, 0), senderDriver);
+        ReliableChannel receiver = attach(new ReliableChannel(), receiverDriver);
+
+        CompletableFuture<Boolean> future = sender.send(new byte[] { 1 }, "0002");
+        // the first transmission is lost
+        List<RecordingDriver.Sent> frames = senderDriver.awaitSent(2);
+
+        deliver(receiver, frames.get(1).payload, "0001");
+        deliver(sender, receiverDriver.awaitSent(1).get(0).payload, "0002");
+
+        assertTrue(future.get(5, TimeUnit.SECONDS));
+        assertEquals(1, delivered.size());
+        assertArrayEquals(new byte[] { 1 }, delivered.get(0));
+    }
+
+    @Test
+    void reorderedPayloadsShouldBeDeliveredAndAcknowledged() throws Exception {
+        ReliableChannel sender = attach(new ReliableChannel(4, 5000, 3, 0), senderDriver);
+        ReliableChannel receiver = attach(new ReliableChannel(), receiverDriver);
+
+        CompletableFuture<Boolean> first = sender.send(new byte[] { 1 }, "0002");
+        CompletableFuture<Boolean> second = sender.send(new byte[] { 2 }, "0002");
+        List<RecordingDriver.Sent> frames = senderDriver.awaitSent(2);
+
+        deliver(receiver, frames.get(1).payload, "0001");
+        deliver(receiver, frames.get(0).payload, "0001");
+        awaitAcknowledgement(receiverDriver, 2);
+        receiverDriver.getSent().forEach(ack -> deliver(sender, ack.payload, "0002"));
+
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertTrue(second.get(5, TimeUnit.SECONDS));
+        assertArrayEquals(new byte[] { 2 }, delivered.get(0));
+        assertArrayEquals(new byte[] { 1 }, delivered.get(1));
+    }
+
+    @Test
+    void duplicatePayloadShouldBeDeliveredOnce() throws Exception {
+        ReliableChannel sender = attach(new ReliableChannel(4, 5000, 3, 1000), senderDriver);
+        ReliableChannel receiver = attach(new ReliableChannel(4, 5000, 3, 1000), receiverDriver);
+
+        sender.send(new byte[] { 1 }, "0002");
+        byte[] frame = senderDriver.awaitSent(1).get(0).payload;
+
+        deliver(receiver, frame, "0001");
+        deliver(receiver, frame, "0001");
+
+        assertEquals(1, delivered.size());
+        assertEquals(1, stopped.get());
+        // the duplicate is acknowledged right away instead of after the acknowledgement delay
+        assertEquals(1, receiverDriver.getSent().size());
+        assertEquals(1, ReliableFrame.ack(receiverDriver.getSent().get(0).payload));
+    }
+
+    @Test
+    void givenUpPayloadShouldBeSkippedByReceiver() throws Exception {
+        ReliableChannel sender = attach(new ReliableChannel(4, 100, 1, 0), senderDriver);
+        ReliableChannel receiver = attach(new ReliableChannel(), receiverDriver);
+
+        // every transmission of the first payload is lost
+        assertFalse(sender.send(new byte[] { 1 }, "0002").get(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Boolean> next = sender.send(new byte[] { 2 }, "0002");
+        List<RecordingDriver.Sent> frames = senderDriver.getSent();
+        byte[] frame = frames.get(frames.size() - 1).payload;
+
+        assertEquals(1, ReliableFrame.base(frame));
+        deliver(receiver, frame, "0001");
+
+        byte[] ack = awaitAcknowledgement(receiverDriver, 2);
+        deliver(sender, ack, "0002");
+
+        assertTrue(next.get(5, TimeUnit.SECONDS));
+        assertEquals(1, delivered.size());
+    }
+
+    @Test
+    void selectiveAcknowledgementBehindWindowBaseShouldBeProcessed() throws Exception {
+        ReliableChannel sender = attach(new ReliableChannel(4, 100, 1, 0), senderDriver);
+
+        assertFalse(sender.send(new byte[] { 1 }, "0002").get(5, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> next = sender.send(new byte[] { 2 }, "0002");
+
+        // the peer still awaits sequence 0 but received sequence 1
+        deliver(sender, ReliableFrame.create(ReliableFrame.TYPE_ACK, 0, 0, 0, 1, null), "0002");
+
+        assertTrue(next.get(5, TimeUnit.SECONDS));
+    }
+
+    private ReliableChannel attach(ReliableChannel channel, RecordingDriver driver) {
+        GalaxyNode node = new GalaxyNodeBuilder().setDriver(driver).use(channel).build();
+
+        assertTrue(node.bootstrap().join());
+        channel.attach(node);
+
+        return channel;
+    }
+
+    private void deliver(ReliableChannel channel, byte[] frame, String source) {
+        channel.execute(new GalaxyMessage(frame, source), message -> delivered.add(message.getPayload()),
+                stopped::incrementAndGet);
+    }
+
+    /**
+     * Waits for a frame of the given driver acknowledging every sequence number before the given one
+     */
+    private static byte[] awaitAcknowledgement(RecordingDriver driver, int ack) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+        while(System.nanoTime() < deadline) {
+            for(RecordingDriver.Sent sent : driver.getSent()) {
+                if(ReliableFrame.ack(sent.payload) == ack) {
+                    return sent.payload;
+                }
+            }
+            Thread.sleep(2);
+        }
+        fail("No acknowledgement of " + ack + " sent");
+        return null;
+    }
+}
@@ -0,0 +1,57 @@
+package de.dev_kiste.galaxy.reliable;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Benny Lach
+ *
+ * Unit tests for RetransmissionTimeout
+ */
+class RetransmissionTimeoutTest {
+
+    @Test
+    void initialTimeoutShouldBeUsedUntilFirstSample() {
+        assertEquals(3000, new RetransmissionTimeout(3000).getTimeout());
+    }
+
+    @Test
+    void samplesShouldBeSmoothed() {
+        RetransmissionTimeout timeout = new RetransmissionTimeout(3000);
+
+        // first sample: srtt = 100, variance = 50
+        timeout.sampleRoundTrip(100);
+        assertEquals(300, timeout.getTimeout());
+
+        // variance = 37.5, srtt = 100
+        timeout.sampleRoundTrip(100);
+        assertEquals(300, timeout.getTimeout());
+
+        // variance = 253.125, srtt = 212.5
+        timeout.sampleRoundTrip(1000);
+        assertEquals(1225, timeout.getTimeout());
+    }
+
+    @Test
+    void timeoutShouldBeBounded() {
+        RetransmissionTimeout timeout = new RetransmissionTimeout(3000);
+
+        timeout.sampleRoundTrip(1);
+        assertEquals(RetransmissionTimeout.MIN_TIMEOUT_MILLIS + 1, timeout.getTimeout());
+
+        timeout.sampleRoundTrip(100000);
+        assertEquals(RetransmissionTimeout.MAX_TIMEOUT_MILLIS, timeout.getTimeout());
+    }
+
+    @Test
+    void backOffShouldDoubleUpToMaximum() {
+        RetransmissionTimeout timeout = new RetransmissionTimeout(20000);
+
+        timeout.backOff();
+        assertEquals(40000, timeout.getTimeout());
+
+        timeout.backOff();
+        assertEquals(RetransmissionTimeout.MAX_TIMEOUT_MILLIS, timeout.getTimeout());
+    }
+}
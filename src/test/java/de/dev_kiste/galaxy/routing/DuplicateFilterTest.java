@@ -0,0 +1,44 @@
+package de.dev_kiste.galaxy.routing;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Benny Lach
+ *
+ * Unit tests for DuplicateFilter
+ */
+class DuplicateFilterTest {
+
+    @Test
+    void frameShouldBeSeenOnlyOnce() {
+        DuplicateFilter filter = new DuplicateFilter(4);
+
+        assertFalse(filter.markSeen(0x0001, 7));
+        assertTrue(filter.markSeen(0x0001, 7));
+    }
+
+    @Test
+    void originAndSequenceShouldBeDistinguished() {
+        DuplicateFilter filter = new DuplicateFilter(4);
+
+        assertFalse(filter.markSeen(0x0001, 7));
+        assertFalse(filter.markSeen(0x0002, 7));
+        assertFalse(filter.markSeen(0x0001, 8));
+        assertFalse(filter.markSeen(0xFFFE, 0xFFFF));
+        assertTrue(filter.markSeen(0xFFFE, 0xFFFF));
+    }
+
+    @Test
+    void oldestFrameShouldBeForgotten() {
+        DuplicateFilter filter = new DuplicateFilter(2);
+
+        assertFalse(filter.markSeen(0x0001, 1));
+        assertFalse(filter.markSeen(0x0001, 2));
+        assertFalse(filter.markSeen(0x0001, 3));
+
+        assertTrue(filter.markSeen(0x0001, 3));
+        assertFalse(filter.markSeen(0x0001, 1));
+    }
+}
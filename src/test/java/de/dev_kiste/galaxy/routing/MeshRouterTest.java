@@ -0,0 +1,171 @@
+package de.dev_kiste.galaxy.routing;
+
+import de.dev_kiste.galaxy.driver.RecordingDriver;
+import de.dev_kiste.galaxy.messaging.GalaxyMessage;
+import de.dev_kiste.galaxy.node.GalaxyNode;
+import de.dev_kiste.galaxy.node.GalaxyNodeBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Benny Lach
+ *
+ * Unit tests for MeshRouter running on a simulated line of nodes 0001 - 0002 - 0003
+ */
+class MeshRouterTest {
+    private final Map<String, RecordingDriver> drivers = new HashMap<>();
+    private final Map<String, List<String>> neighbours = new HashMap<>();
+    private final Map<String, MeshRouter> routers = new HashMap<>();
+    private final Map<String, List<GalaxyMessage>> received = new HashMap<>();
+    private final Map<String, Integer> delivered = new HashMap<>();
+
+    private Thread network;
+    private volatile boolean isRunning = true;
+
+    @BeforeEach
+    void setup() {
+        addNode("0001", "0002");
+        addNode("0002", "0001", "0003");
+        addNode("0003", "0002");
+
+        network = new Thread(() -> {
+            while(isRunning) {
+                drivers.keySet().forEach(this::deliver);
+
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        network.setDaemon(true);
+        network.start();
+    }
+
+    @AfterEach
+    void deinit() throws InterruptedException {
+        isRunning = false;
+        network.join();
+    }
+
+    @Test
+    void payloadShouldBeRoutedOverIntermediateNode() throws Exception {
+        byte[] payload = "hello".getBytes(StandardCharsets.UTF_8);
+
+        assertTrue(routers.get("0001").send(payload, "0003").get(5, TimeUnit.SECONDS));
+        await("0003", 1);
+
+        GalaxyMessage message = received.get("0003").get(0);
+        assertEquals("0001", message.getSource());
+        assertArrayEquals(payload, message.getPayload());
+        assertTrue(received.get("0002").isEmpty());
+
+        RoutingTable table = routers.get("0001").getRoutingTable();
+        assertEquals(0x0002, table.getNextHop(0x0003));
+        assertEquals(2, table.getHopCount(0x0003));
+    }
+
+    @Test
+    void broadcastShouldReachEveryNodeOnce() throws Exception {
+        assertTrue(routers.get("0001").send(new byte[] { 1 }, GalaxyNode.BROADCAST_ADDRESS).get(5, TimeUnit.SECONDS));
+        await("0003", 1);
+        await("0002", 1);
+
+        // let rebroadcasts echo back before checking for duplicates
+        Thread.sleep(100);
+        assertEquals(1, received.get("0002").size());
+        assertEquals(1, received.get("0003").size());
+        assertTrue(received.get("0001").isEmpty());
+    }
+
+    @Test
+    void foreignPayloadWithMagicByteShouldBePassedOn() throws InterruptedException {
+        byte[] payload = new byte[] { MeshFrame.MAGIC, 0x55, 0, 0, 0, 2, 0, 3, 0, 1, 42 };
+
+        drivers.get("0003").receive(payload, "0002");
+        await("0003", 1);
+
+        assertEquals(1, received.get("0003").size());
+        assertArrayEquals(payload, received.get("0003").get(0).getPayload());
+        assertEquals("0002", received.get("0003").get(0).getSource());
+    }
+
+    @Test
+    void frameShouldBeRecognizedOnlyIfConsistent() {
+        byte[] data = MeshFrame.create(MeshFrame.TYPE_DATA, 0, 8, 1, 3, 1, new byte[] { 1 }, 0, 1);
+        byte[] request = MeshFrame.create(MeshFrame.TYPE_ROUTE_REQUEST, 0, 8, 1, 3, 1, new byte[0], 0, 0);
+        byte[] requestWithPayload = MeshFrame.create(MeshFrame.TYPE_ROUTE_REQUEST, 0, 8, 1, 3, 1, new byte[] { 1 }, 0, 1);
+        byte[] unknownType = MeshFrame.create(7, 0, 8, 1, 3, 1, new byte[0], 0, 0);
+        byte[] tooManyHops = MeshFrame.create(MeshFrame.TYPE_DATA, 200, 100, 1, 3, 1, new byte[0], 0, 0);
+        byte[] otherVersion = data.clone();
+        otherVersion[1] = (byte) 0x21;
+
+        assertTrue(MeshFrame.isFrame(data));
+        assertTrue(MeshFrame.isFrame(MeshFrame.forwarded(data)));
+        assertTrue(MeshFrame.isFrame(request));
+        assertFalse(MeshFrame.isFrame(requestWithPayload));
+        assertFalse(MeshFrame.isFrame(unknownType));
+        assertFalse(MeshFrame.isFrame(tooManyHops));
+        assertFalse(MeshFrame.isFrame(otherVersion));
+        assertFalse(MeshFrame.isFrame(Arrays.copyOf(data, MeshFrame.HEADER_LENGTH - 1)));
+    }
+
+    private void addNode(String address, String... links) {
+        RecordingDriver driver = new RecordingDriver(address);
+        MeshRouter router = new MeshRouter(8, 60000, 2000, 5);
+        List<GalaxyMessage> messages = new CopyOnWriteArrayList<>();
+        GalaxyNode node = new GalaxyNodeBuilder()
+                .setDriver(driver)
+                .use(router)
+                .setMessageHandler(messages::add)
+                .build();
+
+        assertTrue(node.bootstrap().join());
+        router.attach(node);
+
+        drivers.put(address, driver);
+        neighbours.put(address, Arrays.asList(links));
+        routers.put(address, router);
+        received.put(address, messages);
+        delivered.put(address, 0);
+    }
+
+    /**
+     * Hands every new payload of the given node to the neighbours in range
+     */
+    private void deliver(String address) {
+        List<RecordingDriver.Sent> sent = drivers.get(address).getSent();
+
+        for(int i = delivered.get(address); i < sent.size(); i++) {
+            RecordingDriver.Sent next = sent.get(i);
+
+            for(String neighbour : neighbours.get(address)) {
+                if(next.receiver.equals(RecordingDriver.BROADCAST) || next.receiver.equals(neighbour)) {
+                    drivers.get(neighbour).receive(next.payload, address);
+                }
+            }
+        }
+        delivered.put(address, sent.size());
+    }
+
+    private void await(String address, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+        while(received.get(address).size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(2);
+        }
+        assertTrue(received.get(address).size() >= count);
+    }
+}
@@ -0,0 +1,86 @@
+package de.dev_kiste.galaxy.routing;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Benny Lach
+ *
+ * Unit tests for RoutingTable
+ */
+class RoutingTableTest {
+    private AtomicLong clock;
+    private RoutingTable table;
+
+    @BeforeEach
+    void setup() {
+        clock = new AtomicLong(1000);
+        table = new RoutingTable(100, clock::get);
+    }
+
+    @Test
+    void unknownDestinationShouldHaveNoRoute() {
+        assertEquals(RoutingTable.NO_ROUTE, table.getNextHop(0x0010));
+        assertEquals(RoutingTable.NO_ROUTE, table.getNextHop(-1));
+        assertEquals(RoutingTable.NO_ROUTE, table.getNextHop(0x10000));
+    }
+
+    @Test
+    void updatedRouteShouldBeReturned() {
+        assertTrue(table.update(0x0010, 0x0002, 3));
+
+        assertEquals(0x0002, table.getNextHop(0x0010));
+        assertEquals(3, table.getHopCount(0x0010));
+    }
+
+    @Test
+    void longerRouteShouldNotReplaceShorterRoute() {
+        table.update(0x0010, 0x0002, 2);
+
+        assertFalse(table.update(0x0010, 0x0003, 4));
+        assertTrue(table.update(0x0010, 0x0004, 1));
+        assertEquals(0x0004, table.getNextHop(0x0010));
+    }
+
+    @Test
+    void routeShouldExpire() {
+        table.update(0x0010, 0x0002, 2);
+        clock.addAndGet(100);
+
+        assertEquals(RoutingTable.NO_ROUTE, table.getNextHop(0x0010));
+        assertTrue(table.update(0x0010, 0x0003, 5));
+    }
+
+    @Test
+    void refreshShouldExtendLifetime() {
+        table.update(0x0010, 0x0002, 2);
+        clock.addAndGet(60);
+        table.refresh(0x0010);
+        clock.addAndGet(60);
+
+        assertEquals(0x0002, table.getNextHop(0x0010));
+    }
+
+    @Test
+    void removedRouteShouldBeGone() {
+        table.update(0x0010, 0x0002, 2);
+        table.remove(0x0010);
+
+        assertEquals(RoutingTable.NO_ROUTE, table.getNextHop(0x0010));
+    }
+
+    @Test
+    void expiredRouteShouldStayExpiredAfterWeeks() {
+        assertTrue(table.update(0x0010, 0x0002, 3));
+
+        // past the range of 32 bit millisecond timestamps
+        clock.addAndGet(50L * 24 * 60 * 60 * 1000);
+        assertEquals(RoutingTable.NO_ROUTE, table.getNextHop(0x0010));
+        assertTrue(table.update(0x0010, 0x0003, 4));
+        assertEquals(0x0003, table.getNextHop(0x0010));
+    }
+}
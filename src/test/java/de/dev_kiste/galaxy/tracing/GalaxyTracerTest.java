@@ -0,0 +1,73 @@
+package de.dev_kiste.galaxy.tracing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Benny Lach
+ *
+ * Unit tests for GalaxyTracer
+ */
+class GalaxyTracerTest {
+    private final List<MessageTrace> exported = new ArrayList<>();
+
+    @Test
+    void initWithInvalidArgumentsShouldFail() {
+        assertThrows(IllegalArgumentException.class, () -> new GalaxyTracer(0, exported::add));
+        assertThrows(IllegalArgumentException.class, () -> new GalaxyTracer(1, null));
+    }
+
+    @Test
+    void everyNthMessageShouldBeSampled() {
+        GalaxyTracer tracer = new GalaxyTracer(3, exported::add);
+        List<Integer> sampled = new ArrayList<>();
+
+        for(int i = 0; i < 10; i++) {
+            MessageTrace trace = tracer.sample("0001");
+
+            if(trace != null) {
+                sampled.add(i);
+                assertEquals(sampled.size() - 1, trace.getId());
+                assertEquals("0001", trace.getSource());
+            }
+        }
+        assertEquals(4, sampled.size());
+        assertEquals(0, sampled.get(0).intValue());
+        assertEquals(3, sampled.get(1).intValue());
+        assertEquals(6, sampled.get(2).intValue());
+        assertEquals(9, sampled.get(3).intValue());
+    }
+
+    @Test
+    void intervalOfOneShouldSampleEveryMessage() {
+        GalaxyTracer tracer = new GalaxyTracer(1, exported::add);
+
+        for(int i = 0; i < 5; i++) {
+            assertEquals(i, tracer.sample("0001").getId());
+        }
+    }
+
+    @Test
+    void exportShouldHandTraceToExporter() {
+        GalaxyTracer tracer = new GalaxyTracer(1, exported::add);
+        MessageTrace trace = tracer.sample("0001");
+
+        tracer.export(trace);
+
+        assertEquals(1, exported.size());
+        assertSame(trace, exported.get(0));
+    }
+
+    @Test
+    void failingExporterShouldBeIgnored() {
+        GalaxyTracer tracer = new GalaxyTracer(1, trace -> {
+            throw new IllegalStateException("export failed");
+        });
+
+        assertAll(() -> tracer.export(tracer.sample("0001")));
+    }
+}
@@ -0,0 +1,96 @@
+package de.dev_kiste.galaxy.tracing;
+
+import de.dev_kiste.galaxy.driver.RecordingDriver;
+import de.dev_kiste.galaxy.messaging.GalaxyMessage;
+import de.dev_kiste.galaxy.node.GalaxyNode;
+import de.dev_kiste.galaxy.node.GalaxyNodeBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Benny Lach
+ *
+ * Unit tests for MessageTrace
+ */
+class MessageTraceTest {
+    private final MessageTrace trace = new MessageTrace(7, "0001");
+
+    @Test
+    void markedStagesShouldBeRecorded() {
+        trace.mark(TraceStage.FRAME_COMPLETE, 1000);
+        trace.mark(TraceStage.REMOTE_MESSAGE, 1500);
+        trace.mark(TraceStage.DISPATCH_START);
+
+        assertEquals(1000, trace.getTimestamp(TraceStage.FRAME_COMPLETE));
+        assertEquals(500, trace.getDuration(TraceStage.FRAME_COMPLETE, TraceStage.REMOTE_MESSAGE));
+        assertTrue(trace.getTimestamp(TraceStage.DISPATCH_START) > 0);
+    }
+
+    @Test
+    void missingStageShouldHaveNoDuration() {
+        trace.mark(TraceStage.FRAME_COMPLETE, 1000);
+
+        assertEquals(0, trace.getTimestamp(TraceStage.COMPLETED));
+        assertEquals(-1, trace.getDuration(TraceStage.FRAME_COMPLETE, TraceStage.COMPLETED));
+        assertEquals(-1, trace.getDuration(TraceStage.COMPLETED, TraceStage.FRAME_COMPLETE));
+    }
+
+    @Test
+    void middlewareShouldBeRecordedByIndex() {
+        assertEquals(0, trace.getMiddlewareCount());
+
+        trace.startMiddleware(2);
+        trace.markMiddleware(1);
+        trace.markMiddleware(2);
+        trace.markMiddleware(-1);
+
+        assertEquals(2, trace.getMiddlewareCount());
+        assertEquals(0, trace.getMiddlewareTimestamp(0));
+        assertTrue(trace.getMiddlewareTimestamp(1) > 0);
+    }
+
+    @Test
+    void toStringShouldContainOffsetsOfReachedStages() {
+        trace.mark(TraceStage.FRAME_COMPLETE, 1000);
+        trace.mark(TraceStage.REMOTE_MESSAGE, 3000);
+
+        String description = trace.toString();
+
+        assertTrue(description.startsWith("MessageTrace{id=7, source=0001"));
+        assertTrue(description.contains("REMOTE_MESSAGE=2us"));
+        assertTrue(description.contains("COMPLETED=-"));
+    }
+
+    @Test
+    void nodeShouldStampEveryStageOfHandledMessage() throws Exception {
+        CompletableFuture<MessageTrace> exported = new CompletableFuture<>();
+        GalaxyTracer tracer = new GalaxyTracer(1, exported::complete);
+        RecordingDriver driver = new RecordingDriver("0002");
+        GalaxyNode node = new GalaxyNodeBuilder()
+                .setDriver(driver)
+                .setTracer(tracer)
+                .use((message, caller, stopper) -> caller.call(message))
+                .setMessageHandler(message -> {})
+                .build();
+        assertTrue(node.bootstrap().join());
+
+        MessageTrace sampled = tracer.sample("0001");
+        sampled.mark(TraceStage.FRAME_COMPLETE);
+        sampled.mark(TraceStage.REMOTE_MESSAGE);
+        driver.receive(new GalaxyMessage(new byte[] { 1 }, "0001", sampled));
+
+        MessageTrace result = exported.get(5, TimeUnit.SECONDS);
+        assertSame(sampled, result);
+        for(TraceStage stage : TraceStage.values()) {
+            assertTrue(result.getTimestamp(stage) > 0, stage.name());
+        }
+        assertTrue(result.getDuration(TraceStage.DISPATCH_START, TraceStage.HANDLER_RECEIVED) >= 0);
+        assertTrue(result.getDuration(TraceStage.HANDLER_RECEIVED, TraceStage.COMPLETED) >= 0);
+        assertEquals(1, result.getMiddlewareCount());
+        assertTrue(result.getMiddlewareTimestamp(0) > 0);
+    }
+}
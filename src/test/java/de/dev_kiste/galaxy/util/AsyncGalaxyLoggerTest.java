@@ -0,0 +1,87 @@
+package de.dev_kiste.galaxy.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Benny Lach
+ *
+ * Unit tests for AsyncGalaxyLogger
+ */
+class AsyncGalaxyLoggerTest {
+
+    @Test
+    void initWithNullDelegateShouldFail() {
+        assertThrows(IllegalArgumentException.class, () -> new AsyncGalaxyLogger(null, 8));
+    }
+
+    @Test
+    void messagesShouldBeForwardedInOrder() {
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        AsyncGalaxyLogger logger = new AsyncGalaxyLogger((lvl, message) -> received.add(message), 64);
+
+        for(int i = 0; i < 50; i++) {
+            logger.log(Level.INFO, "message {}", i);
+        }
+        logger.close();
+
+        assertEquals(50, received.size());
+        assertEquals("message 0", received.get(0));
+        assertEquals("message 49", received.get(49));
+    }
+
+    @Test
+    void fullBufferShouldDropMessages() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AsyncGalaxyLogger logger = new AsyncGalaxyLogger((lvl, message) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 4);
+
+        for(int i = 0; i < 20; i++) {
+            logger.log(Level.INFO, "message");
+        }
+        release.countDown();
+        logger.close();
+
+        assertTrue(logger.getDroppedMessages() > 0);
+    }
+
+    @Test
+    void supplierShouldNotBeCalledIfLevelIsNotLoggable() {
+        GalaxyLogger logger = new GalaxyLogger() {
+            @Override
+            public void log(Level lvl, String message) {
+                fail("Message must not be logged");
+            }
+
+            @Override
+            public boolean isLoggable(Level lvl) {
+                return lvl.intValue() >= Level.WARNING.intValue();
+            }
+        };
+
+        logger.log(Level.INFO, () -> {
+            fail("Supplier must not be called");
+            return "";
+        });
+        logger.log(Level.INFO, "did send: {}", true);
+    }
+
+    @Test
+    void testFormat() {
+        assertEquals("a 1 b 2", GalaxyLogger.format("a {} b {}", 1, 2));
+        assertEquals("a 1 b {}", GalaxyLogger.format("a {} b {}", 1));
+        assertEquals("no placeholder", GalaxyLogger.format("no placeholder", 1));
+    }
+}